@@ -0,0 +1,35 @@
+package de.nuttercode.util.cache.benchmark;
+
+import org.openjdk.jmh.profile.GCProfiler;
+import org.openjdk.jmh.runner.Runner;
+import org.openjdk.jmh.runner.RunnerException;
+import org.openjdk.jmh.runner.options.Options;
+import org.openjdk.jmh.runner.options.OptionsBuilder;
+
+/**
+ * Runs all benchmarks of this package, or those matching the regular
+ * expression given as first argument, with the gc profiler, which reports the
+ * allocation rate per operation. benchmark/pom.xml compiles the sources of
+ * this package together with the ones of the library into a single jar whose
+ * main class is this one:
+ * 
+ * <pre>
+ * mvn -f benchmark/pom.xml package
+ * java -jar benchmark/target/benchmarks.jar [regex]
+ * </pre>
+ * 
+ * @author Johannes B. Latzel
+ *
+ */
+public final class BenchmarkRunner {
+
+	private BenchmarkRunner() {
+	}
+
+	public static void main(String[] args) throws RunnerException {
+		String include = args.length > 0 ? args[0] : BenchmarkRunner.class.getPackageName() + ".*Benchmark";
+		Options options = new OptionsBuilder().include(include).addProfiler(GCProfiler.class).build();
+		new Runner(options).run();
+	}
+
+}
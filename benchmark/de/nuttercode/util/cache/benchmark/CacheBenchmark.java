@@ -0,0 +1,135 @@
+package de.nuttercode.util.cache.benchmark;
+
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Threads;
+import org.openjdk.jmh.annotations.Warmup;
+
+import de.nuttercode.util.cache.Cache;
+
+/**
+ * Measures the throughput of {@link Cache#getIfPresent(Object)},
+ * {@link Cache#cache(Object, Object)} and {@link Cache#contains(Object)} of a
+ * single thread. The cache is filled with the even keys of the key space, so
+ * about half of the lookups are misses under {@link KeyDistribution#UNIFORM}.
+ * Hits and misses are also measured separately by mapping every access to its
+ * even or odd neighbour. Lookups use {@link Cache#getIfPresent(Object)}
+ * because a miss of {@link Cache#get(Object)} creates an exception, whose
+ * stack trace would dominate the results. All keys and values are created in
+ * advance and are strongly reachable, so neither boxing nor the Garbage
+ * Collector clearing soft or weak values distort the results and the
+ * allocation rate reported by the gc profiler is the one of the cache itself.
+ * 
+ * @author Johannes B. Latzel
+ *
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+@Threads(1)
+public class CacheBenchmark {
+
+	/**
+	 * number of precomputed accesses, a power of two
+	 */
+	static final int ACCESS_COUNT = 1 << 20;
+
+	@Param({ "StrongCache", "SoftCache", "WeakCache", "HybridCache" })
+	private String implementation;
+
+	@Param({ "1024", "65536", "1048576" })
+	private int size;
+
+	@Param({ "UNIFORM", "ZIPFIAN" })
+	private KeyDistribution distribution;
+
+	private Cache<Integer, Integer> cache;
+	private Integer[] keys;
+	private Integer[] accesses;
+	private Integer[] hitAccesses;
+	private Integer[] missAccesses;
+	private int index;
+
+	@Setup(Level.Trial)
+	public void setUp() {
+		int keySpace = size * 2;
+		keys = new Integer[keySpace];
+		for (int i = 0; i < keySpace; i++)
+			keys[i] = i;
+		int[] accessKeys = distribution.createKeys(keySpace, ACCESS_COUNT, 42);
+		accesses = new Integer[ACCESS_COUNT];
+		hitAccesses = new Integer[ACCESS_COUNT];
+		missAccesses = new Integer[ACCESS_COUNT];
+		for (int i = 0; i < ACCESS_COUNT; i++) {
+			accesses[i] = keys[accessKeys[i]];
+			hitAccesses[i] = keys[accessKeys[i] & ~1];
+			missAccesses[i] = keys[accessKeys[i] | 1];
+		}
+		cache = CacheFactory.create(implementation, size);
+		for (int i = 0; i < keySpace; i += 2)
+			cache.cache(keys[i], keys[i]);
+		index = 0;
+	}
+
+	@TearDown(Level.Trial)
+	public void tearDown() {
+		cache.clear();
+	}
+
+	private int next() {
+		return index++ & (ACCESS_COUNT - 1);
+	}
+
+	private Integer nextKey() {
+		return accesses[next()];
+	}
+
+	@Benchmark
+	public Integer get() {
+		return cache.getIfPresent(nextKey());
+	}
+
+	/**
+	 * only even keys, which have been cached unless they have been evicted or
+	 * collected
+	 */
+	@Benchmark
+	public Integer getHit() {
+		return cache.getIfPresent(hitAccesses[next()]);
+	}
+
+	/**
+	 * only odd keys, which are never cached
+	 */
+	@Benchmark
+	public Integer getMiss() {
+		return cache.getIfPresent(missAccesses[next()]);
+	}
+
+	@Benchmark
+	public boolean contains() {
+		return cache.contains(nextKey());
+	}
+
+	@Benchmark
+	public void cache() {
+		Integer key = nextKey();
+		cache.cache(key, key);
+	}
+
+}
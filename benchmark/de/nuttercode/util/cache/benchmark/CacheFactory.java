@@ -0,0 +1,66 @@
+package de.nuttercode.util.cache.benchmark;
+
+import de.nuttercode.util.cache.BoundedCache;
+import de.nuttercode.util.cache.Cache;
+import de.nuttercode.util.cache.ConcurrentStrongCache;
+import de.nuttercode.util.cache.HybridCache;
+import de.nuttercode.util.cache.SegmentedCache;
+import de.nuttercode.util.cache.SoftCache;
+import de.nuttercode.util.cache.StrongCache;
+import de.nuttercode.util.cache.WeakCache;
+import de.nuttercode.util.cache.eviction.LruPolicy;
+
+/**
+ * Creates the {@link Cache}s which are benchmarked by their names, so they can
+ * be selected by JMH parameters.
+ * 
+ * @author Johannes B. Latzel
+ *
+ */
+final class CacheFactory {
+
+	private CacheFactory() {
+	}
+
+	/**
+	 * @param name
+	 *            simple class name, prefixed by "Concurrent" for the thread-safe
+	 *            variant
+	 * @param size
+	 *            number of keys the cache will hold
+	 * @return new empty cache
+	 * @throws IllegalArgumentException
+	 *             if the name is unknown
+	 */
+	static <V> Cache<Integer, V> create(String name, int size) {
+		switch (name) {
+		case "StrongCache":
+			return new StrongCache<>();
+		case "ConcurrentStrongCache":
+			return new ConcurrentStrongCache<>();
+		case "SoftCache":
+			return new SoftCache<>();
+		case "ConcurrentSoftCache":
+			return new SoftCache<>(new ConcurrentStrongCache<>());
+		case "WeakCache":
+			return new WeakCache<>();
+		case "ConcurrentWeakCache":
+			return new WeakCache<>(new ConcurrentStrongCache<>());
+		case "HybridCache":
+			return new HybridCache<>(false);
+		case "ConcurrentHybridCache":
+			return new HybridCache<>(true);
+		case "AdaptiveHybridCache":
+			return new HybridCache<>(false, size / 4, size / 2);
+		case "ConcurrentAdaptiveHybridCache":
+			return new HybridCache<>(true, size / 4, size / 2);
+		case "BoundedCache":
+			return new BoundedCache<>(size, new LruPolicy<>());
+		case "SegmentedCache":
+			return new SegmentedCache<>(() -> new BoundedCache<>(Math.max(1, size / 64), new LruPolicy<>()));
+		default:
+			throw new IllegalArgumentException("unknown cache " + name);
+		}
+	}
+
+}
@@ -0,0 +1,80 @@
+package de.nuttercode.util.cache.benchmark;
+
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import de.nuttercode.util.cache.Cache;
+import de.nuttercode.util.cache.CacheType;
+import de.nuttercode.util.cache.HybridCache;
+
+/**
+ * Measures the time a single {@link Cache#clean()} takes. Before every call the
+ * cache is filled with values of which only every second one stays strongly
+ * reachable and the Garbage Collector is run, so half of the entries are dead.
+ * The values of a {@link HybridCache} which are not reachable are moved to
+ * {@link CacheType#WEAK} first.
+ * 
+ * @author Johannes B. Latzel
+ *
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.SingleShotTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 5)
+@Measurement(iterations = 20)
+@Fork(1)
+public class CleanBenchmark {
+
+	@Param({ "WeakCache", "ConcurrentWeakCache", "HybridCache" })
+	private String implementation;
+
+	@Param({ "65536", "1048576" })
+	private int size;
+
+	private Cache<Integer, Object> cache;
+	private Integer[] keys;
+	private Object[] reachableValues;
+
+	@Setup(Level.Trial)
+	public void setUpTrial() {
+		keys = new Integer[size];
+		for (int i = 0; i < size; i++)
+			keys[i] = i;
+		reachableValues = new Object[size];
+	}
+
+	@Setup(Level.Iteration)
+	public void setUpIteration() throws InterruptedException {
+		cache = CacheFactory.create(implementation, size);
+		for (int i = 0; i < size; i++) {
+			Object value = new Object();
+			reachableValues[i] = (i & 1) == 0 ? value : null;
+			cache.cache(keys[i], value);
+		}
+		if (cache instanceof HybridCache)
+			for (int i = 1; i < size; i += 2)
+				((HybridCache<Integer, Object>) cache).move(keys[i], CacheType.WEAK);
+		System.gc();
+		// gives the reference handler time to enqueue the cleared references
+		Thread.sleep(100);
+	}
+
+	@Benchmark
+	public int clean() {
+		cache.clean();
+		return cache.size();
+	}
+
+}
@@ -0,0 +1,143 @@
+package de.nuttercode.util.cache.benchmark;
+
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Group;
+import org.openjdk.jmh.annotations.GroupThreads;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Threads;
+import org.openjdk.jmh.annotations.Warmup;
+
+import de.nuttercode.util.cache.Cache;
+
+/**
+ * Multi-threaded counterpart of {@link CacheBenchmark} for the thread-safe
+ * caches. The cache and the precomputed accesses are shared by all threads;
+ * every thread starts at a random position of the accesses, so the threads do
+ * not access the same keys in lockstep. Hits and misses are measured like in
+ * {@link CacheBenchmark}. Run with -t to vary the number of threads. The group benchmark mixes readers and writers in a ratio of 3:1.
+ * 
+ * @author Johannes B. Latzel
+ *
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+@Threads(4)
+public class ConcurrentCacheBenchmark {
+
+	/**
+	 * position of a single thread in the accesses
+	 */
+	@State(Scope.Thread)
+	public static class ThreadIndex {
+
+		private int index;
+
+		@Setup(Level.Trial)
+		public void setUp() {
+			index = ThreadLocalRandom.current().nextInt(CacheBenchmark.ACCESS_COUNT);
+		}
+
+		private int next() {
+			return index++ & (CacheBenchmark.ACCESS_COUNT - 1);
+		}
+
+	}
+
+	@Param({ "ConcurrentStrongCache", "ConcurrentSoftCache", "ConcurrentHybridCache", "SegmentedCache" })
+	private String implementation;
+
+	@Param({ "1024", "65536", "1048576" })
+	private int size;
+
+	@Param({ "UNIFORM", "ZIPFIAN" })
+	private KeyDistribution distribution;
+
+	private Cache<Integer, Integer> cache;
+	private Integer[] keys;
+	private Integer[] accesses;
+	private Integer[] hitAccesses;
+	private Integer[] missAccesses;
+
+	@Setup(Level.Trial)
+	public void setUp() {
+		int keySpace = size * 2;
+		keys = new Integer[keySpace];
+		for (int i = 0; i < keySpace; i++)
+			keys[i] = i;
+		int[] accessKeys = distribution.createKeys(keySpace, CacheBenchmark.ACCESS_COUNT, 42);
+		accesses = new Integer[CacheBenchmark.ACCESS_COUNT];
+		hitAccesses = new Integer[CacheBenchmark.ACCESS_COUNT];
+		missAccesses = new Integer[CacheBenchmark.ACCESS_COUNT];
+		for (int i = 0; i < CacheBenchmark.ACCESS_COUNT; i++) {
+			accesses[i] = keys[accessKeys[i]];
+			hitAccesses[i] = keys[accessKeys[i] & ~1];
+			missAccesses[i] = keys[accessKeys[i] | 1];
+		}
+		cache = CacheFactory.create(implementation, size);
+		for (int i = 0; i < keySpace; i += 2)
+			cache.cache(keys[i], keys[i]);
+	}
+
+	@TearDown(Level.Trial)
+	public void tearDown() {
+		cache.clear();
+	}
+
+	@Benchmark
+	public Integer get(ThreadIndex threadIndex) {
+		return cache.getIfPresent(accesses[threadIndex.next()]);
+	}
+
+	@Benchmark
+	public Integer getHit(ThreadIndex threadIndex) {
+		return cache.getIfPresent(hitAccesses[threadIndex.next()]);
+	}
+
+	@Benchmark
+	public Integer getMiss(ThreadIndex threadIndex) {
+		return cache.getIfPresent(missAccesses[threadIndex.next()]);
+	}
+
+	@Benchmark
+	public boolean contains(ThreadIndex threadIndex) {
+		return cache.contains(accesses[threadIndex.next()]);
+	}
+
+	@Benchmark
+	public void cache(ThreadIndex threadIndex) {
+		Integer key = accesses[threadIndex.next()];
+		cache.cache(key, key);
+	}
+
+	@Benchmark
+	@Group("readWrite")
+	@GroupThreads(3)
+	public Integer readWriteGet(ThreadIndex threadIndex) {
+		return get(threadIndex);
+	}
+
+	@Benchmark
+	@Group("readWrite")
+	@GroupThreads(1)
+	public void readWriteCache(ThreadIndex threadIndex) {
+		cache(threadIndex);
+	}
+
+}
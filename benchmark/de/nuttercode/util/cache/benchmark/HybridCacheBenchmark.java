@@ -0,0 +1,88 @@
+package de.nuttercode.util.cache.benchmark;
+
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+
+import de.nuttercode.util.cache.CacheType;
+import de.nuttercode.util.cache.HybridCache;
+
+/**
+ * Measures {@link HybridCache#move(Object, CacheType)} and
+ * {@link HybridCache#cache(Object, Object, CacheType)}, which change the
+ * {@link CacheType} of the entries. All keys are mapped, so every access
+ * changes the strength of an entry to the next {@link CacheType}.
+ * 
+ * @author Johannes B. Latzel
+ *
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class HybridCacheBenchmark {
+
+	private static final CacheType[] CACHE_TYPES = CacheType.values();
+
+	@Param({ "1024", "65536", "1048576" })
+	private int size;
+
+	@Param({ "UNIFORM", "ZIPFIAN" })
+	private KeyDistribution distribution;
+
+	@Param({ "false", "true" })
+	private boolean concurrent;
+
+	private HybridCache<Integer, Integer> cache;
+	private Integer[] keys;
+	private Integer[] accesses;
+	private int index;
+
+	@Setup(Level.Trial)
+	public void setUp() {
+		keys = new Integer[size];
+		for (int i = 0; i < size; i++)
+			keys[i] = i;
+		int[] accessKeys = distribution.createKeys(size, CacheBenchmark.ACCESS_COUNT, 42);
+		accesses = new Integer[CacheBenchmark.ACCESS_COUNT];
+		for (int i = 0; i < CacheBenchmark.ACCESS_COUNT; i++)
+			accesses[i] = keys[accessKeys[i]];
+		cache = new HybridCache<>(concurrent);
+		for (Integer key : keys)
+			cache.cache(key, key, CacheType.STRONG);
+		index = 0;
+	}
+
+	@TearDown(Level.Trial)
+	public void tearDown() {
+		cache.clear();
+	}
+
+	@Benchmark
+	public void move() {
+		int i = index++;
+		cache.move(accesses[i & (CacheBenchmark.ACCESS_COUNT - 1)], CACHE_TYPES[i % CACHE_TYPES.length]);
+	}
+
+	@Benchmark
+	public void cacheWithType() {
+		int i = index++;
+		Integer key = accesses[i & (CacheBenchmark.ACCESS_COUNT - 1)];
+		cache.cache(key, key, CACHE_TYPES[i % CACHE_TYPES.length]);
+	}
+
+}
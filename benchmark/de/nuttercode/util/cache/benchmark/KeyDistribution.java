@@ -0,0 +1,86 @@
+package de.nuttercode.util.cache.benchmark;
+
+import java.util.Random;
+
+/**
+ * Generates the sequences of keys the benchmarks look up. Keys are in [0,
+ * keySpace).
+ * 
+ * @author Johannes B. Latzel
+ *
+ */
+public enum KeyDistribution {
+
+	/**
+	 * every key is equally likely
+	 */
+	UNIFORM {
+
+		@Override
+		int[] createKeys(int keySpace, int count, long seed) {
+			Random random = new Random(seed);
+			int[] keys = new int[count];
+			for (int i = 0; i < count; i++)
+				keys[i] = random.nextInt(keySpace);
+			return keys;
+		}
+
+	},
+
+	/**
+	 * the probability of the key of rank r is proportional to 1 / r^0.99, like
+	 * the popularity of items in web and database traces. the ranks are mapped
+	 * to random keys, so the popular keys are spread over the whole key space.
+	 */
+	ZIPFIAN {
+
+		@Override
+		int[] createKeys(int keySpace, int count, long seed) {
+			Random random = new Random(seed);
+			double[] cumulative = new double[keySpace];
+			double sum = 0;
+			for (int rank = 0; rank < keySpace; rank++) {
+				sum += 1 / Math.pow(rank + 1, ZIPF_EXPONENT);
+				cumulative[rank] = sum;
+			}
+			int[] permutation = new int[keySpace];
+			for (int i = 0; i < keySpace; i++)
+				permutation[i] = i;
+			for (int i = keySpace - 1; i > 0; i--) {
+				int j = random.nextInt(i + 1);
+				int swap = permutation[i];
+				permutation[i] = permutation[j];
+				permutation[j] = swap;
+			}
+			int[] keys = new int[count];
+			for (int i = 0; i < count; i++) {
+				double target = random.nextDouble() * sum;
+				int low = 0;
+				int high = keySpace - 1;
+				while (low < high) {
+					int middle = (low + high) >>> 1;
+					if (cumulative[middle] < target)
+						low = middle + 1;
+					else
+						high = middle;
+				}
+				keys[i] = permutation[low];
+			}
+			return keys;
+		}
+
+	};
+
+	private static final double ZIPF_EXPONENT = 0.99;
+
+	/**
+	 * @param keySpace
+	 *            number of different keys
+	 * @param count
+	 *            length of the sequence
+	 * @param seed
+	 * @return sequence of keys
+	 */
+	abstract int[] createKeys(int keySpace, int count, long seed);
+
+}
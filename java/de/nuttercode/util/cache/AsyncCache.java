@@ -0,0 +1,89 @@
+package de.nuttercode.util.cache;
+
+import java.util.NoSuchElementException;
+import java.util.Set;
+import java.util.concurrent.CompletableFuture;
+
+/**
+ * Asynchronous counterpart of {@link Cache}. Maps keys to
+ * {@link CompletableFuture}s of values, so values which are still being
+ * loaded are cached as well. Implementations are thread-safe.
+ *
+ * @author Johannes B. Latzel
+ *
+ * @param <K>
+ *            key type
+ * @param <V>
+ *            value type
+ */
+public interface AsyncCache<K, V> {
+
+	/**
+	 * caches the future and maps the given key to it. the mapping will be removed
+	 * if the future completes exceptionally.
+	 *
+	 * @param key
+	 * @param future
+	 */
+	void cache(K key, CompletableFuture<V> future);
+
+	/**
+	 * caches the value and maps the given key to it
+	 *
+	 * @param key
+	 * @param value
+	 */
+	default void cache(K key, V value) {
+		cache(key, CompletableFuture.completedFuture(value));
+	}
+
+	/**
+	 * never blocks. if the key is not mapped, the value will be loaded
+	 * asynchronously.
+	 *
+	 * @param key
+	 * @return future of the value given by the key
+	 */
+	CompletableFuture<V> get(K key);
+
+	/**
+	 * @param key
+	 * @return true if and only if the key is mapped
+	 */
+	boolean contains(K key);
+
+	/**
+	 * reloads the value of the key asynchronously. the current value stays
+	 * available until the new value has been loaded.
+	 *
+	 * @param key
+	 * @throws NoSuchElementException
+	 *             if the key is not mapped
+	 */
+	void refresh(K key);
+
+	/**
+	 * removes the future given by the key
+	 *
+	 * @param key
+	 * @throws NoSuchElementException
+	 *             if the key is not mapped
+	 */
+	void remove(K key);
+
+	/**
+	 * @return the total number of futures cached.
+	 */
+	int size();
+
+	/**
+	 * removes all cached entries.
+	 */
+	void clear();
+
+	/**
+	 * @return unmodifiable set of all usable keys of this cache
+	 */
+	Set<K> getKeySet();
+
+}
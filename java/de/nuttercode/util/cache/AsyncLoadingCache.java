@@ -0,0 +1,450 @@
+package de.nuttercode.util.cache;
+
+import java.lang.ref.Reference;
+import java.lang.ref.ReferenceQueue;
+import java.lang.ref.SoftReference;
+import java.lang.ref.WeakReference;
+import java.time.Duration;
+import java.util.Collections;
+import java.util.HashSet;
+import java.util.NoSuchElementException;
+import java.util.Set;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.Executor;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.function.LongSupplier;
+
+import de.nuttercode.util.assurance.Assurance;
+import de.nuttercode.util.assurance.NotNull;
+
+/**
+ * {@link AsyncCache} which loads missing values with a {@link CacheLoader} on
+ * an {@link Executor}. The futures are stored in a {@link ConcurrentHashMap}.
+ * Futures which are still pending are always referenced strongly, so loads in
+ * flight are never lost. Once a future has completed, its value is referenced
+ * strongly, softly, or weakly as given by a {@link CacheType}. If a
+ * refresh-after-write duration is set, a read of a value which is older than
+ * that duration triggers a reload in the background. Readers keep getting the
+ * old value until the reload has completed, so a reload never blocks any
+ * caller. Only one load or reload runs per key at any time.
+ *
+ * @author Johannes B. Latzel
+ *
+ * @param <K>
+ *            key type
+ * @param <V>
+ *            value type
+ */
+public class AsyncLoadingCache<K, V> implements AsyncCache<K, V> {
+
+	/**
+	 * maximum number of collected values which are purged during a single write
+	 */
+	private static final int DRAIN_THRESHOLD = 64;
+
+	/**
+	 * the current future or value of a key and the state of its reload
+	 */
+	private static final class AsyncEntry<K, V> {
+
+		private final K key;
+
+		/**
+		 * pending or, if the values are referenced strongly, completed future. null
+		 * if the value is referenced by {@link #reference}.
+		 */
+		private volatile CompletableFuture<V> future;
+
+		/**
+		 * soft or weak reference of the loaded value. set before {@link #future}
+		 * is cleared.
+		 */
+		private volatile Reference<V> reference;
+
+		/**
+		 * point in time at which the current value has been loaded
+		 */
+		private volatile long writeTime;
+
+		private final AtomicBoolean isLoading;
+
+		private AsyncEntry(K key, CompletableFuture<V> future, long writeTime) {
+			this.key = key;
+			this.future = future;
+			this.writeTime = writeTime;
+			reference = null;
+			isLoading = new AtomicBoolean(false);
+		}
+
+		/**
+		 * @return future of the current value or null if the value has been
+		 *         collected
+		 */
+		private CompletableFuture<V> currentFuture() {
+			CompletableFuture<V> future = this.future;
+			if (future != null)
+				return future;
+			V value = reference.get();
+			return value == null ? null : CompletableFuture.completedFuture(value);
+		}
+
+	}
+
+	/**
+	 * {@link SoftReference} which knows its entry
+	 */
+	private static final class EntrySoftReference<K, V> extends SoftReference<V> implements KeyedReference<K> {
+
+		private final AsyncEntry<K, V> entry;
+
+		private EntrySoftReference(AsyncEntry<K, V> entry, V value, ReferenceQueue<? super V> queue) {
+			super(value, queue);
+			this.entry = entry;
+		}
+
+		@Override
+		public K getKey() {
+			return entry.key;
+		}
+
+	}
+
+	/**
+	 * {@link WeakReference} which knows its entry
+	 */
+	private static final class EntryWeakReference<K, V> extends WeakReference<V> implements KeyedReference<K> {
+
+		private final AsyncEntry<K, V> entry;
+
+		private EntryWeakReference(AsyncEntry<K, V> entry, V value, ReferenceQueue<? super V> queue) {
+			super(value, queue);
+			this.entry = entry;
+		}
+
+		@Override
+		public K getKey() {
+			return entry.key;
+		}
+
+	}
+
+	private final ConcurrentMap<K, AsyncEntry<K, V>> entryMap;
+	private final CacheLoader<? super K, ? extends V> loader;
+	private final Executor executor;
+	private final long refreshAfterWriteNanos;
+	private final LongSupplier ticker;
+	private final CacheType storage;
+
+	/**
+	 * queue of all soft and weak references whose values have been collected
+	 */
+	private final ReferenceQueue<V> referenceQueue;
+
+	/**
+	 * creates a cache which references its values strongly, loads on the
+	 * {@link #createDefaultExecutor() default executor}, and never refreshes
+	 * values
+	 *
+	 * @param loader
+	 * @throws NullPointerException
+	 *             if loader is null
+	 */
+	public AsyncLoadingCache(@NotNull CacheLoader<? super K, ? extends V> loader) {
+		this(loader, CacheType.STRONG, createDefaultExecutor(), null);
+	}
+
+	/**
+	 * @param loader
+	 * @param storage
+	 *            type of the references to the loaded values
+	 * @param executor
+	 *            executor which runs all loads
+	 * @param refreshAfterWrite
+	 *            age of a value after which a read triggers a reload or null if
+	 *            values are never reloaded
+	 * @throws NullPointerException
+	 *             if loader, storage, or executor is null
+	 * @throws IllegalArgumentException
+	 *             if refreshAfterWrite is not positive
+	 */
+	public AsyncLoadingCache(@NotNull CacheLoader<? super K, ? extends V> loader, @NotNull CacheType storage,
+			@NotNull Executor executor, Duration refreshAfterWrite) {
+		this(loader, storage, executor, refreshAfterWrite, System::nanoTime);
+	}
+
+	/**
+	 * @param loader
+	 * @param storage
+	 *            type of the references to the loaded values
+	 * @param executor
+	 *            executor which runs all loads
+	 * @param refreshAfterWrite
+	 *            age of a value after which a read triggers a reload or null if
+	 *            values are never reloaded
+	 * @param ticker
+	 *            source of the current point in time in nanoseconds
+	 * @throws NullPointerException
+	 *             if loader, storage, executor, or ticker is null
+	 * @throws IllegalArgumentException
+	 *             if refreshAfterWrite is not positive
+	 */
+	public AsyncLoadingCache(@NotNull CacheLoader<? super K, ? extends V> loader, @NotNull CacheType storage,
+			@NotNull Executor executor, Duration refreshAfterWrite, @NotNull LongSupplier ticker) {
+		Assurance.assureNotNull(loader);
+		Assurance.assureNotNull(storage);
+		Assurance.assureNotNull(executor);
+		Assurance.assureNotNull(ticker);
+		if (refreshAfterWrite != null)
+			Assurance.assurePositive(refreshAfterWrite.toNanos());
+		this.loader = loader;
+		this.executor = executor;
+		this.ticker = ticker;
+		this.storage = storage;
+		refreshAfterWriteNanos = refreshAfterWrite == null ? Long.MAX_VALUE : refreshAfterWrite.toNanos();
+		entryMap = new ConcurrentHashMap<>();
+		referenceQueue = new ReferenceQueue<>();
+		if (storage != CacheType.STRONG && storage != CacheType.SOFT && storage != CacheType.WEAK)
+			throw new IllegalArgumentException("cacheType " + storage + " is not supported.");
+	}
+
+	/**
+	 * @return an executor which runs every task in a new virtual thread if the
+	 *         runtime supports virtual threads or the
+	 *         {@link ForkJoinPool#commonPool() common pool} otherwise
+	 */
+	public static Executor createDefaultExecutor() {
+		try {
+			return (Executor) Executors.class.getMethod("newVirtualThreadPerTaskExecutor").invoke(null);
+		} catch (ReflectiveOperationException e) {
+			return ForkJoinPool.commonPool();
+		}
+	}
+
+	/**
+	 * purges at most maximum entries whose values have been collected
+	 *
+	 * @param maximum
+	 */
+	@SuppressWarnings("unchecked")
+	private void drainReferenceQueue(int maximum) {
+		Reference<? extends V> reference;
+		AsyncEntry<K, V> entry;
+		int polled = 0;
+		while (polled < maximum && (reference = referenceQueue.poll()) != null) {
+			polled++;
+			if (reference instanceof EntrySoftReference)
+				entry = ((EntrySoftReference<K, V>) reference).entry;
+			else
+				entry = ((EntryWeakReference<K, V>) reference).entry;
+			if (entry.future == null && entry.reference == reference)
+				entryMap.remove(entry.key, entry);
+		}
+	}
+
+	/**
+	 * @param key
+	 * @return entry of the key or null if the key is not mapped or its value has
+	 *         been collected
+	 */
+	private AsyncEntry<K, V> lookup(K key) {
+		AsyncEntry<K, V> entry = entryMap.get(key);
+		if (entry == null || entry.future != null || entry.reference.get() != null)
+			return entry;
+		entryMap.remove(key, entry);
+		return null;
+	}
+
+	/**
+	 * references the loaded value as given by the storage type of this cache
+	 *
+	 * @param entry
+	 * @param value
+	 */
+	private void store(AsyncEntry<K, V> entry, V value) {
+		switch (storage) {
+		case SOFT:
+			entry.reference = new EntrySoftReference<>(entry, value, referenceQueue);
+			entry.future = null;
+			break;
+		case WEAK:
+			entry.reference = new EntryWeakReference<>(entry, value, referenceQueue);
+			entry.future = null;
+			break;
+		default:
+			entry.future = CompletableFuture.completedFuture(value);
+			break;
+		}
+	}
+
+	/**
+	 * removes the entry once the future completes exceptionally and stores its
+	 * value and write time otherwise
+	 *
+	 * @param entry
+	 */
+	private void watch(AsyncEntry<K, V> entry) {
+		CompletableFuture<V> future = entry.future;
+		future.whenComplete((value, throwable) -> {
+			if (entry.future != future)
+				return;
+			if (throwable != null)
+				entryMap.remove(entry.key, entry);
+			else {
+				entry.writeTime = ticker.getAsLong();
+				if (storage != CacheType.STRONG)
+					store(entry, value);
+			}
+		});
+	}
+
+	/**
+	 * loads the value of the key on the executor and completes the future with it
+	 *
+	 * @param key
+	 * @param future
+	 * @return future
+	 */
+	private CompletableFuture<V> load(K key, CompletableFuture<V> future) {
+		try {
+			executor.execute(() -> {
+				try {
+					V value = loader.load(key);
+					if (value == null)
+						throw new CacheLoaderException("loader returned null for key " + key);
+					future.complete(value);
+				} catch (Throwable t) {
+					future.completeExceptionally(t);
+				}
+			});
+		} catch (RuntimeException e) {
+			future.completeExceptionally(e);
+		}
+		return future;
+	}
+
+	/**
+	 * replaces the value of the entry once the reload succeeds
+	 *
+	 * @param entry
+	 */
+	private void reload(AsyncEntry<K, V> entry) {
+		load(entry.key, new CompletableFuture<>()).whenComplete((value, throwable) -> {
+			if (throwable == null) {
+				store(entry, value);
+				entry.writeTime = ticker.getAsLong();
+			}
+			entry.isLoading.set(false);
+		});
+	}
+
+	/**
+	 * @param entry
+	 * @param future
+	 *            current future of the entry
+	 * @return true if the value of the entry is loaded and older than the
+	 *         refresh-after-write duration
+	 */
+	private boolean needsRefresh(AsyncEntry<K, V> entry, CompletableFuture<V> future) {
+		return refreshAfterWriteNanos != Long.MAX_VALUE && future.isDone() && !future.isCompletedExceptionally()
+				&& ticker.getAsLong() - entry.writeTime >= refreshAfterWriteNanos;
+	}
+
+	@Override
+	public void cache(K key, @NotNull CompletableFuture<V> future) {
+		Assurance.assureNotNull(future);
+		drainReferenceQueue(DRAIN_THRESHOLD);
+		AsyncEntry<K, V> entry = new AsyncEntry<>(key, future, ticker.getAsLong());
+		entryMap.put(key, entry);
+		watch(entry);
+	}
+
+	@Override
+	public CompletableFuture<V> get(K key) {
+		AsyncEntry<K, V> entry;
+		CompletableFuture<V> future;
+		while (true) {
+			entry = entryMap.get(key);
+			if (entry != null) {
+				future = entry.currentFuture();
+				if (future != null) {
+					if (needsRefresh(entry, future) && entry.isLoading.compareAndSet(false, true))
+						reload(entry);
+					return future;
+				}
+				// collected
+				entryMap.remove(key, entry);
+				continue;
+			}
+			drainReferenceQueue(DRAIN_THRESHOLD);
+			entry = new AsyncEntry<>(key, new CompletableFuture<>(), ticker.getAsLong());
+			entry.isLoading.set(true);
+			if (entryMap.putIfAbsent(key, entry) == null)
+				break;
+		}
+		AsyncEntry<K, V> newEntry = entry;
+		future = newEntry.future;
+		watch(newEntry);
+		load(key, future).whenComplete((value, throwable) -> newEntry.isLoading.set(false));
+		return future;
+	}
+
+	@Override
+	public boolean contains(K key) {
+		return lookup(key) != null;
+	}
+
+	@Override
+	public void refresh(K key) {
+		AsyncEntry<K, V> entry = lookup(key);
+		if (entry == null)
+			throw new NoSuchElementException("No mapping for key " + key);
+		if (entry.isLoading.compareAndSet(false, true))
+			reload(entry);
+	}
+
+	@Override
+	public void remove(K key) {
+		AsyncEntry<K, V> entry = lookup(key);
+		if (entry == null || !entryMap.remove(key, entry))
+			throw new NoSuchElementException("No mapping for key " + key);
+	}
+
+	@Override
+	public int size() {
+		drainReferenceQueue(Integer.MAX_VALUE);
+		return entryMap.size();
+	}
+
+	@Override
+	public void clear() {
+		entryMap.clear();
+		drainReferenceQueue(Integer.MAX_VALUE);
+	}
+
+	/**
+	 * purges all entries whose values have been collected
+	 */
+	public void clean() {
+		drainReferenceQueue(Integer.MAX_VALUE);
+	}
+
+	@Override
+	public Set<K> getKeySet() {
+		HashSet<K> keySet = new HashSet<>();
+		for (AsyncEntry<K, V> entry : entryMap.values())
+			if (entry.future != null || entry.reference.get() != null)
+				keySet.add(entry.key);
+		return Collections.unmodifiableSet(keySet);
+	}
+
+	@Override
+	public String toString() {
+		return "AsyncLoadingCache [storage=" + storage + ", size=" + entryMap.size() + ", refreshAfterWriteNanos="
+				+ refreshAfterWriteNanos + "]";
+	}
+
+}
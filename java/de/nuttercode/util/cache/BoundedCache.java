@@ -0,0 +1,346 @@
+package de.nuttercode.util.cache;
+
+import java.util.Collection;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.NoSuchElementException;
+import java.util.Set;
+import java.util.concurrent.Executor;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.function.BiConsumer;
+
+import de.nuttercode.util.assurance.Assurance;
+import de.nuttercode.util.assurance.NotNull;
+import de.nuttercode.util.assurance.Positive;
+import de.nuttercode.util.cache.eviction.EvictionPolicy;
+import de.nuttercode.util.cache.eviction.LruPolicy;
+
+/**
+ * A {@link Cache} which strongly references at most {@link #getMaximumSize()}
+ * values. If a new key would exceed the maximum size, the {@link EvictionPolicy}
+ * chooses which keys will be evicted. If created with a {@link Weigher}, the
+ * maximum size limits the total weight of all key/value pairs instead of their
+ * number, e.g. to keep the cache within a memory budget in bytes. Values must
+ * not be null. This cache is not thread-safe.
+ *
+ * @author Johannes B. Latzel
+ *
+ * @param <K>
+ *            key type
+ * @param <V>
+ *            value type
+ */
+public class BoundedCache<K, V> implements Cache<K, V> {
+
+	private final Map<K, V> boundedMap;
+	private final EvictionPolicy<K> evictionPolicy;
+	private final Weigher<? super K, ? super V> weigher;
+	private long maximumSize;
+
+	/**
+	 * maximum size passed to {@link #requestMaximumSize(long)} which has not been
+	 * applied yet or 0
+	 */
+	private final AtomicLong requestedMaximumSize;
+
+	/**
+	 * total weight of all cached key/value pairs
+	 */
+	private long weightedSize;
+	private long evictionCount;
+
+	private StatsRecorder statsRecorder;
+	private RemovalDispatcher<K, V> removalDispatcher;
+
+	/**
+	 * creates a cache with a {@link LruPolicy}
+	 *
+	 * @param maximumSize
+	 * @throws IllegalArgumentException
+	 *             if maximumSize is not positive
+	 */
+	public BoundedCache(@Positive long maximumSize) {
+		this(maximumSize, new LruPolicy<>());
+	}
+
+	/**
+	 * @param maximumSize
+	 * @param evictionPolicy
+	 *            policy which does not track any key yet
+	 * @throws IllegalArgumentException
+	 *             if maximumSize is not positive
+	 * @throws NullPointerException
+	 *             if evictionPolicy is null
+	 */
+	public BoundedCache(@Positive long maximumSize, @NotNull EvictionPolicy<K> evictionPolicy) {
+		this(maximumSize, Weigher.singleton(), evictionPolicy);
+	}
+
+	/**
+	 * creates a cache which limits the total weight of its key/value pairs
+	 *
+	 * @param maximumWeight
+	 * @param weigher
+	 * @param evictionPolicy
+	 *            policy which does not track any key yet
+	 * @throws IllegalArgumentException
+	 *             if maximumWeight is not positive
+	 * @throws NullPointerException
+	 *             if weigher or evictionPolicy is null
+	 */
+	public BoundedCache(@Positive long maximumWeight, @NotNull Weigher<? super K, ? super V> weigher,
+			@NotNull EvictionPolicy<K> evictionPolicy) {
+		Assurance.assurePositive(maximumWeight);
+		Assurance.assureNotNull(weigher);
+		Assurance.assureNotNull(evictionPolicy);
+		this.maximumSize = maximumWeight;
+		requestedMaximumSize = new AtomicLong();
+		this.weigher = weigher;
+		this.evictionPolicy = evictionPolicy;
+		boundedMap = new HashMap<>();
+		weightedSize = 0;
+		evictionCount = 0;
+		statsRecorder = StatsRecorder.disabled();
+		removalDispatcher = RemovalDispatcher.disabled();
+	}
+
+	/**
+	 * @param key
+	 * @param value
+	 * @return weight of the key/value pair
+	 * @throws IllegalArgumentException
+	 *             if the weight is negative
+	 */
+	private long weigh(K key, V value) {
+		long weight = weigher.weigh(key, value);
+		Assurance.assureNotNegative(weight);
+		return weight;
+	}
+
+	/**
+	 * evicts keys chosen by the {@link EvictionPolicy} until the weighted size of
+	 * this cache does not exceed the maximum size
+	 */
+	private void evict() {
+		K victim;
+		V value;
+		int evicted = 0;
+		while (weightedSize > maximumSize && (victim = evictionPolicy.nextVictim()) != null) {
+			value = boundedMap.remove(victim);
+			weightedSize -= weigh(victim, value);
+			evicted++;
+			removalDispatcher.dispatch(victim, value, RemovalCause.EVICTED);
+		}
+		if (evicted > 0) {
+			evictionCount += evicted;
+			statsRecorder.recordEvictions(evicted);
+		}
+	}
+
+	/**
+	 * sets the maximum size to the one passed to
+	 * {@link #requestMaximumSize(long)} if there is one
+	 */
+	private void applyRequestedMaximumSize() {
+		if (requestedMaximumSize.get() == 0)
+			return;
+		long maximumSize = requestedMaximumSize.getAndSet(0);
+		if (maximumSize != 0)
+			this.maximumSize = maximumSize;
+	}
+
+	/**
+	 * @return maximum number of cached values or maximum total weight if this
+	 *         cache has been created with a {@link Weigher}
+	 */
+	public long getMaximumSize() {
+		return maximumSize;
+	}
+
+	/**
+	 * @return total weight of all cached key/value pairs, equal to
+	 *         {@link #size()} if this cache has been created without a
+	 *         {@link Weigher}
+	 */
+	public long getWeightedSize() {
+		return weightedSize;
+	}
+
+	/**
+	 * sets the maximum number of cached values or the maximum total weight if
+	 * this cache has been created with a {@link Weigher} and evicts values if
+	 * necessary
+	 *
+	 * @param maximumSize
+	 * @throws IllegalArgumentException
+	 *             if maximumSize is not positive
+	 */
+	public void setMaximumSize(@Positive long maximumSize) {
+		Assurance.assurePositive(maximumSize);
+		this.maximumSize = maximumSize;
+		evict();
+	}
+
+	/**
+	 * sets the maximum size like {@link #setMaximumSize(long)}, but only once
+	 * the next value is cached or {@link #clean()} is called, so values are
+	 * evicted by the thread which uses this cache. unlike all other methods this
+	 * one is thread-safe, e.g. for a {@link MemoryPressureMonitor}. a later
+	 * request replaces one which has not been applied yet.
+	 *
+	 * @param maximumSize
+	 * @throws IllegalArgumentException
+	 *             if maximumSize is not positive
+	 */
+	public void requestMaximumSize(@Positive long maximumSize) {
+		Assurance.assurePositive(maximumSize);
+		requestedMaximumSize.set(maximumSize);
+	}
+
+	/**
+	 * @return number of values which have been evicted since this cache was
+	 *         created
+	 */
+	public long getEvictionCount() {
+		return evictionCount;
+	}
+
+	/**
+	 * @throws NullPointerException
+	 *             if value is null
+	 */
+	@Override
+	public void cache(K key, @NotNull V value) {
+		Assurance.assureNotNull(value);
+		applyRequestedMaximumSize();
+		long weight = weigh(key, value);
+		V previous = boundedMap.put(key, value);
+		if (previous == null)
+			evictionPolicy.recordInsertion(key);
+		else {
+			weightedSize -= weigh(key, previous);
+			evictionPolicy.recordAccess(key);
+			removalDispatcher.dispatch(key, previous, RemovalCause.REPLACED);
+		}
+		weightedSize += weight;
+		evict();
+	}
+
+	@Override
+	public V get(K key) {
+		V value = getIfPresent(key);
+		if (value == null)
+			throw new NoSuchElementException("No mapping for key " + key);
+		return value;
+	}
+
+	@Override
+	public V getIfPresent(K key) {
+		V value = boundedMap.get(key);
+		if (value == null) {
+			statsRecorder.recordMisses(1);
+			return null;
+		}
+		statsRecorder.recordHits(1);
+		evictionPolicy.recordAccess(key);
+		return value;
+	}
+
+	/**
+	 * holds no redundant entries, values are evicted while they are cached.
+	 * applies the maximum size passed to {@link #requestMaximumSize(long)}.
+	 *
+	 * @return number of evicted values
+	 */
+	@Override
+	public int clean(int maximum) {
+		applyRequestedMaximumSize();
+		long previousEvictionCount = evictionCount;
+		evict();
+		return (int) (evictionCount - previousEvictionCount);
+	}
+
+	/**
+	 * same as {@link #clean(int)}
+	 */
+	@Override
+	public void clean() {
+		clean(Integer.MAX_VALUE);
+	}
+
+	@Override
+	public boolean contains(K key) {
+		return boundedMap.containsKey(key);
+	}
+
+	@Override
+	public void remove(K key) {
+		V value = boundedMap.remove(key);
+		if (value == null)
+			throw new NoSuchElementException("No mapping for key " + key);
+		weightedSize -= weigh(key, value);
+		evictionPolicy.recordRemoval(key);
+		removalDispatcher.dispatch(key, value, RemovalCause.EXPLICIT);
+	}
+
+	@Override
+	public int size() {
+		return boundedMap.size();
+	}
+
+	@Override
+	public void clear() {
+		if (removalDispatcher.isEnabled())
+			boundedMap.forEach((key, value) -> removalDispatcher.dispatch(key, value, RemovalCause.EXPLICIT));
+		boundedMap.clear();
+		evictionPolicy.clear();
+		weightedSize = 0;
+	}
+
+	@Override
+	public void setStatsRecorder(@NotNull StatsRecorder statsRecorder) {
+		Assurance.assureNotNull(statsRecorder);
+		this.statsRecorder = statsRecorder;
+	}
+
+	@Override
+	public void setRemovalListener(RemovalListener<? super K, ? super V> removalListener, Executor executor) {
+		removalDispatcher = RemovalDispatcher.create(removalListener, executor);
+	}
+
+	@Override
+	public StatsRecorder getStatsRecorder() {
+		return statsRecorder;
+	}
+
+	@Override
+	public CacheStats getStats() {
+		return statsRecorder.snapshot().withTierSize(CacheType.STRONG, size());
+	}
+
+	@Override
+	public Set<K> getKeySet() {
+		return Collections.unmodifiableSet(boundedMap.keySet());
+	}
+
+	@Override
+	public Collection<V> getValueCollection() {
+		return Collections.unmodifiableCollection(boundedMap.values());
+	}
+
+	/**
+	 * does not count as access for the {@link EvictionPolicy}
+	 */
+	@Override
+	public void forEach(BiConsumer<? super K, ? super V> action) {
+		boundedMap.forEach(action);
+	}
+
+	@Override
+	public String toString() {
+		return "BoundedCache [maximumSize=" + maximumSize + ", weightedSize=" + weightedSize + ", evictionPolicy="
+				+ evictionPolicy + ", size()=" + size() + "]";
+	}
+
+}
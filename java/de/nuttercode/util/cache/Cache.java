@@ -1,8 +1,18 @@
 package de.nuttercode.util.cache;
 
 import java.util.Collection;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.Map;
 import java.util.NoSuchElementException;
 import java.util.Set;
+import java.util.concurrent.Executor;
+import java.util.concurrent.ForkJoinPool;
+import java.util.function.BiConsumer;
+import java.util.function.BiFunction;
+
+import de.nuttercode.util.assurance.Assurance;
+import de.nuttercode.util.assurance.NotNull;
 
 /**
  * Caches store objects in memory. The time to live is specified by the
@@ -40,6 +50,98 @@ public interface Cache<K, V> {
 	 */
 	boolean contains(K key);
 
+	/**
+	 * looks the key up without throwing on a miss. the lookup is recorded as a
+	 * hit or a miss like {@link #get(Object)}. the default implementation calls
+	 * {@link #get(Object)} and catches the {@link NoSuchElementException},
+	 * implementations should override it to probe their entries only once.
+	 *
+	 * @param key
+	 * @return the value given by the key or null if the key is not mapped or
+	 *         mapped to null
+	 */
+	default V getIfPresent(K key) {
+		try {
+			return get(key);
+		} catch (NoSuchElementException e) {
+			return null;
+		}
+	}
+
+	/**
+	 * @param key
+	 * @param defaultValue
+	 * @return the value given by the key or defaultValue if
+	 *         {@link #getIfPresent(Object)} returns null
+	 */
+	default V getOrDefault(K key, V defaultValue) {
+		V value = getIfPresent(key);
+		return value != null ? value : defaultValue;
+	}
+
+	/**
+	 * caches the value unless the key is mapped. the default implementation is
+	 * not atomic, implementations which are thread-safe should override it.
+	 *
+	 * @param key
+	 * @param value
+	 * @return the value the key is mapped to or null if the given value has been
+	 *         cached
+	 */
+	default V putIfAbsent(K key, V value) {
+		V previous = getIfPresent(key);
+		if (previous == null)
+			cache(key, value);
+		return previous;
+	}
+
+	/**
+	 * maps the key to the result of the function, which receives the current
+	 * value or null if the key is not mapped. if the function returns null, the
+	 * mapping of the key is removed. if it returns the current value, this cache
+	 * is not changed. the default implementation is not atomic, implementations
+	 * which are thread-safe should override it. the function must not modify
+	 * this cache.
+	 *
+	 * @param key
+	 * @param remappingFunction
+	 * @return the new value of the key or null if the key is not mapped anymore
+	 * @throws NullPointerException
+	 *             if remappingFunction is null
+	 */
+	default V compute(K key, @NotNull BiFunction<? super K, ? super V, ? extends V> remappingFunction) {
+		Assurance.assureNotNull(remappingFunction);
+		V value = getIfPresent(key);
+		V newValue = remappingFunction.apply(key, value);
+		if (newValue == null) {
+			if (value != null || contains(key))
+				removeAll(Collections.singleton(key));
+		} else if (newValue != value)
+			cache(key, newValue);
+		return newValue;
+	}
+
+	/**
+	 * caches the value if the key is not mapped or maps the key to the result of
+	 * the function applied to the current value and the given value otherwise.
+	 * same as {@link #compute(Object, BiFunction)}, so it is atomic if compute
+	 * is.
+	 *
+	 * @param key
+	 * @param value
+	 * @param remappingFunction
+	 *            receives the current and the given value
+	 * @return the new value of the key or null if the key is not mapped anymore
+	 * @throws NullPointerException
+	 *             if value or remappingFunction is null
+	 */
+	default V merge(K key, @NotNull V value,
+			@NotNull BiFunction<? super V, ? super V, ? extends V> remappingFunction) {
+		Assurance.assureNotNull(value);
+		Assurance.assureNotNull(remappingFunction);
+		return compute(key, (k, previous) -> previous == null ? value : remappingFunction.apply(previous, value));
+	}
+
 	/**
 	 * removes the value given by the key.
 	 * 
@@ -49,6 +151,56 @@ public interface Cache<K, V> {
 	 */
 	void remove(K key);
 
+	/**
+	 * caches all values and maps their keys to them. same as calling
+	 * {@link #cache(Object, Object)} for every entry of the map.
+	 * 
+	 * @param map
+	 */
+	default void cacheAll(Map<? extends K, ? extends V> map) {
+		for (Map.Entry<? extends K, ? extends V> entry : map.entrySet())
+			cache(entry.getKey(), entry.getValue());
+	}
+
+	/**
+	 * looks up all keys at once. keys which are not mapped are not contained in
+	 * the result. every key is recorded as a hit or a miss.
+	 * 
+	 * @param keys
+	 * @return unmodifiable map of all mapped keys to their values
+	 */
+	default Map<K, V> getAll(Collection<? extends K> keys) {
+		HashMap<K, V> valueMap = new HashMap<>();
+		for (K key : keys) {
+			if (!contains(key)) {
+				getStatsRecorder().recordMisses(1);
+				continue;
+			}
+			try {
+				valueMap.put(key, get(key));
+			} catch (NoSuchElementException e) {
+				// removed concurrently
+			}
+		}
+		return Collections.unmodifiableMap(valueMap);
+	}
+
+	/**
+	 * removes the values given by the keys. unlike {@link #remove(Object)}, keys
+	 * which are not mapped are ignored.
+	 * 
+	 * @param keys
+	 */
+	default void removeAll(Collection<? extends K> keys) {
+		for (K key : keys) {
+			try {
+				remove(key);
+			} catch (NoSuchElementException e) {
+				// not mapped
+			}
+		}
+	}
+
 	/**
 	 * @return the total number of elements cached.
 	 */
@@ -67,13 +219,117 @@ public interface Cache<K, V> {
 	}
 
 	/**
-	 * @return unmodifiable set view of all usable keys of this cache
+	 * optional operation. incremental form of {@link #clean()} which purges at
+	 * most about maximum redundant entries, e.g. entries whose values have been
+	 * collected or which have expired, so it can be called frequently, e.g. by a
+	 * {@link MaintenanceScheduler}. the default implementation calls
+	 * {@link #clean()}.
+	 *
+	 * @param maximum
+	 * @return number of purged entries or 0 if they are not counted
+	 */
+	default int clean(int maximum) {
+		clean();
+		return 0;
+	}
+
+	/**
+	 * @return true if all operations of this cache are thread-safe without
+	 *         external synchronization. the default implementation returns
+	 *         false.
+	 */
+	default boolean isConcurrent() {
+		return false;
+	}
+
+	/**
+	 * optional operation. sets the recorder of the statistics of this cache. use
+	 * {@link StatsRecorder#disabled()} to stop recording. should be set before
+	 * the cache is shared between threads.
+	 *
+	 * @param statsRecorder
+	 * @throws NullPointerException
+	 *             if statsRecorder is null
+	 */
+	default void setStatsRecorder(StatsRecorder statsRecorder) {
+		throw new UnsupportedOperationException();
+	}
+
+	/**
+	 * @return the recorder of the statistics of this cache,
+	 *         {@link StatsRecorder#disabled()} by default
+	 */
+	default StatsRecorder getStatsRecorder() {
+		return StatsRecorder.disabled();
+	}
+
+	/**
+	 * hits and misses are recorded by {@link #get(Object)} and
+	 * {@link #getIfPresent(Object)}. {@link #contains(Object)} is not recorded.
+	 *
+	 * @return snapshot of the statistics of this cache
+	 */
+	default CacheStats getStats() {
+		return getStatsRecorder().snapshot();
+	}
+
+	/**
+	 * optional operation. sets the listener which is notified whenever a
+	 * key/value pair leaves this cache. notifications are queued and passed to
+	 * the listener in batches by the executor, so the listener never delays the
+	 * operations of this cache. should be set before the cache is shared between
+	 * threads.
+	 *
+	 * @param removalListener
+	 *            listener or null to stop notifying
+	 * @param executor
+	 *            runs the listener
+	 * @throws NullPointerException
+	 *             if removalListener is not null and executor is null
+	 */
+	default void setRemovalListener(RemovalListener<? super K, ? super V> removalListener, Executor executor) {
+		throw new UnsupportedOperationException();
+	}
+
+	/**
+	 * optional operation. same as
+	 * {@link #setRemovalListener(RemovalListener, Executor)} with
+	 * {@link ForkJoinPool#commonPool()} as executor.
+	 *
+	 * @param removalListener
+	 *            listener or null to stop notifying
+	 */
+	default void setRemovalListener(RemovalListener<? super K, ? super V> removalListener) {
+		setRemovalListener(removalListener, ForkJoinPool.commonPool());
+	}
+
+	/**
+	 * @return unmodifiable live set view of all usable keys of this cache
 	 */
 	Set<K> getKeySet();
 
 	/**
-	 * @return unmodifiable collection view of all usable values of this cache
+	 * @return unmodifiable live collection view of all usable values of this
+	 *         cache
 	 */
 	Collection<V> getValueCollection();
 
+	/**
+	 * performs the action for every usable key/value pair of this cache without
+	 * copying. the default implementation looks up every key of
+	 * {@link #getKeySet()} and therefore records hits. implementations should
+	 * override it to traverse their entries directly.
+	 *
+	 * @param action
+	 */
+	default void forEach(BiConsumer<? super K, ? super V> action) {
+		for (K key : getKeySet()) {
+			try {
+				action.accept(key, get(key));
+			} catch (NoSuchElementException e) {
+				// removed concurrently
+			}
+		}
+	}
+
 }
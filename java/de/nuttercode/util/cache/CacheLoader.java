@@ -0,0 +1,47 @@
+package de.nuttercode.util.cache;
+
+import java.util.HashMap;
+import java.util.Map;
+import java.util.Set;
+
+/**
+ * Computes the values of keys which are not cached yet. Used by
+ * {@link LoadingCache}.
+ *
+ * @author Johannes B. Latzel
+ *
+ * @param <K>
+ *            key type
+ * @param <V>
+ *            value type
+ */
+@FunctionalInterface
+public interface CacheLoader<K, V> {
+
+	/**
+	 * @param key
+	 * @return the value of the key, never null
+	 * @throws Exception
+	 *             if the value can not be loaded
+	 */
+	V load(K key) throws Exception;
+
+	/**
+	 * loads the values of all keys at once. used by
+	 * {@link LoadingCache#getAll(java.util.Collection)}. override this to fetch
+	 * all values in a single request to the backend. the default implementation
+	 * calls {@link #load(Object)} for every key.
+	 *
+	 * @param keys
+	 * @return map of every key to its value, never null
+	 * @throws Exception
+	 *             if the values can not be loaded
+	 */
+	default Map<K, V> loadAll(Set<? extends K> keys) throws Exception {
+		HashMap<K, V> valueMap = new HashMap<>();
+		for (K key : keys)
+			valueMap.put(key, load(key));
+		return valueMap;
+	}
+
+}
@@ -0,0 +1,21 @@
+package de.nuttercode.util.cache;
+
+/**
+ * Thrown if a {@link CacheLoader} fails to load a value.
+ *
+ * @author Johannes B. Latzel
+ *
+ */
+public class CacheLoaderException extends RuntimeException {
+
+	private static final long serialVersionUID = 1L;
+
+	public CacheLoaderException(String message) {
+		super(message);
+	}
+
+	public CacheLoaderException(String message, Throwable cause) {
+		super(message, cause);
+	}
+
+}
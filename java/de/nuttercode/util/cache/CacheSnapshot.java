@@ -0,0 +1,410 @@
+package de.nuttercode.util.cache;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.Closeable;
+import java.io.DataInputStream;
+import java.io.EOFException;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.io.UncheckedIOException;
+import java.nio.file.AtomicMoveNotSupportedException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.util.ArrayDeque;
+import java.util.HashMap;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.Executor;
+import java.util.concurrent.ForkJoinPool;
+import java.util.function.Consumer;
+
+import de.nuttercode.util.assurance.Assurance;
+import de.nuttercode.util.assurance.NotNull;
+import de.nuttercode.util.assurance.Positive;
+import de.nuttercode.util.buffer.DataQueue;
+
+/**
+ * Writes the entries of a {@link StrongCache} or a {@link HybridCache} to a
+ * file and restores them, e.g. to restart a service with a warm cache. Keys and
+ * values are converted by {@link Serializer}s. The file consists of a header
+ * followed by chunks of entries of the same {@link CacheType}. Every chunk is
+ * prefixed by its length, so restoring reads the file sequentially while the
+ * chunks are decoded in parallel by an {@link Executor}. If the cache is
+ * thread-safe, decoded chunks are cached by the threads of the
+ * {@link Executor}, otherwise by the restoring thread in the order of the file.
+ * The {@link Serializer}s must be thread-safe. A snapshot is written to a
+ * temporary file first, which replaces the file once it is complete.
+ *
+ * @author Johannes B. Latzel
+ *
+ * @param <K>
+ *            key type
+ * @param <V>
+ *            value type
+ */
+public final class CacheSnapshot<K, V> {
+
+	/**
+	 * number of bytes after which a chunk is completed
+	 */
+	public static final int DEFAULT_CHUNK_SIZE = 1 << 20;
+
+	private static final int MAGIC = 0x4E435348;
+	private static final int VERSION = 1;
+	private static final CacheType[] CACHE_TYPES = CacheType.values();
+
+	/**
+	 * decoded entries of a chunk
+	 */
+	private static final class Chunk<K, V> {
+
+		private final CacheType cacheType;
+		private final HashMap<K, V> valueMap;
+
+		private Chunk(CacheType cacheType, HashMap<K, V> valueMap) {
+			this.cacheType = cacheType;
+			this.valueMap = valueMap;
+		}
+
+	}
+
+	/**
+	 * writes entries to a temporary file and groups them into chunks
+	 */
+	private final class ChunkWriter implements Closeable {
+
+		private final Path path;
+		private final Path temporaryPath;
+		private final OutputStream outputStream;
+		private final DataQueue headerQueue;
+		private final DataQueue chunkQueue;
+		private CacheType cacheType;
+		private int count;
+		private boolean isCommitted;
+
+		private ChunkWriter(Path path) throws IOException {
+			this.path = path;
+			temporaryPath = path.resolveSibling(path.getFileName() + ".tmp");
+			outputStream = new BufferedOutputStream(Files.newOutputStream(temporaryPath));
+			headerQueue = new DataQueue(Integer.BYTES * 2 + Byte.BYTES);
+			chunkQueue = new DataQueue(chunkSize);
+			cacheType = CacheType.STRONG;
+			count = 0;
+			isCommitted = false;
+			headerQueue.putInt(MAGIC);
+			headerQueue.putInt(VERSION);
+			headerQueue.flushToStream(outputStream);
+		}
+
+		/**
+		 * completes the current chunk and starts a chunk of the given
+		 * {@link CacheType}
+		 *
+		 * @param cacheType
+		 * @throws IOException
+		 */
+		private void setCacheType(CacheType cacheType) throws IOException {
+			flush();
+			this.cacheType = cacheType;
+		}
+
+		/**
+		 * @param key
+		 * @param value
+		 * @throws UncheckedIOException
+		 *             if the chunk can not be written
+		 */
+		private void write(K key, V value) {
+			keySerializer.serialize(key, chunkQueue);
+			valueSerializer.serialize(value, chunkQueue);
+			count++;
+			if (chunkQueue.available() >= chunkSize) {
+				try {
+					flush();
+				} catch (IOException e) {
+					throw new UncheckedIOException(e);
+				}
+			}
+		}
+
+		/**
+		 * writes the current chunk unless it is empty
+		 *
+		 * @throws IOException
+		 */
+		private void flush() throws IOException {
+			if (count == 0)
+				return;
+			headerQueue.putInt(chunkQueue.available());
+			headerQueue.putByte((byte) cacheType.ordinal());
+			headerQueue.putInt(count);
+			headerQueue.flushToStream(outputStream);
+			chunkQueue.flushToStream(outputStream);
+			count = 0;
+		}
+
+		/**
+		 * writes the last chunk and replaces the file by the temporary file
+		 *
+		 * @throws IOException
+		 */
+		private void commit() throws IOException {
+			flush();
+			outputStream.close();
+			try {
+				Files.move(temporaryPath, path, StandardCopyOption.REPLACE_EXISTING,
+						StandardCopyOption.ATOMIC_MOVE);
+			} catch (AtomicMoveNotSupportedException e) {
+				Files.move(temporaryPath, path, StandardCopyOption.REPLACE_EXISTING);
+			}
+			isCommitted = true;
+		}
+
+		/**
+		 * deletes the temporary file if the snapshot has not been committed
+		 */
+		@Override
+		public void close() throws IOException {
+			if (isCommitted)
+				return;
+			outputStream.close();
+			Files.deleteIfExists(temporaryPath);
+		}
+
+	}
+
+	private final Serializer<K> keySerializer;
+	private final Serializer<V> valueSerializer;
+	private final int chunkSize;
+	private final Executor executor;
+
+	/**
+	 * decodes chunks of {@link #DEFAULT_CHUNK_SIZE} bytes in the
+	 * {@link ForkJoinPool#commonPool()}
+	 *
+	 * @param keySerializer
+	 * @param valueSerializer
+	 * @throws NullPointerException
+	 *             if a serializer is null
+	 */
+	public CacheSnapshot(@NotNull Serializer<K> keySerializer, @NotNull Serializer<V> valueSerializer) {
+		this(keySerializer, valueSerializer, DEFAULT_CHUNK_SIZE, ForkJoinPool.commonPool());
+	}
+
+	/**
+	 * @param keySerializer
+	 * @param valueSerializer
+	 * @param chunkSize
+	 *            number of bytes after which a chunk is completed
+	 * @param executor
+	 *            decodes chunks during {@link #restore(HybridCache, Path)} and
+	 *            {@link #restore(StrongCache, Path)}
+	 * @throws NullPointerException
+	 *             if a serializer or the executor is null
+	 * @throws IllegalArgumentException
+	 *             if chunkSize is not positive
+	 */
+	public CacheSnapshot(@NotNull Serializer<K> keySerializer, @NotNull Serializer<V> valueSerializer,
+			@Positive int chunkSize, @NotNull Executor executor) {
+		Assurance.assureNotNull(keySerializer);
+		Assurance.assureNotNull(valueSerializer);
+		Assurance.assurePositive(chunkSize);
+		Assurance.assureNotNull(executor);
+		this.keySerializer = keySerializer;
+		this.valueSerializer = valueSerializer;
+		this.chunkSize = chunkSize;
+		this.executor = executor;
+	}
+
+	/**
+	 * writes all entries of the cache to the file
+	 *
+	 * @param cache
+	 * @param path
+	 * @throws IOException
+	 *             if the file can not be written
+	 * @throws NullPointerException
+	 *             if cache or path is null
+	 */
+	public void write(@NotNull StrongCache<K, V> cache, @NotNull Path path) throws IOException {
+		Assurance.assureNotNull(cache);
+		Assurance.assureNotNull(path);
+		try (ChunkWriter writer = new ChunkWriter(path)) {
+			cache.forEach(writer::write);
+			writer.commit();
+		} catch (UncheckedIOException e) {
+			throw e.getCause();
+		}
+	}
+
+	/**
+	 * writes all entries in memory of the cache together with their
+	 * {@link CacheType}s to the file. entries which are only stored in the
+	 * {@link SpillFile} of the cache are not written.
+	 *
+	 * @param cache
+	 * @param path
+	 * @throws IOException
+	 *             if the file can not be written
+	 * @throws NullPointerException
+	 *             if cache or path is null
+	 */
+	public void write(@NotNull HybridCache<K, V> cache, @NotNull Path path) throws IOException {
+		Assurance.assureNotNull(cache);
+		Assurance.assureNotNull(path);
+		try (ChunkWriter writer = new ChunkWriter(path)) {
+			for (CacheType cacheType : CACHE_TYPES) {
+				writer.setCacheType(cacheType);
+				cache.forEach(cacheType, writer::write);
+			}
+			writer.commit();
+		} catch (UncheckedIOException e) {
+			throw e.getCause();
+		}
+	}
+
+	/**
+	 * caches all entries of the file. all entries are cached as
+	 * {@link CacheType#STRONG}.
+	 *
+	 * @param cache
+	 * @param path
+	 * @throws IOException
+	 *             if the file can not be read or is corrupt
+	 * @throws NullPointerException
+	 *             if cache or path is null
+	 */
+	public void restore(@NotNull StrongCache<K, V> cache, @NotNull Path path) throws IOException {
+		Assurance.assureNotNull(cache);
+		Assurance.assureNotNull(path);
+		restore(path, chunk -> cache.cacheAll(chunk.valueMap), cache instanceof ConcurrentStrongCache);
+	}
+
+	/**
+	 * caches all entries of the file with the {@link CacheType} they had when the
+	 * snapshot was written
+	 *
+	 * @param cache
+	 * @param path
+	 * @throws IOException
+	 *             if the file can not be read or is corrupt
+	 * @throws NullPointerException
+	 *             if cache or path is null
+	 */
+	public void restore(@NotNull HybridCache<K, V> cache, @NotNull Path path) throws IOException {
+		Assurance.assureNotNull(cache);
+		Assurance.assureNotNull(path);
+		restore(path, chunk -> cache.cacheAll(chunk.valueMap, chunk.cacheType), cache.isConcurrent());
+	}
+
+	/**
+	 * reads the chunks of the file and decodes them by the executor. at most
+	 * twice as many chunks as there are processors are decoded at once, so the
+	 * file is never loaded completely.
+	 *
+	 * @param path
+	 * @param sink
+	 *            caches a decoded chunk
+	 * @param isConcurrent
+	 *            true if sink may be called by the threads of the executor
+	 * @throws IOException
+	 */
+	private void restore(Path path, Consumer<Chunk<K, V>> sink, boolean isConcurrent) throws IOException {
+		int maximumPending = Runtime.getRuntime().availableProcessors() * 2;
+		ArrayDeque<CompletableFuture<Chunk<K, V>>> pendingQueue = new ArrayDeque<>(maximumPending);
+		try (DataInputStream inputStream = new DataInputStream(
+				new BufferedInputStream(Files.newInputStream(path)))) {
+			if (inputStream.readInt() != MAGIC)
+				throw new IOException(path + " is not a cache snapshot");
+			int version = inputStream.readInt();
+			if (version != VERSION)
+				throw new IOException("unsupported snapshot version " + version);
+			int length;
+			while ((length = readLength(inputStream)) >= 0) {
+				int typeOrdinal = inputStream.readByte();
+				int count = inputStream.readInt();
+				if (typeOrdinal < 0 || typeOrdinal >= CACHE_TYPES.length || count < 0)
+					throw new IOException("corrupt chunk header in " + path);
+				byte[] bytes = inputStream.readNBytes(length);
+				if (bytes.length < length)
+					throw new EOFException("truncated chunk in " + path);
+				CacheType cacheType = CACHE_TYPES[typeOrdinal];
+				CompletableFuture<Chunk<K, V>> future = CompletableFuture
+						.supplyAsync(() -> decode(bytes, count, cacheType), executor);
+				if (isConcurrent)
+					future = future.thenApply(chunk -> {
+						sink.accept(chunk);
+						return chunk;
+					});
+				pendingQueue.add(future);
+				if (pendingQueue.size() >= maximumPending)
+					complete(pendingQueue.poll(), sink, isConcurrent);
+			}
+			while (!pendingQueue.isEmpty())
+				complete(pendingQueue.poll(), sink, isConcurrent);
+		} catch (CompletionException e) {
+			throw new IOException("corrupt chunk in " + path, e.getCause());
+		} finally {
+			// the cache must not be modified once this method has returned
+			for (CompletableFuture<Chunk<K, V>> future : pendingQueue)
+				future.handle((chunk, throwable) -> null).join();
+		}
+	}
+
+	/**
+	 * @param inputStream
+	 * @return length of the next chunk or -1 if the end of the file has been
+	 *         reached
+	 * @throws IOException
+	 */
+	private static int readLength(DataInputStream inputStream) throws IOException {
+		int first = inputStream.read();
+		if (first < 0)
+			return -1;
+		int length = (first << 24) | (inputStream.readUnsignedByte() << 16) | (inputStream.readUnsignedByte() << 8)
+				| inputStream.readUnsignedByte();
+		if (length < 0)
+			throw new IOException("corrupt chunk length " + length);
+		return length;
+	}
+
+	/**
+	 * waits until the chunk has been decoded and caches it unless it has been
+	 * cached by the executor already
+	 *
+	 * @param future
+	 * @param sink
+	 * @param isConcurrent
+	 */
+	private void complete(CompletableFuture<Chunk<K, V>> future, Consumer<Chunk<K, V>> sink, boolean isConcurrent) {
+		Chunk<K, V> chunk = future.join();
+		if (!isConcurrent)
+			sink.accept(chunk);
+	}
+
+	/**
+	 * @param bytes
+	 * @param count
+	 *            number of entries
+	 * @param cacheType
+	 * @return decoded chunk
+	 * @throws IllegalStateException
+	 *             if the chunk does not contain exactly count entries
+	 */
+	private Chunk<K, V> decode(byte[] bytes, int count, CacheType cacheType) {
+		DataQueue chunkQueue = new DataQueue(bytes.length);
+		chunkQueue.putBytes(bytes);
+		HashMap<K, V> valueMap = new HashMap<>((int) (count / 0.75f) + 1);
+		K key;
+		for (int i = 0; i < count; i++) {
+			key = keySerializer.deserialize(chunkQueue);
+			valueMap.put(key, valueSerializer.deserialize(chunkQueue));
+		}
+		if (chunkQueue.available() != 0)
+			throw new IllegalStateException(chunkQueue.available() + " bytes left after " + count + " entries");
+		return new Chunk<>(cacheType, valueMap);
+	}
+
+}
@@ -0,0 +1,161 @@
+package de.nuttercode.util.cache;
+
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.EnumMap;
+import java.util.Map;
+
+/**
+ * Immutable snapshot of the statistics of a {@link Cache}, created by a
+ * {@link StatsRecorder}. The load time histogram has one bucket per power of
+ * two: bucket i counts the loads which took [2^i, 2^(i+1)) nanoseconds. The
+ * tier sizes map each {@link CacheType} to the number of entries the cache
+ * holds in that tier at the time the snapshot has been taken.
+ *
+ * @author Johannes B. Latzel
+ *
+ */
+public final class CacheStats {
+
+	/**
+	 * snapshot without any recorded events
+	 */
+	public static final CacheStats EMPTY = new CacheStats(0, 0, 0, 0, 0, 0, 0, new long[Long.SIZE - 1], null);
+
+	private final long hitCount;
+	private final long missCount;
+	private final long evictionCount;
+	private final long collectionCount;
+	private final long loadSuccessCount;
+	private final long loadFailureCount;
+	private final long totalLoadNanos;
+	private final long[] loadTimeHistogram;
+	private final Map<CacheType, Integer> tierSizes;
+
+	/**
+	 * @param hitCount
+	 * @param missCount
+	 * @param evictionCount
+	 * @param collectionCount
+	 * @param loadSuccessCount
+	 * @param loadFailureCount
+	 * @param totalLoadNanos
+	 * @param loadTimeHistogram
+	 *            will be copied
+	 * @param tierSizes
+	 *            will be copied, may be null if the tier sizes are unknown
+	 */
+	public CacheStats(long hitCount, long missCount, long evictionCount, long collectionCount, long loadSuccessCount,
+			long loadFailureCount, long totalLoadNanos, long[] loadTimeHistogram, Map<CacheType, Integer> tierSizes) {
+		this.hitCount = hitCount;
+		this.missCount = missCount;
+		this.evictionCount = evictionCount;
+		this.collectionCount = collectionCount;
+		this.loadSuccessCount = loadSuccessCount;
+		this.loadFailureCount = loadFailureCount;
+		this.totalLoadNanos = totalLoadNanos;
+		this.loadTimeHistogram = loadTimeHistogram.clone();
+		this.tierSizes = tierSizes == null || tierSizes.isEmpty() ? Collections.emptyMap()
+				: Collections.unmodifiableMap(new EnumMap<>(tierSizes));
+	}
+
+	/**
+	 * @param tierSizes
+	 * @return copy of this snapshot with the given tier sizes
+	 */
+	public CacheStats withTierSizes(Map<CacheType, Integer> tierSizes) {
+		return new CacheStats(hitCount, missCount, evictionCount, collectionCount, loadSuccessCount, loadFailureCount,
+				totalLoadNanos, loadTimeHistogram, tierSizes);
+	}
+
+	/**
+	 * @param cacheType
+	 * @param size
+	 * @return copy of this snapshot whose only tier is the given one
+	 */
+	public CacheStats withTierSize(CacheType cacheType, int size) {
+		return withTierSizes(Collections.singletonMap(cacheType, size));
+	}
+
+	public long getHitCount() {
+		return hitCount;
+	}
+
+	public long getMissCount() {
+		return missCount;
+	}
+
+	/**
+	 * @return hit count + miss count
+	 */
+	public long getRequestCount() {
+		return hitCount + missCount;
+	}
+
+	/**
+	 * @return ratio of hits to requests or 1 if there have not been any requests
+	 */
+	public double getHitRate() {
+		long requestCount = getRequestCount();
+		return requestCount == 0 ? 1.0 : (double) hitCount / requestCount;
+	}
+
+	public long getEvictionCount() {
+		return evictionCount;
+	}
+
+	/**
+	 * @return number of entries which have been purged because their values have
+	 *         been collected by the Garbage Collector
+	 */
+	public long getCollectionCount() {
+		return collectionCount;
+	}
+
+	public long getLoadSuccessCount() {
+		return loadSuccessCount;
+	}
+
+	public long getLoadFailureCount() {
+		return loadFailureCount;
+	}
+
+	/**
+	 * @return total duration of all loads in nanoseconds
+	 */
+	public long getTotalLoadNanos() {
+		return totalLoadNanos;
+	}
+
+	/**
+	 * @return average duration of a load in nanoseconds or 0 if there have not
+	 *         been any loads
+	 */
+	public double getAverageLoadNanos() {
+		long loadCount = loadSuccessCount + loadFailureCount;
+		return loadCount == 0 ? 0.0 : (double) totalLoadNanos / loadCount;
+	}
+
+	/**
+	 * @return copy of the load time histogram
+	 */
+	public long[] getLoadTimeHistogram() {
+		return loadTimeHistogram.clone();
+	}
+
+	/**
+	 * @return unmodifiable map of the number of entries per {@link CacheType}
+	 */
+	public Map<CacheType, Integer> getTierSizes() {
+		return tierSizes;
+	}
+
+	@Override
+	public String toString() {
+		return "CacheStats [hitCount=" + hitCount + ", missCount=" + missCount + ", evictionCount=" + evictionCount
+				+ ", collectionCount=" + collectionCount + ", loadSuccessCount=" + loadSuccessCount
+				+ ", loadFailureCount=" + loadFailureCount + ", totalLoadNanos=" + totalLoadNanos
+				+ ", loadTimeHistogram=" + Arrays.toString(loadTimeHistogram) + ", tierSizes=" + tierSizes + "]";
+	}
+
+}
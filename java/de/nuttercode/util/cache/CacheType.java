@@ -9,17 +9,17 @@ package de.nuttercode.util.cache;
 public enum CacheType {
 
 	/**
-	 * use {@link StrongCache}
+	 * reference the value strongly, like a {@link StrongCache}
 	 */
 	STRONG,
 
 	/**
-	 * use {@link SoftCache}
+	 * reference the value softly, like a {@link SoftCache}
 	 */
 	SOFT,
 
 	/**
-	 * use {@link WeakCache}
+	 * reference the value weakly, like a {@link WeakCache}
 	 */
 	WEAK;
 
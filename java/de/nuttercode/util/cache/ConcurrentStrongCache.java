@@ -0,0 +1,87 @@
+package de.nuttercode.util.cache;
+
+import java.util.NoSuchElementException;
+import java.util.concurrent.ConcurrentHashMap;
+
+import de.nuttercode.util.assurance.Assurance;
+import de.nuttercode.util.assurance.NotNull;
+import de.nuttercode.util.assurance.Positive;
+
+/**
+ * A thread-safe {@link StrongCache} backed by a {@link ConcurrentHashMap}.
+ * Reads never lock and writes only lock the bin of the key they modify, so
+ * concurrent writers of different keys rarely contend. Can be used wherever a
+ * {@link StrongCache} is expected, e.g. as the backing cache of a
+ * {@link ReferenceCache}. Neither keys nor values may be null.
+ *
+ * @author Johannes B. Latzel
+ *
+ * @param <K>
+ *            key type
+ * @param <V>
+ *            value type
+ */
+public class ConcurrentStrongCache<K, V> extends StrongCache<K, V> {
+
+	public ConcurrentStrongCache() {
+		super(new ConcurrentHashMap<>());
+	}
+
+	/**
+	 * @param initialCapacity
+	 *            number of entries the cache can hold without resizing
+	 * @param concurrencyLevel
+	 *            estimated number of concurrently updating threads
+	 * @throws IllegalArgumentException
+	 *             if initialCapacity is negative or concurrencyLevel is not
+	 *             positive
+	 */
+	public ConcurrentStrongCache(int initialCapacity, @Positive int concurrencyLevel) {
+		super(createMap(initialCapacity, concurrencyLevel));
+	}
+
+	private static <K, V> ConcurrentHashMap<K, V> createMap(int initialCapacity, int concurrencyLevel) {
+		Assurance.assureNotNegative(initialCapacity);
+		Assurance.assurePositive(concurrencyLevel);
+		return new ConcurrentHashMap<>(initialCapacity, 0.75f, concurrencyLevel);
+	}
+
+	/**
+	 * @throws NullPointerException
+	 *             if key or value is null
+	 */
+	@Override
+	public void cache(@NotNull K key, @NotNull V value) {
+		super.cache(key, value);
+	}
+
+	@Override
+	public V get(K key) {
+		V value = lookup(key);
+		if (value == null) {
+			getStatsRecorder().recordMisses(1);
+			throw new NoSuchElementException("No mapping for key " + key);
+		}
+		getStatsRecorder().recordHits(1);
+		return value;
+	}
+
+	@Override
+	public void remove(K key) {
+		V value = removeIfPresent(key);
+		if (value == null)
+			throw new NoSuchElementException("No mapping for key " + key);
+		notifyRemoval(key, value, RemovalCause.EXPLICIT);
+	}
+
+	@Override
+	public boolean isConcurrent() {
+		return true;
+	}
+
+	@Override
+	public String toString() {
+		return "ConcurrentStrongCache [size()=" + size() + "]";
+	}
+
+}
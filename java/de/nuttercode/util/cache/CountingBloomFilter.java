@@ -0,0 +1,186 @@
+package de.nuttercode.util.cache;
+
+import java.util.concurrent.atomic.AtomicLongArray;
+
+import de.nuttercode.util.assurance.Assurance;
+import de.nuttercode.util.assurance.Positive;
+
+/**
+ * Lock-free counting bloom filter with 4-bit counters. Every key is mapped to
+ * a number of counters which are incremented when the key is added and
+ * decremented when it is removed. If any counter of a key is zero, the key has
+ * definitely not been added. Counters which reach 15 stay saturated, so
+ * removals can only cause false positives but never false negatives. All
+ * methods are thread-safe; counters are updated by compare-and-set.
+ *
+ * @author Johannes B. Latzel
+ *
+ */
+public final class CountingBloomFilter {
+
+	private static final int COUNTERS_PER_WORD = Long.SIZE / 4;
+	private static final long MAXIMUM_COUNT = 0xfL;
+	private static final int MAXIMUM_COUNTER_COUNT = 1 << 30;
+	private static final int MAXIMUM_HASH_COUNT = 16;
+
+	private final AtomicLongArray words;
+	private final int counterMask;
+	private final int hashCount;
+
+	/**
+	 * @param expectedInsertions
+	 *            number of keys the filter will hold at once
+	 * @param falsePositiveProbability
+	 *            probability that a key which has not been added is reported as
+	 *            contained once the filter holds expectedInsertions keys
+	 * @throws IllegalArgumentException
+	 *             if expectedInsertions is not positive or
+	 *             falsePositiveProbability is not in (0, 1)
+	 */
+	public CountingBloomFilter(@Positive int expectedInsertions, double falsePositiveProbability) {
+		Assurance.assurePositive(expectedInsertions);
+		Assurance.assurePositive(falsePositiveProbability);
+		Assurance.assureBoundaries(falsePositiveProbability, 0, Math.nextDown(1.0));
+		double counters = -expectedInsertions * Math.log(falsePositiveProbability) / (Math.log(2) * Math.log(2));
+		int counterCount = (int) Math.min(MAXIMUM_COUNTER_COUNT,
+				Math.max(COUNTERS_PER_WORD, (long) Math.ceil(counters)));
+		counterCount = Integer.highestOneBit(counterCount - 1) << 1;
+		words = new AtomicLongArray(counterCount / COUNTERS_PER_WORD);
+		counterMask = counterCount - 1;
+		hashCount = (int) Math.max(1,
+				Math.min(MAXIMUM_HASH_COUNT, Math.round(counters / expectedInsertions * Math.log(2))));
+	}
+
+	/**
+	 * @param counterCount
+	 *            power of two
+	 * @param hashCount
+	 */
+	private CountingBloomFilter(int counterCount, int hashCount) {
+		words = new AtomicLongArray(counterCount / COUNTERS_PER_WORD);
+		counterMask = counterCount - 1;
+		this.hashCount = hashCount;
+	}
+
+	/**
+	 * @return new empty filter with the same dimensions
+	 */
+	CountingBloomFilter emptyCopy() {
+		return new CountingBloomFilter(getCounterCount(), hashCount);
+	}
+
+	/**
+	 * spreads the hash code of the key over 64 bits. the lower and upper half
+	 * are combined to derive the indices of all counters of the key.
+	 *
+	 * @param key
+	 * @return spread hash
+	 */
+	private static long spread(Object key) {
+		long h = (key == null ? 0 : key.hashCode()) * 0x9E3779B97F4A7C15L;
+		h ^= h >>> 29;
+		h *= 0xBF58476D1CE4E5B9L;
+		return h ^ (h >>> 32);
+	}
+
+	/**
+	 * @param hash
+	 * @param i
+	 * @return index of the i-th counter of the hash
+	 */
+	private int indexOf(long hash, int i) {
+		return ((int) hash + i * ((int) (hash >>> 32) | 1)) & counterMask;
+	}
+
+	/**
+	 * @param word
+	 * @param index
+	 * @return value of the counter in the word
+	 */
+	private static long countOf(long word, int index) {
+		return (word >>> ((index & (COUNTERS_PER_WORD - 1)) << 2)) & MAXIMUM_COUNT;
+	}
+
+	/**
+	 * increments all counters of the key
+	 *
+	 * @param key
+	 */
+	public void add(Object key) {
+		long hash = spread(key);
+		int index;
+		long word;
+		for (int i = 0; i < hashCount; i++) {
+			index = indexOf(hash, i);
+			do {
+				word = words.get(index / COUNTERS_PER_WORD);
+				if (countOf(word, index) == MAXIMUM_COUNT)
+					break;
+			} while (!words.compareAndSet(index / COUNTERS_PER_WORD, word,
+					word + (1L << ((index & (COUNTERS_PER_WORD - 1)) << 2))));
+		}
+	}
+
+	/**
+	 * decrements all counters of the key. must only be called for keys which
+	 * have been added, otherwise other keys may be reported as not contained.
+	 *
+	 * @param key
+	 */
+	public void remove(Object key) {
+		long hash = spread(key);
+		int index;
+		long word;
+		long count;
+		for (int i = 0; i < hashCount; i++) {
+			index = indexOf(hash, i);
+			do {
+				word = words.get(index / COUNTERS_PER_WORD);
+				count = countOf(word, index);
+				if (count == 0 || count == MAXIMUM_COUNT)
+					break;
+			} while (!words.compareAndSet(index / COUNTERS_PER_WORD, word,
+					word - (1L << ((index & (COUNTERS_PER_WORD - 1)) << 2))));
+		}
+	}
+
+	/**
+	 * @param key
+	 * @return false if the key has definitely not been added
+	 */
+	public boolean mightContain(Object key) {
+		long hash = spread(key);
+		int index;
+		for (int i = 0; i < hashCount; i++) {
+			index = indexOf(hash, i);
+			if (countOf(words.get(index / COUNTERS_PER_WORD), index) == 0)
+				return false;
+		}
+		return true;
+	}
+
+	/**
+	 * resets all counters. not atomic.
+	 */
+	public void clear() {
+		for (int i = 0; i < words.length(); i++)
+			words.set(i, 0);
+	}
+
+	public int getCounterCount() {
+		return counterMask + 1;
+	}
+
+	/**
+	 * @return number of counters per key
+	 */
+	public int getHashCount() {
+		return hashCount;
+	}
+
+	@Override
+	public String toString() {
+		return "CountingBloomFilter [counterCount=" + getCounterCount() + ", hashCount=" + hashCount + "]";
+	}
+
+}
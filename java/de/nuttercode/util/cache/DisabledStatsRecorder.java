@@ -0,0 +1,42 @@
+package de.nuttercode.util.cache;
+
+/**
+ * {@link StatsRecorder} which ignores all events
+ *
+ * @author Johannes B. Latzel
+ *
+ */
+enum DisabledStatsRecorder implements StatsRecorder {
+
+	INSTANCE;
+
+	@Override
+	public void recordHits(int count) {
+	}
+
+	@Override
+	public void recordMisses(int count) {
+	}
+
+	@Override
+	public void recordEvictions(int count) {
+	}
+
+	@Override
+	public void recordCollections(int count) {
+	}
+
+	@Override
+	public void recordLoadSuccess(long loadNanos) {
+	}
+
+	@Override
+	public void recordLoadFailure(long loadNanos) {
+	}
+
+	@Override
+	public CacheStats snapshot() {
+		return CacheStats.EMPTY;
+	}
+
+}
@@ -0,0 +1,416 @@
+package de.nuttercode.util.cache;
+
+import java.time.Duration;
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.NoSuchElementException;
+import java.util.Set;
+import java.util.concurrent.Executor;
+import java.util.function.BiConsumer;
+import java.util.function.LongSupplier;
+
+import de.nuttercode.util.assurance.Assurance;
+import de.nuttercode.util.assurance.NotNull;
+
+/**
+ * A {@link Cache} which strongly references its values until they expire. A
+ * value expires once the time since it has been cached exceeds the
+ * expire-after-write duration or the time since it has last been read exceeds
+ * the expire-after-access duration. Expired values are never returned by
+ * {@link #get(Object)} or reported by {@link #contains(Object)}. Expired
+ * entries are removed by a {@link TimerWheel} during normal operations, which
+ * costs amortized O(1) per entry and never scans all entries. This cache is not
+ * thread-safe.
+ *
+ * @author Johannes B. Latzel
+ *
+ * @param <K>
+ *            key type
+ * @param <V>
+ *            value type
+ */
+public class ExpiringCache<K, V> implements Cache<K, V> {
+
+	/**
+	 * a cached value and its timestamps
+	 */
+	private static final class ExpiringEntry<K, V> extends TimerWheel.Timer {
+
+		private final K key;
+		private V value;
+		private long writeTime;
+		private long accessTime;
+
+		/**
+		 * expire-after-write duration of this entry in nanoseconds or
+		 * {@link Long#MAX_VALUE} if it only expires after access
+		 */
+		private long timeToLive;
+
+		private ExpiringEntry(K key) {
+			this.key = key;
+		}
+
+	}
+
+	private final Map<K, ExpiringEntry<K, V>> expiringMap;
+	private final TimerWheel<ExpiringEntry<K, V>> timerWheel;
+	private final LongSupplier ticker;
+
+	private StatsRecorder statsRecorder;
+	private RemovalDispatcher<K, V> removalDispatcher;
+	private final long expireAfterWriteNanos;
+	private final long expireAfterAccessNanos;
+
+	/**
+	 * live views, created once
+	 */
+	private final Set<K> keySet;
+	private final Collection<V> valueCollection;
+
+	/**
+	 * @param expireAfterWrite
+	 *            duration after which a value expires once it has been cached or
+	 *            null if values never expire after write
+	 * @param expireAfterAccess
+	 *            duration after which a value expires once it has last been read
+	 *            or null if values never expire after access
+	 * @throws IllegalArgumentException
+	 *             if a duration is not positive
+	 */
+	public ExpiringCache(Duration expireAfterWrite, Duration expireAfterAccess) {
+		this(expireAfterWrite, expireAfterAccess, System::nanoTime);
+	}
+
+	/**
+	 * @param expireAfterWrite
+	 *            duration after which a value expires once it has been cached or
+	 *            null if values never expire after write
+	 * @param expireAfterAccess
+	 *            duration after which a value expires once it has last been read
+	 *            or null if values never expire after access
+	 * @param ticker
+	 *            source of the current point in time in nanoseconds
+	 * @throws IllegalArgumentException
+	 *             if a duration is not positive
+	 * @throws NullPointerException
+	 *             if ticker is null
+	 */
+	public ExpiringCache(Duration expireAfterWrite, Duration expireAfterAccess, @NotNull LongSupplier ticker) {
+		Assurance.assureNotNull(ticker);
+		expireAfterWriteNanos = toNanos(expireAfterWrite);
+		expireAfterAccessNanos = toNanos(expireAfterAccess);
+		this.ticker = ticker;
+		expiringMap = new HashMap<>();
+		timerWheel = new TimerWheel<>(ticker.getAsLong(), this::expire);
+		statsRecorder = StatsRecorder.disabled();
+		removalDispatcher = RemovalDispatcher.disabled();
+		keySet = new LiveSet<>(expiringMap.values(), false, (entry, action) -> {
+			if (!isExpired(entry, ticker.getAsLong()))
+				action.accept(entry.key);
+		}, this::size, this::isVisible);
+		valueCollection = new LiveCollection<>(expiringMap.values(), false, (entry, action) -> {
+			if (!isExpired(entry, ticker.getAsLong()))
+				action.accept(entry.value);
+		}, this::size);
+	}
+
+	/**
+	 * @param duration
+	 * @return duration in nanoseconds or {@link Long#MAX_VALUE} if duration is
+	 *         null
+	 * @throws IllegalArgumentException
+	 *             if duration is not positive
+	 */
+	private static long toNanos(Duration duration) {
+		if (duration == null)
+			return Long.MAX_VALUE;
+		Assurance.assurePositive(duration.toNanos());
+		return duration.toNanos();
+	}
+
+	/**
+	 * @param time
+	 * @param duration
+	 * @return time + duration or {@link Long#MAX_VALUE} if the sum overflows
+	 */
+	private static long saturatedAdd(long time, long duration) {
+		long sum = time + duration;
+		return ((time ^ sum) & (duration ^ sum)) < 0 ? Long.MAX_VALUE : sum;
+	}
+
+	/**
+	 * @param entry
+	 * @return point in time at which the entry expires
+	 */
+	private long expirationTime(ExpiringEntry<K, V> entry) {
+		return Math.min(saturatedAdd(entry.writeTime, entry.timeToLive),
+				saturatedAdd(entry.accessTime, expireAfterAccessNanos));
+	}
+
+	/**
+	 * @param entry
+	 * @param now
+	 * @return true if the entry has expired at the given point in time
+	 */
+	private boolean isExpired(ExpiringEntry<K, V> entry, long now) {
+		return expirationTime(entry) - now <= 0;
+	}
+
+	/**
+	 * unlike {@link #contains(Object)}, neither advances the {@link TimerWheel}
+	 * nor removes the entry if it has expired
+	 *
+	 * @param key
+	 * @return true if the key is mapped to a value which has not expired
+	 */
+	private boolean isVisible(Object key) {
+		ExpiringEntry<K, V> entry = expiringMap.get(key);
+		return entry != null && !isExpired(entry, ticker.getAsLong());
+	}
+
+	/**
+	 * called by the {@link TimerWheel} for every expired entry. expired entries
+	 * are recorded as evictions.
+	 *
+	 * @param entry
+	 */
+	private void expire(ExpiringEntry<K, V> entry) {
+		if (expiringMap.remove(entry.key, entry)) {
+			statsRecorder.recordEvictions(1);
+			removalDispatcher.dispatch(entry.key, entry.value, RemovalCause.EXPIRED);
+		}
+	}
+
+	/**
+	 * (re-)schedules the entry or removes it if it never expires
+	 *
+	 * @param entry
+	 */
+	private void schedule(ExpiringEntry<K, V> entry) {
+		long expirationTime = expirationTime(entry);
+		if (expirationTime == Long.MAX_VALUE)
+			timerWheel.deschedule(entry);
+		else
+			timerWheel.schedule(entry, expirationTime);
+	}
+
+	/**
+	 * advances the {@link TimerWheel} and looks up the entry of the key
+	 *
+	 * @param key
+	 * @param now
+	 * @return the entry of the key or null if the key is not mapped or its value
+	 *         has expired
+	 */
+	private ExpiringEntry<K, V> lookup(K key, long now) {
+		timerWheel.advance(now);
+		ExpiringEntry<K, V> entry = expiringMap.get(key);
+		if (entry == null || !isExpired(entry, now))
+			return entry;
+		expiringMap.remove(key);
+		timerWheel.deschedule(entry);
+		statsRecorder.recordEvictions(1);
+		removalDispatcher.dispatch(key, entry.value, RemovalCause.EXPIRED);
+		return null;
+	}
+
+	/**
+	 * caches the value with an individual expire-after-write duration, which
+	 * replaces the expire-after-write duration of this cache for this value
+	 *
+	 * @param key
+	 * @param value
+	 * @param timeToLive
+	 * @throws IllegalArgumentException
+	 *             if timeToLive is not positive
+	 * @throws NullPointerException
+	 *             if timeToLive is null
+	 */
+	public void cache(K key, V value, @NotNull Duration timeToLive) {
+		Assurance.assureNotNull(timeToLive);
+		cache(key, value, toNanos(timeToLive));
+	}
+
+	private void cache(K key, V value, long timeToLive) {
+		long now = ticker.getAsLong();
+		timerWheel.advance(now);
+		ExpiringEntry<K, V> entry = expiringMap.get(key);
+		if (entry == null) {
+			entry = new ExpiringEntry<>(key);
+			expiringMap.put(key, entry);
+		} else
+			removalDispatcher.dispatch(key, entry.value,
+					isExpired(entry, now) ? RemovalCause.EXPIRED : RemovalCause.REPLACED);
+		entry.value = value;
+		entry.writeTime = entry.accessTime = now;
+		entry.timeToLive = timeToLive;
+		schedule(entry);
+	}
+
+	/**
+	 * @return expire-after-write duration or null if values never expire after
+	 *         write
+	 */
+	public Duration getExpireAfterWrite() {
+		return expireAfterWriteNanos == Long.MAX_VALUE ? null : Duration.ofNanos(expireAfterWriteNanos);
+	}
+
+	/**
+	 * @return expire-after-access duration or null if values never expire after
+	 *         access
+	 */
+	public Duration getExpireAfterAccess() {
+		return expireAfterAccessNanos == Long.MAX_VALUE ? null : Duration.ofNanos(expireAfterAccessNanos);
+	}
+
+	@Override
+	public void cache(K key, V value) {
+		cache(key, value, expireAfterWriteNanos);
+	}
+
+	@Override
+	public V get(K key) {
+		ExpiringEntry<K, V> entry = read(key);
+		if (entry == null)
+			throw new NoSuchElementException("No mapping for key " + key);
+		return entry.value;
+	}
+
+	@Override
+	public V getIfPresent(K key) {
+		ExpiringEntry<K, V> entry = read(key);
+		return entry == null ? null : entry.value;
+	}
+
+	/**
+	 * looks the key up and records a hit or a miss. renews the access time of the
+	 * entry if entries expire after their last access.
+	 *
+	 * @param key
+	 * @return entry of the key or null if the key is not mapped or has expired
+	 */
+	private ExpiringEntry<K, V> read(K key) {
+		long now = ticker.getAsLong();
+		ExpiringEntry<K, V> entry = lookup(key, now);
+		if (entry == null) {
+			statsRecorder.recordMisses(1);
+			return null;
+		}
+		statsRecorder.recordHits(1);
+		if (expireAfterAccessNanos != Long.MAX_VALUE) {
+			entry.accessTime = now;
+			schedule(entry);
+		}
+		return entry;
+	}
+
+	@Override
+	public boolean contains(K key) {
+		return lookup(key, ticker.getAsLong()) != null;
+	}
+
+	@Override
+	public void remove(K key) {
+		ExpiringEntry<K, V> entry = lookup(key, ticker.getAsLong());
+		if (entry == null)
+			throw new NoSuchElementException("No mapping for key " + key);
+		expiringMap.remove(key);
+		timerWheel.deschedule(entry);
+		removalDispatcher.dispatch(key, entry.value, RemovalCause.EXPLICIT);
+	}
+
+	/**
+	 * may include values which have expired less than ~17ms ago
+	 */
+	@Override
+	public int size() {
+		timerWheel.advance(ticker.getAsLong());
+		return expiringMap.size();
+	}
+
+	@Override
+	public void clear() {
+		if (removalDispatcher.isEnabled())
+			expiringMap.forEach((key, entry) -> removalDispatcher.dispatch(key, entry.value, RemovalCause.EXPLICIT));
+		expiringMap.clear();
+		timerWheel.clear();
+	}
+
+	/**
+	 * removes expired values
+	 */
+	@Override
+	public void clean() {
+		timerWheel.advance(ticker.getAsLong());
+	}
+
+	/**
+	 * removes all expired values regardless of maximum. the {@link TimerWheel}
+	 * only processes the entries which have expired.
+	 */
+	@Override
+	public int clean(int maximum) {
+		int size = expiringMap.size();
+		timerWheel.advance(ticker.getAsLong());
+		return size - expiringMap.size();
+	}
+
+	@Override
+	public void setStatsRecorder(@NotNull StatsRecorder statsRecorder) {
+		Assurance.assureNotNull(statsRecorder);
+		this.statsRecorder = statsRecorder;
+	}
+
+	@Override
+	public void setRemovalListener(RemovalListener<? super K, ? super V> removalListener, Executor executor) {
+		removalDispatcher = RemovalDispatcher.create(removalListener, executor);
+	}
+
+	@Override
+	public StatsRecorder getStatsRecorder() {
+		return statsRecorder;
+	}
+
+	@Override
+	public CacheStats getStats() {
+		return statsRecorder.snapshot().withTierSize(CacheType.STRONG, size());
+	}
+
+	/**
+	 * the view skips all entries which have expired. its size removes them.
+	 */
+	@Override
+	public Set<K> getKeySet() {
+		return keySet;
+	}
+
+	/**
+	 * the view skips all entries which have expired. its size removes them.
+	 */
+	@Override
+	public Collection<V> getValueCollection() {
+		return valueCollection;
+	}
+
+	/**
+	 * skips all entries which have expired. does not count as read.
+	 */
+	@Override
+	public void forEach(BiConsumer<? super K, ? super V> action) {
+		long now = ticker.getAsLong();
+		timerWheel.advance(now);
+		expiringMap.values().forEach(entry -> {
+			if (!isExpired(entry, now))
+				action.accept(entry.key, entry.value);
+		});
+	}
+
+	@Override
+	public String toString() {
+		return "ExpiringCache [expireAfterWrite=" + getExpireAfterWrite() + ", expireAfterAccess="
+				+ getExpireAfterAccess() + ", size()=" + size() + "]";
+	}
+
+}
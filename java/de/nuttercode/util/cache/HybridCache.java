@@ -1,17 +1,60 @@
 package de.nuttercode.util.cache;
 
+import java.lang.ref.Reference;
+import java.lang.ref.ReferenceQueue;
+import java.lang.ref.SoftReference;
+import java.lang.ref.WeakReference;
 import java.util.ArrayList;
 import java.util.Collection;
-import java.util.HashSet;
+import java.util.Collections;
+import java.util.EnumMap;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.NoSuchElementException;
 import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.Executor;
+import java.util.concurrent.atomic.AtomicIntegerArray;
+import java.util.concurrent.locks.ReentrantLock;
+import java.util.function.BiConsumer;
+import java.util.function.BiFunction;
+import java.util.function.Consumer;
+
+import de.nuttercode.util.assurance.Assurance;
+import de.nuttercode.util.assurance.NotNull;
 
 /**
- * Combines a {@link StrongCache}, {@link SoftCache}, and a {@link WeakCache}.
- * Choose via {@link #cache(Object, Object, CacheType)} which cache should be
- * used for the specific key/value pair. Supported {@link CacheType}s are
- * {@link CacheType#STRONG}, {@link CacheType#SOFT}, and {@link CacheType#WEAK}.
- * The default {@link CacheType} is {@link CacheType#SOFT}.
- * 
+ * Combines the behavior of a {@link StrongCache}, {@link SoftCache}, and a
+ * {@link WeakCache}. Choose via {@link #cache(Object, Object, CacheType)} how
+ * the value of the specific key/value pair should be referenced. Supported
+ * {@link CacheType}s are {@link CacheType#STRONG}, {@link CacheType#SOFT}, and
+ * {@link CacheType#WEAK}. The default {@link CacheType} is
+ * {@link CacheType#SOFT}. All entries are kept in a single hash table and
+ * carry their {@link CacheType}, so {@link #get(Object)},
+ * {@link #contains(Object)}, {@link #move(Object, CacheType)}, and
+ * {@link #cache(Object, Object, CacheType)} need a single lookup each. Entries
+ * whose values have been collected are purged via a {@link ReferenceQueue}
+ * during normal operations.
+ * <p>
+ * If created with tier capacities, the cache tiers its entries adaptively:
+ * every read counts towards the access frequency of an entry. Entries which
+ * are read frequently are promoted to {@link CacheType#STRONG}. If the
+ * {@link CacheType#STRONG} tier exceeds its capacity, its least recently used
+ * entries are demoted to {@link CacheType#SOFT}, and if the
+ * {@link CacheType#SOFT} tier exceeds its capacity, its least recently used
+ * entries are demoted to {@link CacheType#WEAK}. The bookkeeping runs in
+ * amortized O(1) under a single lock. Reads skip the bookkeeping instead of
+ * waiting if the lock is held by another thread.
+ * <p>
+ * If created with a {@link SpillFile}, values are written to it once they
+ * enter the {@link CacheType#SOFT} or {@link CacheType#WEAK} tier, either by
+ * caching or by demotion. If the Garbage Collector collects such a value, it is
+ * read back from the {@link SpillFile} by the next {@link #get(Object)} and
+ * cached as {@link CacheType#SOFT} again. {@link #size()} and
+ * {@link #getKeySet()} only cover the entries in memory, while
+ * {@link #get(Object)} and {@link #contains(Object)} consult the
+ * {@link SpillFile} as well.
+ *
  * @author Johannes B. Latzel
  *
  * @param <K>
@@ -21,39 +64,702 @@ import java.util.Set;
  */
 public class HybridCache<K, V> implements Cache<K, V> {
 
-	private final StrongCache<K, V> strongCache;
-	private final SoftCache<K, V> softCache;
-	private final WeakCache<K, V> weakCache;
+	/**
+	 * {@link SoftReference} which knows its key
+	 */
+	private static final class SoftEntryReference<K, V> extends SoftReference<V> implements KeyedReference<K> {
+
+		private final K key;
+
+		private SoftEntryReference(K key, V value, ReferenceQueue<? super V> queue) {
+			super(value, queue);
+			this.key = key;
+		}
+
+		@Override
+		public K getKey() {
+			return key;
+		}
+
+	}
+
+	/**
+	 * {@link WeakReference} which knows its key
+	 */
+	private static final class WeakEntryReference<K, V> extends WeakReference<V> implements KeyedReference<K> {
+
+		private final K key;
+
+		private WeakEntryReference(K key, V value, ReferenceQueue<? super V> queue) {
+			super(value, queue);
+			this.key = key;
+		}
+
+		@Override
+		public K getKey() {
+			return key;
+		}
+
+	}
+
+	/**
+	 * an entry of the table. the slot either holds the value itself
+	 * ({@link CacheType#STRONG}) or a {@link SoftEntryReference} /
+	 * {@link WeakEntryReference} to the value. reading the slot once always
+	 * yields a consistent {@link CacheType} and value.
+	 */
+	private static final class HybridEntry<K> {
+
+		private final K key;
+		private volatile Object slot;
+
+		/**
+		 * true once the entry has been removed from the table, only set while
+		 * holding the monitor of the entry
+		 */
+		private volatile boolean isRemoved;
+
+		/**
+		 * true once the value has been written to the {@link SpillFile}
+		 */
+		private volatile boolean isSpilled;
+
+		/**
+		 * fields used for adaptive tiering, guarded by the tier lock
+		 */
+		private HybridEntry<K> previous;
+		private HybridEntry<K> next;
+		private TierList<K> tierList;
+		private int frequency;
+
+		private HybridEntry(K key, Object slot) {
+			this.key = key;
+			this.slot = slot;
+		}
+
+	}
+
+	/**
+	 * entries of a {@link CacheType} ordered from the least recently used entry
+	 * (first) to the most recently used entry (last)
+	 */
+	private static final class TierList<K> {
+
+		private HybridEntry<K> first;
+		private HybridEntry<K> last;
+		private int size;
+
+		private void linkLast(HybridEntry<K> entry) {
+			entry.tierList = this;
+			entry.previous = last;
+			entry.next = null;
+			if (last == null)
+				first = entry;
+			else
+				last.next = entry;
+			last = entry;
+			size++;
+		}
+
+		private void unlink(HybridEntry<K> entry) {
+			if (entry.previous == null)
+				first = entry.next;
+			else
+				entry.previous.next = entry.next;
+			if (entry.next == null)
+				last = entry.previous;
+			else
+				entry.next.previous = entry.previous;
+			entry.previous = entry.next = null;
+			entry.tierList = null;
+			size--;
+		}
+
+		private void moveToLast(HybridEntry<K> entry) {
+			if (entry != last) {
+				unlink(entry);
+				linkLast(entry);
+			}
+		}
+
+		private void clear() {
+			first = last = null;
+			size = 0;
+		}
+
+	}
+
+	/**
+	 * maximum number of collected references which are purged during a single
+	 * read or write operation
+	 */
+	private static final int DRAIN_THRESHOLD = 64;
+
+	private static final CacheType[] CACHE_TYPES = CacheType.values();
+
+	/**
+	 * returned by {@link #find(Object)} if the key is not mapped
+	 */
+	private static final Object ABSENT = new Object();
+
+	/**
+	 * number of reads after which an entry is promoted to
+	 * {@link CacheType#STRONG} in adaptive mode
+	 */
+	private static final int PROMOTION_FREQUENCY = 3;
+
+	/**
+	 * maximum access frequency of an entry
+	 */
+	private static final int MAXIMUM_FREQUENCY = 15;
+
+	private final Map<K, HybridEntry<K>> entryMap;
+	private final ReferenceQueue<V> referenceQueue;
+
+	/**
+	 * number of entries per {@link CacheType#ordinal()}, including collected
+	 * entries which have not been purged yet
+	 */
+	private final AtomicIntegerArray tierSizes;
+
+	/**
+	 * guards the {@link TierList}s, null if this cache is not adaptive
+	 */
+	private final ReentrantLock tierLock;
+	private final TierList<K> strongList;
+	private final TierList<K> softList;
+	private int strongCapacity;
+	private int softCapacity;
+
+	/**
+	 * disk tier, null if values are not spilled
+	 */
+	private final SpillFile<K, V> spillFile;
+
+	private StatsRecorder statsRecorder;
+	private RemovalDispatcher<K, V> removalDispatcher;
+
+	/**
+	 * counts the keys of the table and of the {@link SpillFile}. keys whose
+	 * entries are purged after their values have been spilled stay counted.
+	 */
+	private KeyFilter keyFilter;
+
+	/**
+	 * live views, created once
+	 */
+	private final Set<K> keySet;
+	private final Collection<V> valueCollection;
 
 	public HybridCache() {
-		strongCache = new StrongCache<>();
-		softCache = new SoftCache<>();
-		weakCache = new WeakCache<>();
+		this(false);
+	}
+
+	/**
+	 * @param concurrent
+	 *            if true, the table is a {@link ConcurrentHashMap} and all
+	 *            operations are thread-safe. keys must not be null then.
+	 */
+	public HybridCache(boolean concurrent) {
+		this(concurrent, null);
+	}
+
+	/**
+	 * @param concurrent
+	 *            if true, the table is a {@link ConcurrentHashMap} and all
+	 *            operations are thread-safe. keys must not be null then.
+	 * @param spillFile
+	 *            disk tier for {@link CacheType#SOFT} and {@link CacheType#WEAK}
+	 *            values or null
+	 */
+	public HybridCache(boolean concurrent, SpillFile<K, V> spillFile) {
+		this(concurrent, null, null, null, 0, 0, spillFile);
+	}
+
+	/**
+	 * creates an adaptive cache which tiers its entries automatically
+	 *
+	 * @param concurrent
+	 *            if true, the table is a {@link ConcurrentHashMap} and all
+	 *            operations are thread-safe. keys must not be null then.
+	 * @param strongCapacity
+	 *            maximum number of {@link CacheType#STRONG} entries
+	 * @param softCapacity
+	 *            maximum number of {@link CacheType#SOFT} entries
+	 * @throws IllegalArgumentException
+	 *             if any capacity is negative
+	 */
+	public HybridCache(boolean concurrent, int strongCapacity, int softCapacity) {
+		this(concurrent, strongCapacity, softCapacity, null);
+	}
+
+	/**
+	 * creates an adaptive cache which tiers its entries automatically
+	 *
+	 * @param concurrent
+	 *            if true, the table is a {@link ConcurrentHashMap} and all
+	 *            operations are thread-safe. keys must not be null then.
+	 * @param strongCapacity
+	 *            maximum number of {@link CacheType#STRONG} entries
+	 * @param softCapacity
+	 *            maximum number of {@link CacheType#SOFT} entries
+	 * @param spillFile
+	 *            disk tier for {@link CacheType#SOFT} and {@link CacheType#WEAK}
+	 *            values or null
+	 * @throws IllegalArgumentException
+	 *             if any capacity is negative
+	 */
+	public HybridCache(boolean concurrent, int strongCapacity, int softCapacity, SpillFile<K, V> spillFile) {
+		this(concurrent, new ReentrantLock(), new TierList<>(), new TierList<>(), strongCapacity, softCapacity,
+				spillFile);
+	}
+
+	/**
+	 * @param concurrent
+	 * @param tierLock
+	 *            null if this cache is not adaptive
+	 * @param strongList
+	 *            null if this cache is not adaptive
+	 * @param softList
+	 *            null if this cache is not adaptive
+	 * @param strongCapacity
+	 * @param softCapacity
+	 * @param spillFile
+	 * @throws IllegalArgumentException
+	 *             if any capacity is negative
+	 */
+	private HybridCache(boolean concurrent, ReentrantLock tierLock, TierList<K> strongList, TierList<K> softList,
+			int strongCapacity, int softCapacity, SpillFile<K, V> spillFile) {
+		Assurance.assureNotNegative(strongCapacity);
+		Assurance.assureNotNegative(softCapacity);
+		entryMap = concurrent ? new ConcurrentHashMap<>() : new HashMap<>();
+		referenceQueue = new ReferenceQueue<>();
+		tierSizes = new AtomicIntegerArray(CACHE_TYPES.length);
+		this.tierLock = tierLock;
+		this.strongList = strongList;
+		this.softList = softList;
+		this.strongCapacity = strongCapacity;
+		this.softCapacity = softCapacity;
+		this.spillFile = spillFile;
+		statsRecorder = StatsRecorder.disabled();
+		removalDispatcher = RemovalDispatcher.disabled();
+		keyFilter = KeyFilter.disabled();
+		keySet = new LiveSet<>(entryMap.values(), concurrent, (entry, action) -> {
+			if (isAlive(entry.slot))
+				action.accept(entry.key);
+		}, this::size, this::isVisible);
+		valueCollection = new LiveCollection<>(entryMap.values(), concurrent, HybridCache::mapValue, this::size);
+	}
+
+	/**
+	 * @param slot
+	 * @return {@link CacheType} of the slot
+	 */
+	private static CacheType typeOf(Object slot) {
+		if (slot instanceof SoftEntryReference)
+			return CacheType.SOFT;
+		if (slot instanceof WeakEntryReference)
+			return CacheType.WEAK;
+		return CacheType.STRONG;
+	}
+
+	/**
+	 * @param slot
+	 * @return true if the value of the slot has not been collected
+	 */
+	private static boolean isAlive(Object slot) {
+		return !(slot instanceof KeyedReference) || ((Reference<?>) slot).get() != null;
+	}
+
+	/**
+	 * passes the value of the entry to the action unless it has been collected
+	 *
+	 * @param entry
+	 * @param action
+	 */
+	private static <K, V> void mapValue(HybridEntry<K> entry, Consumer<? super V> action) {
+		Object slot = entry.slot;
+		V value = valueOf(slot);
+		if (value != null || !(slot instanceof KeyedReference))
+			action.accept(value);
+	}
+
+	/**
+	 * @param key
+	 * @return true if the key is mapped to an entry in memory whose value has not
+	 *         been collected
+	 */
+	private boolean isVisible(Object key) {
+		if (!keyFilter.mightContain(key))
+			return false;
+		HybridEntry<K> entry = entryMap.get(key);
+		return entry != null && isAlive(entry.slot);
+	}
+
+	/**
+	 * @param slot
+	 * @return the value of the slot or null if it has been collected
+	 */
+	@SuppressWarnings("unchecked")
+	private static <V> V valueOf(Object slot) {
+		if (slot instanceof KeyedReference)
+			return ((Reference<V>) slot).get();
+		return (V) slot;
 	}
 
 	/**
+	 * @param key
+	 * @param value
 	 * @param cacheType
-	 * @return appropriate {@link Cache} instance
+	 * @return new slot which holds the value as specified by cacheType
 	 * @throws IllegalArgumentException
 	 *             if the cacheType is not supported.
 	 */
-	private Cache<K, V> getCache(CacheType cacheType) {
+	private Object createSlot(K key, V value, CacheType cacheType) {
 		switch (cacheType) {
 		case SOFT:
-			return softCache;
+			return new SoftEntryReference<>(key, value, referenceQueue);
 		case STRONG:
-			return strongCache;
+			return value;
 		case WEAK:
-			return weakCache;
+			return new WeakEntryReference<>(key, value, referenceQueue);
 		default:
 			throw new IllegalArgumentException("cacheType " + cacheType + " is not supported.");
 		}
 	}
 
 	/**
-	 * Caches the key/value pair in the {@link Cache} specified by cacheType.
-	 * Removes the key/value pair if it is already cached in another {@link Cache}.
-	 * 
+	 * @param entry
+	 * @return true if the value of the entry has been written to the
+	 *         {@link SpillFile} and its record has not been dropped since, e.g.
+	 *         because the segment of the record has been reused
+	 */
+	private boolean isSpilled(HybridEntry<K> entry) {
+		return entry.isSpilled && spillFile.contains(entry.key);
+	}
+
+	/**
+	 * writes the value of the entry to the {@link SpillFile} unless it is already
+	 * there
+	 *
+	 * @param entry
+	 * @param value
+	 */
+	private void spill(HybridEntry<K> entry, V value) {
+		if (spillFile != null && !isSpilled(entry))
+			entry.isSpilled = spillFile.write(entry.key, value);
+	}
+
+	/**
+	 * spills the value of a new entry if it is not {@link CacheType#STRONG} or
+	 * drops the outdated record of its key otherwise
+	 *
+	 * @param entry
+	 * @param value
+	 * @param cacheType
+	 */
+	private void prepareSpill(HybridEntry<K> entry, V value, CacheType cacheType) {
+		if (spillFile == null)
+			return;
+		if (cacheType == CacheType.STRONG)
+			spillFile.remove(entry.key);
+		else
+			spill(entry, value);
+	}
+
+	/**
+	 * reads the value of the key from the {@link SpillFile} and caches it as
+	 * {@link CacheType#SOFT} again unless the key has been cached concurrently
+	 *
+	 * @param key
+	 * @param collected
+	 *            entry of the key whose value has been collected or null
+	 * @return the value or null if the {@link SpillFile} has no record of the key
+	 */
+	private V restore(K key, HybridEntry<K> collected) {
+		V value = spillFile.read(key);
+		if (value == null)
+			return null;
+		HybridEntry<K> entry = new HybridEntry<>(key, createSlot(key, value, CacheType.SOFT));
+		entry.isSpilled = true;
+		tierSizes.incrementAndGet(CacheType.SOFT.ordinal());
+		boolean isRestored;
+		if (collected == null)
+			isRestored = entryMap.putIfAbsent(key, entry) == null;
+		else {
+			synchronized (collected) {
+				isRestored = !collected.isRemoved && entryMap.replace(key, collected, entry);
+				if (isRestored)
+					detach(collected);
+			}
+		}
+		if (!isRestored) {
+			tierSizes.decrementAndGet(CacheType.SOFT.ordinal());
+			return value;
+		}
+		if (tierLock != null) {
+			tierLock.lock();
+			try {
+				link(entry, collected);
+			} finally {
+				tierLock.unlock();
+			}
+		}
+		return value;
+	}
+
+	/**
+	 * polls at most maximum collected {@link Reference}s and purges their entries.
+	 * purged entries are recorded as collections.
+	 *
+	 * @param maximum
+	 * @return number of purged entries
+	 */
+	@SuppressWarnings("unchecked")
+	private int drainReferenceQueue(int maximum) {
+		Reference<? extends V> reference;
+		HybridEntry<K> entry;
+		CountingBloomFilter filter;
+		int polled = 0;
+		int drained = 0;
+		while (polled < maximum && (reference = referenceQueue.poll()) != null) {
+			polled++;
+			K key = ((KeyedReference<K>) reference).getKey();
+			if ((entry = entryMap.get(key)) == null)
+				continue;
+			filter = keyFilter.beforeRemove();
+			synchronized (entry) {
+				if (entry.slot != reference || !entryMap.remove(key, entry))
+					continue;
+				detach(entry);
+				drained++;
+			}
+			if (!isSpilled(entry)) {
+				keyFilter.afterRemove(filter, key);
+				removalDispatcher.dispatch(key, null, RemovalCause.COLLECTED);
+			}
+			if (tierLock != null) {
+				tierLock.lock();
+				try {
+					reconcile(entry);
+				} finally {
+					tierLock.unlock();
+				}
+			}
+		}
+		if (drained > 0)
+			statsRecorder.recordCollections(drained);
+		return drained;
+	}
+
+	/**
+	 * passes the removal of an entry to the {@link RemovalListener}. the removal
+	 * is reported as {@link RemovalCause#COLLECTED} if the value has been
+	 * collected and has not been spilled.
+	 *
+	 * @param entry
+	 * @param slot
+	 *            slot of the entry at the time of its removal
+	 * @param cause
+	 */
+	private void notifyRemoval(HybridEntry<K> entry, Object slot, RemovalCause cause) {
+		if (!removalDispatcher.isEnabled())
+			return;
+		V value = valueOf(slot);
+		if (value == null && slot instanceof KeyedReference && !entry.isSpilled)
+			cause = RemovalCause.COLLECTED;
+		removalDispatcher.dispatch(entry.key, value, cause);
+	}
+
+	/**
+	 * marks the entry as removed from the table and updates the size of its
+	 * {@link CacheType}. the caller must hold the monitor of the entry.
+	 *
+	 * @param entry
+	 */
+	private void detach(HybridEntry<?> entry) {
+		entry.isRemoved = true;
+		tierSizes.decrementAndGet(typeOf(entry.slot).ordinal());
+	}
+
+	/**
+	 * changes the {@link CacheType} of the entry
+	 *
+	 * @param entry
+	 * @param cacheType
+	 * @return false if the entry has been removed or its value has been collected
+	 */
+	private boolean changeCacheType(HybridEntry<K> entry, CacheType cacheType) {
+		synchronized (entry) {
+			if (entry.isRemoved)
+				return false;
+			Object slot = entry.slot;
+			CacheType previousType = typeOf(slot);
+			V value = valueOf(slot);
+			if (value == null && previousType != CacheType.STRONG)
+				return false;
+			if (previousType != cacheType) {
+				entry.slot = createSlot(entry.key, value, cacheType);
+				tierSizes.incrementAndGet(cacheType.ordinal());
+				tierSizes.decrementAndGet(previousType.ordinal());
+				if (cacheType != CacheType.STRONG)
+					spill(entry, value);
+			}
+			return true;
+		}
+	}
+
+	/**
+	 * @param cacheType
+	 * @return {@link TierList} of the cacheType or null if entries of the
+	 *         cacheType are not tracked
+	 */
+	private TierList<K> tierListOf(CacheType cacheType) {
+		switch (cacheType) {
+		case STRONG:
+			return strongList;
+		case SOFT:
+			return softList;
+		default:
+			return null;
+		}
+	}
+
+	/**
+	 * moves the entry into the {@link TierList} of its current {@link CacheType}
+	 * or unlinks it if it has been removed. the caller must hold the tier lock.
+	 *
+	 * @param entry
+	 */
+	private void reconcile(HybridEntry<K> entry) {
+		TierList<K> tierList = entry.isRemoved ? null : tierListOf(typeOf(entry.slot));
+		if (entry.tierList == tierList)
+			return;
+		if (entry.tierList != null)
+			entry.tierList.unlink(entry);
+		if (tierList != null)
+			tierList.linkLast(entry);
+	}
+
+	/**
+	 * records a read of the entry, promotes it if it is read frequently, and
+	 * demotes entries of full tiers. the caller must hold the tier lock.
+	 *
+	 * @param entry
+	 */
+	private void recordAccess(HybridEntry<K> entry) {
+		reconcile(entry);
+		if (entry.isRemoved)
+			return;
+		if (entry.frequency < MAXIMUM_FREQUENCY)
+			entry.frequency++;
+		if (entry.tierList != null)
+			entry.tierList.moveToLast(entry);
+		if (entry.tierList != strongList && entry.frequency >= PROMOTION_FREQUENCY
+				&& (strongList.size < strongCapacity || strongList.first != null
+						&& entry.frequency > strongList.first.frequency)) {
+			changeCacheType(entry, CacheType.STRONG);
+			reconcile(entry);
+		}
+		enforceCapacities();
+	}
+
+	/**
+	 * demotes the least recently used entries of all tiers which exceed their
+	 * capacity. the caller must hold the tier lock.
+	 */
+	private void enforceCapacities() {
+		HybridEntry<K> entry;
+		while (strongList.size > strongCapacity) {
+			entry = strongList.first;
+			entry.frequency >>>= 1;
+			changeCacheType(entry, CacheType.SOFT);
+			reconcile(entry);
+		}
+		while (softList.size > softCapacity) {
+			entry = softList.first;
+			entry.frequency >>>= 1;
+			if (!changeCacheType(entry, CacheType.WEAK) && !entry.isRemoved)
+				softList.unlink(entry);
+			else
+				reconcile(entry);
+		}
+	}
+
+	/**
+	 * @return the disk tier of this cache or null if values are not spilled
+	 */
+	public SpillFile<K, V> getSpillFile() {
+		return spillFile;
+	}
+
+	/**
+	 * @return true if this cache tiers its entries adaptively
+	 */
+	public boolean isAdaptive() {
+		return tierLock != null;
+	}
+
+	/**
+	 * @param cacheType
+	 *            {@link CacheType#STRONG} or {@link CacheType#SOFT}
+	 * @return maximum number of entries of the cacheType in adaptive mode
+	 * @throws IllegalStateException
+	 *             if this cache is not adaptive
+	 * @throws IllegalArgumentException
+	 *             if the cacheType has no capacity
+	 */
+	public int getCapacity(CacheType cacheType) {
+		if (tierLock == null)
+			throw new IllegalStateException("cache is not adaptive");
+		switch (cacheType) {
+		case STRONG:
+			return strongCapacity;
+		case SOFT:
+			return softCapacity;
+		default:
+			throw new IllegalArgumentException("cacheType " + cacheType + " has no capacity.");
+		}
+	}
+
+	/**
+	 * sets the maximum number of entries of the cacheType in adaptive mode and
+	 * demotes entries if necessary
+	 *
+	 * @param cacheType
+	 *            {@link CacheType#STRONG} or {@link CacheType#SOFT}
+	 * @param capacity
+	 * @throws IllegalStateException
+	 *             if this cache is not adaptive
+	 * @throws IllegalArgumentException
+	 *             if the cacheType has no capacity or capacity is negative
+	 */
+	public void setCapacity(CacheType cacheType, int capacity) {
+		if (tierLock == null)
+			throw new IllegalStateException("cache is not adaptive");
+		Assurance.assureNotNegative(capacity);
+		tierLock.lock();
+		try {
+			switch (cacheType) {
+			case STRONG:
+				strongCapacity = capacity;
+				break;
+			case SOFT:
+				softCapacity = capacity;
+				break;
+			default:
+				throw new IllegalArgumentException("cacheType " + cacheType + " has no capacity.");
+			}
+			enforceCapacities();
+		} finally {
+			tierLock.unlock();
+		}
+	}
+
+	/**
+	 * Caches the key/value pair as specified by cacheType. Replaces the key/value
+	 * pair if the key is already cached.
+	 *
 	 * @param key
 	 * @param value
 	 * @param cacheType
@@ -61,41 +767,157 @@ public class HybridCache<K, V> implements Cache<K, V> {
 	 *             if the cacheType is not supported.
 	 */
 	public void cache(K key, V value, CacheType cacheType) {
-		if (contains(key))
-			remove(key);
-		getCache(cacheType).cache(key, value);
+		drainReferenceQueue(DRAIN_THRESHOLD);
+		HybridEntry<K> entry = new HybridEntry<>(key, createSlot(key, value, cacheType));
+		prepareSpill(entry, value, cacheType);
+		HybridEntry<K> previous = put(entry, cacheType);
+		if (tierLock != null) {
+			tierLock.lock();
+			try {
+				link(entry, previous);
+			} finally {
+				tierLock.unlock();
+			}
+		}
 	}
 
 	/**
-	 * Utility-method. Moves a key/value pair from its current {@link Cache} to
-	 * another {@link Cache} given by cacheType. Same as if calling
-	 * {@link #cache(Object, Object, CacheType) cache(key, get(key), cacheType)}
-	 * directly.
-	 * 
-	 * @param key
+	 * caches all key/value pairs as specified by cacheType. replaces key/value
+	 * pairs whose keys are already cached. in adaptive mode the tier lock is
+	 * acquired only once for all pairs.
+	 *
+	 * @param map
 	 * @param cacheType
 	 * @throws IllegalArgumentException
 	 *             if the cacheType is not supported.
 	 */
-	public void move(K key, CacheType cacheType) {
-		cache(key, get(key), cacheType);
+	@SuppressWarnings("unchecked")
+	public void cacheAll(Map<? extends K, ? extends V> map, CacheType cacheType) {
+		drainReferenceQueue(DRAIN_THRESHOLD);
+		HybridEntry<K>[] entries = (HybridEntry<K>[]) new HybridEntry<?>[map.size()];
+		HybridEntry<K>[] previousEntries = (HybridEntry<K>[]) new HybridEntry<?>[entries.length];
+		int i = 0;
+		for (Map.Entry<? extends K, ? extends V> mapEntry : map.entrySet()) {
+			entries[i] = new HybridEntry<>(mapEntry.getKey(),
+					createSlot(mapEntry.getKey(), mapEntry.getValue(), cacheType));
+			prepareSpill(entries[i], mapEntry.getValue(), cacheType);
+			previousEntries[i] = put(entries[i], cacheType);
+			i++;
+		}
+		if (tierLock != null) {
+			tierLock.lock();
+			try {
+				for (i = 0; i < entries.length; i++)
+					link(entries[i], previousEntries[i]);
+			} finally {
+				tierLock.unlock();
+			}
+		}
 	}
 
 	/**
-	 * 
+	 * puts the new entry into the table and detaches the entry it replaces
+	 *
+	 * @param entry
+	 * @param cacheType
+	 *            {@link CacheType} of the entry
+	 * @return the replaced entry or null
+	 */
+	private HybridEntry<K> put(HybridEntry<K> entry, CacheType cacheType) {
+		tierSizes.incrementAndGet(cacheType.ordinal());
+		CountingBloomFilter filter = keyFilter.beforePut(entry.key);
+		HybridEntry<K> previous = entryMap.put(entry.key, entry);
+		keyFilter.afterPut(filter, entry.key, previous == null);
+		if (previous != null) {
+			Object slot;
+			synchronized (previous) {
+				slot = previous.slot;
+				detach(previous);
+			}
+			notifyRemoval(previous, slot, RemovalCause.REPLACED);
+		}
+		return previous;
+	}
+
+	/**
+	 * links a new entry into its {@link TierList} and unlinks the entry it has
+	 * replaced. the caller must hold the tier lock.
+	 *
+	 * @param entry
+	 * @param previous
+	 *            replaced entry or null
+	 */
+	private void link(HybridEntry<K> entry, HybridEntry<K> previous) {
+		if (previous != null) {
+			reconcile(previous);
+			entry.frequency = previous.frequency;
+		}
+		recordAccess(entry);
+	}
+
+	/**
+	 * Changes the {@link CacheType} of a key/value pair in place. Same as if
+	 * calling {@link #cache(Object, Object, CacheType) cache(key, get(key),
+	 * cacheType)} directly.
+	 *
+	 * @param key
 	 * @param cacheType
-	 * @return size of the corresponding {@link Cache}.
 	 * @throws IllegalArgumentException
 	 *             if the cacheType is not supported.
+	 * @throws NoSuchElementException
+	 *             if the key is not mapped
+	 */
+	public void move(K key, CacheType cacheType) {
+		drainReferenceQueue(DRAIN_THRESHOLD);
+		HybridEntry<K> entry;
+		while ((entry = entryMap.get(key)) != null) {
+			if (changeCacheType(entry, cacheType)) {
+				if (tierLock != null) {
+					tierLock.lock();
+					try {
+						reconcile(entry);
+						enforceCapacities();
+					} finally {
+						tierLock.unlock();
+					}
+				}
+				return;
+			}
+			if (!entry.isRemoved)
+				break;
+		}
+		throw new NoSuchElementException("No mapping for key " + key);
+	}
+
+	/**
+	 *
+	 * @param key
+	 * @return {@link CacheType} of the key
+	 * @throws NoSuchElementException
+	 *             if the key is not mapped
+	 */
+	public CacheType getCacheType(K key) {
+		HybridEntry<K> entry = entryMap.get(key);
+		Object slot;
+		if (entry == null || !isAlive(slot = entry.slot))
+			throw new NoSuchElementException("No mapping for key " + key);
+		return typeOf(slot);
+	}
+
+	/**
+	 *
+	 * @param cacheType
+	 * @return number of entries of the {@link CacheType}
 	 */
 	public int size(CacheType cacheType) {
-		return getCache(cacheType).size();
+		drainReferenceQueue(Integer.MAX_VALUE);
+		return tierSizes.get(cacheType.ordinal());
 	}
 
 	/**
 	 * implements {@link Cache#cache(Object, Object)} but uses
 	 * {@link #cache(Object, Object, CacheType)} with the default {@link CacheType}.
-	 * 
+	 *
 	 * @see Cache#cache(Object, Object)
 	 */
 	@Override
@@ -103,70 +925,523 @@ public class HybridCache<K, V> implements Cache<K, V> {
 		cache(key, value, CacheType.SOFT);
 	}
 
+	@SuppressWarnings("unchecked")
 	@Override
 	public V get(K key) {
-		if (strongCache.contains(key))
-			return strongCache.get(key);
-		else if (softCache.contains(key))
-			return softCache.get(key);
-		return weakCache.get(key);
+		Object value = find(key);
+		if (value == ABSENT)
+			throw new NoSuchElementException("No mapping for key " + key);
+		return (V) value;
+	}
+
+	@SuppressWarnings("unchecked")
+	@Override
+	public V getIfPresent(K key) {
+		Object value = find(key);
+		return value == ABSENT ? null : (V) value;
+	}
+
+	/**
+	 * returns the value even if it is null as long as the key is mapped
+	 */
+	@SuppressWarnings("unchecked")
+	@Override
+	public V getOrDefault(K key, V defaultValue) {
+		Object value = find(key);
+		return value == ABSENT ? defaultValue : (V) value;
+	}
+
+	/**
+	 * looks the key up in memory and in the {@link SpillFile}. records the read
+	 * in adaptive mode and a hit or a miss.
+	 *
+	 * @param key
+	 * @return the value given by the key, which may be null, or {@link #ABSENT}
+	 *         if the key is not mapped
+	 */
+	private Object find(K key) {
+		if (!keyFilter.mightContain(key)) {
+			statsRecorder.recordMisses(1);
+			return ABSENT;
+		}
+		drainReferenceQueue(DRAIN_THRESHOLD);
+		HybridEntry<K> entry = entryMap.get(key);
+		if (entry != null) {
+			Object slot = entry.slot;
+			V value = valueOf(slot);
+			if (value != null || !(slot instanceof KeyedReference)) {
+				if (tierLock != null && tierLock.tryLock()) {
+					try {
+						recordAccess(entry);
+					} finally {
+						tierLock.unlock();
+					}
+				}
+				statsRecorder.recordHits(1);
+				return value;
+			}
+		}
+		if (spillFile != null) {
+			V value = restore(key, entry);
+			if (value != null) {
+				statsRecorder.recordHits(1);
+				return value;
+			}
+		}
+		statsRecorder.recordMisses(1);
+		return ABSENT;
+	}
+
+	/**
+	 * a key whose value has been collected and has not been spilled counts as
+	 * not mapped. see {@link #compute(Object, BiFunction)}.
+	 */
+	@Override
+	public V putIfAbsent(K key, V value) {
+		Object[] previousHolder = new Object[1];
+		compute(key, (k, previous) -> {
+			previousHolder[0] = previous;
+			return previous != null ? previous : value;
+		});
+		@SuppressWarnings("unchecked")
+		V previous = (V) previousHolder[0];
+		return previous;
+	}
+
+	/**
+	 * atomic if this cache is concurrent, but the table is not locked while the
+	 * function runs: the function is applied again if the key has been changed
+	 * concurrently in the meantime. spilled values are restored before they are
+	 * passed to the function. a new value keeps the {@link CacheType} of the value
+	 * it replaces or is cached as {@link CacheType#SOFT}. a key whose value has
+	 * been collected and has not been spilled counts as not mapped.
+	 */
+	@Override
+	public V compute(K key, @NotNull BiFunction<? super K, ? super V, ? extends V> remappingFunction) {
+		Assurance.assureNotNull(remappingFunction);
+		drainReferenceQueue(DRAIN_THRESHOLD);
+		HybridEntry<K> entry;
+		Object slot;
+		V value;
+		V newValue;
+		while (true) {
+			entry = entryMap.get(key);
+			slot = entry == null ? null : entry.slot;
+			if ((entry == null || !isAlive(slot)) && spillFile != null && restore(key, entry) != null)
+				continue;
+			value = valueOf(slot);
+			newValue = remappingFunction.apply(key, value);
+			if (entry == null || !isAlive(slot)) {
+				if (newValue == null)
+					return null;
+			} else if (newValue == value)
+				return value;
+			if (newValue == null ? removeEntry(entry, value) : replaceEntry(key, entry, value, newValue))
+				return newValue;
+		}
+	}
+
+	/**
+	 * removes the entry and the record of its key in the {@link SpillFile} unless
+	 * the entry has been changed since its value has been read
+	 *
+	 * @param entry
+	 * @param value
+	 *            value of the entry as read before
+	 * @return false if the entry has been changed
+	 */
+	private boolean removeEntry(HybridEntry<K> entry, V value) {
+		CountingBloomFilter filter = keyFilter.beforeRemove();
+		Object slot;
+		synchronized (entry) {
+			slot = entry.slot;
+			if (entry.isRemoved || valueOf(slot) != value || !entryMap.remove(entry.key, entry))
+				return false;
+			detach(entry);
+			// the record is only dropped once the entry is gone, a failed removal keeps it
+			if (spillFile != null)
+				spillFile.remove(entry.key);
+		}
+		keyFilter.afterRemove(filter, entry.key);
+		notifyRemoval(entry, slot, RemovalCause.EXPLICIT);
+		if (tierLock != null) {
+			tierLock.lock();
+			try {
+				reconcile(entry);
+			} finally {
+				tierLock.unlock();
+			}
+		}
+		return true;
+	}
+
+	/**
+	 * maps the key to a new entry of the value unless the previous entry has been
+	 * changed since its value has been read or the key has been mapped
+	 * concurrently
+	 *
+	 * @param key
+	 * @param previous
+	 *            entry which is replaced or null if the key is not mapped
+	 * @param previousValue
+	 *            value of the previous entry as read before
+	 * @param value
+	 * @return false if the previous entry has been changed
+	 */
+	private boolean replaceEntry(K key, HybridEntry<K> previous, V previousValue, V value) {
+		CacheType cacheType = previous == null ? CacheType.SOFT : typeOf(previous.slot);
+		HybridEntry<K> entry = new HybridEntry<>(key, createSlot(key, value, cacheType));
+		prepareSpill(entry, value, cacheType);
+		tierSizes.incrementAndGet(cacheType.ordinal());
+		CountingBloomFilter filter = keyFilter.beforePut(key);
+		Object slot = null;
+		boolean isReplaced;
+		if (previous == null)
+			isReplaced = entryMap.putIfAbsent(key, entry) == null;
+		else {
+			synchronized (previous) {
+				slot = previous.slot;
+				isReplaced = !previous.isRemoved && valueOf(slot) == previousValue
+						&& entryMap.replace(key, previous, entry);
+				if (isReplaced)
+					detach(previous);
+			}
+		}
+		keyFilter.afterPut(filter, key, isReplaced && previous == null);
+		if (!isReplaced) {
+			tierSizes.decrementAndGet(cacheType.ordinal());
+			return false;
+		}
+		if (previous != null)
+			notifyRemoval(previous, slot, RemovalCause.REPLACED);
+		if (tierLock != null) {
+			tierLock.lock();
+			try {
+				link(entry, previous);
+			} finally {
+				tierLock.unlock();
+			}
+		}
+		return true;
+	}
+
+	/**
+	 * looks up every key only once. in adaptive mode the reads are recorded
+	 * under a single acquisition of the tier lock.
+	 */
+	@Override
+	public Map<K, V> getAll(Collection<? extends K> keys) {
+		drainReferenceQueue(DRAIN_THRESHOLD);
+		HashMap<K, V> valueMap = new HashMap<>();
+		ArrayList<HybridEntry<K>> readList = tierLock != null ? new ArrayList<>(keys.size()) : null;
+		HybridEntry<K> entry;
+		Object slot;
+		V value;
+		int hits = 0;
+		for (K key : keys) {
+			if (!keyFilter.mightContain(key))
+				continue;
+			if ((entry = entryMap.get(key)) != null) {
+				slot = entry.slot;
+				value = valueOf(slot);
+				if (value != null || !(slot instanceof KeyedReference)) {
+					valueMap.put(key, value);
+					hits++;
+					if (readList != null)
+						readList.add(entry);
+					continue;
+				}
+			}
+			if (spillFile != null && (value = restore(key, entry)) != null) {
+				valueMap.put(key, value);
+				hits++;
+			}
+		}
+		if (readList != null && !readList.isEmpty() && tierLock.tryLock()) {
+			try {
+				for (HybridEntry<K> readEntry : readList)
+					recordAccess(readEntry);
+			} finally {
+				tierLock.unlock();
+			}
+		}
+		statsRecorder.recordHits(hits);
+		statsRecorder.recordMisses(keys.size() - hits);
+		return Collections.unmodifiableMap(valueMap);
+	}
+
+	/**
+	 * implements {@link Cache#cacheAll(Map)} but uses
+	 * {@link #cacheAll(Map, CacheType)} with the default {@link CacheType}.
+	 *
+	 * @see Cache#cacheAll(Map)
+	 */
+	@Override
+	public void cacheAll(Map<? extends K, ? extends V> map) {
+		cacheAll(map, CacheType.SOFT);
+	}
+
+	/**
+	 * in adaptive mode the tier lock is acquired only once for all keys
+	 */
+	@Override
+	public void removeAll(Collection<? extends K> keys) {
+		drainReferenceQueue(DRAIN_THRESHOLD);
+		ArrayList<HybridEntry<K>> removedList = new ArrayList<>(keys.size());
+		HybridEntry<K> entry;
+		Object slot;
+		CountingBloomFilter filter;
+		for (K key : keys) {
+			filter = keyFilter.beforeRemove();
+			if ((entry = entryMap.remove(key)) == null) {
+				if (spillFile != null && spillFile.remove(key)) {
+					keyFilter.afterRemove(filter, key);
+					removalDispatcher.dispatch(key, null, RemovalCause.EXPLICIT);
+				}
+				continue;
+			}
+			keyFilter.afterRemove(filter, key);
+			synchronized (entry) {
+				slot = entry.slot;
+				detach(entry);
+				if (spillFile != null)
+					spillFile.remove(key);
+			}
+			notifyRemoval(entry, slot, RemovalCause.EXPLICIT);
+			removedList.add(entry);
+		}
+		if (tierLock != null && !removedList.isEmpty()) {
+			tierLock.lock();
+			try {
+				for (HybridEntry<K> removedEntry : removedList)
+					reconcile(removedEntry);
+			} finally {
+				tierLock.unlock();
+			}
+		}
 	}
 
 	@Override
 	public boolean contains(K key) {
-		return strongCache.contains(key) || softCache.contains(key) || weakCache.contains(key);
+		if (!keyFilter.mightContain(key))
+			return false;
+		drainReferenceQueue(DRAIN_THRESHOLD);
+		HybridEntry<K> entry = entryMap.get(key);
+		return entry != null && isAlive(entry.slot) || spillFile != null && spillFile.contains(key);
 	}
 
 	@Override
 	public void remove(K key) {
-		if (strongCache.contains(key))
-			strongCache.remove(key);
-		else if (softCache.contains(key))
-			softCache.remove(key);
-		else
-			weakCache.remove(key);
+		drainReferenceQueue(DRAIN_THRESHOLD);
+		CountingBloomFilter filter = keyFilter.beforeRemove();
+		HybridEntry<K> entry = entryMap.remove(key);
+		if (entry == null) {
+			if (spillFile == null || !spillFile.remove(key))
+				throw new NoSuchElementException("No mapping for key " + key);
+			keyFilter.afterRemove(filter, key);
+			removalDispatcher.dispatch(key, null, RemovalCause.EXPLICIT);
+			return;
+		}
+		keyFilter.afterRemove(filter, key);
+		Object slot;
+		boolean isSpilled;
+		synchronized (entry) {
+			slot = entry.slot;
+			detach(entry);
+			// a detached entry is not spilled anymore, so no new record outlives it
+			isSpilled = spillFile != null && spillFile.remove(key);
+		}
+		notifyRemoval(entry, slot, RemovalCause.EXPLICIT);
+		if (tierLock != null) {
+			tierLock.lock();
+			try {
+				reconcile(entry);
+			} finally {
+				tierLock.unlock();
+			}
+		}
+		if (!isAlive(slot) && !isSpilled)
+			throw new NoSuchElementException("No mapping for key " + key);
 	}
 
+	/**
+	 * purges all collected entries which have been enqueued so far
+	 */
 	@Override
 	public int size() {
-		return strongCache.size() + softCache.size() + weakCache.size();
+		drainReferenceQueue(Integer.MAX_VALUE);
+		return entryMap.size();
 	}
 
 	@Override
 	public String toString() {
-		return "HybridCache [strongCache=" + strongCache + ", softCache=" + softCache + ", weakCache=" + weakCache
-				+ ", size()=" + size() + "]";
+		return "HybridCache [strongSize=" + size(CacheType.STRONG) + ", softSize=" + size(CacheType.SOFT)
+				+ ", weakSize=" + size(CacheType.WEAK) + ", size()=" + size() + "]";
 	}
 
 	@Override
 	public void clear() {
-		strongCache.clear();
-		softCache.clear();
-		weakCache.clear();
+		if (tierLock != null)
+			tierLock.lock();
+		try {
+			HybridEntry<K> entry;
+			Object slot;
+			for (K key : new ArrayList<>(entryMap.keySet())) {
+				if ((entry = entryMap.remove(key)) == null)
+					continue;
+				synchronized (entry) {
+					slot = entry.slot;
+					detach(entry);
+				}
+				notifyRemoval(entry, slot, RemovalCause.EXPLICIT);
+				if (entry.tierList != null)
+					entry.tierList.unlink(entry);
+			}
+		} finally {
+			if (tierLock != null)
+				tierLock.unlock();
+		}
+		while (referenceQueue.poll() != null)
+			;
+		if (spillFile != null)
+			spillFile.clear();
+		keyFilter.rebuild(this::forEachKey);
 	}
 
+	/**
+	 * purges all collected entries which have been enqueued so far and rebuilds
+	 * the bloom filter if there is one
+	 */
 	@Override
 	public void clean() {
-		softCache.clean();
-		weakCache.clean();
+		drainReferenceQueue(Integer.MAX_VALUE);
+		keyFilter.rebuild(this::forEachKey);
 	}
 
+	/**
+	 * purges at most maximum collected entries
+	 */
+	@Override
+	public int clean(int maximum) {
+		return drainReferenceQueue(maximum);
+	}
+
+	/**
+	 * @param action
+	 *            performed for every key of the table and of the
+	 *            {@link SpillFile}
+	 */
+	private void forEachKey(Consumer<Object> action) {
+		entryMap.keySet().forEach(action);
+		if (spillFile != null)
+			spillFile.forEachKey(action);
+	}
+
+	/**
+	 * puts a {@link CountingBloomFilter} in front of the table, so
+	 * {@link #contains(Object)} and {@link #get(Object)} of keys which are
+	 * definitely neither in memory nor in the {@link SpillFile} do not probe the
+	 * table. the filter is rebuilt by {@link #clean()} and {@link #clear()}. must
+	 * not be called concurrently with other operations.
+	 *
+	 * @param bloomFilter
+	 *            will be cleared and filled with the keys of this cache. null
+	 *            removes the current filter.
+	 */
+	public void setBloomFilter(CountingBloomFilter bloomFilter) {
+		keyFilter = KeyFilter.create(bloomFilter, this::forEachKey);
+	}
+
+	@Override
+	public void setStatsRecorder(@NotNull StatsRecorder statsRecorder) {
+		Assurance.assureNotNull(statsRecorder);
+		this.statsRecorder = statsRecorder;
+	}
+
+	/**
+	 * removed values which are only stored in the {@link SpillFile} are reported
+	 * as null. records which are dropped by the {@link SpillFile} and records
+	 * which are only stored in it during {@link #clear()} are not reported.
+	 */
+	@Override
+	public void setRemovalListener(RemovalListener<? super K, ? super V> removalListener, Executor executor) {
+		removalDispatcher = RemovalDispatcher.create(removalListener, executor);
+	}
+
+	@Override
+	public StatsRecorder getStatsRecorder() {
+		return statsRecorder;
+	}
+
+	/**
+	 * purges all collected entries which have been enqueued so far
+	 */
+	@Override
+	public CacheStats getStats() {
+		drainReferenceQueue(Integer.MAX_VALUE);
+		EnumMap<CacheType, Integer> tierSizeMap = new EnumMap<>(CacheType.class);
+		for (CacheType cacheType : CACHE_TYPES)
+			tierSizeMap.put(cacheType, tierSizes.get(cacheType.ordinal()));
+		return statsRecorder.snapshot().withTierSizes(tierSizeMap);
+	}
+
+	/**
+	 * the view only covers the entries in memory and skips all entries whose
+	 * values have been collected. its size purges all collected entries which
+	 * have been enqueued so far.
+	 */
 	@Override
 	public Set<K> getKeySet() {
-		Set<K> keySet = new HashSet<>(size());
-		keySet.addAll(strongCache.getKeySet());
-		keySet.addAll(softCache.getKeySet());
-		keySet.addAll(weakCache.getKeySet());
 		return keySet;
 	}
 
+	/**
+	 * the view only covers the entries in memory and skips all entries whose
+	 * values have been collected. its size purges all collected entries which
+	 * have been enqueued so far.
+	 */
 	@Override
 	public Collection<V> getValueCollection() {
-		ArrayList<V> valueList = new ArrayList<>(size());
-		valueList.addAll(strongCache.getValueCollection());
-		valueList.addAll(softCache.getValueCollection());
-		valueList.addAll(weakCache.getValueCollection());
-		return valueList;
+		return valueCollection;
+	}
+
+	/**
+	 * performs the action for every key/value pair in memory whose
+	 * {@link CacheType} is cacheType. skips all entries whose values have been
+	 * collected.
+	 *
+	 * @param cacheType
+	 * @param action
+	 */
+	void forEach(CacheType cacheType, BiConsumer<? super K, ? super V> action) {
+		entryMap.values().forEach(entry -> {
+			Object slot = entry.slot;
+			V value = valueOf(slot);
+			if (typeOf(slot) == cacheType && (value != null || !(slot instanceof KeyedReference)))
+				action.accept(entry.key, value);
+		});
+	}
+
+	/**
+	 * @return true if this cache has been created as concurrent
+	 */
+	@Override
+	public boolean isConcurrent() {
+		return entryMap instanceof ConcurrentHashMap;
+	}
+
+	/**
+	 * only covers the entries in memory and skips all entries whose values have
+	 * been collected. does not count as access for adaptive tiering.
+	 */
+	@Override
+	public void forEach(BiConsumer<? super K, ? super V> action) {
+		entryMap.values().forEach(entry -> {
+			Object slot = entry.slot;
+			V value = valueOf(slot);
+			if (value != null || !(slot instanceof KeyedReference))
+				action.accept(entry.key, value);
+		});
 	}
 
 }
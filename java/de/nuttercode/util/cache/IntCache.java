@@ -0,0 +1,491 @@
+package de.nuttercode.util.cache;
+
+import java.lang.ref.Reference;
+import java.lang.ref.ReferenceQueue;
+import java.lang.ref.SoftReference;
+import java.lang.ref.WeakReference;
+import java.util.Arrays;
+import java.util.EnumMap;
+import java.util.NoSuchElementException;
+
+import de.nuttercode.util.assurance.Assurance;
+import de.nuttercode.util.assurance.NotNull;
+
+/**
+ * A cache which maps int keys to values without boxing the keys. The entries
+ * are stored with open addressing and linear probing in flat arrays, so
+ * lookups never allocate and no node objects are needed per entry. Like in a
+ * {@link HybridCache}, every value is referenced as specified by its
+ * {@link CacheType}. Entries whose values have been collected are purged by
+ * draining a {@link ReferenceQueue} during normal operations. Values must not
+ * be null. This cache is not thread-safe.
+ *
+ * @author Johannes B. Latzel
+ *
+ * @param <V>
+ *            value type
+ */
+public class IntCache<V> {
+
+	/**
+	 * {@link SoftReference} which knows its key
+	 */
+	private static final class IntSoftReference<V> extends SoftReference<V> {
+
+		private final int key;
+
+		private IntSoftReference(int key, V value, ReferenceQueue<? super V> queue) {
+			super(value, queue);
+			this.key = key;
+		}
+
+	}
+
+	/**
+	 * {@link WeakReference} which knows its key
+	 */
+	private static final class IntWeakReference<V> extends WeakReference<V> {
+
+		private final int key;
+
+		private IntWeakReference(int key, V value, ReferenceQueue<? super V> queue) {
+			super(value, queue);
+			this.key = key;
+		}
+
+	}
+
+	/**
+	 * maximum number of collected references which are purged during a single
+	 * read or write operation
+	 */
+	private static final int DRAIN_THRESHOLD = 64;
+
+	private static final int MINIMUM_CAPACITY = 16;
+	private static final int MAXIMUM_CAPACITY = 1 << 30;
+	private static final CacheType[] CACHE_TYPES = CacheType.values();
+
+	private final CacheType defaultCacheType;
+	private final ReferenceQueue<V> referenceQueue;
+
+	/**
+	 * number of entries per {@link CacheType#ordinal()}, including collected
+	 * entries which have not been purged yet
+	 */
+	private final int[] tierSizes;
+
+	private int[] keys;
+
+	/**
+	 * the value if the entry is {@link CacheType#STRONG} or its {@link Reference}
+	 * otherwise
+	 */
+	private Object[] slots;
+
+	/**
+	 * 0 if the slot is empty or {@link CacheType#ordinal()} + 1 of the entry
+	 */
+	private byte[] states;
+
+	private int size;
+	private int resizeThreshold;
+	private StatsRecorder statsRecorder;
+
+	/**
+	 * creates a cache which references its values strongly by default
+	 */
+	public IntCache() {
+		this(CacheType.STRONG, MINIMUM_CAPACITY);
+	}
+
+	/**
+	 * @param defaultCacheType
+	 *            {@link CacheType} used by {@link #cache(int, Object)}
+	 * @param initialCapacity
+	 *            number of entries the cache can hold without resizing
+	 * @throws NullPointerException
+	 *             if defaultCacheType is null
+	 * @throws IllegalArgumentException
+	 *             if initialCapacity is negative
+	 */
+	public IntCache(@NotNull CacheType defaultCacheType, int initialCapacity) {
+		Assurance.assureNotNull(defaultCacheType);
+		Assurance.assureNotNegative(initialCapacity);
+		this.defaultCacheType = defaultCacheType;
+		referenceQueue = new ReferenceQueue<>();
+		tierSizes = new int[CACHE_TYPES.length];
+		statsRecorder = StatsRecorder.disabled();
+		allocate(tableSizeFor(initialCapacity));
+	}
+
+	/**
+	 * @param capacity
+	 * @return smallest power of two table length which holds capacity entries
+	 */
+	private static int tableSizeFor(int capacity) {
+		long length = MINIMUM_CAPACITY;
+		while (length < MAXIMUM_CAPACITY && length * 3 / 4 < capacity)
+			length <<= 1;
+		return (int) length;
+	}
+
+	/**
+	 * @param key
+	 * @return well-distributed hash of the key
+	 */
+	private static int hash(int key) {
+		int hash = key * 0x9E3779B9;
+		return hash ^ (hash >>> 16);
+	}
+
+	private void allocate(int length) {
+		keys = new int[length];
+		slots = new Object[length];
+		states = new byte[length];
+		resizeThreshold = length / 4 * 3;
+	}
+
+	/**
+	 * @param key
+	 * @return index of the key or -1 if the key is not mapped
+	 */
+	private int indexOf(int key) {
+		int mask = keys.length - 1;
+		for (int index = hash(key) & mask; states[index] != 0; index = (index + 1) & mask)
+			if (keys[index] == key)
+				return index;
+		return -1;
+	}
+
+	/**
+	 * @param key
+	 * @return index of the key or of the empty slot the key would be put into
+	 */
+	private int probe(int key) {
+		int mask = keys.length - 1;
+		int index = hash(key) & mask;
+		while (states[index] != 0 && keys[index] != key)
+			index = (index + 1) & mask;
+		return index;
+	}
+
+	/**
+	 * @param index
+	 * @return the value at the index or null if it has been collected
+	 */
+	@SuppressWarnings("unchecked")
+	private V valueOf(int index) {
+		if (states[index] == CacheType.STRONG.ordinal() + 1)
+			return (V) slots[index];
+		return ((Reference<V>) slots[index]).get();
+	}
+
+	/**
+	 * @param key
+	 * @param value
+	 * @param cacheType
+	 * @return the value or a {@link Reference} to it as specified by cacheType
+	 * @throws IllegalArgumentException
+	 *             if the cacheType is not supported.
+	 */
+	private Object createSlot(int key, V value, CacheType cacheType) {
+		switch (cacheType) {
+		case STRONG:
+			return value;
+		case SOFT:
+			return new IntSoftReference<>(key, value, referenceQueue);
+		case WEAK:
+			return new IntWeakReference<>(key, value, referenceQueue);
+		default:
+			throw new IllegalArgumentException("cacheType " + cacheType + " is not supported.");
+		}
+	}
+
+	/**
+	 * removes the entry at the index and shifts all following entries of the
+	 * probe sequence backwards, so no tombstones are needed
+	 *
+	 * @param index
+	 */
+	private void delete(int index) {
+		tierSizes[states[index] - 1]--;
+		size--;
+		// a strong value may itself be a reference which must not be cleared
+		if (states[index] != CacheType.STRONG.ordinal() + 1)
+			((Reference<?>) slots[index]).clear();
+		int mask = keys.length - 1;
+		int gap = index;
+		int home;
+		for (int i = (gap + 1) & mask; states[i] != 0; i = (i + 1) & mask) {
+			home = hash(keys[i]) & mask;
+			if (((i - home) & mask) >= ((i - gap) & mask)) {
+				keys[gap] = keys[i];
+				slots[gap] = slots[i];
+				states[gap] = states[i];
+				gap = i;
+			}
+		}
+		keys[gap] = 0;
+		slots[gap] = null;
+		states[gap] = 0;
+	}
+
+	/**
+	 * doubles the length of the table
+	 */
+	private void resize() {
+		int[] oldKeys = keys;
+		Object[] oldSlots = slots;
+		byte[] oldStates = states;
+		allocate(oldKeys.length << 1);
+		int index;
+		for (int i = 0; i < oldKeys.length; i++) {
+			if (oldStates[i] == 0)
+				continue;
+			index = probe(oldKeys[i]);
+			keys[index] = oldKeys[i];
+			slots[index] = oldSlots[i];
+			states[index] = oldStates[i];
+		}
+	}
+
+	/**
+	 * polls at most maximum collected {@link Reference}s and purges their entries.
+	 * purged entries are recorded as collections.
+	 *
+	 * @param maximum
+	 * @return number of purged entries
+	 */
+	private int drainReferenceQueue(int maximum) {
+		Reference<? extends V> reference;
+		int polled = 0;
+		int drained = 0;
+		int index;
+		int key;
+		while (polled < maximum && (reference = referenceQueue.poll()) != null) {
+			polled++;
+			key = reference instanceof IntSoftReference ? ((IntSoftReference<?>) reference).key
+					: ((IntWeakReference<?>) reference).key;
+			if ((index = indexOf(key)) != -1 && slots[index] == reference) {
+				delete(index);
+				drained++;
+			}
+		}
+		if (drained > 0)
+			statsRecorder.recordCollections(drained);
+		return drained;
+	}
+
+	/**
+	 * @return the {@link CacheType} used by {@link #cache(int, Object)}
+	 */
+	public CacheType getDefaultCacheType() {
+		return defaultCacheType;
+	}
+
+	/**
+	 * caches the value with the default {@link CacheType} of this cache
+	 *
+	 * @param key
+	 * @param value
+	 * @throws NullPointerException
+	 *             if value is null
+	 */
+	public void cache(int key, @NotNull V value) {
+		cache(key, value, defaultCacheType);
+	}
+
+	/**
+	 * caches the key/value pair as specified by cacheType. replaces the key/value
+	 * pair if the key is already cached.
+	 *
+	 * @param key
+	 * @param value
+	 * @param cacheType
+	 * @throws NullPointerException
+	 *             if value or cacheType is null
+	 * @throws IllegalArgumentException
+	 *             if the cacheType is not supported.
+	 * @throws IllegalStateException
+	 *             if the cache holds the maximum number of entries
+	 */
+	public void cache(int key, @NotNull V value, @NotNull CacheType cacheType) {
+		Assurance.assureNotNull(value);
+		Assurance.assureNotNull(cacheType);
+		drainReferenceQueue(DRAIN_THRESHOLD);
+		Object slot = createSlot(key, value, cacheType);
+		int index = probe(key);
+		if (states[index] != 0) {
+			tierSizes[states[index] - 1]--;
+			if (states[index] != CacheType.STRONG.ordinal() + 1)
+				((Reference<?>) slots[index]).clear();
+		} else if (size >= resizeThreshold) {
+			if (keys.length == MAXIMUM_CAPACITY)
+				throw new IllegalStateException("the cache is full");
+			resize();
+			index = probe(key);
+			size++;
+		} else
+			size++;
+		keys[index] = key;
+		slots[index] = slot;
+		states[index] = (byte) (cacheType.ordinal() + 1);
+		tierSizes[cacheType.ordinal()]++;
+	}
+
+	/**
+	 * @param key
+	 * @return the value given by the key
+	 * @throws NoSuchElementException
+	 *             if the key is not mapped
+	 */
+	public V get(int key) {
+		drainReferenceQueue(DRAIN_THRESHOLD);
+		int index = indexOf(key);
+		if (index != -1) {
+			V value = valueOf(index);
+			if (value != null) {
+				statsRecorder.recordHits(1);
+				return value;
+			}
+		}
+		statsRecorder.recordMisses(1);
+		throw new NoSuchElementException("No mapping for key " + key);
+	}
+
+	/**
+	 * @param key
+	 * @return true if and only if the key is mapped
+	 */
+	public boolean contains(int key) {
+		drainReferenceQueue(DRAIN_THRESHOLD);
+		int index = indexOf(key);
+		return index != -1 && valueOf(index) != null;
+	}
+
+	/**
+	 * removes the value given by the key.
+	 *
+	 * @param key
+	 * @throws NoSuchElementException
+	 *             if the key is not mapped
+	 */
+	public void remove(int key) {
+		drainReferenceQueue(DRAIN_THRESHOLD);
+		int index = indexOf(key);
+		if (index == -1)
+			throw new NoSuchElementException("No mapping for key " + key);
+		boolean isAlive = valueOf(index) != null;
+		delete(index);
+		if (!isAlive)
+			throw new NoSuchElementException("No mapping for key " + key);
+	}
+
+	/**
+	 * @param key
+	 * @return {@link CacheType} of the key
+	 * @throws NoSuchElementException
+	 *             if the key is not mapped
+	 */
+	public CacheType getCacheType(int key) {
+		drainReferenceQueue(DRAIN_THRESHOLD);
+		int index = indexOf(key);
+		if (index == -1 || valueOf(index) == null)
+			throw new NoSuchElementException("No mapping for key " + key);
+		return CACHE_TYPES[states[index] - 1];
+	}
+
+	/**
+	 * purges all collected entries which have been enqueued so far
+	 *
+	 * @return the total number of elements cached.
+	 */
+	public int size() {
+		drainReferenceQueue(Integer.MAX_VALUE);
+		return size;
+	}
+
+	/**
+	 * purges all collected entries which have been enqueued so far
+	 *
+	 * @param cacheType
+	 * @return number of entries of the {@link CacheType}
+	 */
+	public int size(@NotNull CacheType cacheType) {
+		drainReferenceQueue(Integer.MAX_VALUE);
+		return tierSizes[cacheType.ordinal()];
+	}
+
+	/**
+	 * removes all cached entries.
+	 */
+	public void clear() {
+		Arrays.fill(keys, 0);
+		Arrays.fill(slots, null);
+		Arrays.fill(states, (byte) 0);
+		Arrays.fill(tierSizes, 0);
+		size = 0;
+		while (referenceQueue.poll() != null)
+			;
+	}
+
+	/**
+	 * purges all collected entries which have been enqueued so far
+	 */
+	public void clean() {
+		drainReferenceQueue(Integer.MAX_VALUE);
+	}
+
+	/**
+	 * @return all keys whose values have not been collected
+	 */
+	public int[] getKeys() {
+		drainReferenceQueue(Integer.MAX_VALUE);
+		int[] keyArray = new int[size];
+		int count = 0;
+		for (int i = 0; i < keys.length; i++)
+			if (states[i] != 0 && valueOf(i) != null)
+				keyArray[count++] = keys[i];
+		return count == keyArray.length ? keyArray : Arrays.copyOf(keyArray, count);
+	}
+
+	/**
+	 * sets the recorder of the statistics of this cache
+	 *
+	 * @param statsRecorder
+	 * @throws NullPointerException
+	 *             if statsRecorder is null
+	 * @see Cache#setStatsRecorder(StatsRecorder)
+	 */
+	public void setStatsRecorder(@NotNull StatsRecorder statsRecorder) {
+		Assurance.assureNotNull(statsRecorder);
+		this.statsRecorder = statsRecorder;
+	}
+
+	/**
+	 * @return the recorder of the statistics of this cache,
+	 *         {@link StatsRecorder#disabled()} by default
+	 */
+	public StatsRecorder getStatsRecorder() {
+		return statsRecorder;
+	}
+
+	/**
+	 * purges all collected entries which have been enqueued so far
+	 *
+	 * @return snapshot of the statistics of this cache
+	 */
+	public CacheStats getStats() {
+		drainReferenceQueue(Integer.MAX_VALUE);
+		EnumMap<CacheType, Integer> tierSizeMap = new EnumMap<>(CacheType.class);
+		for (CacheType cacheType : CACHE_TYPES)
+			tierSizeMap.put(cacheType, tierSizes[cacheType.ordinal()]);
+		return statsRecorder.snapshot().withTierSizes(tierSizeMap);
+	}
+
+	@Override
+	public String toString() {
+		return "IntCache [defaultCacheType=" + defaultCacheType + ", size()=" + size() + "]";
+	}
+
+}
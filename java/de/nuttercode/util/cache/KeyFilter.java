@@ -0,0 +1,154 @@
+package de.nuttercode.util.cache;
+
+import java.util.function.Consumer;
+
+/**
+ * Keeps a {@link CountingBloomFilter} in front of the table of a cache, so
+ * lookups of keys which are definitely not mapped do not touch the table. The
+ * filter counts every key of the table at least once. Keys are added before
+ * and once more after they are put into the table and removed after they have
+ * been removed from it, so the filter never misses a key while operations run
+ * concurrently. {@link #rebuild(Consumer)} fills a new filter from the table
+ * while the old one stays in use and replaces it afterwards. Keys put into the
+ * table during a rebuild are added to both filters. Counts which are too high
+ * only cause false positives.
+ *
+ * @author Johannes B. Latzel
+ *
+ */
+final class KeyFilter {
+
+	private static final KeyFilter DISABLED = new KeyFilter(null);
+
+	private final boolean isEnabled;
+	private volatile CountingBloomFilter bloomFilter;
+
+	/**
+	 * filter which is filled by the running rebuild or null
+	 */
+	private volatile CountingBloomFilter rebuildFilter;
+
+	private KeyFilter(CountingBloomFilter bloomFilter) {
+		isEnabled = bloomFilter != null;
+		this.bloomFilter = bloomFilter;
+		rebuildFilter = null;
+	}
+
+	/**
+	 * @return filter which reports every key as possibly contained
+	 */
+	static KeyFilter disabled() {
+		return DISABLED;
+	}
+
+	/**
+	 * @param bloomFilter
+	 *            will be cleared, may be null
+	 * @param keySource
+	 *            passes all keys of the table to the given action
+	 * @return filter of all keys of the table or {@link #disabled()} if
+	 *         bloomFilter is null
+	 */
+	static KeyFilter create(CountingBloomFilter bloomFilter, Consumer<Consumer<Object>> keySource) {
+		if (bloomFilter == null)
+			return DISABLED;
+		bloomFilter.clear();
+		keySource.accept(bloomFilter::add);
+		return new KeyFilter(bloomFilter);
+	}
+
+	boolean isEnabled() {
+		return isEnabled;
+	}
+
+	/**
+	 * @param key
+	 * @return false if the key is definitely not mapped
+	 */
+	boolean mightContain(Object key) {
+		return !isEnabled || bloomFilter.mightContain(key);
+	}
+
+	/**
+	 * adds the key before it is put into the table
+	 *
+	 * @param key
+	 * @return the filter the key has been added to, which has to be passed to
+	 *         {@link #afterPut(CountingBloomFilter, Object, boolean)}
+	 */
+	CountingBloomFilter beforePut(Object key) {
+		if (!isEnabled)
+			return null;
+		CountingBloomFilter filter = bloomFilter;
+		filter.add(key);
+		return filter;
+	}
+
+	/**
+	 * adds the key to the filters which have replaced or will replace the one
+	 * passed to {@link #beforePut(Object)} or undoes the addition if the key has
+	 * been mapped before
+	 *
+	 * @param filter
+	 *            returned by {@link #beforePut(Object)}
+	 * @param key
+	 * @param isNew
+	 *            false if the put has replaced a mapping of the key
+	 */
+	void afterPut(CountingBloomFilter filter, Object key, boolean isNew) {
+		if (filter == null)
+			return;
+		if (!isNew) {
+			filter.remove(key);
+			return;
+		}
+		// rebuildFilter has to be read first: once it is null, bloomFilter is the rebuilt filter
+		CountingBloomFilter pendingFilter = rebuildFilter;
+		CountingBloomFilter currentFilter = bloomFilter;
+		if (currentFilter != filter)
+			currentFilter.add(key);
+		if (pendingFilter != null && pendingFilter != currentFilter)
+			pendingFilter.add(key);
+	}
+
+	/**
+	 * @return the filter which has to be passed to
+	 *         {@link #afterRemove(CountingBloomFilter, Object)}, read before the
+	 *         key is removed from the table
+	 */
+	CountingBloomFilter beforeRemove() {
+		return isEnabled ? bloomFilter : null;
+	}
+
+	/**
+	 * removes the key after it has been removed from the table. a rebuilt filter
+	 * which has replaced the given one may still count the key.
+	 *
+	 * @param filter
+	 *            returned by {@link #beforeRemove()}
+	 * @param key
+	 */
+	void afterRemove(CountingBloomFilter filter, Object key) {
+		if (filter != null)
+			filter.remove(key);
+	}
+
+	/**
+	 * replaces the filter by a new filter of the keys which are currently in the
+	 * table, which resets saturated counters and counts which are too high.
+	 * concurrent rebuilds run one after the other.
+	 *
+	 * @param keySource
+	 *            passes all keys of the table to the given action
+	 */
+	synchronized void rebuild(Consumer<Consumer<Object>> keySource) {
+		if (!isEnabled)
+			return;
+		CountingBloomFilter filter = bloomFilter.emptyCopy();
+		rebuildFilter = filter;
+		keySource.accept(filter::add);
+		bloomFilter = filter;
+		rebuildFilter = null;
+	}
+
+}
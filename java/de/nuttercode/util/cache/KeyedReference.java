@@ -0,0 +1,23 @@
+package de.nuttercode.util.cache;
+
+import java.lang.ref.Reference;
+
+/**
+ * A {@link Reference} which knows the key it is cached under. Used by
+ * {@link ReferenceCache}, {@link HybridCache} and {@link AsyncLoadingCache} to
+ * purge the entry of a collected value. Package-private, so no value of a user
+ * can be mistaken for such a reference.
+ *
+ * @author Johannes B. Latzel
+ *
+ * @param <K>
+ *            key type
+ */
+interface KeyedReference<K> {
+
+	/**
+	 * @return the key under which the {@link Reference} is cached
+	 */
+	K getKey();
+
+}
@@ -0,0 +1,88 @@
+package de.nuttercode.util.cache;
+
+import java.util.AbstractSet;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Iterator;
+import java.util.Spliterator;
+import java.util.Spliterators;
+import java.util.function.Consumer;
+import java.util.function.IntSupplier;
+import java.util.function.Predicate;
+
+/**
+ * Unmodifiable live {@link java.util.Set} view of a {@link Collection} whose
+ * elements are mapped injectively by a {@link MappingSpliterator.Mapper}.
+ * Traversals of a concurrent source reflect its current state. Traversals of
+ * any other source copy its elements first, because reads of the cache, which
+ * may purge entries, are allowed while a traversal is in progress. Such a
+ * traversal may yield elements which have been removed after it started.
+ *
+ * @author Johannes B. Latzel
+ *
+ * @param <S>
+ *            source element type
+ * @param <T>
+ *            element type
+ */
+final class LiveSet<S, T> extends AbstractSet<T> {
+
+	private final Collection<S> source;
+	private final boolean isConcurrent;
+	private final MappingSpliterator.Mapper<? super S, ? extends T> mapper;
+	private final IntSupplier sizeSupplier;
+	private final Predicate<Object> containsPredicate;
+
+	/**
+	 * @param source
+	 * @param isConcurrent
+	 *            true if the source may be modified while it is traversed
+	 * @param mapper
+	 *            maps different elements of the source to different elements
+	 * @param sizeSupplier
+	 *            supplies the number of visible elements
+	 * @param containsPredicate
+	 *            tests if an element is visible without traversing the source
+	 */
+	LiveSet(Collection<S> source, boolean isConcurrent, MappingSpliterator.Mapper<? super S, ? extends T> mapper,
+			IntSupplier sizeSupplier, Predicate<Object> containsPredicate) {
+		this.source = source;
+		this.isConcurrent = isConcurrent;
+		this.mapper = mapper;
+		this.sizeSupplier = sizeSupplier;
+		this.containsPredicate = containsPredicate;
+	}
+
+	/**
+	 * @return the source or a copy of it if it is not concurrent
+	 */
+	private Collection<S> traversed() {
+		return isConcurrent ? source : new ArrayList<>(source);
+	}
+
+	@Override
+	public Iterator<T> iterator() {
+		return Spliterators.iterator(spliterator());
+	}
+
+	@Override
+	public Spliterator<T> spliterator() {
+		return new MappingSpliterator<>(traversed().spliterator(), mapper, Spliterator.DISTINCT);
+	}
+
+	@Override
+	public void forEach(Consumer<? super T> action) {
+		traversed().forEach(element -> mapper.map(element, action));
+	}
+
+	@Override
+	public boolean contains(Object o) {
+		return containsPredicate.test(o);
+	}
+
+	@Override
+	public int size() {
+		return sizeSupplier.getAsInt();
+	}
+
+}
@@ -0,0 +1,430 @@
+package de.nuttercode.util.cache;
+
+import java.util.Collection;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.Executor;
+import java.util.function.BiConsumer;
+import java.util.function.BiFunction;
+
+import de.nuttercode.util.assurance.Assurance;
+import de.nuttercode.util.assurance.NotNull;
+
+/**
+ * A {@link Cache} which loads the values of missing keys with a
+ * {@link CacheLoader} and caches them in an underlying {@link Cache}, e.g. a
+ * {@link StrongCache} or a {@link HybridCache}. At most one load runs per key
+ * at any time: threads which miss on a key which is already being loaded wait
+ * for the result of that load instead of loading the value again. This cache
+ * is thread-safe if the underlying {@link Cache} is thread-safe, e.g. a
+ * {@link ConcurrentStrongCache} or a {@link HybridCache#HybridCache(boolean)
+ * concurrent HybridCache}. A loader must not load the key it has been called
+ * for through this cache again.
+ *
+ * @author Johannes B. Latzel
+ *
+ * @param <K>
+ *            key type
+ * @param <V>
+ *            value type
+ */
+public class LoadingCache<K, V> implements Cache<K, V> {
+
+	private final Cache<K, V> cache;
+	private final CacheLoader<? super K, ? extends V> loader;
+
+	/**
+	 * loads which are currently running
+	 */
+	private final ConcurrentMap<K, CompletableFuture<V>> loadMap;
+
+	/**
+	 * @param cache
+	 *            cache in which loaded values will be cached
+	 * @param loader
+	 *            default loader used by {@link #get(Object)}
+	 * @throws NullPointerException
+	 *             if cache or loader is null
+	 */
+	public LoadingCache(@NotNull Cache<K, V> cache, @NotNull CacheLoader<? super K, ? extends V> loader) {
+		Assurance.assureNotNull(cache);
+		Assurance.assureNotNull(loader);
+		this.cache = cache;
+		this.loader = loader;
+		loadMap = new ConcurrentHashMap<>();
+	}
+
+	/**
+	 * waits for the result of a load
+	 *
+	 * @param future
+	 * @return loaded value
+	 * @throws CacheLoaderException
+	 *             if the load has failed
+	 */
+	private static <V> V join(CompletableFuture<V> future) {
+		try {
+			return future.join();
+		} catch (CompletionException e) {
+			Throwable cause = e.getCause();
+			if (cause instanceof RuntimeException)
+				throw (RuntimeException) cause;
+			if (cause instanceof Error)
+				throw (Error) cause;
+			throw new CacheLoaderException("loading has failed", cause);
+		}
+	}
+
+	/**
+	 * loads the value of the key with the loader and caches it
+	 *
+	 * @param key
+	 * @param loader
+	 * @return loaded value
+	 * @throws CacheLoaderException
+	 *             if the loader fails or returns null
+	 */
+	private V load(K key, CacheLoader<? super K, ? extends V> loader) {
+		StatsRecorder statsRecorder = cache.getStatsRecorder();
+		long start = System.nanoTime();
+		V value;
+		try {
+			value = loader.load(key);
+		} catch (RuntimeException | Error e) {
+			statsRecorder.recordLoadFailure(System.nanoTime() - start);
+			throw e;
+		} catch (Exception e) {
+			statsRecorder.recordLoadFailure(System.nanoTime() - start);
+			throw new CacheLoaderException("loading of key " + key + " has failed", e);
+		}
+		if (value == null) {
+			statsRecorder.recordLoadFailure(System.nanoTime() - start);
+			throw new CacheLoaderException("loader returned null for key " + key);
+		}
+		statsRecorder.recordLoadSuccess(System.nanoTime() - start);
+		cache.cache(key, value);
+		return value;
+	}
+
+	/**
+	 * returns the cached value of the key. if the key is not mapped, the value
+	 * will be loaded with the given loader and cached. if the value of the key is
+	 * already being loaded, the result of that load will be returned instead. a
+	 * miss is recorded once, unless the value is cached by another load right
+	 * after the miss, which is recorded as a hit as well.
+	 *
+	 * @param key
+	 * @param loader
+	 * @return the value given by the key
+	 * @throws CacheLoaderException
+	 *             if the loader throws a checked exception or returns null
+	 * @throws NullPointerException
+	 *             if loader is null
+	 */
+	public V get(K key, @NotNull CacheLoader<? super K, ? extends V> loader) {
+		Assurance.assureNotNull(loader);
+		V value = cache.getIfPresent(key);
+		if (value != null)
+			return value;
+		CompletableFuture<V> future = new CompletableFuture<>();
+		CompletableFuture<V> runningLoad = loadMap.putIfAbsent(key, future);
+		if (runningLoad != null)
+			return join(runningLoad);
+		try {
+			// another load may have finished since the lookup, contains is not recorded as an access
+			value = cache.contains(key) ? cache.getIfPresent(key) : null;
+			if (value == null)
+				value = load(key, loader);
+			future.complete(value);
+			return value;
+		} catch (RuntimeException | Error e) {
+			future.completeExceptionally(e);
+			throw e;
+		} finally {
+			loadMap.remove(key, future);
+		}
+	}
+
+	/**
+	 * returns the cached value of the key. if the key is not mapped, the value
+	 * will be loaded with the default loader of this cache.
+	 *
+	 * @see #get(Object, CacheLoader)
+	 * @throws CacheLoaderException
+	 *             if the loader throws a checked exception or returns null
+	 */
+	@Override
+	public V get(K key) {
+		return get(key, loader);
+	}
+
+	/**
+	 * loads the values of all keys with a single call of
+	 * {@link CacheLoader#loadAll(Set)} and caches them. the futures of keys whose
+	 * values have been loaded are completed, all others are completed
+	 * exceptionally.
+	 *
+	 * @param futureMap
+	 *            futures of the keys to load
+	 * @param loader
+	 * @param valueMap
+	 *            map the loaded values are put into
+	 * @throws CacheLoaderException
+	 *             if the loader fails or does not return a value for every key
+	 */
+	private void loadAll(Map<K, CompletableFuture<V>> futureMap, CacheLoader<? super K, ? extends V> loader,
+			Map<K, V> valueMap) {
+		StatsRecorder statsRecorder = cache.getStatsRecorder();
+		long start = System.nanoTime();
+		Map<?, ? extends V> loadedMap;
+		try {
+			loadedMap = loader.loadAll(Collections.unmodifiableSet(futureMap.keySet()));
+		} catch (RuntimeException | Error e) {
+			statsRecorder.recordLoadFailure(System.nanoTime() - start);
+			throw e;
+		} catch (Exception e) {
+			statsRecorder.recordLoadFailure(System.nanoTime() - start);
+			throw new CacheLoaderException("loading of keys " + futureMap.keySet() + " has failed", e);
+		}
+		if (loadedMap == null) {
+			statsRecorder.recordLoadFailure(System.nanoTime() - start);
+			throw new CacheLoaderException("loader returned null for keys " + futureMap.keySet());
+		}
+		HashMap<K, V> freshMap = new HashMap<>();
+		K missingKey = null;
+		V value;
+		for (K key : futureMap.keySet()) {
+			value = loadedMap.get(key);
+			if (value != null)
+				freshMap.put(key, value);
+			else if (missingKey == null)
+				missingKey = key;
+		}
+		if (missingKey == null)
+			statsRecorder.recordLoadSuccess(System.nanoTime() - start);
+		else
+			statsRecorder.recordLoadFailure(System.nanoTime() - start);
+		cache.cacheAll(freshMap);
+		valueMap.putAll(freshMap);
+		for (Map.Entry<K, V> entry : freshMap.entrySet())
+			futureMap.get(entry.getKey()).complete(entry.getValue());
+		if (missingKey != null)
+			throw new CacheLoaderException("loader returned no value for key " + missingKey);
+	}
+
+	/**
+	 * returns the cached values of all keys. the values of all keys which are not
+	 * mapped are loaded with a single call of {@link CacheLoader#loadAll(Set)}
+	 * and cached. keys whose values are already being loaded are not loaded
+	 * again, the results of those loads will be returned instead.
+	 *
+	 * @param keys
+	 * @param loader
+	 * @return unmodifiable map of every key to its value
+	 * @throws CacheLoaderException
+	 *             if the loader throws a checked exception or does not return a
+	 *             value for every key
+	 * @throws NullPointerException
+	 *             if loader is null
+	 */
+	public Map<K, V> getAll(Collection<? extends K> keys, @NotNull CacheLoader<? super K, ? extends V> loader) {
+		Assurance.assureNotNull(loader);
+		HashMap<K, V> valueMap = new HashMap<>(cache.getAll(keys));
+		LinkedHashMap<K, CompletableFuture<V>> ownedLoadMap = new LinkedHashMap<>();
+		HashMap<K, CompletableFuture<V>> runningLoadMap = new HashMap<>();
+		CompletableFuture<V> future;
+		CompletableFuture<V> runningLoad;
+		for (K key : keys) {
+			if (valueMap.containsKey(key) || ownedLoadMap.containsKey(key) || runningLoadMap.containsKey(key))
+				continue;
+			future = new CompletableFuture<>();
+			runningLoad = loadMap.putIfAbsent(key, future);
+			if (runningLoad != null)
+				runningLoadMap.put(key, runningLoad);
+			else
+				ownedLoadMap.put(key, future);
+		}
+		if (!ownedLoadMap.isEmpty()) {
+			try {
+				HashMap<K, CompletableFuture<V>> missingMap = new HashMap<>();
+				V value;
+				for (Map.Entry<K, CompletableFuture<V>> entry : ownedLoadMap.entrySet()) {
+					value = cache.contains(entry.getKey()) ? cache.getIfPresent(entry.getKey()) : null;
+					if (value != null) {
+						valueMap.put(entry.getKey(), value);
+						entry.getValue().complete(value);
+					} else
+						missingMap.put(entry.getKey(), entry.getValue());
+				}
+				if (!missingMap.isEmpty())
+					loadAll(missingMap, loader, valueMap);
+			} catch (RuntimeException | Error e) {
+				for (CompletableFuture<V> ownedLoad : ownedLoadMap.values())
+					ownedLoad.completeExceptionally(e);
+				throw e;
+			} finally {
+				for (Map.Entry<K, CompletableFuture<V>> entry : ownedLoadMap.entrySet())
+					loadMap.remove(entry.getKey(), entry.getValue());
+			}
+		}
+		for (Map.Entry<K, CompletableFuture<V>> entry : runningLoadMap.entrySet())
+			valueMap.put(entry.getKey(), join(entry.getValue()));
+		return Collections.unmodifiableMap(valueMap);
+	}
+
+	/**
+	 * returns the cached values of all keys. the values of all keys which are not
+	 * mapped are loaded with the default loader of this cache.
+	 *
+	 * @see #getAll(Collection, CacheLoader)
+	 * @throws CacheLoaderException
+	 *             if the loader throws a checked exception or does not return a
+	 *             value for every key
+	 */
+	@Override
+	public Map<K, V> getAll(Collection<? extends K> keys) {
+		return getAll(keys, loader);
+	}
+
+	@Override
+	public void cacheAll(Map<? extends K, ? extends V> map) {
+		cache.cacheAll(map);
+	}
+
+	@Override
+	public void removeAll(Collection<? extends K> keys) {
+		cache.removeAll(keys);
+	}
+
+	/**
+	 * @return number of loads which are currently running
+	 */
+	public int getRunningLoadCount() {
+		return loadMap.size();
+	}
+
+	@Override
+	public void cache(K key, V value) {
+		cache.cache(key, value);
+	}
+
+	@Override
+	public boolean contains(K key) {
+		return cache.contains(key);
+	}
+
+	/**
+	 * does not load the value of the key
+	 */
+	@Override
+	public V getIfPresent(K key) {
+		return cache.getIfPresent(key);
+	}
+
+	/**
+	 * does not load the value of the key
+	 */
+	@Override
+	public V getOrDefault(K key, V defaultValue) {
+		return cache.getOrDefault(key, defaultValue);
+	}
+
+	@Override
+	public V putIfAbsent(K key, V value) {
+		return cache.putIfAbsent(key, value);
+	}
+
+	/**
+	 * does not load the value of the key, the function receives null if the key
+	 * is not mapped
+	 */
+	@Override
+	public V compute(K key, @NotNull BiFunction<? super K, ? super V, ? extends V> remappingFunction) {
+		return cache.compute(key, remappingFunction);
+	}
+
+	@Override
+	public void remove(K key) {
+		cache.remove(key);
+	}
+
+	@Override
+	public int size() {
+		return cache.size();
+	}
+
+	@Override
+	public void clear() {
+		cache.clear();
+	}
+
+	@Override
+	public void clean() {
+		cache.clean();
+	}
+
+	@Override
+	public int clean(int maximum) {
+		return cache.clean(maximum);
+	}
+
+	/**
+	 * sets the recorder of the underlying cache. misses and loads of this cache
+	 * are recorded by it as well.
+	 */
+	@Override
+	public void setStatsRecorder(StatsRecorder statsRecorder) {
+		cache.setStatsRecorder(statsRecorder);
+	}
+
+	@Override
+	public StatsRecorder getStatsRecorder() {
+		return cache.getStatsRecorder();
+	}
+
+	@Override
+	public CacheStats getStats() {
+		return cache.getStats();
+	}
+
+	@Override
+	public Set<K> getKeySet() {
+		return cache.getKeySet();
+	}
+
+	@Override
+	public Collection<V> getValueCollection() {
+		return cache.getValueCollection();
+	}
+
+	@Override
+	public void forEach(BiConsumer<? super K, ? super V> action) {
+		cache.forEach(action);
+	}
+
+	@Override
+	public void setRemovalListener(RemovalListener<? super K, ? super V> removalListener, Executor executor) {
+		cache.setRemovalListener(removalListener, executor);
+	}
+
+	/**
+	 * @return true if the underlying {@link Cache} is thread-safe
+	 */
+	@Override
+	public boolean isConcurrent() {
+		return cache.isConcurrent();
+	}
+
+	@Override
+	public String toString() {
+		return "LoadingCache [cache=" + cache + ", getRunningLoadCount()=" + getRunningLoadCount() + "]";
+	}
+
+}
@@ -0,0 +1,294 @@
+package de.nuttercode.util.cache;
+
+import java.io.Closeable;
+import java.lang.ref.WeakReference;
+import java.time.Duration;
+import java.util.Collections;
+import java.util.Map;
+import java.util.WeakHashMap;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.ScheduledFuture;
+import java.util.concurrent.ScheduledThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.LongAdder;
+
+import de.nuttercode.util.DefaultExceptionHandler;
+import de.nuttercode.util.ExceptionHandler;
+import de.nuttercode.util.assurance.Assurance;
+import de.nuttercode.util.assurance.NotNull;
+
+/**
+ * Cleans registered {@link Cache}s in the background, so collected and expired
+ * entries are purged even if the caches are not accessed and callers do not
+ * have to call {@link Cache#clean()}. A single daemon thread calls
+ * {@link Cache#clean(int)} in batches until a cache reports no further
+ * redundant entries or its time slice is used up. The delay until the next
+ * cleaning of a cache adapts to the number of entries purged: it is halved if
+ * many entries have been purged and doubled if few have been purged, within the
+ * minimum and maximum delay. Caches are referenced weakly and deregistered
+ * automatically once they have been collected. Registered caches are cleaned
+ * by the thread of this scheduler and therefore have to be thread-safe, see
+ * {@link Cache#isConcurrent()}, e.g. a {@link ConcurrentStrongCache}, a
+ * {@link HybridCache#HybridCache(boolean) concurrent HybridCache}, a
+ * {@link SoftCache} or {@link WeakCache} backed by a
+ * {@link ConcurrentStrongCache}, or a {@link SegmentedCache}. Caches which
+ * are not thread-safe, e.g. an {@link ExpiringCache}, can be registered as
+ * the segments of a {@link SegmentedCache}.
+ *
+ * @author Johannes B. Latzel
+ *
+ */
+public final class MaintenanceScheduler implements Closeable {
+
+	public static final Duration DEFAULT_MINIMUM_DELAY = Duration.ofMillis(10);
+	public static final Duration DEFAULT_MAXIMUM_DELAY = Duration.ofSeconds(10);
+	public static final Duration DEFAULT_TIME_SLICE = Duration.ofMillis(1);
+
+	/**
+	 * maximum number of entries purged by a single call of
+	 * {@link Cache#clean(int)}
+	 */
+	private static final int BATCH_SIZE = 256;
+
+	/**
+	 * the delay is doubled if fewer entries have been purged during a run
+	 */
+	private static final int LOW_WATERMARK = BATCH_SIZE / 8;
+
+	/**
+	 * the delay is halved if more entries have been purged during a run
+	 */
+	private static final int HIGH_WATERMARK = BATCH_SIZE / 2;
+
+	/**
+	 * created on first use
+	 */
+	private static final class SharedHolder {
+
+		private static final MaintenanceScheduler INSTANCE = new MaintenanceScheduler();
+
+		static {
+			INSTANCE.isShared = true;
+		}
+
+	}
+
+	/**
+	 * cleans a single cache and schedules itself again
+	 */
+	private final class Task implements Runnable {
+
+		private final WeakReference<Cache<?, ?>> cacheReference;
+		private long delayNanos;
+		private volatile boolean isCancelled;
+		private volatile ScheduledFuture<?> future;
+
+		private Task(Cache<?, ?> cache) {
+			cacheReference = new WeakReference<>(cache);
+			delayNanos = minimumDelayNanos;
+			isCancelled = false;
+			future = null;
+		}
+
+		private void schedule() {
+			if (isCancelled)
+				return;
+			try {
+				future = executor.schedule(this, delayNanos, TimeUnit.NANOSECONDS);
+			} catch (RejectedExecutionException e) {
+				// closed
+			}
+		}
+
+		private void cancel() {
+			isCancelled = true;
+			ScheduledFuture<?> future = this.future;
+			if (future != null)
+				future.cancel(false);
+		}
+
+		@Override
+		public void run() {
+			Cache<?, ?> cache = cacheReference.get();
+			if (cache == null || isCancelled)
+				return;
+			long deadline = System.nanoTime() + timeSliceNanos;
+			int purged = 0;
+			int batch = 0;
+			try {
+				do {
+					batch = cache.clean(BATCH_SIZE);
+					purged += batch;
+				} while (batch >= BATCH_SIZE && System.nanoTime() - deadline < 0);
+			} catch (UnsupportedOperationException e) {
+				deregister(cache);
+				return;
+			} catch (RuntimeException e) {
+				exceptionHandler.handle(e);
+			}
+			purgedCount.add(purged);
+			if (batch >= BATCH_SIZE)
+				delayNanos = minimumDelayNanos;
+			else if (purged > HIGH_WATERMARK)
+				delayNanos = Math.max(minimumDelayNanos, delayNanos / 2);
+			else if (purged < LOW_WATERMARK)
+				delayNanos = Math.min(maximumDelayNanos, delayNanos * 2);
+			schedule();
+		}
+
+	}
+
+	private final long minimumDelayNanos;
+	private final long maximumDelayNanos;
+	private final long timeSliceNanos;
+	private final ExceptionHandler exceptionHandler;
+	private final ScheduledThreadPoolExecutor executor;
+
+	/**
+	 * tasks of all registered caches
+	 */
+	private final Map<Cache<?, ?>, Task> taskMap;
+
+	private final LongAdder purgedCount;
+
+	/**
+	 * true if this is the {@link #shared()} scheduler, which can not be closed
+	 */
+	private boolean isShared;
+
+	/**
+	 * uses the default delays and time slice and prints exceptions
+	 */
+	public MaintenanceScheduler() {
+		this(DEFAULT_MINIMUM_DELAY, DEFAULT_MAXIMUM_DELAY, DEFAULT_TIME_SLICE, new DefaultExceptionHandler());
+	}
+
+	/**
+	 * @param minimumDelay
+	 *            minimum time between two cleanings of a cache
+	 * @param maximumDelay
+	 *            maximum time between two cleanings of a cache
+	 * @param timeSlice
+	 *            time after which the cleaning of a cache is interrupted
+	 * @param exceptionHandler
+	 *            handles exceptions thrown by {@link Cache#clean(int)}
+	 * @throws NullPointerException
+	 *             if any parameter is null
+	 * @throws IllegalArgumentException
+	 *             if minimumDelay or timeSlice is not positive or maximumDelay is
+	 *             smaller than minimumDelay
+	 */
+	public MaintenanceScheduler(@NotNull Duration minimumDelay, @NotNull Duration maximumDelay,
+			@NotNull Duration timeSlice, @NotNull ExceptionHandler exceptionHandler) {
+		Assurance.assureNotNull(minimumDelay);
+		Assurance.assureNotNull(maximumDelay);
+		Assurance.assureNotNull(timeSlice);
+		Assurance.assureNotNull(exceptionHandler);
+		Assurance.assurePositive(minimumDelay.toNanos());
+		Assurance.assureSmallerEquals(minimumDelay.toNanos(), maximumDelay.toNanos());
+		Assurance.assurePositive(timeSlice.toNanos());
+		minimumDelayNanos = minimumDelay.toNanos();
+		maximumDelayNanos = maximumDelay.toNanos();
+		timeSliceNanos = timeSlice.toNanos();
+		this.exceptionHandler = exceptionHandler;
+		executor = new ScheduledThreadPoolExecutor(1, runnable -> {
+			Thread thread = new Thread(runnable, "MaintenanceScheduler");
+			thread.setDaemon(true);
+			return thread;
+		});
+		executor.setRemoveOnCancelPolicy(true);
+		taskMap = Collections.synchronizedMap(new WeakHashMap<>());
+		purgedCount = new LongAdder();
+		isShared = false;
+	}
+
+	/**
+	 * @return scheduler which is shared by all callers and never closed
+	 */
+	public static MaintenanceScheduler shared() {
+		return SharedHolder.INSTANCE;
+	}
+
+	/**
+	 * starts cleaning the cache in the background. caches which do not support
+	 * {@link Cache#clean(int)} are deregistered on their first cleaning. does
+	 * nothing if the cache is already registered.
+	 *
+	 * @param cache
+	 *            thread-safe cache, referenced weakly
+	 * @throws NullPointerException
+	 *             if cache is null
+	 * @throws IllegalArgumentException
+	 *             if the cache is not {@link Cache#isConcurrent() thread-safe}
+	 * @throws IllegalStateException
+	 *             if this scheduler has been closed
+	 */
+	public void register(@NotNull Cache<?, ?> cache) {
+		Assurance.assureNotNull(cache);
+		if (!cache.isConcurrent())
+			throw new IllegalArgumentException("cache is not thread-safe");
+		if (executor.isShutdown())
+			throw new IllegalStateException("the scheduler has been closed");
+		Task task = new Task(cache);
+		if (taskMap.putIfAbsent(cache, task) == null)
+			task.schedule();
+	}
+
+	/**
+	 * stops cleaning the cache. a cleaning which is currently running is not
+	 * interrupted.
+	 *
+	 * @param cache
+	 * @return true if the cache has been registered
+	 */
+	public boolean deregister(Cache<?, ?> cache) {
+		Task task = taskMap.remove(cache);
+		if (task == null)
+			return false;
+		task.cancel();
+		return true;
+	}
+
+	/**
+	 * @param cache
+	 * @return true if the cache is registered
+	 */
+	public boolean isRegistered(Cache<?, ?> cache) {
+		return taskMap.containsKey(cache);
+	}
+
+	/**
+	 * @return number of registered caches which have not been collected
+	 */
+	public int getRegisteredCount() {
+		return taskMap.size();
+	}
+
+	/**
+	 * @return total number of entries purged by this scheduler
+	 */
+	public long getPurgedCount() {
+		return purgedCount.sum();
+	}
+
+	/**
+	 * deregisters all caches and stops the thread of this scheduler
+	 *
+	 * @throws UnsupportedOperationException
+	 *             if this is the {@link #shared()} scheduler
+	 */
+	@Override
+	public void close() {
+		if (isShared)
+			throw new UnsupportedOperationException("the shared scheduler can not be closed");
+		executor.shutdownNow();
+		taskMap.clear();
+	}
+
+	@Override
+	public String toString() {
+		return "MaintenanceScheduler [registeredCount=" + getRegisteredCount() + ", purgedCount=" + getPurgedCount()
+				+ "]";
+	}
+
+}
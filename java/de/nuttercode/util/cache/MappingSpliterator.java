@@ -0,0 +1,98 @@
+package de.nuttercode.util.cache;
+
+import java.util.Spliterator;
+import java.util.function.Consumer;
+
+/**
+ * {@link Spliterator} which maps every element of a source {@link Spliterator}
+ * to at most one element. Splits whenever the source splits, so it supports
+ * parallel traversal as well as the source does. Used by the live views of
+ * caches whose tables contain entries which are not visible, e.g. entries
+ * whose values have been collected.
+ *
+ * @author Johannes B. Latzel
+ *
+ * @param <S>
+ *            source element type
+ * @param <T>
+ *            element type
+ */
+final class MappingSpliterator<S, T> implements Spliterator<T> {
+
+	/**
+	 * maps an element of the source by passing at most one element to the action
+	 *
+	 * @param <S>
+	 *            source element type
+	 * @param <T>
+	 *            element type
+	 */
+	@FunctionalInterface
+	interface Mapper<S, T> {
+
+		void map(S element, Consumer<? super T> action);
+
+	}
+
+	private final Spliterator<S> source;
+	private final Mapper<? super S, ? extends T> mapper;
+	private final int characteristics;
+
+	/**
+	 * true if the current call of {@link #tryAdvance(Consumer)} has passed an
+	 * element to its action
+	 */
+	private boolean isAdvanced;
+
+	/**
+	 * @param source
+	 * @param mapper
+	 * @param additionalCharacteristics
+	 *            characteristics which hold for this spliterator but not for the
+	 *            source, e.g. {@link Spliterator#DISTINCT} if the mapper is
+	 *            injective
+	 */
+	MappingSpliterator(Spliterator<S> source, Mapper<? super S, ? extends T> mapper, int additionalCharacteristics) {
+		this.source = source;
+		this.mapper = mapper;
+		characteristics = source.characteristics() & (CONCURRENT | IMMUTABLE | ORDERED) | additionalCharacteristics;
+	}
+
+	@Override
+	public boolean tryAdvance(Consumer<? super T> action) {
+		isAdvanced = false;
+		Consumer<T> advancingAction = element -> {
+			isAdvanced = true;
+			action.accept(element);
+		};
+		while (!isAdvanced && source.tryAdvance(element -> mapper.map(element, advancingAction)))
+			;
+		return isAdvanced;
+	}
+
+	@Override
+	public void forEachRemaining(Consumer<? super T> action) {
+		source.forEachRemaining(element -> mapper.map(element, action));
+	}
+
+	@Override
+	public Spliterator<T> trySplit() {
+		Spliterator<S> prefix = source.trySplit();
+		return prefix == null ? null : new MappingSpliterator<>(prefix, mapper, characteristics);
+	}
+
+	/**
+	 * @return estimated size of the source, which includes elements which are
+	 *         skipped
+	 */
+	@Override
+	public long estimateSize() {
+		return source.estimateSize();
+	}
+
+	@Override
+	public int characteristics() {
+		return characteristics;
+	}
+
+}
@@ -0,0 +1,446 @@
+package de.nuttercode.util.cache;
+
+import java.io.Closeable;
+import java.lang.management.GarbageCollectorMXBean;
+import java.lang.management.ManagementFactory;
+import java.lang.management.MemoryNotificationInfo;
+import java.lang.management.MemoryPoolMXBean;
+import java.lang.management.MemoryType;
+import java.lang.management.MemoryUsage;
+import java.lang.ref.WeakReference;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.Map;
+import java.util.WeakHashMap;
+import java.util.function.DoubleSupplier;
+
+import javax.management.ListenerNotFoundException;
+import javax.management.Notification;
+import javax.management.NotificationEmitter;
+import javax.management.NotificationListener;
+
+import de.nuttercode.util.assurance.Assurance;
+import de.nuttercode.util.assurance.NotNull;
+
+/**
+ * Shrinks the capacities of registered caches while the old generation of the
+ * heap is filling up and lets them grow back once the pressure eases, so
+ * cached values do not compete with live data for the heap and cause full
+ * garbage collections one after the other. The occupancy of the old
+ * generation is read after every garbage collection and whenever its
+ * collection usage threshold, which is set to the low occupancy, is exceeded.
+ * Below the low occupancy the caches have their full capacity. Between the low
+ * and the high occupancy their capacity decreases linearly down to the minimum
+ * fraction of their full capacity. Capacities shrink immediately but grow by
+ * only half of the difference per update. The full capacity of a cache is its
+ * capacity at the time of its registration. Caches are referenced weakly and
+ * regain their full capacity when they are deregistered or this monitor is
+ * closed. The monitor never evicts values of a {@link BoundedCache} itself: it
+ * only requests the new maximum size, which the cache applies on the next
+ * write by the thread which uses it.
+ *
+ * @author Johannes B. Latzel
+ *
+ */
+public final class MemoryPressureMonitor implements Closeable {
+
+	public static final double DEFAULT_LOW_OCCUPANCY = 0.6;
+	public static final double DEFAULT_HIGH_OCCUPANCY = 0.9;
+	public static final double DEFAULT_MINIMUM_FRACTION = 0.1;
+
+	/**
+	 * type of the notifications of the garbage collectors of the HotSpot VM
+	 */
+	private static final String GARBAGE_COLLECTION_NOTIFICATION = "com.sun.management.gc.notification";
+
+	/**
+	 * the caches of a registered cache whose capacities are adapted, i.e. the
+	 * cache itself or its segments, and their full capacities
+	 */
+	private static final class Target {
+
+		private final List<WeakReference<Cache<?, ?>>> cacheReferenceList;
+		private final List<Long> fullCapacityList;
+
+		private Target(List<? extends Cache<?, ?>> cacheList, List<Long> fullCapacityList) {
+			cacheReferenceList = new ArrayList<>(cacheList.size());
+			for (Cache<?, ?> cache : cacheList)
+				cacheReferenceList.add(new WeakReference<>(cache));
+			this.fullCapacityList = fullCapacityList;
+		}
+
+		/**
+		 * sets the capacities of the caches to the fraction of their full
+		 * capacities
+		 *
+		 * @param fraction
+		 */
+		private void resize(double fraction) {
+			Cache<?, ?> cache;
+			long capacity;
+			for (int i = 0; i < cacheReferenceList.size(); i++) {
+				cache = cacheReferenceList.get(i).get();
+				capacity = Math.round(fullCapacityList.get(i) * fraction);
+				if (cache instanceof HybridCache)
+					((HybridCache<?, ?>) cache).setCapacity(CacheType.STRONG, (int) capacity);
+				else if (cache instanceof BoundedCache)
+					((BoundedCache<?, ?>) cache).requestMaximumSize(Math.max(1, capacity));
+			}
+		}
+
+	}
+
+	private final double lowOccupancy;
+	private final double highOccupancy;
+	private final double minimumFraction;
+
+	/**
+	 * supplies the occupancy read by {@link #update()}
+	 */
+	private final DoubleSupplier occupancySource;
+
+	/**
+	 * pools of the old generation of the heap and their collection usage
+	 * thresholds before this monitor has been created
+	 */
+	private final List<MemoryPoolMXBean> poolList;
+	private final List<Long> previousThresholdList;
+
+	/**
+	 * emitters this monitor listens to
+	 */
+	private final List<NotificationEmitter> emitterList;
+	private final NotificationListener listener;
+
+	/**
+	 * targets of all registered caches
+	 */
+	private final Map<Cache<?, ?>, Target> targetMap;
+
+	private double occupancy;
+	private double capacityFraction;
+	private boolean isClosed;
+
+	/**
+	 * uses the default occupancies and minimum fraction
+	 */
+	public MemoryPressureMonitor() {
+		this(DEFAULT_LOW_OCCUPANCY, DEFAULT_HIGH_OCCUPANCY, DEFAULT_MINIMUM_FRACTION);
+	}
+
+	/**
+	 * @param lowOccupancy
+	 *            occupancy of the old generation up to which the caches have
+	 *            their full capacity
+	 * @param highOccupancy
+	 *            occupancy of the old generation from which on the caches have
+	 *            the minimum fraction of their full capacity
+	 * @param minimumFraction
+	 *            fraction of the full capacity the caches are never shrunk below
+	 * @throws IllegalArgumentException
+	 *             if any parameter is not in [0, 1] or highOccupancy is smaller
+	 *             than lowOccupancy
+	 */
+	public MemoryPressureMonitor(double lowOccupancy, double highOccupancy, double minimumFraction) {
+		this(lowOccupancy, highOccupancy, minimumFraction, null);
+	}
+
+	/**
+	 * @param lowOccupancy
+	 * @param highOccupancy
+	 * @param minimumFraction
+	 * @param occupancySource
+	 *            supplies the occupancy in [0, 1] on every {@link #update()}
+	 *            or null to monitor the old generation
+	 * @throws IllegalArgumentException
+	 *             if any parameter is not in [0, 1] or highOccupancy is smaller
+	 *             than lowOccupancy
+	 */
+	MemoryPressureMonitor(double lowOccupancy, double highOccupancy, double minimumFraction,
+			DoubleSupplier occupancySource) {
+		Assurance.assureBoundaries(lowOccupancy, 0, 1);
+		Assurance.assureBoundaries(highOccupancy, 0, 1);
+		Assurance.assureSmallerEquals(lowOccupancy, highOccupancy);
+		Assurance.assureBoundaries(minimumFraction, 0, 1);
+		this.lowOccupancy = lowOccupancy;
+		this.highOccupancy = highOccupancy;
+		this.minimumFraction = minimumFraction;
+		poolList = new ArrayList<>();
+		previousThresholdList = new ArrayList<>();
+		if (occupancySource == null) {
+			for (MemoryPoolMXBean pool : ManagementFactory.getMemoryPoolMXBeans()) {
+				// the old generation is the only heap pool which supports usage thresholds
+				if (pool.getType() != MemoryType.HEAP || !pool.isUsageThresholdSupported()
+						|| !pool.isCollectionUsageThresholdSupported())
+					continue;
+				poolList.add(pool);
+				previousThresholdList.add(pool.getCollectionUsageThreshold());
+				long maximum = maximumOf(pool.getUsage());
+				if (maximum > 0)
+					pool.setCollectionUsageThreshold((long) (maximum * lowOccupancy));
+			}
+		}
+		this.occupancySource = occupancySource != null ? occupancySource : this::readOccupancy;
+		targetMap = Collections.synchronizedMap(new WeakHashMap<>());
+		occupancy = 0;
+		capacityFraction = 1;
+		isClosed = false;
+		listener = this::handleNotification;
+		emitterList = new ArrayList<>();
+		if (occupancySource == null) {
+			if (ManagementFactory.getMemoryMXBean() instanceof NotificationEmitter)
+				emitterList.add((NotificationEmitter) ManagementFactory.getMemoryMXBean());
+			for (GarbageCollectorMXBean collector : ManagementFactory.getGarbageCollectorMXBeans())
+				if (collector instanceof NotificationEmitter)
+					emitterList.add((NotificationEmitter) collector);
+		}
+		for (NotificationEmitter emitter : emitterList)
+			emitter.addNotificationListener(listener, null, null);
+		update();
+	}
+
+	/**
+	 * @param usage
+	 * @return maximum of the usage or the committed memory if the maximum is
+	 *         undefined
+	 */
+	private static long maximumOf(MemoryUsage usage) {
+		return usage.getMax() >= 0 ? usage.getMax() : usage.getCommitted();
+	}
+
+	/**
+	 * updates after garbage collections and exceeded thresholds
+	 *
+	 * @param notification
+	 * @param handback
+	 */
+	private void handleNotification(Notification notification, Object handback) {
+		String type = notification.getType();
+		if (GARBAGE_COLLECTION_NOTIFICATION.equals(type)
+				|| MemoryNotificationInfo.MEMORY_COLLECTION_THRESHOLD_EXCEEDED.equals(type))
+			update();
+	}
+
+	/**
+	 * @return highest occupancy of all pools of the old generation after their
+	 *         last collection or their current occupancy if they have not been
+	 *         collected yet
+	 */
+	private double readOccupancy() {
+		double occupancy = 0;
+		MemoryUsage usage;
+		long maximum;
+		for (MemoryPoolMXBean pool : poolList) {
+			usage = pool.getCollectionUsage();
+			if (usage == null || usage.getUsed() == 0)
+				usage = pool.getUsage();
+			maximum = maximumOf(usage);
+			if (maximum > 0)
+				occupancy = Math.max(occupancy, (double) usage.getUsed() / maximum);
+		}
+		return occupancy;
+	}
+
+	/**
+	 * @param occupancy
+	 * @return fraction of the full capacities the caches should have at the
+	 *         occupancy
+	 */
+	private double targetFractionOf(double occupancy) {
+		if (occupancy <= lowOccupancy)
+			return 1;
+		if (occupancy >= highOccupancy)
+			return minimumFraction;
+		return 1 - (1 - minimumFraction) * (occupancy - lowOccupancy) / (highOccupancy - lowOccupancy);
+	}
+
+	/**
+	 * reads the occupancy of the old generation and resizes all registered caches
+	 * accordingly. called automatically after every garbage collection.
+	 */
+	public synchronized void update() {
+		if (isClosed)
+			return;
+		occupancy = occupancySource.getAsDouble();
+		double targetFraction = targetFractionOf(occupancy);
+		if (targetFraction < capacityFraction || targetFraction - capacityFraction < 0.01)
+			capacityFraction = targetFraction;
+		else
+			capacityFraction += (targetFraction - capacityFraction) / 2;
+		resizeAll(capacityFraction);
+	}
+
+	/**
+	 * @param fraction
+	 *            of the full capacities
+	 */
+	private void resizeAll(double fraction) {
+		ArrayList<Target> targetList;
+		synchronized (targetMap) {
+			targetList = new ArrayList<>(targetMap.values());
+		}
+		for (Target target : targetList)
+			target.resize(fraction);
+	}
+
+	/**
+	 * @param cache
+	 * @return capacity of {@link CacheType#STRONG} of an adaptive
+	 *         {@link HybridCache}, maximum size of a {@link BoundedCache} or -1
+	 *         if the capacity of the cache can not be adapted
+	 */
+	private static long capacityOf(Cache<?, ?> cache) {
+		if (cache instanceof HybridCache && ((HybridCache<?, ?>) cache).isAdaptive())
+			return ((HybridCache<?, ?>) cache).getCapacity(CacheType.STRONG);
+		if (cache instanceof BoundedCache)
+			return ((BoundedCache<?, ?>) cache).getMaximumSize();
+		return -1;
+	}
+
+	/**
+	 * shrinks the capacity of {@link CacheType#STRONG} of the cache under
+	 * pressure. entries which do not fit are demoted to {@link CacheType#SOFT}.
+	 * does nothing if the cache is already registered.
+	 *
+	 * @param cache
+	 *            adaptive cache, referenced weakly
+	 * @throws NullPointerException
+	 *             if cache is null
+	 * @throws IllegalArgumentException
+	 *             if the cache is not adaptive
+	 */
+	public void register(@NotNull HybridCache<?, ?> cache) {
+		Assurance.assureNotNull(cache);
+		if (!cache.isAdaptive())
+			throw new IllegalArgumentException("cache is not adaptive");
+		register(cache, new Target(List.of(cache), List.of(capacityOf(cache))));
+	}
+
+	/**
+	 * shrinks the maximum size of the cache under pressure, see
+	 * {@link BoundedCache#requestMaximumSize(long)}. values are evicted by the
+	 * next write, so this monitor never evicts values itself. reads the maximum
+	 * size of the cache and therefore has to be called by the thread which uses
+	 * it. does nothing if the cache is already registered.
+	 *
+	 * @param cache
+	 *            referenced weakly
+	 * @throws NullPointerException
+	 *             if cache is null
+	 */
+	public void register(@NotNull BoundedCache<?, ?> cache) {
+		Assurance.assureNotNull(cache);
+		register(cache, new Target(List.of(cache), List.of(capacityOf(cache))));
+	}
+
+	/**
+	 * shrinks the capacities of all segments of the cache which are a
+	 * {@link BoundedCache} or an adaptive {@link HybridCache} under pressure,
+	 * like {@link #register(BoundedCache)} and {@link #register(HybridCache)}.
+	 * the full capacities are read while holding the locks of the segments.
+	 * does nothing if the cache is already registered.
+	 *
+	 * @param cache
+	 *            referenced weakly
+	 * @throws NullPointerException
+	 *             if cache is null
+	 * @throws IllegalArgumentException
+	 *             if no segment of the cache is a {@link BoundedCache} or an
+	 *             adaptive {@link HybridCache}
+	 */
+	public void register(@NotNull SegmentedCache<?, ?> cache) {
+		Assurance.assureNotNull(cache);
+		List<? extends Cache<?, ?>> segmentCacheList = cache.applyToSegments(segmentCache -> segmentCache);
+		List<Long> capacityList = cache.applyToSegments(MemoryPressureMonitor::capacityOf);
+		List<Cache<?, ?>> cacheList = new ArrayList<>();
+		List<Long> fullCapacityList = new ArrayList<>();
+		for (int i = 0; i < segmentCacheList.size(); i++) {
+			if (capacityList.get(i) < 0)
+				continue;
+			cacheList.add(segmentCacheList.get(i));
+			fullCapacityList.add(capacityList.get(i));
+		}
+		if (cacheList.isEmpty())
+			throw new IllegalArgumentException("no segment is a BoundedCache or an adaptive HybridCache");
+		register(cache, new Target(cacheList, fullCapacityList));
+	}
+
+	/**
+	 * @param cache
+	 * @param target
+	 *            of the cache
+	 */
+	private synchronized void register(Cache<?, ?> cache, Target target) {
+		if (isClosed)
+			throw new IllegalStateException("the monitor has been closed");
+		if (targetMap.putIfAbsent(cache, target) == null)
+			target.resize(capacityFraction);
+	}
+
+	/**
+	 * restores the full capacity of the cache
+	 *
+	 * @param cache
+	 * @return true if the cache has been registered
+	 */
+	public synchronized boolean deregister(Cache<?, ?> cache) {
+		Target target = targetMap.remove(cache);
+		if (target == null)
+			return false;
+		target.resize(1);
+		return true;
+	}
+
+	/**
+	 * @return highest occupancy of the old generation in [0, 1] read by the last
+	 *         update
+	 */
+	public synchronized double getOccupancy() {
+		return occupancy;
+	}
+
+	/**
+	 * @return fraction of their full capacities the registered caches currently
+	 *         have
+	 */
+	public synchronized double getCapacityFraction() {
+		return capacityFraction;
+	}
+
+	/**
+	 * @return number of registered caches which have not been collected
+	 */
+	public int getRegisteredCount() {
+		return targetMap.size();
+	}
+
+	/**
+	 * stops listening to notifications, restores the collection usage thresholds
+	 * and the full capacities of all registered caches
+	 */
+	@Override
+	public synchronized void close() {
+		if (isClosed)
+			return;
+		isClosed = true;
+		for (NotificationEmitter emitter : emitterList) {
+			try {
+				emitter.removeNotificationListener(listener);
+			} catch (ListenerNotFoundException e) {
+				// not registered
+			}
+		}
+		for (int i = 0; i < poolList.size(); i++)
+			poolList.get(i).setCollectionUsageThreshold(previousThresholdList.get(i));
+		resizeAll(1);
+		targetMap.clear();
+	}
+
+	@Override
+	public String toString() {
+		return "MemoryPressureMonitor [occupancy=" + getOccupancy() + ", capacityFraction=" + getCapacityFraction()
+				+ ", registeredCount=" + getRegisteredCount() + "]";
+	}
+
+}
@@ -0,0 +1,801 @@
+package de.nuttercode.util.cache;
+
+import java.io.Closeable;
+import java.nio.ByteBuffer;
+import java.util.AbstractSet;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.Iterator;
+import java.util.NoSuchElementException;
+import java.util.Set;
+import java.util.concurrent.Executor;
+import java.util.function.BiConsumer;
+import java.util.function.ObjLongConsumer;
+
+import de.nuttercode.util.assurance.Assurance;
+import de.nuttercode.util.assurance.NotNull;
+import de.nuttercode.util.assurance.Positive;
+import de.nuttercode.util.buffer.DataQueue;
+
+/**
+ * A {@link Cache} which stores its values as bytes outside of the heap, so
+ * even very large caches do not increase the pause times of the Garbage
+ * Collector. Values are converted by a {@link Serializer} and stored in
+ * chunks of direct {@link ByteBuffer}s. The direct memory is allocated in
+ * slabs of equal size. Every slab is divided into chunks of one size class,
+ * the size classes are the powers of two from 64 bytes up to the slab size.
+ * The only parts on the heap are the index, which maps every key to the handle
+ * of its chunk without boxing it, and the owner array of every slab. If no
+ * chunk of the required size class is free and no more slabs may be allocated,
+ * a clock hand evicts the first chunk of that size class which has not been
+ * read since the hand has passed it the last time. If there is no slab of the
+ * required size class at all, a slab of the size class with the most slabs is
+ * emptied and reused.
+ * {@link #close()} drops all slabs. Values must not be null. This cache is not
+ * thread-safe.
+ *
+ * @author Johannes B. Latzel
+ *
+ * @param <K>
+ *            key type
+ * @param <V>
+ *            value type
+ */
+public class OffHeapCache<K, V> implements Cache<K, V>, Closeable {
+
+	/**
+	 * a part of the direct memory which is divided into chunks of equal size
+	 */
+	private static final class Slab<K> {
+
+		private final int id;
+		private final ByteBuffer buffer;
+		private final SizeClass<K> sizeClass;
+
+		/**
+		 * keys of the values stored in the chunks or null if a chunk is free
+		 */
+		private final Object[] owners;
+
+		/**
+		 * true if the chunk has been read since the clock hand has passed it
+		 */
+		private final boolean[] referenced;
+
+		/**
+		 * number of chunks which have been handed out at least once
+		 */
+		private int allocated;
+
+		private Slab(int id, ByteBuffer buffer, SizeClass<K> sizeClass) {
+			this.id = id;
+			this.buffer = buffer;
+			this.sizeClass = sizeClass;
+			owners = new Object[buffer.capacity() / sizeClass.chunkSize];
+			referenced = new boolean[owners.length];
+			allocated = 0;
+		}
+
+	}
+
+	/**
+	 * all slabs of one chunk size, their free chunks, and their clock hand
+	 */
+	private static final class SizeClass<K> {
+
+		private final int chunkSize;
+		private final ArrayList<Slab<K>> slabList;
+		private long[] freeHandles;
+		private int freeCount;
+		private int clockSlab;
+		private int clockChunk;
+
+		private SizeClass(int chunkSize) {
+			this.chunkSize = chunkSize;
+			slabList = new ArrayList<>();
+			freeHandles = new long[16];
+			freeCount = 0;
+			clockSlab = 0;
+			clockChunk = 0;
+		}
+
+		private void free(long handle) {
+			if (freeCount == freeHandles.length) {
+				long[] newFreeHandles = new long[freeHandles.length << 1];
+				System.arraycopy(freeHandles, 0, newFreeHandles, 0, freeCount);
+				freeHandles = newFreeHandles;
+			}
+			freeHandles[freeCount++] = handle;
+		}
+
+	}
+
+	/**
+	 * maps keys to the handles of their chunks without boxing them. open
+	 * addressing with linear probing and backward shift deletion, like
+	 * {@link LongCache}.
+	 */
+	private static final class HandleIndex<K> {
+
+		private static final int MINIMUM_CAPACITY = 16;
+		private static final int MAXIMUM_CAPACITY = 1 << 30;
+
+		/**
+		 * stands for the null key, so null marks a free slot
+		 */
+		private static final Object NULL_KEY = new Object();
+
+		private Object[] keys;
+		private long[] handles;
+		private int size;
+		private int resizeThreshold;
+
+		/**
+		 * live view of all keys, created once
+		 */
+		private final Set<K> keySet;
+
+		private HandleIndex() {
+			allocate(MINIMUM_CAPACITY);
+			size = 0;
+			keySet = new AbstractSet<>() {
+
+				@Override
+				public Iterator<K> iterator() {
+					return new Iterator<>() {
+
+						private int index = advance(0);
+
+						private int advance(int index) {
+							while (index < keys.length && keys[index] == null)
+								index++;
+							return index;
+						}
+
+						@Override
+						public boolean hasNext() {
+							return index < keys.length;
+						}
+
+						@Override
+						public K next() {
+							if (!hasNext())
+								throw new NoSuchElementException();
+							K key = unmask(keys[index]);
+							index = advance(index + 1);
+							return key;
+						}
+
+					};
+				}
+
+				@Override
+				public int size() {
+					return size;
+				}
+
+				@Override
+				public boolean contains(Object key) {
+					return indexOf(key) != -1;
+				}
+
+			};
+		}
+
+		private static Object mask(Object key) {
+			return key == null ? NULL_KEY : key;
+		}
+
+		@SuppressWarnings("unchecked")
+		private static <K> K unmask(Object key) {
+			return key == NULL_KEY ? null : (K) key;
+		}
+
+		/**
+		 * @param maskedKey
+		 * @return well-distributed hash of the key
+		 */
+		private static int hash(Object maskedKey) {
+			int hash = maskedKey.hashCode() * 0x9E3779B9;
+			return hash ^ (hash >>> 16);
+		}
+
+		private void allocate(int length) {
+			keys = new Object[length];
+			handles = new long[length];
+			resizeThreshold = length / 4 * 3;
+		}
+
+		/**
+		 * @param key
+		 * @return index of the key or -1 if the key is not mapped
+		 */
+		private int indexOf(Object key) {
+			Object maskedKey = mask(key);
+			int mask = keys.length - 1;
+			for (int index = hash(maskedKey) & mask; keys[index] != null; index = (index + 1) & mask)
+				if (keys[index].equals(maskedKey))
+					return index;
+			return -1;
+		}
+
+		/**
+		 * @param maskedKey
+		 * @return index of the key or of the free slot the key would be put into
+		 */
+		private int probe(Object maskedKey) {
+			int mask = keys.length - 1;
+			int index = hash(maskedKey) & mask;
+			while (keys[index] != null && !keys[index].equals(maskedKey))
+				index = (index + 1) & mask;
+			return index;
+		}
+
+		/**
+		 * @param key
+		 * @return handle of the key or -1 if the key is not mapped
+		 */
+		private long get(Object key) {
+			int index = indexOf(key);
+			return index == -1 ? -1 : handles[index];
+		}
+
+		/**
+		 * @param key
+		 * @param handle
+		 *            not negative
+		 * @throws IllegalStateException
+		 *             if the key is not mapped and the index is full
+		 */
+		private void put(K key, long handle) {
+			Object maskedKey = mask(key);
+			int index = probe(maskedKey);
+			if (keys[index] == null) {
+				if (size >= resizeThreshold) {
+					if (keys.length == MAXIMUM_CAPACITY)
+						throw new IllegalStateException("the cache is full");
+					resize();
+					index = probe(maskedKey);
+				}
+				size++;
+			}
+			keys[index] = maskedKey;
+			handles[index] = handle;
+		}
+
+		/**
+		 * @param key
+		 * @return previous handle of the key or -1 if the key has not been mapped
+		 */
+		private long remove(Object key) {
+			int index = indexOf(key);
+			if (index == -1)
+				return -1;
+			long handle = handles[index];
+			delete(index);
+			return handle;
+		}
+
+		/**
+		 * removes the entry at the index and shifts all following entries of the
+		 * probe sequence backwards, so no tombstones are needed
+		 *
+		 * @param index
+		 */
+		private void delete(int index) {
+			size--;
+			int mask = keys.length - 1;
+			int gap = index;
+			int home;
+			for (int i = (gap + 1) & mask; keys[i] != null; i = (i + 1) & mask) {
+				home = hash(keys[i]) & mask;
+				if (((i - home) & mask) >= ((i - gap) & mask)) {
+					keys[gap] = keys[i];
+					handles[gap] = handles[i];
+					gap = i;
+				}
+			}
+			keys[gap] = null;
+			handles[gap] = 0;
+		}
+
+		/**
+		 * doubles the length of the table
+		 */
+		private void resize() {
+			Object[] oldKeys = keys;
+			long[] oldHandles = handles;
+			allocate(oldKeys.length << 1);
+			int index;
+			for (int i = 0; i < oldKeys.length; i++) {
+				if (oldKeys[i] == null)
+					continue;
+				index = probe(oldKeys[i]);
+				keys[index] = oldKeys[i];
+				handles[index] = oldHandles[i];
+			}
+		}
+
+		private void forEach(ObjLongConsumer<? super K> action) {
+			for (int i = 0; i < keys.length; i++)
+				if (keys[i] != null)
+					action.accept(unmask(keys[i]), handles[i]);
+		}
+
+		private void clear() {
+			Arrays.fill(keys, null);
+			Arrays.fill(handles, 0);
+			size = 0;
+		}
+
+	}
+
+	public static final int DEFAULT_SLAB_SIZE = 1 << 20;
+
+	private static final int MINIMUM_CHUNK_SIZE = 64;
+	private static final int MAXIMUM_SLAB_SIZE = 1 << 30;
+	private static final int INITIAL_SLAB_TABLE_LENGTH = 16;
+
+	private final Serializer<V> serializer;
+	private final int slabSize;
+
+	/**
+	 * maps keys to the handles of their chunks. a handle consists of the id of
+	 * the slab in the upper and the index of the chunk in the lower 32 bits.
+	 */
+	private final HandleIndex<K> handleIndex;
+
+	/**
+	 * slabs by their id, null if the id is not in use. grows as slabs are
+	 * allocated.
+	 */
+	private Slab<K>[] slabs;
+	private final int maximumSlabCount;
+	private final SizeClass<K>[] sizeClasses;
+
+	/**
+	 * direct buffers of slabs which have been released by {@link #clear()}
+	 */
+	private final ArrayList<ByteBuffer> bufferPool;
+	private int slabCount;
+
+	/**
+	 * stages values during serialization and deserialization
+	 */
+	private final DataQueue stagingQueue;
+
+	/**
+	 * stages removed values during deserialization for the
+	 * {@link RemovalListener}. separate from the staging queue because values are
+	 * evicted while a new value is staged.
+	 */
+	private final DataQueue removalQueue;
+
+	private long evictionCount;
+	private StatsRecorder statsRecorder;
+	private RemovalDispatcher<K, V> removalDispatcher;
+
+	/**
+	 * @param serializer
+	 * @param maximumBytes
+	 *            maximum number of bytes of direct memory this cache allocates
+	 * @throws NullPointerException
+	 *             if serializer is null
+	 * @throws IllegalArgumentException
+	 *             if maximumBytes is smaller than {@link #DEFAULT_SLAB_SIZE}
+	 */
+	public OffHeapCache(@NotNull Serializer<V> serializer, @Positive long maximumBytes) {
+		this(serializer, maximumBytes, DEFAULT_SLAB_SIZE);
+	}
+
+	/**
+	 * @param serializer
+	 * @param maximumBytes
+	 *            maximum number of bytes of direct memory this cache allocates
+	 * @param slabSize
+	 *            number of bytes allocated at once, limits the size of a
+	 *            serialized value
+	 * @throws NullPointerException
+	 *             if serializer is null
+	 * @throws IllegalArgumentException
+	 *             if slabSize is not a power of two between 64 and 2^30 or
+	 *             maximumBytes is smaller than slabSize
+	 */
+	@SuppressWarnings("unchecked")
+	public OffHeapCache(@NotNull Serializer<V> serializer, @Positive long maximumBytes, @Positive int slabSize) {
+		Assurance.assureNotNull(serializer);
+		Assurance.assureBoundaries(slabSize, MINIMUM_CHUNK_SIZE, MAXIMUM_SLAB_SIZE);
+		if (Integer.bitCount(slabSize) != 1)
+			throw new IllegalArgumentException("slabSize " + slabSize + " is not a power of two.");
+		Assurance.assureBoundaries(maximumBytes, slabSize, Long.MAX_VALUE);
+		this.serializer = serializer;
+		this.slabSize = slabSize;
+		handleIndex = new HandleIndex<>();
+		maximumSlabCount = (int) Math.min(Integer.MAX_VALUE - 8, maximumBytes / slabSize);
+		slabs = (Slab<K>[]) new Slab<?>[Math.min(INITIAL_SLAB_TABLE_LENGTH, maximumSlabCount)];
+		sizeClasses = (SizeClass<K>[]) new SizeClass<?>[Integer.numberOfTrailingZeros(slabSize / MINIMUM_CHUNK_SIZE)
+				+ 1];
+		for (int i = 0; i < sizeClasses.length; i++)
+			sizeClasses[i] = new SizeClass<>(MINIMUM_CHUNK_SIZE << i);
+		bufferPool = new ArrayList<>();
+		slabCount = 0;
+		stagingQueue = new DataQueue();
+		removalQueue = new DataQueue();
+		evictionCount = 0;
+		statsRecorder = StatsRecorder.disabled();
+		removalDispatcher = RemovalDispatcher.disabled();
+	}
+
+	private static long handle(int slabId, int chunk) {
+		return ((long) slabId << 32) | chunk;
+	}
+
+	private static int slabIdOf(long handle) {
+		return (int) (handle >>> 32);
+	}
+
+	private static int chunkOf(long handle) {
+		return (int) handle;
+	}
+
+	/**
+	 * @param length
+	 *            number of bytes of a chunk
+	 * @return smallest size class whose chunks hold length bytes
+	 */
+	private SizeClass<K> sizeClassOf(int length) {
+		int chunkSize = Math.max(MINIMUM_CHUNK_SIZE, Integer.highestOneBit(length - 1) << 1);
+		return sizeClasses[Integer.numberOfTrailingZeros(chunkSize / MINIMUM_CHUNK_SIZE)];
+	}
+
+	/**
+	 * allocates a new slab for the size class if the maximum number of slabs has
+	 * not been reached
+	 *
+	 * @param sizeClass
+	 * @return the new slab or null
+	 */
+	private Slab<K> createSlab(SizeClass<K> sizeClass) {
+		if (slabCount == maximumSlabCount)
+			return null;
+		if (slabCount == slabs.length)
+			slabs = Arrays.copyOf(slabs, (int) Math.min(maximumSlabCount, (long) slabs.length << 1));
+		int id = 0;
+		while (slabs[id] != null)
+			id++;
+		ByteBuffer buffer = bufferPool.isEmpty() ? ByteBuffer.allocateDirect(slabSize)
+				: bufferPool.remove(bufferPool.size() - 1);
+		Slab<K> slab = new Slab<>(id, buffer, sizeClass);
+		slabs[id] = slab;
+		sizeClass.slabList.add(slab);
+		slabCount++;
+		return slab;
+	}
+
+	/**
+	 * evicts the value stored in the chunk
+	 *
+	 * @param slab
+	 * @param chunk
+	 */
+	@SuppressWarnings("unchecked")
+	private void evict(Slab<K> slab, int chunk) {
+		K key = (K) slab.owners[chunk];
+		notifyRemoval(key, handle(slab.id, chunk), RemovalCause.EVICTED);
+		handleIndex.remove(key);
+		slab.owners[chunk] = null;
+		evictionCount++;
+		statsRecorder.recordEvictions(1);
+	}
+
+	/**
+	 * moves the clock hand of the size class until it finds a chunk which has not
+	 * been read since the hand has passed it the last time and evicts its value.
+	 * the size class must not have any free chunks.
+	 *
+	 * @param sizeClass
+	 * @return handle of the evicted chunk
+	 */
+	private long evictChunk(SizeClass<K> sizeClass) {
+		Slab<K> slab;
+		int chunk;
+		while (true) {
+			slab = sizeClass.slabList.get(sizeClass.clockSlab);
+			if (sizeClass.clockChunk >= slab.allocated) {
+				sizeClass.clockChunk = 0;
+				sizeClass.clockSlab = (sizeClass.clockSlab + 1) % sizeClass.slabList.size();
+				continue;
+			}
+			chunk = sizeClass.clockChunk++;
+			if (slab.owners[chunk] == null)
+				continue;
+			if (slab.referenced[chunk]) {
+				slab.referenced[chunk] = false;
+				continue;
+			}
+			evict(slab, chunk);
+			return handle(slab.id, chunk);
+		}
+	}
+
+	/**
+	 * empties the last slab of the size class with the most slabs and assigns it
+	 * to the given size class
+	 *
+	 * @param sizeClass
+	 * @return the reassigned slab
+	 */
+	private Slab<K> stealSlab(SizeClass<K> sizeClass) {
+		SizeClass<K> victimClass = null;
+		for (SizeClass<K> candidate : sizeClasses)
+			if (victimClass == null || candidate.slabList.size() > victimClass.slabList.size())
+				victimClass = candidate;
+		Slab<K> victim = victimClass.slabList.remove(victimClass.slabList.size() - 1);
+		if (victimClass.clockSlab >= victimClass.slabList.size()) {
+			victimClass.clockSlab = 0;
+			victimClass.clockChunk = 0;
+		}
+		for (int chunk = 0; chunk < victim.allocated; chunk++)
+			if (victim.owners[chunk] != null)
+				evict(victim, chunk);
+		int freeCount = 0;
+		for (int i = 0; i < victimClass.freeCount; i++)
+			if (slabIdOf(victimClass.freeHandles[i]) != victim.id)
+				victimClass.freeHandles[freeCount++] = victimClass.freeHandles[i];
+		victimClass.freeCount = freeCount;
+		Slab<K> slab = new Slab<>(victim.id, victim.buffer, sizeClass);
+		slabs[slab.id] = slab;
+		sizeClass.slabList.add(slab);
+		return slab;
+	}
+
+	/**
+	 * @param sizeClass
+	 * @return handle of a free chunk of the size class
+	 */
+	private long allocate(SizeClass<K> sizeClass) {
+		if (sizeClass.freeCount > 0)
+			return sizeClass.freeHandles[--sizeClass.freeCount];
+		Slab<K> slab = sizeClass.slabList.isEmpty() ? null : sizeClass.slabList.get(sizeClass.slabList.size() - 1);
+		if (slab == null || slab.allocated == slab.owners.length) {
+			slab = createSlab(sizeClass);
+			if (slab == null) {
+				if (!sizeClass.slabList.isEmpty())
+					return evictChunk(sizeClass);
+				slab = stealSlab(sizeClass);
+			}
+		}
+		return handle(slab.id, slab.allocated++);
+	}
+
+	/**
+	 * frees the chunk of the handle
+	 *
+	 * @param handle
+	 */
+	private void release(long handle) {
+		Slab<K> slab = slabs[slabIdOf(handle)];
+		slab.owners[chunkOf(handle)] = null;
+		slab.sizeClass.free(handle);
+	}
+
+	/**
+	 * deserializes the value and passes the removal to the
+	 * {@link RemovalListener} if there is one. must be called before the chunk
+	 * is released.
+	 *
+	 * @param key
+	 * @param handle
+	 * @param cause
+	 */
+	private void notifyRemoval(K key, long handle, RemovalCause cause) {
+		if (removalDispatcher.isEnabled())
+			removalDispatcher.dispatch(key, read(handle, removalQueue), cause);
+	}
+
+	/**
+	 * @param handle
+	 * @return value stored in the chunk of the handle
+	 */
+	private V read(long handle) {
+		return read(handle, stagingQueue);
+	}
+
+	/**
+	 * @param handle
+	 * @param queue
+	 *            stages the value
+	 * @return value stored in the chunk of the handle
+	 */
+	private V read(long handle, DataQueue queue) {
+		Slab<K> slab = slabs[slabIdOf(handle)];
+		int chunk = chunkOf(handle);
+		int offset = chunk * slab.sizeClass.chunkSize;
+		ByteBuffer view = slab.buffer.duplicate();
+		view.limit(offset + Integer.BYTES + slab.buffer.getInt(offset)).position(offset + Integer.BYTES);
+		queue.clear();
+		queue.putByteBuffer(view);
+		V value = serializer.deserialize(queue);
+		queue.clear();
+		return value;
+	}
+
+	/**
+	 * @return number of bytes of a slab
+	 */
+	public int getSlabSize() {
+		return slabSize;
+	}
+
+	/**
+	 * @return number of bytes of direct memory which have been allocated
+	 */
+	public long getAllocatedBytes() {
+		return (long) slabCount * slabSize;
+	}
+
+	/**
+	 * @return maximum number of bytes of direct memory this cache allocates
+	 */
+	public long getMaximumBytes() {
+		return (long) maximumSlabCount * slabSize;
+	}
+
+	/**
+	 * @return number of values which have been evicted since this cache was
+	 *         created
+	 */
+	public long getEvictionCount() {
+		return evictionCount;
+	}
+
+	/**
+	 * @throws NullPointerException
+	 *             if value is null
+	 * @throws IllegalArgumentException
+	 *             if the serialized value does not fit into a slab
+	 */
+	@Override
+	public void cache(K key, @NotNull V value) {
+		Assurance.assureNotNull(value);
+		stagingQueue.clear();
+		serializer.serialize(value, stagingQueue);
+		int length = stagingQueue.available();
+		if (length > slabSize - Integer.BYTES) {
+			stagingQueue.clear();
+			throw new IllegalArgumentException(
+					"serialized value of " + length + " bytes does not fit into a slab of " + slabSize + " bytes.");
+		}
+		long previous = handleIndex.remove(key);
+		if (previous != -1) {
+			notifyRemoval(key, previous, RemovalCause.REPLACED);
+			release(previous);
+		}
+		long handle = allocate(sizeClassOf(length + Integer.BYTES));
+		Slab<K> slab = slabs[slabIdOf(handle)];
+		int chunk = chunkOf(handle);
+		int offset = chunk * slab.sizeClass.chunkSize;
+		slab.buffer.putInt(offset, length);
+		ByteBuffer view = slab.buffer.duplicate();
+		view.limit(offset + Integer.BYTES + length).position(offset + Integer.BYTES);
+		stagingQueue.transferDataInto(view);
+		stagingQueue.clear();
+		slab.owners[chunk] = key;
+		slab.referenced[chunk] = false;
+		handleIndex.put(key, handle);
+	}
+
+	@Override
+	public V get(K key) {
+		long handle = handleIndex.get(key);
+		if (handle == -1) {
+			statsRecorder.recordMisses(1);
+			throw new NoSuchElementException("No mapping for key " + key);
+		}
+		statsRecorder.recordHits(1);
+		slabs[slabIdOf(handle)].referenced[chunkOf(handle)] = true;
+		return read(handle);
+	}
+
+	@Override
+	public boolean contains(K key) {
+		return handleIndex.get(key) != -1;
+	}
+
+	@Override
+	public void remove(K key) {
+		long handle = handleIndex.remove(key);
+		if (handle == -1)
+			throw new NoSuchElementException("No mapping for key " + key);
+		notifyRemoval(key, handle, RemovalCause.EXPLICIT);
+		release(handle);
+	}
+
+	@Override
+	public int size() {
+		return handleIndex.size;
+	}
+
+	/**
+	 * removes all cached entries. the direct memory is kept and reused.
+	 */
+	@Override
+	public void clear() {
+		if (removalDispatcher.isEnabled())
+			handleIndex.forEach((key, handle) -> notifyRemoval(key, handle, RemovalCause.EXPLICIT));
+		handleIndex.clear();
+		for (int id = 0; id < slabs.length; id++) {
+			if (slabs[id] != null) {
+				bufferPool.add(slabs[id].buffer);
+				slabs[id] = null;
+			}
+		}
+		for (int i = 0; i < sizeClasses.length; i++)
+			sizeClasses[i] = new SizeClass<>(sizeClasses[i].chunkSize);
+		slabCount = 0;
+	}
+
+	/**
+	 * removes all cached entries and drops all slabs, so their direct memory is
+	 * released once the buffers are collected. the cache stays usable and
+	 * allocates new slabs on demand.
+	 */
+	@Override
+	public void close() {
+		clear();
+		bufferPool.clear();
+	}
+
+	@Override
+	public void setStatsRecorder(@NotNull StatsRecorder statsRecorder) {
+		Assurance.assureNotNull(statsRecorder);
+		this.statsRecorder = statsRecorder;
+	}
+
+	/**
+	 * removed values are deserialized before they are passed to the listener
+	 */
+	@Override
+	public void setRemovalListener(RemovalListener<? super K, ? super V> removalListener, Executor executor) {
+		removalDispatcher = RemovalDispatcher.create(removalListener, executor);
+	}
+
+	@Override
+	public StatsRecorder getStatsRecorder() {
+		return statsRecorder;
+	}
+
+	@Override
+	public Set<K> getKeySet() {
+		return Collections.unmodifiableSet(handleIndex.keySet);
+	}
+
+	/**
+	 * deserializes all values
+	 *
+	 * @return unmodifiable collection of all values
+	 */
+	@Override
+	public Collection<V> getValueCollection() {
+		ArrayList<V> valueList = new ArrayList<>(handleIndex.size);
+		handleIndex.forEach((key, handle) -> valueList.add(read(handle)));
+		return Collections.unmodifiableCollection(valueList);
+	}
+
+	/**
+	 * deserializes every value without copying all of them first
+	 */
+	@Override
+	public void forEach(BiConsumer<? super K, ? super V> action) {
+		handleIndex.forEach((key, handle) -> action.accept(key, read(handle)));
+	}
+
+	@Override
+	public String toString() {
+		return "OffHeapCache [slabSize=" + slabSize + ", allocatedBytes=" + getAllocatedBytes() + ", maximumBytes="
+				+ getMaximumBytes() + ", size()=" + size() + "]";
+	}
+
+}
@@ -1,15 +1,26 @@
 package de.nuttercode.util.cache;
 
 import java.lang.ref.Reference;
-import java.util.ArrayList;
+import java.lang.ref.ReferenceQueue;
 import java.util.Collection;
-import java.util.HashSet;
+import java.util.Iterator;
+import java.util.Map;
 import java.util.NoSuchElementException;
 import java.util.Set;
+import java.util.concurrent.Executor;
+import java.util.function.BiConsumer;
+import java.util.function.BiFunction;
+
+import de.nuttercode.util.assurance.Assurance;
+import de.nuttercode.util.assurance.NotNull;
 
 /**
- * Caches values by wrapping them in {@link Reference}s of type R.
- * 
+ * Caches values by wrapping them in {@link Reference}s of type R. All
+ * {@link Reference}s are registered with a {@link ReferenceQueue}. Entries
+ * whose values have been collected are purged by draining this queue during
+ * normal operations, so the cost of purging is proportional to the number of
+ * collected values and not to the size of the cache.
+ *
  * @author Johannes B. Latzel
  *
  * @param <K>
@@ -21,63 +32,266 @@ import java.util.Set;
  */
 public abstract class ReferenceCache<K, V, R extends Reference<V>> implements Cache<K, V> {
 
+	/**
+	 * maximum number of collected references which are purged during a single
+	 * read or write operation
+	 */
+	private static final int DRAIN_THRESHOLD = 64;
+
 	/**
 	 * strongly caches keys to its {@link Reference}s
 	 */
 	private final StrongCache<K, R> strongCache;
 
+	/**
+	 * queue of all {@link Reference}s whose values have been collected
+	 */
+	private final ReferenceQueue<V> referenceQueue;
+
+	private StatsRecorder statsRecorder;
+	private RemovalDispatcher<K, V> removalDispatcher;
+
+	/**
+	 * live views, created once
+	 */
+	private final Set<K> keySet;
+	private final Collection<V> valueCollection;
+
 	public ReferenceCache() {
-		strongCache = new StrongCache<>();
+		this(new StrongCache<>());
+	}
+
+	/**
+	 * @param strongCache
+	 *            empty cache which will map the keys to their {@link Reference}s.
+	 *            pass a {@link ConcurrentStrongCache} to make this cache
+	 *            thread-safe.
+	 */
+	public ReferenceCache(@NotNull StrongCache<K, R> strongCache) {
+		Assurance.assureNotNull(strongCache);
+		this.strongCache = strongCache;
+		referenceQueue = new ReferenceQueue<>();
+		statsRecorder = StatsRecorder.disabled();
+		removalDispatcher = RemovalDispatcher.disabled();
+		keySet = new LiveSet<>(strongCache.entrySet(), strongCache.isConcurrent(), (entry, action) -> {
+			if (entry.getValue().get() != null)
+				action.accept(entry.getKey());
+		}, this::size, this::isVisible);
+		valueCollection = new LiveCollection<>(strongCache.entrySet(), strongCache.isConcurrent(), (entry, action) -> {
+			V value = entry.getValue().get();
+			if (value != null)
+				action.accept(value);
+		}, this::size);
 	}
 
 	/**
 	 * @param key
-	 * @throws NoSuchElementException
-	 *             if the value corresponding to the key is not contained in this
-	 *             {@link Cache}
+	 * @return true if the key is mapped to a value which has not been collected
 	 */
-	private void assureContains(K key) {
-		if (!contains(key))
-			throw new NoSuchElementException("No mapping for key " + key);
+	@SuppressWarnings("unchecked")
+	private boolean isVisible(Object key) {
+		return lookup((K) key) != null;
+	}
+
+	/**
+	 * @param key
+	 * @return the referenced value or null if the key is not mapped or the value
+	 *         has been collected
+	 */
+	V lookup(K key) {
+		R reference = strongCache.lookup(key);
+		return reference == null ? null : reference.get();
 	}
 
 	/**
+	 * polls at most maximum collected {@link Reference}s and purges their entries.
+	 * purged entries are recorded as collections and passed to the
+	 * {@link RemovalListener}.
+	 *
+	 * @param maximum
+	 * @return number of purged entries
+	 */
+	@SuppressWarnings("unchecked")
+	int drainReferenceQueue(int maximum) {
+		Reference<? extends V> reference;
+		int polled = 0;
+		int drained = 0;
+		while (polled < maximum && (reference = referenceQueue.poll()) != null) {
+			polled++;
+			if (reference instanceof KeyedReference
+					&& strongCache.remove(((KeyedReference<K>) reference).getKey(), (R) reference)) {
+				drained++;
+				removalDispatcher.dispatch(((KeyedReference<K>) reference).getKey(), null, RemovalCause.COLLECTED);
+			}
+		}
+		if (drained > 0)
+			statsRecorder.recordCollections(drained);
+		return drained;
+	}
+
+	/**
+	 * called by the default implementation of
+	 * {@link #createReference(Object, Object, ReferenceQueue)}. entries of
+	 * references created by this method are not purged once their value has
+	 * been collected.
+	 *
+	 * @param value
+	 * @return new Reference which wraps around the value
+	 * @throws UnsupportedOperationException
+	 *             if not overridden
+	 * @deprecated override {@link #createReference(Object, Object, ReferenceQueue)}
+	 *             instead
+	 */
+	@Deprecated
+	protected R createReference(V value) {
+		throw new UnsupportedOperationException("createReference is not implemented");
+	}
+
+	/**
+	 * creates a new {@link Reference} which wraps around the value. the reference
+	 * has to be registered with the queue. the references of {@link SoftCache}
+	 * and {@link WeakCache} know their keys and are purged automatically once
+	 * their value has been collected, references of other subclasses are not.
+	 * delegates to {@link #createReference(Object)} by default.
+	 *
+	 * @param key
 	 * @param value
+	 * @param queue
 	 * @return new Reference which wraps around the value
 	 */
-	protected abstract R createReference(V value);
+	protected R createReference(K key, V value, ReferenceQueue<? super V> queue) {
+		return createReference(value);
+	}
 
 	/**
 	 * wraps the value and caches the reference
 	 */
 	@Override
 	public void cache(K key, V value) {
-		strongCache.cache(key, createReference(value));
+		drainReferenceQueue(DRAIN_THRESHOLD);
+		R previous = strongCache.put(key, createReference(key, value, referenceQueue));
+		if (previous != null)
+			notifyRemoval(key, previous, RemovalCause.REPLACED);
+	}
+
+	/**
+	 * passes the removal to the {@link RemovalListener}. the removal is reported
+	 * as {@link RemovalCause#COLLECTED} if the value has already been collected.
+	 * 
+	 * @param key
+	 * @param reference
+	 * @param cause
+	 */
+	private void notifyRemoval(K key, R reference, RemovalCause cause) {
+		if (!removalDispatcher.isEnabled())
+			return;
+		V value = reference.get();
+		removalDispatcher.dispatch(key, value, value == null ? RemovalCause.COLLECTED : cause);
 	}
 
 	@Override
 	public V get(K key) {
-		assureContains(key);
-		return strongCache.get(key).get();
+		drainReferenceQueue(DRAIN_THRESHOLD);
+		V value = lookup(key);
+		if (value == null) {
+			statsRecorder.recordMisses(1);
+			throw new NoSuchElementException("No mapping for key " + key);
+		}
+		statsRecorder.recordHits(1);
+		return value;
+	}
+
+	@Override
+	public V getIfPresent(K key) {
+		drainReferenceQueue(DRAIN_THRESHOLD);
+		V value = lookup(key);
+		if (value == null)
+			statsRecorder.recordMisses(1);
+		else
+			statsRecorder.recordHits(1);
+		return value;
 	}
 
 	@Override
 	public boolean contains(K key) {
-		return strongCache.contains(key) && strongCache.get(key).get() != null;
+		drainReferenceQueue(DRAIN_THRESHOLD);
+		return lookup(key) != null;
+	}
+
+	/**
+	 * a key whose value has been collected counts as not mapped. atomic if the
+	 * backing {@link StrongCache} is a {@link ConcurrentStrongCache}.
+	 */
+	@Override
+	public V putIfAbsent(K key, V value) {
+		Object[] previousHolder = new Object[1];
+		compute(key, (k, previous) -> {
+			previousHolder[0] = previous;
+			return previous != null ? previous : value;
+		});
+		@SuppressWarnings("unchecked")
+		V previous = (V) previousHolder[0];
+		return previous;
+	}
+
+	/**
+	 * a key whose value has been collected counts as not mapped. atomic if the
+	 * backing {@link StrongCache} is a {@link ConcurrentStrongCache}.
+	 */
+	@SuppressWarnings("unchecked")
+	@Override
+	public V compute(K key, @NotNull BiFunction<? super K, ? super V, ? extends V> remappingFunction) {
+		Assurance.assureNotNull(remappingFunction);
+		drainReferenceQueue(DRAIN_THRESHOLD);
+		// the new value is held strongly until it is returned
+		Object[] resultHolder = new Object[2];
+		strongCache.compute(key, (k, reference) -> {
+			V value = reference == null ? null : reference.get();
+			V newValue = remappingFunction.apply(k, value);
+			resultHolder[0] = reference;
+			resultHolder[1] = newValue;
+			if (newValue == null)
+				return null;
+			if (newValue == value)
+				return reference;
+			return createReference(k, newValue, referenceQueue);
+		});
+		R previous = (R) resultHolder[0];
+		V value = (V) resultHolder[1];
+		if (previous != null && (value == null || previous.get() != value)) {
+			notifyRemoval(key, previous, value == null ? RemovalCause.EXPLICIT : RemovalCause.REPLACED);
+			previous.clear();
+		}
+		return value;
 	}
 
 	@Override
 	public void remove(K key) {
-		if (strongCache.get(key).get() != null)
-			strongCache.get(key).clear();
-		strongCache.remove(key);
+		drainReferenceQueue(DRAIN_THRESHOLD);
+		R reference = strongCache.removeIfPresent(key);
+		if (reference == null)
+			throw new NoSuchElementException("No mapping for key " + key);
+		notifyRemoval(key, reference, RemovalCause.EXPLICIT);
+		reference.clear();
 	}
 
+	/**
+	 * purges all collected entries which have been enqueued so far
+	 */
 	@Override
 	public int size() {
+		drainReferenceQueue(Integer.MAX_VALUE);
 		return strongCache.size();
 	}
 
+	/**
+	 * @return true if the backing {@link StrongCache} is thread-safe
+	 */
+	@Override
+	public boolean isConcurrent() {
+		return strongCache.isConcurrent();
+	}
+
 	@Override
 	public String toString() {
 		return "ReferenceCache [strongCache=" + strongCache + "]";
@@ -85,34 +299,81 @@ public abstract class ReferenceCache<K, V, R extends Reference<V>> implements Ca
 
 	@Override
 	public void clear() {
-		strongCache.clear();
+		if (removalDispatcher.isEnabled()) {
+			Iterator<Map.Entry<K, R>> iterator = strongCache.entrySet().iterator();
+			Map.Entry<K, R> entry;
+			while (iterator.hasNext()) {
+				entry = iterator.next();
+				iterator.remove();
+				notifyRemoval(entry.getKey(), entry.getValue(), RemovalCause.EXPLICIT);
+			}
+			strongCache.clean();
+		} else
+			strongCache.clear();
+		drainReferenceQueue(Integer.MAX_VALUE);
 	}
 
+	/**
+	 * purges all collected entries which have been enqueued so far and rebuilds
+	 * the bloom filter of the backing {@link StrongCache} if there is one
+	 */
 	@Override
 	public void clean() {
-		Set<K> keySet = new HashSet<>(getKeySet());
-		for (K k : keySet)
-			if (strongCache.get(k).get() == null)
-				strongCache.remove(k);
+		drainReferenceQueue(Integer.MAX_VALUE);
+		strongCache.clean();
+	}
+
+	/**
+	 * purges at most maximum collected entries
+	 */
+	@Override
+	public int clean(int maximum) {
+		return drainReferenceQueue(maximum);
+	}
+
+	@Override
+	public void setStatsRecorder(@NotNull StatsRecorder statsRecorder) {
+		Assurance.assureNotNull(statsRecorder);
+		this.statsRecorder = statsRecorder;
+	}
+
+	@Override
+	public void setRemovalListener(RemovalListener<? super K, ? super V> removalListener, Executor executor) {
+		removalDispatcher = RemovalDispatcher.create(removalListener, executor);
 	}
 
+	@Override
+	public StatsRecorder getStatsRecorder() {
+		return statsRecorder;
+	}
+
+	/**
+	 * the view skips all entries whose values have been collected. its size
+	 * purges all collected entries which have been enqueued so far.
+	 */
 	@Override
 	public Set<K> getKeySet() {
-		return strongCache.getKeySet();
+		return keySet;
 	}
 
 	/**
-	 * @return Collection of all not-null values in this cache
+	 * the view skips all entries whose values have been collected. its size
+	 * purges all collected entries which have been enqueued so far.
 	 */
 	@Override
 	public Collection<V> getValueCollection() {
-		ArrayList<V> valueList = new ArrayList<>();
-		V value;
-		for (K k : getKeySet()) {
-			value = strongCache.get(k).get();
+		return valueCollection;
+	}
+
+	/**
+	 * skips all entries whose values have been collected
+	 */
+	@Override
+	public void forEach(BiConsumer<? super K, ? super V> action) {
+		strongCache.entrySet().forEach(entry -> {
+			V value = entry.getValue().get();
 			if (value != null)
-				valueList.add(value);
-		}
-		return valueList;
+				action.accept(entry.getKey(), value);
+		});
 	}
 }
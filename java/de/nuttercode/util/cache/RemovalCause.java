@@ -0,0 +1,45 @@
+package de.nuttercode.util.cache;
+
+/**
+ * Provides the reason why a key/value pair has left a {@link Cache}.
+ * 
+ * @author Johannes B. Latzel
+ *
+ */
+public enum RemovalCause {
+
+	/**
+	 * removed by {@link Cache#remove(Object)},
+	 * {@link Cache#removeAll(java.util.Collection)} or {@link Cache#clear()}
+	 */
+	EXPLICIT,
+
+	/**
+	 * the value has been replaced by caching another value for the same key
+	 */
+	REPLACED,
+
+	/**
+	 * removed by the cache itself because of its size
+	 */
+	EVICTED,
+
+	/**
+	 * removed by the cache itself because of its age
+	 */
+	EXPIRED,
+
+	/**
+	 * the value has been collected by the Garbage Collector
+	 */
+	COLLECTED;
+
+	/**
+	 * @return true if the key/value pair has been removed by the cache or the
+	 *         Garbage Collector and not by the user
+	 */
+	public boolean wasEvicted() {
+		return this == EVICTED || this == EXPIRED || this == COLLECTED;
+	}
+
+}
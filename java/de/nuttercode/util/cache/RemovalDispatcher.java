@@ -0,0 +1,130 @@
+package de.nuttercode.util.cache;
+
+import java.util.Queue;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.Executor;
+import java.util.concurrent.atomic.AtomicBoolean;
+
+import de.nuttercode.util.assurance.Assurance;
+
+/**
+ * Queues {@link RemovalNotification}s and passes them to a
+ * {@link RemovalListener} in batches on an {@link Executor}. Queuing is
+ * lock-free, so removals never wait for the listener. At most one batch is
+ * dispatched at a time, so the listener is never called concurrently and
+ * receives the notifications in the order in which they have been queued.
+ * 
+ * @author Johannes B. Latzel
+ *
+ * @param <K>
+ *            key type
+ * @param <V>
+ *            value type
+ */
+final class RemovalDispatcher<K, V> {
+
+	/**
+	 * maximum number of notifications per batch. a longer queue is dispatched by
+	 * several tasks, so a single cache can not occupy a thread of the executor
+	 * indefinitely.
+	 */
+	private static final int MAXIMUM_BATCH_SIZE = 1024;
+
+	private static final RemovalDispatcher<?, ?> DISABLED = new RemovalDispatcher<>(null, null);
+
+	private final RemovalListener<K, V> removalListener;
+	private final Executor executor;
+	private final Queue<RemovalNotification<K, V>> notificationQueue;
+
+	/**
+	 * true while a batch is dispatched or has been passed to the executor
+	 */
+	private final AtomicBoolean isScheduled;
+
+	private RemovalDispatcher(RemovalListener<K, V> removalListener, Executor executor) {
+		this.removalListener = removalListener;
+		this.executor = executor;
+		notificationQueue = new ConcurrentLinkedQueue<>();
+		isScheduled = new AtomicBoolean(false);
+	}
+
+	/**
+	 * @return a dispatcher which ignores all removals
+	 */
+	@SuppressWarnings("unchecked")
+	static <K, V> RemovalDispatcher<K, V> disabled() {
+		return (RemovalDispatcher<K, V>) DISABLED;
+	}
+
+	/**
+	 * @param removalListener
+	 *            listener or null
+	 * @param executor
+	 * @return a new dispatcher or {@link #disabled()} if removalListener is null
+	 * @throws NullPointerException
+	 *             if removalListener is not null and executor is null
+	 */
+	@SuppressWarnings("unchecked")
+	static <K, V> RemovalDispatcher<K, V> create(RemovalListener<? super K, ? super V> removalListener,
+			Executor executor) {
+		if (removalListener == null)
+			return disabled();
+		Assurance.assureNotNull(executor);
+		// notifications only produce keys and values, so a listener of supertypes is safe
+		return new RemovalDispatcher<>((RemovalListener<K, V>) removalListener, executor);
+	}
+
+	/**
+	 * @return true if removals are passed to a listener. callers should check
+	 *         this before collecting removed values in bulk operations.
+	 */
+	boolean isEnabled() {
+		return removalListener != null;
+	}
+
+	/**
+	 * queues the removal and schedules a batch if none is scheduled yet
+	 * 
+	 * @param key
+	 * @param value
+	 * @param cause
+	 */
+	void dispatch(K key, V value, RemovalCause cause) {
+		if (removalListener == null)
+			return;
+		notificationQueue.offer(new RemovalNotification<>(key, value, cause));
+		schedule();
+	}
+
+	private void schedule() {
+		if (!isScheduled.compareAndSet(false, true))
+			return;
+		try {
+			executor.execute(this::drain);
+		} catch (RuntimeException e) {
+			isScheduled.set(false);
+			throw e;
+		}
+	}
+
+	/**
+	 * passes at most {@link #MAXIMUM_BATCH_SIZE} notifications to the listener
+	 * and schedules the next batch if there are notifications left
+	 */
+	private void drain() {
+		RemovalNotification<K, V> notification;
+		int dispatched = 0;
+		while (dispatched < MAXIMUM_BATCH_SIZE && (notification = notificationQueue.poll()) != null) {
+			dispatched++;
+			try {
+				removalListener.onRemoval(notification);
+			} catch (RuntimeException e) {
+				// a failing listener must not stop the dispatch of other removals
+			}
+		}
+		isScheduled.set(false);
+		if (!notificationQueue.isEmpty())
+			schedule();
+	}
+
+}
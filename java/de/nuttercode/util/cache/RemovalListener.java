@@ -0,0 +1,26 @@
+package de.nuttercode.util.cache;
+
+/**
+ * Is notified whenever a key/value pair leaves a {@link Cache}, e.g. to release
+ * resources held by the value. See
+ * {@link Cache#setRemovalListener(RemovalListener, java.util.concurrent.Executor)}.
+ * 
+ * @author Johannes B. Latzel
+ *
+ * @param <K>
+ *            key type
+ * @param <V>
+ *            value type
+ */
+@FunctionalInterface
+public interface RemovalListener<K, V> {
+
+	/**
+	 * called by a thread of the executor of the cache, never concurrently for the
+	 * same cache. exceptions are ignored.
+	 * 
+	 * @param notification
+	 */
+	void onRemoval(RemovalNotification<K, V> notification);
+
+}
@@ -0,0 +1,45 @@
+package de.nuttercode.util.cache;
+
+/**
+ * A key/value pair which has left a {@link Cache} and the reason why.
+ * 
+ * @author Johannes B. Latzel
+ *
+ * @param <K>
+ *            key type
+ * @param <V>
+ *            value type
+ */
+public final class RemovalNotification<K, V> {
+
+	private final K key;
+	private final V value;
+	private final RemovalCause cause;
+
+	public RemovalNotification(K key, V value, RemovalCause cause) {
+		this.key = key;
+		this.value = value;
+		this.cause = cause;
+	}
+
+	public K getKey() {
+		return key;
+	}
+
+	/**
+	 * @return the removed value or null if it has been collected
+	 */
+	public V getValue() {
+		return value;
+	}
+
+	public RemovalCause getCause() {
+		return cause;
+	}
+
+	@Override
+	public String toString() {
+		return "RemovalNotification [key=" + key + ", value=" + value + ", cause=" + cause + "]";
+	}
+
+}
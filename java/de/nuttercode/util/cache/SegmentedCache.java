@@ -0,0 +1,451 @@
+package de.nuttercode.util.cache;
+
+import java.util.AbstractCollection;
+import java.util.AbstractSet;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.EnumMap;
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.Map;
+import java.util.Set;
+import java.util.Spliterator;
+import java.util.concurrent.Executor;
+import java.util.concurrent.locks.ReentrantLock;
+import java.util.function.BiConsumer;
+import java.util.function.BiFunction;
+import java.util.function.Consumer;
+import java.util.function.Function;
+import java.util.function.Supplier;
+import java.util.stream.Stream;
+
+import de.nuttercode.util.assurance.Assurance;
+import de.nuttercode.util.assurance.NotNull;
+import de.nuttercode.util.assurance.Positive;
+
+/**
+ * A thread-safe {@link Cache} which partitions its keys by their hash codes
+ * across independent segments. Every segment is a {@link Cache} created by a
+ * factory, e.g. a {@link BoundedCache} with its own {@link
+ * de.nuttercode.util.cache.eviction.EvictionPolicy}, and is guarded by its own
+ * lock. Writers of keys in different segments never contend, so the throughput
+ * of writes which update eviction state scales with the number of cores.
+ * Operations on all keys, e.g. {@link #size()}, {@link #clean()} or
+ * traversing {@link #getKeySet()}, lock one segment after the other and never
+ * pause all segments at once, so their results are not atomic.
+ *
+ * @author Johannes B. Latzel
+ *
+ * @param <K>
+ *            key type
+ * @param <V>
+ *            value type
+ */
+public class SegmentedCache<K, V> implements Cache<K, V> {
+
+	/**
+	 * a cache and the lock which guards it
+	 */
+	private static final class Segment<K, V> {
+
+		private final ReentrantLock lock;
+		private final Cache<K, V> cache;
+
+		private Segment(Cache<K, V> cache) {
+			lock = new ReentrantLock();
+			this.cache = cache;
+		}
+
+		/**
+		 * @param function
+		 * @return result of the function applied to the cache while holding the
+		 *         lock
+		 */
+		private <T> T apply(Function<Cache<K, V>, T> function) {
+			lock.lock();
+			try {
+				return function.apply(cache);
+			} finally {
+				lock.unlock();
+			}
+		}
+
+		/**
+		 * @param action
+		 *            performed on the cache while holding the lock
+		 */
+		private void run(Consumer<Cache<K, V>> action) {
+			lock.lock();
+			try {
+				action.accept(cache);
+			} finally {
+				lock.unlock();
+			}
+		}
+
+	}
+
+	private final Segment<K, V>[] segments;
+
+	/**
+	 * number of bits the mixed hash code is shifted to the right to obtain the
+	 * index of a segment. uses the upper bits so the segments do not share the
+	 * lower bits the hash tables of the segments use.
+	 */
+	private final int segmentShift;
+
+	private StatsRecorder statsRecorder;
+
+	/**
+	 * index of the segment {@link #clean(int)} starts at
+	 */
+	private volatile int nextCleanIndex;
+
+	/**
+	 * live views, created once
+	 */
+	private final Set<K> keySet;
+	private final Collection<V> valueCollection;
+
+	/**
+	 * creates four segments per available processor
+	 *
+	 * @param segmentFactory
+	 *            creates empty caches which do not have to be thread-safe
+	 * @throws NullPointerException
+	 *             if segmentFactory is null
+	 */
+	public SegmentedCache(@NotNull Supplier<? extends Cache<K, V>> segmentFactory) {
+		this(Runtime.getRuntime().availableProcessors() * 4, segmentFactory);
+	}
+
+	/**
+	 * @param segmentCount
+	 *            minimum number of segments, rounded up to the next power of two
+	 * @param segmentFactory
+	 *            creates empty caches which do not have to be thread-safe
+	 * @throws NullPointerException
+	 *             if segmentFactory is null
+	 * @throws IllegalArgumentException
+	 *             if segmentCount is not in [1, 2^16]
+	 */
+	@SuppressWarnings("unchecked")
+	public SegmentedCache(@Positive int segmentCount, @NotNull Supplier<? extends Cache<K, V>> segmentFactory) {
+		Assurance.assureBoundaries(segmentCount, 1, 1 << 16);
+		Assurance.assureNotNull(segmentFactory);
+		int bits = 32 - Integer.numberOfLeadingZeros(segmentCount - 1);
+		segments = (Segment<K, V>[]) new Segment<?, ?>[1 << bits];
+		segmentShift = 32 - bits;
+		for (int i = 0; i < segments.length; i++) {
+			Cache<K, V> cache = segmentFactory.get();
+			Assurance.assureNotNull(cache);
+			segments[i] = new Segment<>(cache);
+		}
+		statsRecorder = StatsRecorder.disabled();
+		nextCleanIndex = 0;
+		keySet = new AbstractSet<K>() {
+
+			@Override
+			public Iterator<K> iterator() {
+				return copyingStream(Cache::getKeySet).iterator();
+			}
+
+			@Override
+			public Spliterator<K> spliterator() {
+				return copyingStream(Cache::getKeySet).spliterator();
+			}
+
+			@SuppressWarnings("unchecked")
+			@Override
+			public boolean contains(Object o) {
+				return SegmentedCache.this.contains((K) o);
+			}
+
+			@Override
+			public int size() {
+				return SegmentedCache.this.size();
+			}
+
+		};
+		valueCollection = new AbstractCollection<V>() {
+
+			@Override
+			public Iterator<V> iterator() {
+				return copyingStream(Cache::getValueCollection).iterator();
+			}
+
+			@Override
+			public Spliterator<V> spliterator() {
+				return copyingStream(Cache::getValueCollection).spliterator();
+			}
+
+			@Override
+			public int size() {
+				return SegmentedCache.this.size();
+			}
+
+		};
+	}
+
+	/**
+	 * @param key
+	 * @return the segment of the key
+	 */
+	private Segment<K, V> segmentOf(Object key) {
+		if (segmentShift == 32)
+			return segments[0];
+		int hash = key == null ? 0 : key.hashCode();
+		return segments[((hash ^ (hash >>> 16)) * 0x9E3779B9) >>> segmentShift];
+	}
+
+	/**
+	 * @param view
+	 *            returns a view of a segment
+	 * @return lazy stream which copies the view of one segment at a time while
+	 *         holding its lock. splits at segment boundaries.
+	 */
+	private <T> Stream<T> copyingStream(Function<Cache<K, V>, Collection<T>> view) {
+		return Arrays.stream(segments)
+				.flatMap(segment -> segment.apply(cache -> new ArrayList<>(view.apply(cache))).stream());
+	}
+
+	/**
+	 * groups the keys by their segments
+	 *
+	 * @param keys
+	 * @return map of segments to their keys
+	 */
+	private Map<Segment<K, V>, ArrayList<K>> group(Collection<? extends K> keys) {
+		HashMap<Segment<K, V>, ArrayList<K>> keyListMap = new HashMap<>();
+		for (K key : keys)
+			keyListMap.computeIfAbsent(segmentOf(key), segment -> new ArrayList<>()).add(key);
+		return keyListMap;
+	}
+
+	/**
+	 * @return number of segments
+	 */
+	public int getSegmentCount() {
+		return segments.length;
+	}
+
+	/**
+	 * @param function
+	 *            applied to the cache of one segment after the other while
+	 *            holding its lock
+	 * @return results of the function in the order of the segments
+	 */
+	<T> ArrayList<T> applyToSegments(Function<Cache<K, V>, T> function) {
+		ArrayList<T> resultList = new ArrayList<>(segments.length);
+		for (Segment<K, V> segment : segments)
+			resultList.add(segment.apply(function));
+		return resultList;
+	}
+
+	@Override
+	public void cache(K key, V value) {
+		segmentOf(key).run(cache -> cache.cache(key, value));
+	}
+
+	@Override
+	public V get(K key) {
+		return segmentOf(key).apply(cache -> cache.get(key));
+	}
+
+	@Override
+	public boolean contains(K key) {
+		return segmentOf(key).apply(cache -> cache.contains(key));
+	}
+
+	@Override
+	public V getIfPresent(K key) {
+		return segmentOf(key).apply(cache -> cache.getIfPresent(key));
+	}
+
+	@Override
+	public V getOrDefault(K key, V defaultValue) {
+		return segmentOf(key).apply(cache -> cache.getOrDefault(key, defaultValue));
+	}
+
+	/**
+	 * atomic, the segment of the key is locked
+	 */
+	@Override
+	public V putIfAbsent(K key, V value) {
+		return segmentOf(key).apply(cache -> cache.putIfAbsent(key, value));
+	}
+
+	/**
+	 * atomic, the segment of the key is locked while the function runs
+	 */
+	@Override
+	public V compute(K key, @NotNull BiFunction<? super K, ? super V, ? extends V> remappingFunction) {
+		Assurance.assureNotNull(remappingFunction);
+		return segmentOf(key).apply(cache -> cache.compute(key, remappingFunction));
+	}
+
+	@Override
+	public void remove(K key) {
+		segmentOf(key).run(cache -> cache.remove(key));
+	}
+
+	/**
+	 * locks every segment only once
+	 */
+	@Override
+	public void cacheAll(Map<? extends K, ? extends V> map) {
+		HashMap<Segment<K, V>, HashMap<K, V>> valueMapMap = new HashMap<>();
+		for (Map.Entry<? extends K, ? extends V> entry : map.entrySet())
+			valueMapMap.computeIfAbsent(segmentOf(entry.getKey()), segment -> new HashMap<>()).put(entry.getKey(),
+					entry.getValue());
+		valueMapMap.forEach((segment, valueMap) -> segment.run(cache -> cache.cacheAll(valueMap)));
+	}
+
+	/**
+	 * locks every segment only once
+	 */
+	@Override
+	public Map<K, V> getAll(Collection<? extends K> keys) {
+		HashMap<K, V> valueMap = new HashMap<>();
+		group(keys).forEach((segment, keyList) -> valueMap.putAll(segment.apply(cache -> cache.getAll(keyList))));
+		return Collections.unmodifiableMap(valueMap);
+	}
+
+	/**
+	 * locks every segment only once
+	 */
+	@Override
+	public void removeAll(Collection<? extends K> keys) {
+		group(keys).forEach((segment, keyList) -> segment.run(cache -> cache.removeAll(keyList)));
+	}
+
+	@Override
+	public int size() {
+		int size = 0;
+		for (Segment<K, V> segment : segments)
+			size += segment.apply(Cache::size);
+		return size;
+	}
+
+	@Override
+	public void clear() {
+		for (Segment<K, V> segment : segments)
+			segment.run(Cache::clear);
+	}
+
+	/**
+	 * cleans one segment after the other
+	 *
+	 * @throws UnsupportedOperationException
+	 *             if the segments do not support cleaning
+	 */
+	@Override
+	public void clean() {
+		for (Segment<K, V> segment : segments)
+			segment.run(Cache::clean);
+	}
+
+	/**
+	 * cleans one segment after the other until maximum entries have been purged.
+	 * starts at the segment after the one the last call has stopped at.
+	 *
+	 * @throws UnsupportedOperationException
+	 *             if the segments do not support cleaning
+	 */
+	@Override
+	public int clean(int maximum) {
+		int purged = 0;
+		int index = nextCleanIndex;
+		for (int i = 0; i < segments.length && purged < maximum; i++) {
+			int remaining = maximum - purged;
+			purged += segments[index].apply(cache -> cache.clean(remaining));
+			index = (index + 1) & (segments.length - 1);
+		}
+		nextCleanIndex = index;
+		return purged;
+	}
+
+	/**
+	 * sets the recorder of all segments. the recorder has to be thread-safe.
+	 */
+	@Override
+	public void setStatsRecorder(@NotNull StatsRecorder statsRecorder) {
+		Assurance.assureNotNull(statsRecorder);
+		for (Segment<K, V> segment : segments)
+			segment.run(cache -> cache.setStatsRecorder(statsRecorder));
+		this.statsRecorder = statsRecorder;
+	}
+
+	@Override
+	public StatsRecorder getStatsRecorder() {
+		return statsRecorder;
+	}
+
+	/**
+	 * sums up the tier sizes of all segments
+	 */
+	@Override
+	public CacheStats getStats() {
+		EnumMap<CacheType, Integer> tierSizeMap = new EnumMap<>(CacheType.class);
+		for (Segment<K, V> segment : segments) {
+			Map<CacheType, Integer> tierSizes = segment.apply(cache -> cache.getStats().getTierSizes());
+			if (tierSizes != null)
+				tierSizes.forEach((cacheType, size) -> tierSizeMap.merge(cacheType, size, Integer::sum));
+		}
+		return statsRecorder.snapshot().withTierSizes(tierSizeMap);
+	}
+
+	/**
+	 * the segments notify this cache directly, which passes the removals of all
+	 * segments to the listener
+	 */
+	@Override
+	public void setRemovalListener(RemovalListener<? super K, ? super V> removalListener, Executor executor) {
+		RemovalDispatcher<K, V> removalDispatcher = RemovalDispatcher.create(removalListener, executor);
+		RemovalListener<K, V> segmentListener = removalDispatcher.isEnabled() ? notification -> removalDispatcher
+				.dispatch(notification.getKey(), notification.getValue(), notification.getCause()) : null;
+		for (Segment<K, V> segment : segments)
+			segment.run(cache -> cache.setRemovalListener(segmentListener, Runnable::run));
+	}
+
+	/**
+	 * the view copies the keys of one segment at a time while traversing
+	 */
+	@Override
+	public Set<K> getKeySet() {
+		return keySet;
+	}
+
+	/**
+	 * the view copies the values of one segment at a time while traversing
+	 */
+	@Override
+	public Collection<V> getValueCollection() {
+		return valueCollection;
+	}
+
+	/**
+	 * performs the action for the keys of a segment while holding its lock
+	 */
+	@Override
+	public void forEach(BiConsumer<? super K, ? super V> action) {
+		for (Segment<K, V> segment : segments)
+			segment.run(cache -> cache.forEach(action));
+	}
+
+	/**
+	 * every segment is guarded by its own lock
+	 */
+	@Override
+	public boolean isConcurrent() {
+		return true;
+	}
+
+	@Override
+	public String toString() {
+		return "SegmentedCache [segmentCount=" + getSegmentCount() + ", size()=" + size() + "]";
+	}
+
+}
@@ -0,0 +1,36 @@
+package de.nuttercode.util.cache;
+
+import de.nuttercode.util.assurance.NotNull;
+import de.nuttercode.util.buffer.ReadableBuffer;
+import de.nuttercode.util.buffer.WritableBuffer;
+
+/**
+ * Converts values into bytes and back. Used by caches which store their values
+ * outside of the heap, e.g. {@link OffHeapCache}.
+ *
+ * @author Johannes B. Latzel
+ *
+ * @param <T>
+ *            value type
+ */
+public interface Serializer<T> {
+
+	/**
+	 * writes the value into the buffer
+	 *
+	 * @param value
+	 * @param buffer
+	 */
+	void serialize(@NotNull T value, @NotNull WritableBuffer buffer);
+
+	/**
+	 * reads a value which has been written by {@link #serialize(Object,
+	 * WritableBuffer)} from the buffer
+	 *
+	 * @param buffer
+	 * @return the value
+	 */
+	@NotNull
+	T deserialize(@NotNull ReadableBuffer buffer);
+
+}
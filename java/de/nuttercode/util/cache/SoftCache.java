@@ -1,5 +1,6 @@
 package de.nuttercode.util.cache;
 
+import java.lang.ref.ReferenceQueue;
 import java.lang.ref.SoftReference;
 
 /**
@@ -16,9 +17,46 @@ import java.lang.ref.SoftReference;
  */
 public class SoftCache<K, V> extends ReferenceCache<K, V, SoftReference<V>> {
 
+	/**
+	 * {@link SoftReference} which knows its key
+	 */
+	private static final class KeyedSoftReference<K, V> extends SoftReference<V> implements KeyedReference<K> {
+
+		private final K key;
+
+		private KeyedSoftReference(K key, V value, ReferenceQueue<? super V> queue) {
+			super(value, queue);
+			this.key = key;
+		}
+
+		@Override
+		public K getKey() {
+			return key;
+		}
+
+	}
+
+	public SoftCache() {
+		super();
+	}
+
+	/**
+	 * @param strongCache
+	 *            empty cache which will map the keys to their {@link SoftReference}s
+	 * @see ReferenceCache#ReferenceCache(StrongCache)
+	 */
+	public SoftCache(StrongCache<K, SoftReference<V>> strongCache) {
+		super(strongCache);
+	}
+
+	@Override
+	protected SoftReference<V> createReference(K key, V value, ReferenceQueue<? super V> queue) {
+		return new KeyedSoftReference<>(key, value, queue);
+	}
+
 	@Override
-	protected SoftReference<V> createReference(V value) {
-		return new SoftReference<>(value);
+	public CacheStats getStats() {
+		return getStatsRecorder().snapshot().withTierSize(CacheType.SOFT, size());
 	}
 
 }
@@ -0,0 +1,264 @@
+package de.nuttercode.util.cache;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.channels.FileChannel.MapMode;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.function.Consumer;
+
+import de.nuttercode.util.assurance.Assurance;
+import de.nuttercode.util.assurance.NotNull;
+import de.nuttercode.util.assurance.Positive;
+import de.nuttercode.util.buffer.DataQueue;
+
+/**
+ * A disk tier for values which are evicted from memory, e.g. by the Garbage
+ * Collector. The values are converted by a {@link Serializer} and appended to
+ * a log in a memory-mapped file. The file is divided into segments of equal
+ * size which are written one after the other. Once the last segment is full,
+ * writing continues with the first segment and all records of the segment
+ * which is overwritten are dropped, so the oldest records are evicted first.
+ * Only the index, which maps every key to the position of its latest record,
+ * is kept on the heap. The file is deleted once this spill file is closed. All
+ * methods are thread-safe.
+ *
+ * @author Johannes B. Latzel
+ *
+ * @param <K>
+ *            key type
+ * @param <V>
+ *            value type
+ */
+public final class SpillFile<K, V> implements Closeable {
+
+	public static final int DEFAULT_SEGMENT_SIZE = 1 << 26;
+
+	private final Serializer<V> serializer;
+	private final FileChannel channel;
+	private final MappedByteBuffer[] segments;
+
+	/**
+	 * keys of all records per segment, including keys whose records have been
+	 * replaced or removed
+	 */
+	private final ArrayList<ArrayList<K>> segmentKeyLists;
+
+	/**
+	 * maps keys to the position of their records. a position consists of the
+	 * index of the segment in the upper and the offset in the lower 32 bits.
+	 */
+	private final HashMap<K, Long> positionMap;
+
+	/**
+	 * stages values during serialization and deserialization
+	 */
+	private final DataQueue stagingQueue;
+
+	private int writeSegment;
+	private int writeOffset;
+
+	/**
+	 * @param path
+	 *            file which will be created or truncated
+	 * @param serializer
+	 * @param maximumBytes
+	 *            size of the file
+	 * @throws IOException
+	 *             if the file can not be created or mapped
+	 * @throws NullPointerException
+	 *             if path or serializer is null
+	 * @throws IllegalArgumentException
+	 *             if maximumBytes is smaller than {@link #DEFAULT_SEGMENT_SIZE}
+	 */
+	public SpillFile(@NotNull Path path, @NotNull Serializer<V> serializer, @Positive long maximumBytes)
+			throws IOException {
+		this(path, serializer, maximumBytes, DEFAULT_SEGMENT_SIZE);
+	}
+
+	/**
+	 * @param path
+	 *            file which will be created or truncated
+	 * @param serializer
+	 * @param maximumBytes
+	 *            size of the file
+	 * @param segmentSize
+	 *            size of a segment, limits the size of a serialized value
+	 * @throws IOException
+	 *             if the file can not be created or mapped
+	 * @throws NullPointerException
+	 *             if path or serializer is null
+	 * @throws IllegalArgumentException
+	 *             if segmentSize is not positive or maximumBytes is smaller than
+	 *             segmentSize
+	 */
+	public SpillFile(@NotNull Path path, @NotNull Serializer<V> serializer, @Positive long maximumBytes,
+			@Positive int segmentSize) throws IOException {
+		Assurance.assureNotNull(path);
+		Assurance.assureNotNull(serializer);
+		Assurance.assurePositive(segmentSize);
+		Assurance.assureBoundaries(maximumBytes, segmentSize, Long.MAX_VALUE);
+		this.serializer = serializer;
+		long segmentCount = Math.min(Integer.MAX_VALUE - 8, maximumBytes / segmentSize);
+		channel = FileChannel.open(path, StandardOpenOption.CREATE, StandardOpenOption.TRUNCATE_EXISTING,
+				StandardOpenOption.READ, StandardOpenOption.WRITE, StandardOpenOption.DELETE_ON_CLOSE);
+		segments = new MappedByteBuffer[(int) segmentCount];
+		segmentKeyLists = new ArrayList<>(segments.length);
+		try {
+			for (int i = 0; i < segments.length; i++) {
+				segments[i] = channel.map(MapMode.READ_WRITE, (long) i * segmentSize, segmentSize);
+				segmentKeyLists.add(new ArrayList<>());
+			}
+		} catch (IOException | RuntimeException e) {
+			channel.close();
+			throw e;
+		}
+		positionMap = new HashMap<>();
+		stagingQueue = new DataQueue();
+		writeSegment = 0;
+		writeOffset = 0;
+	}
+
+	private static long position(int segment, int offset) {
+		return ((long) segment << 32) | offset;
+	}
+
+	/**
+	 * continues writing at the start of the next segment and drops all records
+	 * which are still stored in it
+	 */
+	private void nextSegment() {
+		writeSegment = (writeSegment + 1) % segments.length;
+		writeOffset = 0;
+		ArrayList<K> keyList = segmentKeyLists.get(writeSegment);
+		Long position;
+		for (K key : keyList)
+			if ((position = positionMap.get(key)) != null && (int) (position >>> 32) == writeSegment)
+				positionMap.remove(key);
+		keyList.clear();
+	}
+
+	/**
+	 * appends the value to the log. replaces the previous record of the key.
+	 *
+	 * @param key
+	 * @param value
+	 * @return false if the serialized value is larger than a segment
+	 */
+	public synchronized boolean write(K key, @NotNull V value) {
+		Assurance.assureNotNull(value);
+		stagingQueue.clear();
+		serializer.serialize(value, stagingQueue);
+		int length = stagingQueue.available();
+		int segmentSize = segments[0].capacity();
+		if (length > segmentSize - Integer.BYTES) {
+			stagingQueue.clear();
+			positionMap.remove(key);
+			return false;
+		}
+		if (writeOffset + Integer.BYTES + length > segmentSize)
+			nextSegment();
+		ByteBuffer segment = segments[writeSegment];
+		segment.putInt(writeOffset, length);
+		ByteBuffer view = segment.duplicate();
+		view.limit(writeOffset + Integer.BYTES + length).position(writeOffset + Integer.BYTES);
+		stagingQueue.transferDataInto(view);
+		stagingQueue.clear();
+		positionMap.put(key, position(writeSegment, writeOffset));
+		segmentKeyLists.get(writeSegment).add(key);
+		writeOffset += Integer.BYTES + length;
+		return true;
+	}
+
+	/**
+	 * @param key
+	 * @return the value of the latest record of the key or null if there is none
+	 */
+	public synchronized V read(K key) {
+		Long position = positionMap.get(key);
+		if (position == null)
+			return null;
+		ByteBuffer segment = segments[(int) (position >>> 32)];
+		int offset = (int) (long) position;
+		ByteBuffer view = segment.duplicate();
+		view.limit(offset + Integer.BYTES + segment.getInt(offset)).position(offset + Integer.BYTES);
+		stagingQueue.clear();
+		stagingQueue.putByteBuffer(view);
+		V value = serializer.deserialize(stagingQueue);
+		stagingQueue.clear();
+		return value;
+	}
+
+	/**
+	 * @param key
+	 * @return true if there is a record of the key
+	 */
+	public synchronized boolean contains(K key) {
+		return positionMap.containsKey(key);
+	}
+
+	/**
+	 * drops the record of the key
+	 *
+	 * @param key
+	 * @return true if there has been a record of the key
+	 */
+	public synchronized boolean remove(K key) {
+		return positionMap.remove(key) != null;
+	}
+
+	/**
+	 * performs the action for every key which has a record while holding the
+	 * monitor of this spill file
+	 *
+	 * @param action
+	 */
+	synchronized void forEachKey(Consumer<? super K> action) {
+		positionMap.keySet().forEach(action);
+	}
+
+	/**
+	 * @return number of keys which have a record
+	 */
+	public synchronized int size() {
+		return positionMap.size();
+	}
+
+	/**
+	 * drops all records
+	 */
+	public synchronized void clear() {
+		positionMap.clear();
+		for (ArrayList<K> keyList : segmentKeyLists)
+			keyList.clear();
+		writeSegment = 0;
+		writeOffset = 0;
+	}
+
+	/**
+	 * @return size of the file in bytes
+	 */
+	public long getMaximumBytes() {
+		return (long) segments.length * segments[0].capacity();
+	}
+
+	/**
+	 * drops all records and deletes the file
+	 */
+	@Override
+	public synchronized void close() throws IOException {
+		clear();
+		channel.close();
+	}
+
+	@Override
+	public String toString() {
+		return "SpillFile [maximumBytes=" + getMaximumBytes() + ", size()=" + size() + "]";
+	}
+
+}
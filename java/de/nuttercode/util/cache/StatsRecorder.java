@@ -0,0 +1,71 @@
+package de.nuttercode.util.cache;
+
+/**
+ * Records the statistics of a {@link Cache}. Implementations are thread-safe.
+ * Use {@link #disabled()} if no statistics should be recorded.
+ *
+ * @author Johannes B. Latzel
+ *
+ */
+public interface StatsRecorder {
+
+	/**
+	 * @return a recorder which ignores all events and whose snapshot is always
+	 *         {@link CacheStats#EMPTY}
+	 */
+	static StatsRecorder disabled() {
+		return DisabledStatsRecorder.INSTANCE;
+	}
+
+	/**
+	 * records lookups which found a value
+	 *
+	 * @param count
+	 */
+	void recordHits(int count);
+
+	/**
+	 * records lookups which did not find a value
+	 *
+	 * @param count
+	 */
+	void recordMisses(int count);
+
+	/**
+	 * records values which have been removed by the cache itself because of its
+	 * size or their age
+	 *
+	 * @param count
+	 */
+	void recordEvictions(int count);
+
+	/**
+	 * records entries which have been purged because their values have been
+	 * collected by the Garbage Collector
+	 *
+	 * @param count
+	 */
+	void recordCollections(int count);
+
+	/**
+	 * records a successful load
+	 *
+	 * @param loadNanos
+	 *            duration of the load in nanoseconds
+	 */
+	void recordLoadSuccess(long loadNanos);
+
+	/**
+	 * records a failed load
+	 *
+	 * @param loadNanos
+	 *            duration of the load in nanoseconds
+	 */
+	void recordLoadFailure(long loadNanos);
+
+	/**
+	 * @return snapshot of all statistics recorded so far
+	 */
+	CacheStats snapshot();
+
+}
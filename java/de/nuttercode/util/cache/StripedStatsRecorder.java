@@ -0,0 +1,94 @@
+package de.nuttercode.util.cache;
+
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * {@link StatsRecorder} built on {@link LongAdder}s. Concurrent updates are
+ * spread over multiple cells, so recording hardly contends even if many
+ * threads use the same cache. Load durations are counted in a histogram with
+ * one bucket per power of two nanoseconds.
+ *
+ * @author Johannes B. Latzel
+ *
+ */
+public class StripedStatsRecorder implements StatsRecorder {
+
+	private final LongAdder hitCount;
+	private final LongAdder missCount;
+	private final LongAdder evictionCount;
+	private final LongAdder collectionCount;
+	private final LongAdder loadSuccessCount;
+	private final LongAdder loadFailureCount;
+	private final LongAdder totalLoadNanos;
+
+	/**
+	 * bucket i counts loads which took [2^i, 2^(i+1)) nanoseconds
+	 */
+	private final LongAdder[] loadTimeHistogram;
+
+	public StripedStatsRecorder() {
+		hitCount = new LongAdder();
+		missCount = new LongAdder();
+		evictionCount = new LongAdder();
+		collectionCount = new LongAdder();
+		loadSuccessCount = new LongAdder();
+		loadFailureCount = new LongAdder();
+		totalLoadNanos = new LongAdder();
+		loadTimeHistogram = new LongAdder[Long.SIZE - 1];
+		for (int i = 0; i < loadTimeHistogram.length; i++)
+			loadTimeHistogram[i] = new LongAdder();
+	}
+
+	private void recordLoad(long loadNanos) {
+		loadNanos = Math.max(1, loadNanos);
+		totalLoadNanos.add(loadNanos);
+		loadTimeHistogram[Long.SIZE - 1 - Long.numberOfLeadingZeros(loadNanos)].increment();
+	}
+
+	@Override
+	public void recordHits(int count) {
+		hitCount.add(count);
+	}
+
+	@Override
+	public void recordMisses(int count) {
+		missCount.add(count);
+	}
+
+	@Override
+	public void recordEvictions(int count) {
+		evictionCount.add(count);
+	}
+
+	@Override
+	public void recordCollections(int count) {
+		collectionCount.add(count);
+	}
+
+	@Override
+	public void recordLoadSuccess(long loadNanos) {
+		loadSuccessCount.increment();
+		recordLoad(loadNanos);
+	}
+
+	@Override
+	public void recordLoadFailure(long loadNanos) {
+		loadFailureCount.increment();
+		recordLoad(loadNanos);
+	}
+
+	@Override
+	public CacheStats snapshot() {
+		long[] histogram = new long[loadTimeHistogram.length];
+		for (int i = 0; i < histogram.length; i++)
+			histogram[i] = loadTimeHistogram[i].sum();
+		return new CacheStats(hitCount.sum(), missCount.sum(), evictionCount.sum(), collectionCount.sum(),
+				loadSuccessCount.sum(), loadFailureCount.sum(), totalLoadNanos.sum(), histogram, null);
+	}
+
+	@Override
+	public String toString() {
+		return "StripedStatsRecorder [snapshot()=" + snapshot() + "]";
+	}
+
+}
@@ -3,9 +3,16 @@ package de.nuttercode.util.cache;
 import java.util.Collection;
 import java.util.Collections;
 import java.util.HashMap;
+import java.util.Iterator;
 import java.util.Map;
 import java.util.NoSuchElementException;
 import java.util.Set;
+import java.util.concurrent.Executor;
+import java.util.function.BiConsumer;
+import java.util.function.BiFunction;
+
+import de.nuttercode.util.assurance.Assurance;
+import de.nuttercode.util.assurance.NotNull;
 
 /**
  * A {@link Cache} which references all values with strong references. This
@@ -21,13 +28,37 @@ import java.util.Set;
  */
 public class StrongCache<K, V> implements Cache<K, V> {
 
+	/**
+	 * returned by lookups of the backing map if the key is not mapped, so values
+	 * which are null can be told apart from missing keys with a single probe
+	 */
+	private static final Object ABSENT = new Object();
+
 	/**
 	 * maps keys to values
 	 */
 	private final Map<K, V> strongMap;
 
+	private StatsRecorder statsRecorder;
+	private RemovalDispatcher<K, V> removalDispatcher;
+	private KeyFilter keyFilter;
+
 	public StrongCache() {
-		strongMap = new HashMap<>();
+		this(new HashMap<>());
+	}
+
+	/**
+	 * constructs a {@link StrongCache} on top of the given map. subclasses may use
+	 * this to change the backing map implementation.
+	 * 
+	 * @param strongMap
+	 *            empty backing map
+	 */
+	protected StrongCache(Map<K, V> strongMap) {
+		this.strongMap = strongMap;
+		statsRecorder = StatsRecorder.disabled();
+		removalDispatcher = RemovalDispatcher.disabled();
+		keyFilter = KeyFilter.disabled();
 	}
 
 	/**
@@ -41,26 +72,227 @@ public class StrongCache<K, V> implements Cache<K, V> {
 			throw new NoSuchElementException("No mapping for key " + key);
 	}
 
+	/**
+	 * @param key
+	 * @return the value given by the key or null if the key is not mapped
+	 */
+	V lookup(K key) {
+		return keyFilter.mightContain(key) ? strongMap.get(key) : null;
+	}
+
+	/**
+	 * removes the mapping of the key if there is one
+	 * 
+	 * @param key
+	 * @return the previously mapped value or null if the key was not mapped
+	 */
+	V removeIfPresent(K key) {
+		CountingBloomFilter filter = keyFilter.beforeRemove();
+		V value = strongMap.remove(key);
+		if (value != null)
+			keyFilter.afterRemove(filter, key);
+		return value;
+	}
+
+	/**
+	 * removes the mapping of the key only if it is currently mapped to the given
+	 * value
+	 * 
+	 * @param key
+	 * @param value
+	 * @return true if the mapping has been removed
+	 */
+	boolean remove(K key, V value) {
+		CountingBloomFilter filter = keyFilter.beforeRemove();
+		if (!strongMap.remove(key, value))
+			return false;
+		keyFilter.afterRemove(filter, key);
+		return true;
+	}
+
+	/**
+	 * maps the key to the value without notifying the {@link RemovalListener}
+	 * 
+	 * @param key
+	 * @param value
+	 * @return the previously mapped value or null if the key was not mapped
+	 */
+	V put(K key, V value) {
+		CountingBloomFilter filter = keyFilter.beforePut(key);
+		V previous = strongMap.put(key, value);
+		keyFilter.afterPut(filter, key, previous == null);
+		return previous;
+	}
+
+	/**
+	 * passes the removal to the {@link RemovalListener} if there is one
+	 * 
+	 * @param key
+	 * @param value
+	 * @param cause
+	 */
+	void notifyRemoval(K key, V value, RemovalCause cause) {
+		removalDispatcher.dispatch(key, value, cause);
+	}
+
+	/**
+	 * @return live entry set of the backing map
+	 */
+	Set<Map.Entry<K, V>> entrySet() {
+		return strongMap.entrySet();
+	}
+
 	@Override
 	public void cache(K key, V value) {
-		strongMap.put(key, value);
+		V previous = put(key, value);
+		if (previous != null)
+			removalDispatcher.dispatch(key, previous, RemovalCause.REPLACED);
 	}
 
+	@SuppressWarnings("unchecked")
 	@Override
 	public V get(K key) {
-		assureContains(key);
-		return strongMap.get(key);
+		Object value = find(key);
+		if (value == ABSENT)
+			throw new NoSuchElementException("No mapping for key " + key);
+		return (V) value;
+	}
+
+	/**
+	 * looks up every key only once and records all hits and misses at once
+	 */
+	@Override
+	public Map<K, V> getAll(Collection<? extends K> keys) {
+		HashMap<K, V> valueMap = new HashMap<>();
+		int hits = 0;
+		V value;
+		for (K key : keys) {
+			if (!keyFilter.mightContain(key))
+				continue;
+			value = strongMap.get(key);
+			if (value != null || strongMap.containsKey(key)) {
+				valueMap.put(key, value);
+				hits++;
+			}
+		}
+		statsRecorder.recordHits(hits);
+		statsRecorder.recordMisses(keys.size() - hits);
+		return Collections.unmodifiableMap(valueMap);
+	}
+
+	@Override
+	public void cacheAll(Map<? extends K, ? extends V> map) {
+		if (!removalDispatcher.isEnabled() && !keyFilter.isEnabled()) {
+			strongMap.putAll(map);
+			return;
+		}
+		for (Map.Entry<? extends K, ? extends V> entry : map.entrySet())
+			cache(entry.getKey(), entry.getValue());
+	}
+
+	@Override
+	public void removeAll(Collection<? extends K> keys) {
+		V value;
+		for (K key : keys)
+			if ((value = removeIfPresent(key)) != null)
+				removalDispatcher.dispatch(key, value, RemovalCause.EXPLICIT);
 	}
 
 	@Override
 	public boolean contains(K key) {
-		return strongMap.containsKey(key);
+		return keyFilter.mightContain(key) && strongMap.containsKey(key);
+	}
+
+	/**
+	 * @param key
+	 * @return the value given by the key, which may be null, or {@link #ABSENT}
+	 *         if the key is not mapped. records a hit or a miss.
+	 */
+	@SuppressWarnings("unchecked")
+	private Object find(K key) {
+		Object value = keyFilter.mightContain(key) ? ((Map<K, Object>) strongMap).getOrDefault(key, ABSENT)
+				: ABSENT;
+		if (value == ABSENT)
+			statsRecorder.recordMisses(1);
+		else
+			statsRecorder.recordHits(1);
+		return value;
+	}
+
+	@SuppressWarnings("unchecked")
+	@Override
+	public V getIfPresent(K key) {
+		Object value = find(key);
+		return value == ABSENT ? null : (V) value;
+	}
+
+	/**
+	 * returns the value even if it is null as long as the key is mapped
+	 */
+	@SuppressWarnings("unchecked")
+	@Override
+	public V getOrDefault(K key, V defaultValue) {
+		Object value = find(key);
+		return value == ABSENT ? defaultValue : (V) value;
+	}
+
+	/**
+	 * atomic if the backing map is a {@link java.util.concurrent.ConcurrentMap}.
+	 * a key which is mapped to null counts as not mapped.
+	 */
+	@Override
+	public V putIfAbsent(K key, V value) {
+		CountingBloomFilter filter = keyFilter.beforePut(key);
+		V previous = strongMap.putIfAbsent(key, value);
+		keyFilter.afterPut(filter, key, previous == null);
+		return previous;
+	}
+
+	/**
+	 * atomic if the backing map is a {@link java.util.concurrent.ConcurrentMap}.
+	 * a key which is mapped to null counts as not mapped.
+	 */
+	@SuppressWarnings("unchecked")
+	@Override
+	public V compute(K key, @NotNull BiFunction<? super K, ? super V, ? extends V> remappingFunction) {
+		Assurance.assureNotNull(remappingFunction);
+		Object[] previousHolder = new Object[1];
+		CountingBloomFilter filter = keyFilter.beforePut(key);
+		V value;
+		try {
+			value = strongMap.compute(key, (k, previous) -> {
+				previousHolder[0] = previous;
+				return remappingFunction.apply(k, previous);
+			});
+		} catch (RuntimeException | Error e) {
+			keyFilter.afterPut(filter, key, false);
+			throw e;
+		}
+		V previous = (V) previousHolder[0];
+		keyFilter.afterPut(filter, key, previous == null && value != null);
+		if (previous != null && value == null)
+			keyFilter.afterRemove(filter, key);
+		if (previous != null && previous != value)
+			removalDispatcher.dispatch(key, previous, value == null ? RemovalCause.EXPLICIT : RemovalCause.REPLACED);
+		return value;
 	}
 
 	@Override
 	public void remove(K key) {
 		assureContains(key);
-		strongMap.remove(key);
+		CountingBloomFilter filter = keyFilter.beforeRemove();
+		V value = strongMap.remove(key);
+		keyFilter.afterRemove(filter, key);
+		removalDispatcher.dispatch(key, value, RemovalCause.EXPLICIT);
+	}
+
+	/**
+	 * holds no redundant entries. the bloom filter is only rebuilt by
+	 * {@link #clean()}.
+	 */
+	@Override
+	public int clean(int maximum) {
+		return 0;
 	}
 
 	@Override
@@ -73,9 +305,69 @@ public class StrongCache<K, V> implements Cache<K, V> {
 		return "StrongCache [size()=" + size() + "]";
 	}
 
+	/**
+	 * rebuilds the bloom filter if there is one
+	 */
 	@Override
 	public void clear() {
-		strongMap.clear();
+		if (!removalDispatcher.isEnabled())
+			strongMap.clear();
+		else {
+			Iterator<Map.Entry<K, V>> iterator = strongMap.entrySet().iterator();
+			Map.Entry<K, V> entry;
+			while (iterator.hasNext()) {
+				entry = iterator.next();
+				iterator.remove();
+				removalDispatcher.dispatch(entry.getKey(), entry.getValue(), RemovalCause.EXPLICIT);
+			}
+		}
+		keyFilter.rebuild(strongMap.keySet()::forEach);
+	}
+
+	/**
+	 * values are never collected, so the only thing to clean is the bloom
+	 * filter. rebuilds the bloom filter if there is one, which resets counts
+	 * left behind by removals which bypassed it and saturated counters.
+	 */
+	@Override
+	public void clean() {
+		keyFilter.rebuild(strongMap.keySet()::forEach);
+	}
+
+	/**
+	 * puts a {@link CountingBloomFilter} in front of the table, so
+	 * {@link #contains(Object)} and {@link #get(Object)} of keys which are
+	 * definitely not cached do not probe the table. the filter is rebuilt by
+	 * {@link #clean()} and {@link #clear()}. must not be called concurrently with
+	 * other operations.
+	 *
+	 * @param bloomFilter
+	 *            will be cleared and filled with the keys of this cache. null
+	 *            removes the current filter.
+	 */
+	public void setBloomFilter(CountingBloomFilter bloomFilter) {
+		keyFilter = KeyFilter.create(bloomFilter, strongMap.keySet()::forEach);
+	}
+
+	@Override
+	public void setStatsRecorder(@NotNull StatsRecorder statsRecorder) {
+		Assurance.assureNotNull(statsRecorder);
+		this.statsRecorder = statsRecorder;
+	}
+
+	@Override
+	public StatsRecorder getStatsRecorder() {
+		return statsRecorder;
+	}
+
+	@Override
+	public void setRemovalListener(RemovalListener<? super K, ? super V> removalListener, Executor executor) {
+		removalDispatcher = RemovalDispatcher.create(removalListener, executor);
+	}
+
+	@Override
+	public CacheStats getStats() {
+		return statsRecorder.snapshot().withTierSize(CacheType.STRONG, size());
 	}
 
 	@Override
@@ -88,4 +380,9 @@ public class StrongCache<K, V> implements Cache<K, V> {
 		return Collections.unmodifiableCollection(strongMap.values());
 	}
 
+	@Override
+	public void forEach(BiConsumer<? super K, ? super V> action) {
+		strongMap.forEach(action);
+	}
+
 }
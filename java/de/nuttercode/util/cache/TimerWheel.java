@@ -0,0 +1,207 @@
+package de.nuttercode.util.cache;
+
+import java.util.function.Consumer;
+
+/**
+ * hierarchical timer wheel. every level consists of a ring of buckets, each
+ * bucket covers a fixed span of nanoseconds. a {@link Timer} is put into the
+ * bucket of the lowest level whose range covers its expiration time. when the
+ * time advances, the buckets which have been passed are processed: expired
+ * timers are handed to the expirer, all other timers are rescheduled into a
+ * lower level. scheduling and descheduling run in O(1), advancing the wheel
+ * runs in amortized O(1) per timer.
+ *
+ * @author Johannes B. Latzel
+ *
+ * @param <T>
+ *            timer type
+ */
+final class TimerWheel<T extends TimerWheel.Timer> {
+
+	/**
+	 * a node in a bucket of a {@link TimerWheel}
+	 *
+	 * @author Johannes B. Latzel
+	 *
+	 */
+	static class Timer {
+
+		long expirationTime;
+		Timer previous;
+		Timer next;
+
+		/**
+		 * @return point in time in nanoseconds at which this timer expires
+		 */
+		long getExpirationTime() {
+			return expirationTime;
+		}
+
+		/**
+		 * @return true if this timer is scheduled in a {@link TimerWheel}
+		 */
+		boolean isScheduled() {
+			return next != null;
+		}
+
+	}
+
+	/**
+	 * number of buckets per level, the last level catches all timers which are
+	 * too far in the future for the other levels
+	 */
+	private static final int[] BUCKETS = { 64, 64, 64, 32, 1 };
+
+	/**
+	 * log2 of the span of a bucket per level: ~16.8ms, ~1.07s, ~1.15m, ~1.22h,
+	 * ~1.63d
+	 */
+	private static final int[] SHIFTS = { 24, 30, 36, 42, 47 };
+
+	/**
+	 * sentinels of the circular bucket lists
+	 */
+	private final Timer[][] wheel;
+	private final Consumer<T> expirer;
+
+	/**
+	 * point in time up to which this wheel has been advanced
+	 */
+	private long nanos;
+
+	/**
+	 * @param nanos
+	 *            current point in time
+	 * @param expirer
+	 *            called for every timer which expires while advancing the wheel.
+	 *            the timer has already been descheduled.
+	 */
+	TimerWheel(long nanos, Consumer<T> expirer) {
+		this.nanos = nanos;
+		this.expirer = expirer;
+		wheel = new Timer[BUCKETS.length][];
+		for (int i = 0; i < BUCKETS.length; i++) {
+			wheel[i] = new Timer[BUCKETS[i]];
+			for (int j = 0; j < BUCKETS[i]; j++) {
+				Timer sentinel = new Timer();
+				sentinel.previous = sentinel.next = sentinel;
+				wheel[i][j] = sentinel;
+			}
+		}
+	}
+
+	/**
+	 * @param expirationTime
+	 * @return sentinel of the bucket the expiration time belongs to
+	 */
+	private Timer findBucket(long expirationTime) {
+		long delay = Math.max(0, expirationTime - nanos);
+		int level = 0;
+		while (level < SHIFTS.length - 1 && delay >= (1L << SHIFTS[level + 1]))
+			level++;
+		int index = (int) ((expirationTime >>> SHIFTS[level]) & (BUCKETS[level] - 1));
+		return wheel[level][index];
+	}
+
+	/**
+	 * schedules the timer. reschedules the timer if it has already been
+	 * scheduled.
+	 *
+	 * @param timer
+	 * @param expirationTime
+	 *            point in time in nanoseconds at which the timer expires
+	 */
+	void schedule(T timer, long expirationTime) {
+		deschedule(timer);
+		timer.expirationTime = expirationTime;
+		link(findBucket(expirationTime), timer);
+	}
+
+	/**
+	 * removes the timer from this wheel if it is scheduled
+	 *
+	 * @param timer
+	 */
+	void deschedule(T timer) {
+		if (!timer.isScheduled())
+			return;
+		timer.previous.next = timer.next;
+		timer.next.previous = timer.previous;
+		timer.previous = timer.next = null;
+	}
+
+	private static void link(Timer sentinel, Timer timer) {
+		timer.previous = sentinel.previous;
+		timer.next = sentinel;
+		sentinel.previous.next = timer;
+		sentinel.previous = timer;
+	}
+
+	/**
+	 * advances this wheel to the given point in time and expires all timers
+	 * which expire at or before that point in time. timers which expire within
+	 * the current tick of the lowest level expire once that tick has passed.
+	 *
+	 * @param currentNanos
+	 */
+	void advance(long currentNanos) {
+		long previousNanos = nanos;
+		if (currentNanos - previousNanos <= 0)
+			return;
+		nanos = currentNanos;
+		for (int level = 0; level < SHIFTS.length; level++) {
+			long previousTicks = previousNanos >>> SHIFTS[level];
+			long delta = (currentNanos >>> SHIFTS[level]) - previousTicks;
+			if (delta <= 0)
+				break;
+			processBuckets(level, previousTicks, delta);
+		}
+	}
+
+	/**
+	 * processes all buckets of the level which have been passed
+	 *
+	 * @param level
+	 * @param previousTicks
+	 * @param delta
+	 *            number of passed ticks of the level
+	 */
+	@SuppressWarnings("unchecked")
+	private void processBuckets(int level, long previousTicks, long delta) {
+		Timer[] buckets = wheel[level];
+		int mask = buckets.length - 1;
+		int count = (int) Math.min(delta + 1, buckets.length);
+		int start = (int) (previousTicks & mask);
+		for (int i = 0; i < count; i++) {
+			Timer sentinel = buckets[(start + i) & mask];
+			Timer timer = sentinel.next;
+			sentinel.previous = sentinel.next = sentinel;
+			while (timer != sentinel) {
+				Timer next = timer.next;
+				timer.previous = timer.next = null;
+				if (timer.expirationTime - nanos <= 0)
+					expirer.accept((T) timer);
+				else
+					link(findBucket(timer.expirationTime), timer);
+				timer = next;
+			}
+		}
+	}
+
+	/**
+	 * deschedules all timers
+	 */
+	void clear() {
+		for (Timer[] buckets : wheel)
+			for (Timer sentinel : buckets) {
+				Timer timer = sentinel.next;
+				while (timer != sentinel) {
+					Timer next = timer.next;
+					timer.previous = timer.next = null;
+					timer = next;
+				}
+				sentinel.previous = sentinel.next = sentinel;
+			}
+	}
+
+}
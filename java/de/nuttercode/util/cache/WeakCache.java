@@ -1,5 +1,6 @@
 package de.nuttercode.util.cache;
 
+import java.lang.ref.ReferenceQueue;
 import java.lang.ref.WeakReference;
 
 /**
@@ -14,10 +15,47 @@ import java.lang.ref.WeakReference;
  *            value type
  */
 public class WeakCache<K, V> extends ReferenceCache<K, V, WeakReference<V>> {
-	
+
+	/**
+	 * {@link WeakReference} which knows its key
+	 */
+	private static final class KeyedWeakReference<K, V> extends WeakReference<V> implements KeyedReference<K> {
+
+		private final K key;
+
+		private KeyedWeakReference(K key, V value, ReferenceQueue<? super V> queue) {
+			super(value, queue);
+			this.key = key;
+		}
+
+		@Override
+		public K getKey() {
+			return key;
+		}
+
+	}
+
+	public WeakCache() {
+		super();
+	}
+
+	/**
+	 * @param strongCache
+	 *            empty cache which will map the keys to their {@link WeakReference}s
+	 * @see ReferenceCache#ReferenceCache(StrongCache)
+	 */
+	public WeakCache(StrongCache<K, WeakReference<V>> strongCache) {
+		super(strongCache);
+	}
+
+	@Override
+	protected WeakReference<V> createReference(K key, V value, ReferenceQueue<? super V> queue) {
+		return new KeyedWeakReference<>(key, value, queue);
+	}
+
 	@Override
-	protected WeakReference<V> createReference(V value) {
-		return new WeakReference<>(value);
+	public CacheStats getStats() {
+		return getStatsRecorder().snapshot().withTierSize(CacheType.WEAK, size());
 	}
 
 }
@@ -0,0 +1,58 @@
+package de.nuttercode.util.cache;
+
+/**
+ * Computes the weight of a cached key/value pair, e.g. the approximate number
+ * of bytes it occupies. Used by caches which limit the total weight of their
+ * entries instead of their number, e.g. {@link BoundedCache}. The weight of a
+ * key/value pair must not change while it is cached.
+ *
+ * @author Johannes B. Latzel
+ *
+ * @param <K>
+ *            key type
+ * @param <V>
+ *            value type
+ */
+@FunctionalInterface
+public interface Weigher<K, V> {
+
+	/**
+	 * approximate number of bytes of the header of an array
+	 */
+	static final int ARRAY_OVERHEAD = 16;
+
+	/**
+	 * approximate number of bytes of a {@link String} without its characters
+	 */
+	static final int STRING_OVERHEAD = 40;
+
+	/**
+	 * @return weigher which weighs every key/value pair with 1
+	 */
+	static <K, V> Weigher<K, V> singleton() {
+		return (key, value) -> 1;
+	}
+
+	/**
+	 * @return weigher which weighs byte[] values by their size in bytes
+	 */
+	static <K> Weigher<K, byte[]> byteArray() {
+		return (key, value) -> ARRAY_OVERHEAD + value.length;
+	}
+
+	/**
+	 * @return weigher which weighs {@link String} values by their size in bytes,
+	 *         assuming two bytes per character
+	 */
+	static <K> Weigher<K, String> string() {
+		return (key, value) -> STRING_OVERHEAD + 2L * value.length();
+	}
+
+	/**
+	 * @param key
+	 * @param value
+	 * @return weight of the key/value pair, not negative
+	 */
+	long weigh(K key, V value);
+
+}
@@ -0,0 +1,99 @@
+package de.nuttercode.util.cache.eviction;
+
+/**
+ * doubly linked list of {@link AccessNode}s ordered from the least recently
+ * used node (first) to the most recently used node (last). all operations run
+ * in O(1).
+ * 
+ * @author Johannes B. Latzel
+ *
+ * @param <K>
+ *            key type
+ */
+class AccessDeque<K> {
+
+	private AccessNode<K> first;
+	private AccessNode<K> last;
+	private int size;
+
+	/**
+	 * appends the node which must not be contained in any {@link AccessDeque}
+	 * 
+	 * @param node
+	 */
+	void addLast(AccessNode<K> node) {
+		node.deque = this;
+		node.previous = last;
+		node.next = null;
+		if (last == null)
+			first = node;
+		else
+			last.next = node;
+		last = node;
+		size++;
+	}
+
+	/**
+	 * removes the node which must be contained in this deque
+	 * 
+	 * @param node
+	 */
+	void remove(AccessNode<K> node) {
+		if (node.previous == null)
+			first = node.next;
+		else
+			node.previous.next = node.next;
+		if (node.next == null)
+			last = node.previous;
+		else
+			node.next.previous = node.previous;
+		node.previous = node.next = null;
+		node.deque = null;
+		size--;
+	}
+
+	/**
+	 * moves the node which must be contained in this deque to the end
+	 * 
+	 * @param node
+	 */
+	void moveToLast(AccessNode<K> node) {
+		if (node != last) {
+			remove(node);
+			addLast(node);
+		}
+	}
+
+	/**
+	 * @return least recently used node or null if this deque is empty
+	 */
+	AccessNode<K> peekFirst() {
+		return first;
+	}
+
+	/**
+	 * removes the least recently used node
+	 * 
+	 * @return least recently used node or null if this deque is empty
+	 */
+	AccessNode<K> pollFirst() {
+		AccessNode<K> node = first;
+		if (node != null)
+			remove(node);
+		return node;
+	}
+
+	int size() {
+		return size;
+	}
+
+	boolean isEmpty() {
+		return size == 0;
+	}
+
+	void clear() {
+		first = last = null;
+		size = 0;
+	}
+
+}
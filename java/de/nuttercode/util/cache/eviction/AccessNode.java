@@ -0,0 +1,26 @@
+package de.nuttercode.util.cache.eviction;
+
+/**
+ * a node in an {@link AccessDeque}
+ * 
+ * @author Johannes B. Latzel
+ *
+ * @param <K>
+ *            key type
+ */
+final class AccessNode<K> {
+
+	final K key;
+	AccessNode<K> previous;
+	AccessNode<K> next;
+
+	/**
+	 * the {@link AccessDeque} which currently contains this node or null
+	 */
+	AccessDeque<K> deque;
+
+	AccessNode(K key) {
+		this.key = key;
+	}
+
+}
@@ -0,0 +1,54 @@
+package de.nuttercode.util.cache.eviction;
+
+import de.nuttercode.util.cache.BoundedCache;
+
+/**
+ * Decides which key of a {@link BoundedCache} will be evicted once the cache
+ * exceeds its capacity. The cache reports every insertion, access, and removal
+ * of a key to its policy and asks the policy for victims via
+ * {@link #nextVictim()}. Implementations are not required to be thread-safe.
+ * 
+ * @author Johannes B. Latzel
+ *
+ * @param <K>
+ *            key type
+ */
+public interface EvictionPolicy<K> {
+
+	/**
+	 * called after the key has been inserted into the cache. the key is not
+	 * tracked by this policy yet.
+	 * 
+	 * @param key
+	 */
+	void recordInsertion(K key);
+
+	/**
+	 * called whenever the value of an already tracked key is read or replaced
+	 * 
+	 * @param key
+	 */
+	void recordAccess(K key);
+
+	/**
+	 * called after the key has been removed from the cache by any other means
+	 * than an eviction. the policy has to stop tracking the key.
+	 * 
+	 * @param key
+	 */
+	void recordRemoval(K key);
+
+	/**
+	 * selects the next key that should be evicted. the key will no longer be
+	 * tracked by this policy.
+	 * 
+	 * @return key which should be evicted or null if no key is tracked
+	 */
+	K nextVictim();
+
+	/**
+	 * stops tracking all keys
+	 */
+	void clear();
+
+}
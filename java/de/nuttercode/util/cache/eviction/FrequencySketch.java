@@ -0,0 +1,132 @@
+package de.nuttercode.util.cache.eviction;
+
+import java.util.Arrays;
+
+/**
+ * count-min sketch with 4-bit counters which estimates how often a key has
+ * been seen recently. every key is mapped to four counters in a table of
+ * longs, the estimate is the minimum of those counters. after a sample of
+ * 10 * table length increments all counters are halved, so old accesses lose
+ * their weight over time.
+ *
+ * @author Johannes B. Latzel
+ *
+ */
+final class FrequencySketch {
+
+	private static final long[] SEEDS = { 0xc3a5c85c97cb3127L, 0xb492b66fbe98f273L, 0x9ae16a3b2f90404fL,
+			0xcbf29ce484222325L };
+	private static final long RESET_MASK = 0x7777777777777777L;
+	private static final int MAXIMUM_TABLE_LENGTH = 1 << 30;
+
+	private long[] table;
+	private int tableMask;
+	private int sampleSize;
+	private int additions;
+
+	FrequencySketch() {
+		resize(16);
+	}
+
+	/**
+	 * spreads the hash code of the key
+	 *
+	 * @param key
+	 * @return spread hash
+	 */
+	private static int spread(Object key) {
+		int h = key.hashCode();
+		h = ((h >>> 16) ^ h) * 0x45d9f3b;
+		h = ((h >>> 16) ^ h) * 0x45d9f3b;
+		return (h >>> 16) ^ h;
+	}
+
+	/**
+	 * @param hash
+	 * @param i
+	 * @return table index of the i-th counter
+	 */
+	private int indexOf(int hash, int i) {
+		long h = (hash + SEEDS[i]) * SEEDS[i];
+		h += h >>> 32;
+		return ((int) h) & tableMask;
+	}
+
+	/**
+	 * @param hash
+	 * @param i
+	 * @return bit offset of the i-th counter within its long
+	 */
+	private static int offsetOf(int hash, int i) {
+		return (((hash >>> (i << 3)) & 3) << 2) + (i << 4);
+	}
+
+	private void resize(int length) {
+		table = new long[length];
+		tableMask = length - 1;
+		sampleSize = 10 * length;
+		additions = 0;
+	}
+
+	/**
+	 * grows the table if it is too small for the given number of keys. all
+	 * frequencies are lost when the table grows.
+	 *
+	 * @param size
+	 *            number of tracked keys
+	 */
+	void ensureCapacity(int size) {
+		if (size <= table.length || table.length >= MAXIMUM_TABLE_LENGTH)
+			return;
+		resize(Math.min(Integer.highestOneBit(size - 1) << 1, MAXIMUM_TABLE_LENGTH));
+	}
+
+	/**
+	 * @param key
+	 * @return estimated frequency of the key in [0, 15]
+	 */
+	int frequency(Object key) {
+		int hash = spread(key);
+		int frequency = 15;
+		for (int i = 0; i < 4; i++) {
+			int offset = offsetOf(hash, i);
+			frequency = Math.min(frequency, (int) ((table[indexOf(hash, i)] >>> offset) & 0xfL));
+		}
+		return frequency;
+	}
+
+	/**
+	 * increments the frequency of the key
+	 *
+	 * @param key
+	 */
+	void increment(Object key) {
+		int hash = spread(key);
+		boolean added = false;
+		for (int i = 0; i < 4; i++) {
+			int index = indexOf(hash, i);
+			int offset = offsetOf(hash, i);
+			if (((table[index] >>> offset) & 0xfL) != 0xfL) {
+				table[index] += 1L << offset;
+				added = true;
+			}
+		}
+		if (added && ++additions >= sampleSize)
+			reset();
+	}
+
+	/**
+	 * halves all counters
+	 */
+	private void reset() {
+		for (int i = 0; i < table.length; i++)
+			table[i] = (table[i] >>> 1) & RESET_MASK;
+		additions >>>= 1;
+	}
+
+	void clear() {
+		Arrays.fill(table, 0L);
+		additions = 0;
+	}
+
+}
@@ -0,0 +1,141 @@
+package de.nuttercode.util.cache.eviction;
+
+import java.util.HashMap;
+import java.util.Map;
+
+/**
+ * {@link EvictionPolicy} which evicts the least frequently used key. Keys with
+ * the same frequency are evicted in least recently used order. Keys are kept
+ * in a list of frequency buckets, so all operations run in O(1). Frequencies
+ * never decay, use {@link WTinyLfuPolicy} if the popularity of keys changes
+ * over time.
+ *
+ * @author Johannes B. Latzel
+ *
+ * @param <K>
+ *            key type
+ */
+public class LfuPolicy<K> implements EvictionPolicy<K> {
+
+	/**
+	 * all keys with the same access frequency
+	 */
+	private static final class FrequencyBucket<K> extends AccessDeque<K> {
+
+		private final long frequency;
+		private FrequencyBucket<K> previous;
+		private FrequencyBucket<K> next;
+
+		private FrequencyBucket(long frequency) {
+			this.frequency = frequency;
+		}
+
+	}
+
+	private final Map<K, AccessNode<K>> nodeMap;
+
+	/**
+	 * bucket with the lowest frequency
+	 */
+	private FrequencyBucket<K> first;
+
+	public LfuPolicy() {
+		nodeMap = new HashMap<>();
+		first = null;
+	}
+
+	/**
+	 * creates a new bucket and links it behind the previous bucket or as the
+	 * first bucket if previous is null
+	 *
+	 * @param previous
+	 * @param frequency
+	 * @return new bucket
+	 */
+	private FrequencyBucket<K> linkBucket(FrequencyBucket<K> previous, long frequency) {
+		FrequencyBucket<K> bucket = new FrequencyBucket<>(frequency);
+		bucket.previous = previous;
+		if (previous == null) {
+			bucket.next = first;
+			first = bucket;
+		} else {
+			bucket.next = previous.next;
+			previous.next = bucket;
+		}
+		if (bucket.next != null)
+			bucket.next.previous = bucket;
+		return bucket;
+	}
+
+	/**
+	 * removes the node from its bucket and unlinks the bucket if it is empty
+	 * afterwards
+	 *
+	 * @param node
+	 */
+	private void unlinkNode(AccessNode<K> node) {
+		FrequencyBucket<K> bucket = (FrequencyBucket<K>) node.deque;
+		bucket.remove(node);
+		if (!bucket.isEmpty())
+			return;
+		if (bucket.previous == null)
+			first = bucket.next;
+		else
+			bucket.previous.next = bucket.next;
+		if (bucket.next != null)
+			bucket.next.previous = bucket.previous;
+	}
+
+	@Override
+	public void recordInsertion(K key) {
+		AccessNode<K> node = new AccessNode<>(key);
+		nodeMap.put(key, node);
+		FrequencyBucket<K> bucket = first;
+		if (bucket == null || bucket.frequency != 1)
+			bucket = linkBucket(null, 1);
+		bucket.addLast(node);
+	}
+
+	@Override
+	public void recordAccess(K key) {
+		AccessNode<K> node = nodeMap.get(key);
+		if (node == null)
+			return;
+		FrequencyBucket<K> bucket = (FrequencyBucket<K>) node.deque;
+		long frequency = bucket.frequency + 1;
+		FrequencyBucket<K> nextBucket = bucket.next;
+		if (nextBucket == null || nextBucket.frequency != frequency)
+			nextBucket = linkBucket(bucket, frequency);
+		unlinkNode(node);
+		nextBucket.addLast(node);
+	}
+
+	@Override
+	public void recordRemoval(K key) {
+		AccessNode<K> node = nodeMap.remove(key);
+		if (node != null)
+			unlinkNode(node);
+	}
+
+	@Override
+	public K nextVictim() {
+		if (first == null)
+			return null;
+		AccessNode<K> node = first.peekFirst();
+		unlinkNode(node);
+		nodeMap.remove(node.key);
+		return node.key;
+	}
+
+	@Override
+	public void clear() {
+		nodeMap.clear();
+		first = null;
+	}
+
+	@Override
+	public String toString() {
+		return "LfuPolicy [size=" + nodeMap.size() + "]";
+	}
+
+}
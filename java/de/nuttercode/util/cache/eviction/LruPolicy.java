@@ -0,0 +1,61 @@
+package de.nuttercode.util.cache.eviction;
+
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+
+/**
+ * {@link EvictionPolicy} which evicts the least recently used key. all
+ * operations run in O(1).
+ * 
+ * @author Johannes B. Latzel
+ *
+ * @param <K>
+ *            key type
+ */
+public class LruPolicy<K> implements EvictionPolicy<K> {
+
+	/**
+	 * keys in access order, the least recently used key comes first
+	 */
+	private final LinkedHashMap<K, Boolean> accessOrder;
+
+	public LruPolicy() {
+		accessOrder = new LinkedHashMap<>(16, 0.75f, true);
+	}
+
+	@Override
+	public void recordInsertion(K key) {
+		accessOrder.put(key, Boolean.TRUE);
+	}
+
+	@Override
+	public void recordAccess(K key) {
+		accessOrder.get(key);
+	}
+
+	@Override
+	public void recordRemoval(K key) {
+		accessOrder.remove(key);
+	}
+
+	@Override
+	public K nextVictim() {
+		Iterator<K> iterator = accessOrder.keySet().iterator();
+		if (!iterator.hasNext())
+			return null;
+		K victim = iterator.next();
+		iterator.remove();
+		return victim;
+	}
+
+	@Override
+	public void clear() {
+		accessOrder.clear();
+	}
+
+	@Override
+	public String toString() {
+		return "LruPolicy [size=" + accessOrder.size() + "]";
+	}
+
+}
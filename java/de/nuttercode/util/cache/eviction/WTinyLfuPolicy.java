@@ -0,0 +1,167 @@
+package de.nuttercode.util.cache.eviction;
+
+import java.util.HashMap;
+import java.util.Map;
+
+import de.nuttercode.util.assurance.Assurance;
+
+/**
+ * {@link EvictionPolicy} implementing W-TinyLFU. New keys enter a small LRU
+ * admission window. Keys leaving the window become candidates for the main
+ * region, which is a segmented LRU consisting of a probation and a protected
+ * segment. Once the cache has to evict, a candidate is only admitted if a
+ * {@link FrequencySketch} estimates that it is used more frequently than the
+ * key which would be evicted in its place. Keys which are accessed in the
+ * probation segment are promoted to the protected segment. All operations run
+ * in amortized O(1).
+ *
+ * @author Johannes B. Latzel
+ *
+ * @param <K>
+ *            key type
+ */
+public class WTinyLfuPolicy<K> implements EvictionPolicy<K> {
+
+	/**
+	 * default share of the admission window in all tracked keys
+	 */
+	public static final double DEFAULT_WINDOW_RATIO = 0.01;
+
+	/**
+	 * default share of the protected segment in the main region
+	 */
+	public static final double DEFAULT_PROTECTED_RATIO = 0.8;
+
+	private final Map<K, AccessNode<K>> nodeMap;
+	private final AccessDeque<K> window;
+	private final AccessDeque<K> probation;
+	private final AccessDeque<K> protectedDeque;
+	private final FrequencySketch sketch;
+	private final double windowRatio;
+	private final double protectedRatio;
+
+	/**
+	 * the key which most recently left the window and has not proven its
+	 * frequency against a victim of the main region yet
+	 */
+	private AccessNode<K> candidate;
+
+	public WTinyLfuPolicy() {
+		this(DEFAULT_WINDOW_RATIO, DEFAULT_PROTECTED_RATIO);
+	}
+
+	/**
+	 * @param windowRatio
+	 *            share of the admission window in all tracked keys
+	 * @param protectedRatio
+	 *            share of the protected segment in the main region
+	 * @throws IllegalArgumentException
+	 *             if any ratio is not element of [0, 1]
+	 */
+	public WTinyLfuPolicy(double windowRatio, double protectedRatio) {
+		this.windowRatio = Assurance.assureBoundaries(windowRatio, 0, 1);
+		this.protectedRatio = Assurance.assureBoundaries(protectedRatio, 0, 1);
+		nodeMap = new HashMap<>();
+		window = new AccessDeque<>();
+		probation = new AccessDeque<>();
+		protectedDeque = new AccessDeque<>();
+		sketch = new FrequencySketch();
+		candidate = null;
+	}
+
+	private int windowMaximum() {
+		return Math.max(1, (int) (nodeMap.size() * windowRatio));
+	}
+
+	private int protectedMaximum() {
+		return Math.max(1, (int) ((nodeMap.size() - window.size()) * protectedRatio));
+	}
+
+	@Override
+	public void recordInsertion(K key) {
+		AccessNode<K> node = new AccessNode<>(key);
+		nodeMap.put(key, node);
+		// grows before counting the key, growing drops all frequencies
+		sketch.ensureCapacity(nodeMap.size());
+		sketch.increment(key);
+		window.addLast(node);
+		if (window.size() > windowMaximum()) {
+			candidate = window.pollFirst();
+			probation.addLast(candidate);
+		}
+	}
+
+	@Override
+	public void recordAccess(K key) {
+		sketch.increment(key);
+		AccessNode<K> node = nodeMap.get(key);
+		if (node == null)
+			return;
+		if (node.deque != probation) {
+			node.deque.moveToLast(node);
+			return;
+		}
+		if (node == candidate)
+			candidate = null;
+		probation.remove(node);
+		protectedDeque.addLast(node);
+		if (protectedDeque.size() > protectedMaximum())
+			probation.addLast(protectedDeque.pollFirst());
+	}
+
+	@Override
+	public void recordRemoval(K key) {
+		AccessNode<K> node = nodeMap.remove(key);
+		if (node == null)
+			return;
+		if (node == candidate)
+			candidate = null;
+		node.deque.remove(node);
+	}
+
+	/**
+	 * @return the node which should be evicted or null if no key is tracked
+	 */
+	private AccessNode<K> selectVictim() {
+		AccessNode<K> contender = candidate;
+		candidate = null;
+		AccessNode<K> victim = probation.peekFirst();
+		if (victim == contender)
+			victim = protectedDeque.peekFirst();
+		if (contender == null) {
+			if (victim == null)
+				victim = window.peekFirst();
+			return victim;
+		}
+		if (victim == null || sketch.frequency(contender.key) <= sketch.frequency(victim.key))
+			return contender;
+		return victim;
+	}
+
+	@Override
+	public K nextVictim() {
+		AccessNode<K> victim = selectVictim();
+		if (victim == null)
+			return null;
+		victim.deque.remove(victim);
+		nodeMap.remove(victim.key);
+		return victim.key;
+	}
+
+	@Override
+	public void clear() {
+		nodeMap.clear();
+		window.clear();
+		probation.clear();
+		protectedDeque.clear();
+		sketch.clear();
+		candidate = null;
+	}
+
+	@Override
+	public String toString() {
+		return "WTinyLfuPolicy [window=" + window.size() + ", probation=" + probation.size() + ", protected="
+				+ protectedDeque.size() + "]";
+	}
+
+}
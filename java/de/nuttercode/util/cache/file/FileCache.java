@@ -4,11 +4,23 @@ import java.io.File;
 import java.io.FileNotFoundException;
 import java.io.IOException;
 import java.io.OutputStream;
+import java.util.concurrent.Executor;
 
+import de.nuttercode.util.assurance.NotNull;
+import de.nuttercode.util.assurance.Positive;
+import de.nuttercode.util.cache.BoundedCache;
+import de.nuttercode.util.cache.Cache;
+import de.nuttercode.util.cache.CacheStats;
+import de.nuttercode.util.cache.RemovalListener;
+import de.nuttercode.util.cache.StatsRecorder;
 import de.nuttercode.util.cache.WeakCache;
+import de.nuttercode.util.cache.eviction.LruPolicy;
 
 /**
- * caches the content of {@link File files} in a {@link WeakCache}. use
+ * caches the content of {@link File files} in a {@link WeakCache} or, if a
+ * memory budget is given, in a {@link BoundedCache} which evicts the least
+ * recently used elements once the total {@link FileCacheElement#getWeight()
+ * weight} of all elements exceeds the budget. use
  * {@link #get(File)} to get a {@link FileCacheElement} and
  * {@link FileCacheElement#writeTo(java.io.OutputStream)} to write the content
  * of the {@link File} to an {@link OutputStream}. Note that the content of a
@@ -24,26 +36,99 @@ public abstract class FileCache<T extends FileCacheElement> {
 	/**
 	 * content cache
 	 */
-	private final WeakCache<File, T> weakCache;
+	private final Cache<File, T> cache;
 
 	public FileCache() {
-		weakCache = new WeakCache<>();
+		cache = new WeakCache<>();
+	}
+
+	/**
+	 * @param maximumBytes
+	 *            memory budget of all cached elements in bytes
+	 * @throws IllegalArgumentException
+	 *             if maximumBytes is not positive
+	 */
+	public FileCache(@Positive long maximumBytes) {
+		cache = new BoundedCache<>(maximumBytes, FileCacheElement.weigher(), new LruPolicy<>());
 	}
 
 	protected abstract T createFileCacheElement(File file) throws FileNotFoundException, IOException;
 
-	public T get(File file) throws FileNotFoundException, IOException {
-		T element = null;
-		if (weakCache.contains(file)) {
-			element = weakCache.get(file);
-			if (element.getLastModified() < file.lastModified())
-				element = null;
+	/**
+	 * loads the element of the file and records the duration of the load
+	 * 
+	 * @param file
+	 * @return new element
+	 * @throws FileNotFoundException
+	 * @throws IOException
+	 */
+	private T load(File file) throws FileNotFoundException, IOException {
+		StatsRecorder statsRecorder = cache.getStatsRecorder();
+		long start = System.nanoTime();
+		T element;
+		try {
+			element = createFileCacheElement(file);
+		} catch (IOException | RuntimeException | Error e) {
+			statsRecorder.recordLoadFailure(System.nanoTime() - start);
+			throw e;
 		}
+		statsRecorder.recordLoadSuccess(System.nanoTime() - start);
+		return element;
+	}
+
+	public T get(File file) throws FileNotFoundException, IOException {
+		T element = cache.getIfPresent(file);
+		if (element != null && element.getLastModified() < file.lastModified())
+			element = null;
 		if (element == null) {
-			element = createFileCacheElement(file);
-			weakCache.cache(file, element);
+			element = load(file);
+			cache.cache(file, element);
 		}
 		return element;
 	}
 
+	/**
+	 * sets the recorder of the statistics of this cache. cached elements count as
+	 * hits even if they are outdated, the re-reading of their files is recorded
+	 * as a load.
+	 * 
+	 * @param statsRecorder
+	 * @throws NullPointerException
+	 *             if statsRecorder is null
+	 */
+	public void setStatsRecorder(@NotNull StatsRecorder statsRecorder) {
+		cache.setStatsRecorder(statsRecorder);
+	}
+
+	/**
+	 * @return the recorder of the statistics of this cache,
+	 *         {@link StatsRecorder#disabled()} by default
+	 */
+	public StatsRecorder getStatsRecorder() {
+		return cache.getStatsRecorder();
+	}
+
+	/**
+	 * sets the listener which is notified whenever an element leaves this cache,
+	 * e.g. because it has been collected or evicted. see
+	 * {@link Cache#setRemovalListener(RemovalListener, Executor)}.
+	 * 
+	 * @param removalListener
+	 *            listener or null to stop notifying
+	 * @param executor
+	 *            runs the listener
+	 * @throws NullPointerException
+	 *             if removalListener is not null and executor is null
+	 */
+	public void setRemovalListener(RemovalListener<? super File, ? super T> removalListener, Executor executor) {
+		cache.setRemovalListener(removalListener, executor);
+	}
+
+	/**
+	 * @return snapshot of the statistics of this cache
+	 */
+	public CacheStats getStats() {
+		return cache.getStats();
+	}
+
 }
@@ -6,6 +6,7 @@ import java.io.IOException;
 
 import de.nuttercode.util.assurance.Assurance;
 import de.nuttercode.util.assurance.NotNull;
+import de.nuttercode.util.cache.Weigher;
 
 /**
  * an element in a {@link TextFileCache}
@@ -43,4 +44,18 @@ public class FileCacheElement {
 		return lastModified;
 	}
 
+	/**
+	 * @return approximate number of bytes this element occupies in memory
+	 */
+	public long getWeight() {
+		return 24;
+	}
+
+	/**
+	 * @return weigher which weighs elements by {@link #getWeight()}
+	 */
+	public static <T extends FileCacheElement> Weigher<File, T> weigher() {
+		return (file, element) -> element.getWeight();
+	}
+
 }
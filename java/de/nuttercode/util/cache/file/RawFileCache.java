@@ -4,6 +4,8 @@ import java.io.File;
 import java.io.FileNotFoundException;
 import java.io.IOException;
 
+import de.nuttercode.util.assurance.Positive;
+
 /**
  * implementation for {@link FileCache} for binary file caching
  * 
@@ -12,6 +14,19 @@ import java.io.IOException;
  */
 public class RawFileCache extends FileCache<RawFileCacheElement> {
 
+	public RawFileCache() {
+		super();
+	}
+
+	/**
+	 * @param maximumBytes
+	 *            memory budget of all cached elements in bytes
+	 * @see FileCache#FileCache(long)
+	 */
+	public RawFileCache(@Positive long maximumBytes) {
+		super(maximumBytes);
+	}
+
 	@Override
 	protected RawFileCacheElement createFileCacheElement(File file) throws FileNotFoundException, IOException {
 		return new RawFileCacheElement(file);
@@ -8,6 +8,8 @@ import java.io.IOException;
 import java.io.OutputStream;
 import java.util.Arrays;
 
+import de.nuttercode.util.cache.Weigher;
+
 /**
  * implementation of {@link FileCacheElement} for binary file caching
  * 
@@ -48,6 +50,15 @@ public class RawFileCacheElement extends FileCacheElement {
 		out.write(content);
 	}
 
+	/**
+	 * @return approximate number of bytes this element and its content occupy in
+	 *         memory
+	 */
+	@Override
+	public long getWeight() {
+		return super.getWeight() + Weigher.ARRAY_OVERHEAD + content.length;
+	}
+
 	/**
 	 * @return copy of the backing byte[] of the content of the file
 	 */
@@ -5,6 +5,7 @@ import java.io.FileNotFoundException;
 import java.io.IOException;
 import java.util.function.Function;
 
+import de.nuttercode.util.assurance.Positive;
 import de.nuttercode.util.cache.WeakCache;
 
 /**
@@ -30,6 +31,18 @@ public class TextFileCache extends FileCache<TextFileCacheElement> {
 		setTextManipulator(null);
 	}
 
+	/**
+	 * @param maximumBytes
+	 *            memory budget of all cached elements in bytes
+	 * @see FileCache#FileCache(long)
+	 */
+	public TextFileCache(@Positive long maximumBytes) {
+		super(maximumBytes);
+		setIgnoreNewLines(false);
+		setTrimLines(false);
+		setTextManipulator(null);
+	}
+
 	public boolean isIgnoreNewLines() {
 		return ignoreNewLines;
 	}
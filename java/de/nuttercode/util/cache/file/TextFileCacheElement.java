@@ -8,6 +8,8 @@ import java.io.IOException;
 import java.io.InputStreamReader;
 import java.util.function.Function;
 
+import de.nuttercode.util.cache.Weigher;
+
 /**
  * an element in a {@link TextFileCache}
  * 
@@ -46,4 +48,13 @@ public class TextFileCacheElement extends FileCacheElement {
 		return content;
 	}
 
+	/**
+	 * @return approximate number of bytes this element and its content occupy in
+	 *         memory, assuming two bytes per character
+	 */
+	@Override
+	public long getWeight() {
+		return super.getWeight() + Weigher.STRING_OVERHEAD + 2L * content.length();
+	}
+
 }
@@ -0,0 +1,802 @@
+package de.nuttercode.util.cache.invalidation;
+
+import java.io.Closeable;
+import java.io.EOFException;
+import java.io.IOException;
+import java.net.Inet6Address;
+import java.net.InetSocketAddress;
+import java.net.ProtocolFamily;
+import java.net.SocketAddress;
+import java.net.StandardProtocolFamily;
+import java.net.UnixDomainSocketAddress;
+import java.nio.ByteBuffer;
+import java.nio.channels.ClosedChannelException;
+import java.nio.channels.SelectionKey;
+import java.nio.channels.Selector;
+import java.nio.channels.ServerSocketChannel;
+import java.nio.channels.SocketChannel;
+import java.nio.file.Files;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.Iterator;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.concurrent.locks.Condition;
+import java.util.concurrent.locks.ReentrantLock;
+
+import de.nuttercode.util.DefaultExceptionHandler;
+import de.nuttercode.util.ExceptionHandler;
+import de.nuttercode.util.assurance.Assurance;
+import de.nuttercode.util.assurance.NotNull;
+import de.nuttercode.util.assurance.Positive;
+import de.nuttercode.util.buffer.DataQueue;
+import de.nuttercode.util.cache.Cache;
+import de.nuttercode.util.cache.Serializer;
+
+/**
+ * Keeps the {@link Cache}s of several processes on the same host coherent by
+ * broadcasting invalidated keys. Every bus listens on a loopback TCP address or
+ * a Unix domain socket and connects to the addresses of its peers. A key passed
+ * to {@link #invalidate(Object)} is removed from all registered {@link Cache}s
+ * of this process and queued for its peers. A sender thread waits for the
+ * batch delay after the first queued key, so keys which are invalidated in
+ * quick succession are sent as a single batch and every key is sent only once
+ * per batch. Peers remove the received keys from all their registered
+ * {@link Cache}s, which therefore have to be thread-safe. Peers are connected
+ * lazily and reconnected after failures. Writes to a peer which make no
+ * progress within the write timeout fail. Keys which can not be sent to a peer
+ * are kept in a bounded backlog of that peer and sent once it has been
+ * reconnected. If the backlog overflows, it is dropped and the peer is told to
+ * clear all its registered {@link Cache}s after the reconnect instead. I/O
+ * errors are passed to an {@link ExceptionHandler}.
+ *
+ * @author Johannes B. Latzel
+ *
+ * @param <K>
+ *            key type
+ */
+public final class InvalidationBus<K> implements Closeable {
+
+	public static final Duration DEFAULT_BATCH_DELAY = Duration.ofMillis(1);
+	public static final int DEFAULT_MAXIMUM_BATCH_SIZE = 4096;
+	public static final Duration DEFAULT_WRITE_TIMEOUT = Duration.ofSeconds(1);
+	public static final int DEFAULT_MAXIMUM_BACKLOG_SIZE = 1 << 16;
+
+	/**
+	 * time after which peers with a backlog are reconnected if no keys are
+	 * pending
+	 */
+	private static final long RETRY_DELAY_NANOS = TimeUnit.MILLISECONDS.toNanos(100);
+
+	/**
+	 * maximum length of the keys of a batch in bytes. longer batches are
+	 * considered corrupt.
+	 */
+	private static final int MAXIMUM_PAYLOAD_LENGTH = 1 << 26;
+
+	/**
+	 * length of a frame header: length of the payload and number of keys
+	 */
+	private static final int HEADER_LENGTH = Integer.BYTES * 2;
+
+	/**
+	 * number of keys of a frame without payload which tells the peer to clear
+	 * all its registered caches
+	 */
+	private static final int CLEAR_COUNT = -1;
+
+	/**
+	 * the address of a peer, the non-blocking connection to it, and the keys
+	 * which could not be sent to it. only accessed by the sender thread.
+	 */
+	private static final class Peer<K> {
+
+		private final SocketAddress address;
+		private SocketChannel channel;
+
+		/**
+		 * waits until the channel is connected or writable
+		 */
+		private Selector selector;
+
+		/**
+		 * true if the last attempt to send to the peer has failed. further
+		 * failures are not reported until the peer has been reached again.
+		 */
+		private boolean isFailed;
+
+		/**
+		 * keys which could not be sent to the peer
+		 */
+		private final LinkedHashSet<K> backlogKeySet;
+
+		/**
+		 * true if the backlog has overflowed and the peer has to clear its caches
+		 */
+		private boolean isOverflowed;
+
+		private Peer(SocketAddress address) {
+			this.address = address;
+			channel = null;
+			selector = null;
+			isFailed = false;
+			backlogKeySet = new LinkedHashSet<>();
+			isOverflowed = false;
+		}
+
+		private boolean hasBacklog() {
+			return isOverflowed || !backlogKeySet.isEmpty();
+		}
+
+		/**
+		 * adds the keys to the backlog or drops the backlog if it would hold more
+		 * than maximumBacklogSize keys
+		 *
+		 * @param keys
+		 * @param maximumBacklogSize
+		 */
+		private void defer(Collection<? extends K> keys, int maximumBacklogSize) {
+			if (isOverflowed)
+				return;
+			backlogKeySet.addAll(keys);
+			if (backlogKeySet.size() > maximumBacklogSize) {
+				backlogKeySet.clear();
+				isOverflowed = true;
+			}
+		}
+
+		/**
+		 * @param timeoutNanos
+		 * @throws IOException
+		 *             if the peer can not be connected within the timeout
+		 */
+		private void connect(long timeoutNanos) throws IOException {
+			channel = SocketChannel.open(protocolFamilyOf(address));
+			selector = Selector.open();
+			channel.configureBlocking(false);
+			if (channel.connect(address))
+				return;
+			long deadline = System.nanoTime() + timeoutNanos;
+			long remaining;
+			while (!channel.finishConnect()) {
+				remaining = deadline - System.nanoTime();
+				if (remaining <= 0)
+					throw new IOException("connecting to " + address + " has timed out");
+				select(SelectionKey.OP_CONNECT, remaining);
+			}
+		}
+
+		/**
+		 * writes the whole buffer
+		 *
+		 * @param buffer
+		 * @param timeoutNanos
+		 *            maximum time without progress
+		 * @throws IOException
+		 *             if no byte could be written within the timeout
+		 */
+		private void write(ByteBuffer buffer, long timeoutNanos) throws IOException {
+			long deadline = System.nanoTime() + timeoutNanos;
+			long remaining;
+			while (buffer.hasRemaining()) {
+				if (channel.write(buffer) > 0) {
+					deadline = System.nanoTime() + timeoutNanos;
+					continue;
+				}
+				remaining = deadline - System.nanoTime();
+				if (remaining <= 0)
+					throw new IOException("writing to " + address + " has timed out");
+				select(SelectionKey.OP_WRITE, remaining);
+			}
+		}
+
+		/**
+		 * waits until the channel is ready for the operation or the timeout has
+		 * passed
+		 *
+		 * @param operation
+		 * @param timeoutNanos
+		 * @throws IOException
+		 */
+		private void select(int operation, long timeoutNanos) throws IOException {
+			SelectionKey key = channel.keyFor(selector);
+			if (key == null)
+				key = channel.register(selector, operation);
+			else
+				key.interestOps(operation);
+			selector.select(Math.max(1, TimeUnit.NANOSECONDS.toMillis(timeoutNanos)));
+			selector.selectedKeys().clear();
+			key.interestOps(0);
+		}
+
+		/**
+		 * peers never write to their connections, so a readable connection has
+		 * been closed by the peer
+		 *
+		 * @return true if the connection has been closed by the peer
+		 */
+		private boolean isClosedByPeer() {
+			try {
+				return channel.read(ByteBuffer.allocate(1)) != 0;
+			} catch (IOException e) {
+				return true;
+			}
+		}
+
+		private void disconnect() {
+			if (channel == null)
+				return;
+			try {
+				channel.close();
+				if (selector != null)
+					selector.close();
+			} catch (IOException e) {
+				// the channel is dropped anyway
+			}
+			channel = null;
+			selector = null;
+		}
+
+	}
+
+	private final Serializer<K> keySerializer;
+	private final ExceptionHandler exceptionHandler;
+	private final long batchDelayNanos;
+	private final int maximumBatchSize;
+	private final long writeTimeoutNanos;
+	private final int maximumBacklogSize;
+	private final ServerSocketChannel serverChannel;
+	private final SocketAddress localAddress;
+
+	private final List<Peer<K>> peerList;
+	private final List<Cache<? super K, ?>> cacheList;
+	private final Set<SocketChannel> connectionSet;
+
+	/**
+	 * guards the pending keys
+	 */
+	private final ReentrantLock pendingLock;
+	private final Condition pendingCondition;
+	private final LinkedHashSet<K> pendingKeySet;
+
+	private final Thread acceptorThread;
+	private final Thread senderThread;
+	private final LongAdder sentKeyCount;
+	private final LongAdder receivedKeyCount;
+	private volatile boolean isClosed;
+
+	/**
+	 * uses {@link #DEFAULT_BATCH_DELAY}, {@link #DEFAULT_MAXIMUM_BATCH_SIZE}, and
+	 * a {@link DefaultExceptionHandler}
+	 *
+	 * @param localAddress
+	 *            loopback {@link InetSocketAddress} or
+	 *            {@link UnixDomainSocketAddress} to listen on
+	 * @param peerAddresses
+	 *            addresses of the peers
+	 * @param keySerializer
+	 * @throws IOException
+	 *             if the local address can not be bound
+	 * @throws NullPointerException
+	 *             if any parameter is null
+	 * @throws IllegalArgumentException
+	 *             if an {@link InetSocketAddress} is not a loopback address
+	 */
+	public InvalidationBus(@NotNull SocketAddress localAddress,
+			@NotNull Collection<? extends SocketAddress> peerAddresses, @NotNull Serializer<K> keySerializer)
+			throws IOException {
+		this(localAddress, peerAddresses, keySerializer, DEFAULT_BATCH_DELAY, DEFAULT_MAXIMUM_BATCH_SIZE,
+				new DefaultExceptionHandler());
+	}
+
+	/**
+	 * @param localAddress
+	 *            loopback {@link InetSocketAddress} or
+	 *            {@link UnixDomainSocketAddress} to listen on
+	 * @param peerAddresses
+	 *            addresses of the peers
+	 * @param keySerializer
+	 * @param batchDelay
+	 *            time the sender waits for further keys after the first queued
+	 *            key
+	 * @param maximumBatchSize
+	 *            maximum number of keys per batch
+	 * @param exceptionHandler
+	 *            handles I/O errors of the background threads
+	 * @throws IOException
+	 *             if the local address can not be bound
+	 * @throws NullPointerException
+	 *             if any parameter is null
+	 * @throws IllegalArgumentException
+	 *             if an {@link InetSocketAddress} is not a loopback address,
+	 *             batchDelay is negative, or maximumBatchSize is not positive
+	 */
+	public InvalidationBus(@NotNull SocketAddress localAddress,
+			@NotNull Collection<? extends SocketAddress> peerAddresses, @NotNull Serializer<K> keySerializer,
+			@NotNull Duration batchDelay, @Positive int maximumBatchSize, @NotNull ExceptionHandler exceptionHandler)
+			throws IOException {
+		this(localAddress, peerAddresses, keySerializer, batchDelay, maximumBatchSize, DEFAULT_WRITE_TIMEOUT,
+				DEFAULT_MAXIMUM_BACKLOG_SIZE, exceptionHandler);
+	}
+
+	/**
+	 * @param localAddress
+	 *            loopback {@link InetSocketAddress} or
+	 *            {@link UnixDomainSocketAddress} to listen on
+	 * @param peerAddresses
+	 *            addresses of the peers
+	 * @param keySerializer
+	 * @param batchDelay
+	 *            time the sender waits for further keys after the first queued
+	 *            key
+	 * @param maximumBatchSize
+	 *            maximum number of keys per batch
+	 * @param writeTimeout
+	 *            maximum time a connect or a write to a peer may make no
+	 *            progress
+	 * @param maximumBacklogSize
+	 *            maximum number of keys kept per peer which could not be sent.
+	 *            the peer clears all its caches instead if there are more.
+	 * @param exceptionHandler
+	 *            handles I/O errors of the background threads
+	 * @throws IOException
+	 *             if the local address can not be bound
+	 * @throws NullPointerException
+	 *             if any parameter is null
+	 * @throws IllegalArgumentException
+	 *             if an {@link InetSocketAddress} is not a loopback address,
+	 *             batchDelay is negative, or maximumBatchSize, writeTimeout, or
+	 *             maximumBacklogSize is not positive
+	 */
+	public InvalidationBus(@NotNull SocketAddress localAddress,
+			@NotNull Collection<? extends SocketAddress> peerAddresses, @NotNull Serializer<K> keySerializer,
+			@NotNull Duration batchDelay, @Positive int maximumBatchSize, @NotNull Duration writeTimeout,
+			@Positive int maximumBacklogSize, @NotNull ExceptionHandler exceptionHandler) throws IOException {
+		Assurance.assureNotNull(peerAddresses);
+		Assurance.assureNotNull(keySerializer);
+		Assurance.assureNotNull(batchDelay);
+		Assurance.assureNotNegative(batchDelay.toNanos());
+		Assurance.assurePositive(maximumBatchSize);
+		Assurance.assureNotNull(writeTimeout);
+		Assurance.assurePositive(writeTimeout.toNanos());
+		Assurance.assurePositive(maximumBacklogSize);
+		Assurance.assureNotNull(exceptionHandler);
+		assureLocal(localAddress);
+		for (SocketAddress peerAddress : peerAddresses)
+			assureLocal(peerAddress);
+		this.keySerializer = keySerializer;
+		this.exceptionHandler = exceptionHandler;
+		batchDelayNanos = batchDelay.toNanos();
+		this.maximumBatchSize = maximumBatchSize;
+		writeTimeoutNanos = writeTimeout.toNanos();
+		this.maximumBacklogSize = maximumBacklogSize;
+		peerList = new CopyOnWriteArrayList<>();
+		for (SocketAddress peerAddress : peerAddresses)
+			peerList.add(new Peer<>(peerAddress));
+		cacheList = new CopyOnWriteArrayList<>();
+		connectionSet = ConcurrentHashMap.newKeySet();
+		pendingLock = new ReentrantLock();
+		pendingCondition = pendingLock.newCondition();
+		pendingKeySet = new LinkedHashSet<>();
+		sentKeyCount = new LongAdder();
+		receivedKeyCount = new LongAdder();
+		isClosed = false;
+		serverChannel = ServerSocketChannel.open(protocolFamilyOf(localAddress));
+		try {
+			serverChannel.bind(localAddress);
+			this.localAddress = serverChannel.getLocalAddress();
+		} catch (IOException | RuntimeException e) {
+			serverChannel.close();
+			throw e;
+		}
+		acceptorThread = startDaemon(this::accept, "acceptor");
+		senderThread = startDaemon(this::send, "sender");
+	}
+
+	/**
+	 * @param address
+	 * @throws NullPointerException
+	 *             if address is null
+	 * @throws IllegalArgumentException
+	 *             if address is neither a loopback {@link InetSocketAddress} nor
+	 *             a {@link UnixDomainSocketAddress}
+	 */
+	private static void assureLocal(SocketAddress address) {
+		Assurance.assureNotNull(address);
+		if (address instanceof UnixDomainSocketAddress)
+			return;
+		if (!(address instanceof InetSocketAddress) || ((InetSocketAddress) address).getAddress() == null
+				|| !((InetSocketAddress) address).getAddress().isLoopbackAddress())
+			throw new IllegalArgumentException(address + " is not a loopback address.");
+	}
+
+	/**
+	 * @param address
+	 *            loopback {@link InetSocketAddress} or
+	 *            {@link UnixDomainSocketAddress}
+	 * @return protocol family of the address
+	 */
+	private static ProtocolFamily protocolFamilyOf(SocketAddress address) {
+		if (address instanceof UnixDomainSocketAddress)
+			return StandardProtocolFamily.UNIX;
+		if (((InetSocketAddress) address).getAddress() instanceof Inet6Address)
+			return StandardProtocolFamily.INET6;
+		return StandardProtocolFamily.INET;
+	}
+
+	private Thread startDaemon(Runnable runnable, String role) {
+		Thread thread = new Thread(runnable, "InvalidationBus-" + role + "-" + localAddress);
+		thread.setDaemon(true);
+		thread.start();
+		return thread;
+	}
+
+	/**
+	 * accepts connections of peers and starts a receiver thread for each
+	 */
+	private void accept() {
+		while (!isClosed) {
+			try {
+				SocketChannel channel = serverChannel.accept();
+				connectionSet.add(channel);
+				startDaemon(() -> receive(channel), "receiver");
+			} catch (ClosedChannelException e) {
+				return;
+			} catch (IOException e) {
+				if (!isClosed)
+					exceptionHandler.handle(e);
+			}
+		}
+	}
+
+	/**
+	 * reads batches from the channel and removes their keys from all registered
+	 * caches until the peer disconnects. clears all registered caches if the
+	 * peer has dropped its backlog.
+	 *
+	 * @param channel
+	 */
+	private void receive(SocketChannel channel) {
+		ByteBuffer header = ByteBuffer.allocate(HEADER_LENGTH);
+		ByteBuffer payload = ByteBuffer.allocate(0);
+		DataQueue payloadQueue = new DataQueue();
+		try (channel) {
+			while (!isClosed) {
+				header.clear();
+				if (!readFully(channel, header))
+					return;
+				int length = header.getInt(0);
+				int count = header.getInt(Integer.BYTES);
+				if (count == CLEAR_COUNT && length == 0) {
+					for (Cache<? super K, ?> cache : cacheList)
+						cache.clear();
+					continue;
+				}
+				if (length < 0 || length > MAXIMUM_PAYLOAD_LENGTH || count < 0)
+					throw new IOException("corrupt batch header: length=" + length + ", count=" + count);
+				if (payload.capacity() < length)
+					payload = ByteBuffer.allocate(length);
+				payload.clear().limit(length);
+				if (!readFully(channel, payload))
+					throw new EOFException("truncated batch");
+				payload.flip();
+				payloadQueue.clear();
+				payloadQueue.putByteBuffer(payload);
+				ArrayList<K> keyList = new ArrayList<>(count);
+				for (int i = 0; i < count; i++)
+					keyList.add(keySerializer.deserialize(payloadQueue));
+				receivedKeyCount.add(count);
+				removeLocally(keyList);
+			}
+		} catch (IOException | RuntimeException e) {
+			if (!isClosed)
+				exceptionHandler.handle(e);
+		} finally {
+			connectionSet.remove(channel);
+		}
+	}
+
+	/**
+	 * @param channel
+	 * @param buffer
+	 * @return false if the end of the stream has been reached before the first
+	 *         byte
+	 * @throws IOException
+	 *             if the end of the stream has been reached after the first byte
+	 */
+	private static boolean readFully(SocketChannel channel, ByteBuffer buffer) throws IOException {
+		int start = buffer.position();
+		while (buffer.hasRemaining()) {
+			if (channel.read(buffer) < 0) {
+				if (buffer.position() == start)
+					return false;
+				throw new EOFException("connection closed within a batch");
+			}
+		}
+		return true;
+	}
+
+	/**
+	 * @return true if keys could not be sent to any peer
+	 */
+	private boolean hasBacklog() {
+		for (Peer<K> peer : peerList)
+			if (peer.hasBacklog())
+				return true;
+		return false;
+	}
+
+	/**
+	 * waits for pending keys, coalesces them into batches, and sends the batches
+	 * to all peers. retries to send the backlogs of peers periodically. sends the
+	 * remaining keys once this bus is closed.
+	 */
+	private void send() {
+		ArrayList<K> batch = new ArrayList<>();
+		DataQueue payloadQueue = new DataQueue();
+		boolean isLast = false;
+		while (!isLast) {
+			batch.clear();
+			pendingLock.lock();
+			try {
+				if (hasBacklog()) {
+					if (pendingKeySet.isEmpty() && !isClosed)
+						pendingCondition.awaitNanos(RETRY_DELAY_NANOS);
+				} else {
+					while (pendingKeySet.isEmpty() && !isClosed)
+						pendingCondition.await();
+				}
+				long remaining = batchDelayNanos;
+				while (!pendingKeySet.isEmpty() && pendingKeySet.size() < maximumBatchSize && remaining > 0
+						&& !isClosed)
+					remaining = pendingCondition.awaitNanos(remaining);
+				Iterator<K> iterator = pendingKeySet.iterator();
+				while (batch.size() < maximumBatchSize && iterator.hasNext()) {
+					batch.add(iterator.next());
+					iterator.remove();
+				}
+				isLast = isClosed && pendingKeySet.isEmpty();
+			} catch (InterruptedException e) {
+				isLast = true;
+			} finally {
+				pendingLock.unlock();
+			}
+			if (batch.isEmpty() && !hasBacklog())
+				continue;
+			sendBatch(batch, payloadQueue);
+		}
+		for (Peer<K> peer : peerList)
+			peer.disconnect();
+	}
+
+	/**
+	 * @param keys
+	 * @param payloadQueue
+	 * @return frame of the keys
+	 */
+	private ByteBuffer encode(Collection<K> keys, DataQueue payloadQueue) {
+		payloadQueue.clear();
+		for (K key : keys)
+			keySerializer.serialize(key, payloadQueue);
+		ByteBuffer frame = ByteBuffer.allocate(HEADER_LENGTH + payloadQueue.available());
+		frame.putInt(payloadQueue.available());
+		frame.putInt(keys.size());
+		payloadQueue.transferDataInto(frame);
+		frame.flip();
+		return frame;
+	}
+
+	/**
+	 * sends the backlog of the peer in batches. tells the peer to clear its
+	 * caches instead if the backlog has overflowed.
+	 *
+	 * @param peer
+	 * @param payloadQueue
+	 * @throws IOException
+	 */
+	private void sendBacklog(Peer<K> peer, DataQueue payloadQueue) throws IOException {
+		if (peer.isOverflowed) {
+			ByteBuffer frame = ByteBuffer.allocate(HEADER_LENGTH);
+			frame.putInt(0);
+			frame.putInt(CLEAR_COUNT);
+			frame.flip();
+			peer.write(frame, writeTimeoutNanos);
+			peer.isOverflowed = false;
+			return;
+		}
+		ArrayList<K> keyList = new ArrayList<>(Math.min(maximumBatchSize, peer.backlogKeySet.size()));
+		while (!peer.backlogKeySet.isEmpty()) {
+			keyList.clear();
+			for (K key : peer.backlogKeySet) {
+				keyList.add(key);
+				if (keyList.size() == maximumBatchSize)
+					break;
+			}
+			peer.write(encode(keyList, payloadQueue), writeTimeoutNanos);
+			peer.backlogKeySet.removeAll(keyList);
+			sentKeyCount.add(keyList.size());
+		}
+	}
+
+	/**
+	 * encodes the batch once and writes it to every peer after the backlog of
+	 * the peer. keys which can not be sent are added to the backlog of the peer.
+	 *
+	 * @param batch
+	 *            may be empty if only backlogs are sent
+	 * @param payloadQueue
+	 */
+	private void sendBatch(List<K> batch, DataQueue payloadQueue) {
+		ByteBuffer frame = batch.isEmpty() ? null : encode(batch, payloadQueue);
+		for (Peer<K> peer : peerList) {
+			if (frame == null && !peer.hasBacklog())
+				continue;
+			try {
+				if (peer.channel != null && peer.isClosedByPeer())
+					peer.disconnect();
+				if (peer.channel == null)
+					peer.connect(writeTimeoutNanos);
+				if (peer.hasBacklog())
+					sendBacklog(peer, payloadQueue);
+				if (frame != null) {
+					peer.write(frame.duplicate(), writeTimeoutNanos);
+					sentKeyCount.add(batch.size());
+				}
+				peer.isFailed = false;
+			} catch (IOException e) {
+				peer.disconnect();
+				if (frame != null)
+					peer.defer(batch, maximumBacklogSize);
+				if (!peer.isFailed && !isClosed)
+					exceptionHandler.handle(e);
+				peer.isFailed = true;
+			}
+		}
+	}
+
+	private void removeLocally(Collection<? extends K> keys) {
+		for (Cache<? super K, ?> cache : cacheList)
+			cache.removeAll(keys);
+	}
+
+	/**
+	 * adds a peer which receives all keys which are invalidated from now on
+	 *
+	 * @param peerAddress
+	 *            loopback {@link InetSocketAddress} or
+	 *            {@link UnixDomainSocketAddress} of the peer
+	 * @throws NullPointerException
+	 *             if peerAddress is null
+	 * @throws IllegalArgumentException
+	 *             if peerAddress is an {@link InetSocketAddress} which is not a
+	 *             loopback address
+	 */
+	public void addPeer(@NotNull SocketAddress peerAddress) {
+		assureLocal(peerAddress);
+		peerList.add(new Peer<>(peerAddress));
+	}
+
+	/**
+	 * registers a cache whose keys are invalidated by this bus
+	 *
+	 * @param cache
+	 *            thread-safe cache
+	 * @throws NullPointerException
+	 *             if cache is null
+	 * @throws IllegalArgumentException
+	 *             if the cache is not {@link Cache#isConcurrent() thread-safe}
+	 */
+	public void register(@NotNull Cache<? super K, ?> cache) {
+		Assurance.assureNotNull(cache);
+		if (!cache.isConcurrent())
+			throw new IllegalArgumentException("cache is not thread-safe");
+		cacheList.add(cache);
+	}
+
+	/**
+	 * @param cache
+	 *            cache which will no longer be invalidated by this bus
+	 */
+	public void unregister(Cache<? super K, ?> cache) {
+		cacheList.remove(cache);
+	}
+
+	/**
+	 * removes the key from all registered caches and queues it for the peers
+	 *
+	 * @param key
+	 * @throws IllegalStateException
+	 *             if this bus has been closed
+	 */
+	public void invalidate(K key) {
+		invalidateAll(Collections.singletonList(key));
+	}
+
+	/**
+	 * removes the keys from all registered caches and queues them for the peers
+	 *
+	 * @param keys
+	 * @throws IllegalStateException
+	 *             if this bus has been closed
+	 */
+	public void invalidateAll(@NotNull Collection<? extends K> keys) {
+		Assurance.assureNotNull(keys);
+		if (isClosed)
+			throw new IllegalStateException("the bus has been closed");
+		removeLocally(keys);
+		pendingLock.lock();
+		try {
+			boolean wasEmpty = pendingKeySet.isEmpty();
+			pendingKeySet.addAll(keys);
+			if (wasEmpty || pendingKeySet.size() >= maximumBatchSize)
+				pendingCondition.signal();
+		} finally {
+			pendingLock.unlock();
+		}
+	}
+
+	/**
+	 * @return the address this bus listens on, including the actual port if it
+	 *         has been bound to port 0
+	 */
+	public SocketAddress getLocalAddress() {
+		return localAddress;
+	}
+
+	/**
+	 * @return number of keys which have been sent, counted once per peer
+	 */
+	public long getSentKeyCount() {
+		return sentKeyCount.sum();
+	}
+
+	/**
+	 * @return number of keys which have been received from peers
+	 */
+	public long getReceivedKeyCount() {
+		return receivedKeyCount.sum();
+	}
+
+	/**
+	 * sends all pending keys, closes all connections, and stops all threads
+	 */
+	@Override
+	public void close() throws IOException {
+		pendingLock.lock();
+		try {
+			if (isClosed)
+				return;
+			isClosed = true;
+			pendingCondition.signal();
+		} finally {
+			pendingLock.unlock();
+		}
+		serverChannel.close();
+		for (SocketChannel channel : connectionSet)
+			channel.close();
+		if (localAddress instanceof UnixDomainSocketAddress)
+			Files.deleteIfExists(((UnixDomainSocketAddress) localAddress).getPath());
+		try {
+			senderThread.join(TimeUnit.SECONDS.toMillis(1));
+			acceptorThread.join(TimeUnit.SECONDS.toMillis(1));
+		} catch (InterruptedException e) {
+			Thread.currentThread().interrupt();
+		}
+		if (senderThread.isAlive())
+			senderThread.interrupt();
+	}
+
+	@Override
+	public String toString() {
+		return "InvalidationBus [localAddress=" + localAddress + ", peerCount=" + peerList.size()
+				+ ", sentKeyCount=" + getSentKeyCount() + ", receivedKeyCount=" + getReceivedKeyCount() + "]";
+	}
+
+}
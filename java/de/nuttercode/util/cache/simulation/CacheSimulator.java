@@ -0,0 +1,283 @@
+package de.nuttercode.util.cache.simulation;
+
+import java.io.IOException;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.NoSuchElementException;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.Executor;
+import java.util.concurrent.ForkJoinPool;
+import java.util.function.Function;
+import java.util.function.LongSupplier;
+
+import de.nuttercode.util.assurance.Assurance;
+import de.nuttercode.util.assurance.NotNull;
+import de.nuttercode.util.assurance.Positive;
+import de.nuttercode.util.cache.Cache;
+import de.nuttercode.util.cache.CacheType;
+import de.nuttercode.util.cache.RemovalNotification;
+
+/**
+ * Replays a trace which has been recorded by {@link TraceWriter} against
+ * several configurations of caches, e.g. a
+ * {@link de.nuttercode.util.cache.StrongCache}, {@link
+ * de.nuttercode.util.cache.HybridCache}s with different tier capacities or
+ * {@link de.nuttercode.util.cache.BoundedCache}s with different eviction
+ * policies, and reports the hit ratio, the weight held and the number of
+ * evictions of every configuration. Every access is a read of the key, which
+ * caches a new {@link SimulatedValue} on a miss. The trace is read once in
+ * blocks: while the configurations replay a block in parallel by an
+ * {@link Executor}, the next block is read. Every configuration is replayed by
+ * one thread at a time, so its cache does not have to be thread-safe. The
+ * caches are created by factories which receive the point in time of the
+ * current access of the trace, which can be used as ticker of an
+ * {@link de.nuttercode.util.cache.ExpiringCache}. Eviction counts are only
+ * reported by caches which support
+ * {@link Cache#setRemovalListener(de.nuttercode.util.cache.RemovalListener)}.
+ *
+ * @author Johannes B. Latzel
+ *
+ */
+public final class CacheSimulator {
+
+	public static final int DEFAULT_BLOCK_SIZE = 1 << 16;
+
+	/**
+	 * records of the trace which are replayed together
+	 */
+	private static final class Block {
+
+		private final long[] timestamps;
+		private final long[] keys;
+		private final int[] weights;
+		private int count;
+
+		private Block(int size) {
+			timestamps = new long[size];
+			keys = new long[size];
+			weights = new int[size];
+			count = 0;
+		}
+
+		private boolean read(TraceReader reader) throws IOException {
+			count = reader.read(timestamps, keys, weights);
+			return count > 0;
+		}
+
+	}
+
+	/**
+	 * a cache of a configuration and its counters during a single replay
+	 */
+	private final class Replay {
+
+		private final String name;
+		private final Cache<Long, SimulatedValue> cache;
+		private long time;
+		private long hitCount;
+		private long missCount;
+		private long evictionCount;
+		private long expirationCount;
+		private long collectionCount;
+		private long peakWeight;
+		private long weight;
+		private long replayNanos;
+
+		private Replay(String name, Function<LongSupplier, Cache<Long, SimulatedValue>> cacheFactory) {
+			this.name = name;
+			cache = cacheFactory.apply(() -> time);
+			Assurance.assureNotNull(cache);
+			try {
+				cache.setRemovalListener(this::onRemoval, Runnable::run);
+			} catch (UnsupportedOperationException e) {
+				// evictions are not reported
+			}
+		}
+
+		private void onRemoval(RemovalNotification<? super Long, ? super SimulatedValue> notification) {
+			switch (notification.getCause()) {
+			case EVICTED:
+				evictionCount++;
+				break;
+			case EXPIRED:
+				expirationCount++;
+				break;
+			case COLLECTED:
+				collectionCount++;
+				break;
+			default:
+				break;
+			}
+		}
+
+		/**
+		 * replays the block and measures the weight the cache holds afterwards
+		 *
+		 * @param block
+		 */
+		private void replay(Block block) {
+			long start = System.nanoTime();
+			Long key;
+			for (int i = 0; i < block.count; i++) {
+				time = block.timestamps[i];
+				key = block.keys[i];
+				try {
+					cache.get(key);
+					hitCount++;
+				} catch (NoSuchElementException e) {
+					missCount++;
+					cache.cache(key, new SimulatedValue(block.weights[i], isMaterialized));
+				}
+			}
+			replayNanos += System.nanoTime() - start;
+			weight = 0;
+			cache.forEach((k, value) -> weight += value.getWeight());
+			peakWeight = Math.max(peakWeight, weight);
+		}
+
+		private SimulationResult toResult() {
+			Map<CacheType, Integer> tierSizes = cache.getStats().getTierSizes();
+			return new SimulationResult(name, hitCount, missCount, evictionCount, expirationCount, collectionCount,
+					peakWeight, weight, cache.size(), tierSizes, replayNanos);
+		}
+
+	}
+
+	private final List<String> nameList;
+	private final List<Function<LongSupplier, Cache<Long, SimulatedValue>>> cacheFactoryList;
+	private final Executor executor;
+	private final int blockSize;
+	private boolean isMaterialized;
+
+	/**
+	 * replays blocks of {@link #DEFAULT_BLOCK_SIZE} records in the
+	 * {@link ForkJoinPool#commonPool()}
+	 */
+	public CacheSimulator() {
+		this(DEFAULT_BLOCK_SIZE, ForkJoinPool.commonPool());
+	}
+
+	/**
+	 * @param blockSize
+	 *            number of records which are replayed together
+	 * @param executor
+	 *            replays the configurations
+	 * @throws NullPointerException
+	 *             if executor is null
+	 * @throws IllegalArgumentException
+	 *             if blockSize is not positive
+	 */
+	public CacheSimulator(@Positive int blockSize, @NotNull Executor executor) {
+		Assurance.assurePositive(blockSize);
+		Assurance.assureNotNull(executor);
+		nameList = new ArrayList<>();
+		cacheFactoryList = new ArrayList<>();
+		this.executor = executor;
+		this.blockSize = blockSize;
+		isMaterialized = false;
+	}
+
+	/**
+	 * adds a configuration which will be replayed by {@link #run(Path)}
+	 *
+	 * @param name
+	 *            identifies the configuration in the results
+	 * @param cacheFactory
+	 *            creates an empty cache for every run. receives the point in
+	 *            time of the current access in nanoseconds.
+	 * @throws NullPointerException
+	 *             if name or cacheFactory is null
+	 */
+	public void addConfiguration(@NotNull String name,
+			@NotNull Function<LongSupplier, Cache<Long, SimulatedValue>> cacheFactory) {
+		Assurance.assureNotNull(name);
+		Assurance.assureNotNull(cacheFactory);
+		nameList.add(name);
+		cacheFactoryList.add(cacheFactory);
+	}
+
+	/**
+	 * @param isMaterialized
+	 *            true if every {@link SimulatedValue} allocates as many bytes as
+	 *            its weight, which is needed to simulate soft and weak values
+	 *            realistically. false by default.
+	 */
+	public void setMaterialized(boolean isMaterialized) {
+		this.isMaterialized = isMaterialized;
+	}
+
+	public boolean isMaterialized() {
+		return isMaterialized;
+	}
+
+	/**
+	 * replays the trace against new caches of all configurations
+	 *
+	 * @param path
+	 *            trace written by {@link TraceWriter}
+	 * @return results in the order in which the configurations have been added
+	 * @throws IOException
+	 *             if the trace can not be read or is corrupt
+	 * @throws NullPointerException
+	 *             if path is null
+	 */
+	public List<SimulationResult> run(@NotNull Path path) throws IOException {
+		Assurance.assureNotNull(path);
+		List<Replay> replayList = new ArrayList<>(nameList.size());
+		for (int i = 0; i < nameList.size(); i++)
+			replayList.add(new Replay(nameList.get(i), cacheFactoryList.get(i)));
+		CompletableFuture<?>[] futures = new CompletableFuture<?>[replayList.size()];
+		Block block = new Block(blockSize);
+		Block nextBlock = new Block(blockSize);
+		Block swap;
+		try (TraceReader reader = new TraceReader(path)) {
+			boolean hasBlock = block.read(reader);
+			while (hasBlock) {
+				Block replayedBlock = block;
+				for (int i = 0; i < futures.length; i++) {
+					Replay replay = replayList.get(i);
+					futures[i] = CompletableFuture.runAsync(() -> replay.replay(replayedBlock), executor);
+				}
+				try {
+					hasBlock = nextBlock.read(reader);
+				} finally {
+					join(futures);
+				}
+				swap = block;
+				block = nextBlock;
+				nextBlock = swap;
+			}
+		}
+		List<SimulationResult> resultList = new ArrayList<>(replayList.size());
+		for (Replay replay : replayList)
+			resultList.add(replay.toResult());
+		return resultList;
+	}
+
+	/**
+	 * waits until all replays of a block are complete
+	 *
+	 * @param futures
+	 * @throws RuntimeException
+	 *             thrown by a cache during the replay
+	 */
+	private static void join(CompletableFuture<?>[] futures) {
+		try {
+			CompletableFuture.allOf(futures).join();
+		} catch (CompletionException e) {
+			if (e.getCause() instanceof RuntimeException)
+				throw (RuntimeException) e.getCause();
+			throw e;
+		}
+	}
+
+	@Override
+	public String toString() {
+		return "CacheSimulator [configurations=" + nameList + ", blockSize=" + blockSize + ", isMaterialized="
+				+ isMaterialized + "]";
+	}
+
+}
@@ -0,0 +1,44 @@
+package de.nuttercode.util.cache.simulation;
+
+/**
+ * The value which is cached for a key of a trace. It occupies as many bytes on
+ * the heap as the trace specifies if the values are materialized, so soft and
+ * weak values are collected under realistic memory pressure.
+ *
+ * @author Johannes B. Latzel
+ *
+ */
+public final class SimulatedValue {
+
+	private final int weight;
+
+	/**
+	 * only referenced to occupy memory
+	 */
+	@SuppressWarnings("unused")
+	private final byte[] payload;
+
+	/**
+	 * @param weight
+	 *            size of the value in bytes
+	 * @param isMaterialized
+	 *            true if the value allocates weight bytes
+	 */
+	SimulatedValue(int weight, boolean isMaterialized) {
+		this.weight = weight;
+		payload = isMaterialized ? new byte[weight] : null;
+	}
+
+	/**
+	 * @return size of the value in bytes as specified by the trace
+	 */
+	public int getWeight() {
+		return weight;
+	}
+
+	@Override
+	public String toString() {
+		return "SimulatedValue [weight=" + weight + "]";
+	}
+
+}
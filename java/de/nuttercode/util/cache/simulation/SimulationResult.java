@@ -0,0 +1,133 @@
+package de.nuttercode.util.cache.simulation;
+
+import java.util.Map;
+
+import de.nuttercode.util.cache.CacheType;
+
+/**
+ * Immutable result of the replay of a trace against a single configuration of
+ * a {@link CacheSimulator}. The weights are the sums of the weights of all
+ * values which the cache held, as specified by the trace.
+ *
+ * @author Johannes B. Latzel
+ *
+ */
+public final class SimulationResult {
+
+	private final String name;
+	private final long hitCount;
+	private final long missCount;
+	private final long evictionCount;
+	private final long expirationCount;
+	private final long collectionCount;
+	private final long peakWeight;
+	private final long finalWeight;
+	private final int finalSize;
+	private final Map<CacheType, Integer> tierSizes;
+	private final long replayNanos;
+
+	SimulationResult(String name, long hitCount, long missCount, long evictionCount, long expirationCount,
+			long collectionCount, long peakWeight, long finalWeight, int finalSize, Map<CacheType, Integer> tierSizes,
+			long replayNanos) {
+		this.name = name;
+		this.hitCount = hitCount;
+		this.missCount = missCount;
+		this.evictionCount = evictionCount;
+		this.expirationCount = expirationCount;
+		this.collectionCount = collectionCount;
+		this.peakWeight = peakWeight;
+		this.finalWeight = finalWeight;
+		this.finalSize = finalSize;
+		this.tierSizes = tierSizes;
+		this.replayNanos = replayNanos;
+	}
+
+	/**
+	 * @return name of the configuration
+	 */
+	public String getName() {
+		return name;
+	}
+
+	public long getHitCount() {
+		return hitCount;
+	}
+
+	public long getMissCount() {
+		return missCount;
+	}
+
+	/**
+	 * @return ratio of hits to accesses or 1 if the trace is empty
+	 */
+	public double getHitRatio() {
+		long accessCount = hitCount + missCount;
+		return accessCount == 0 ? 1.0 : (double) hitCount / accessCount;
+	}
+
+	/**
+	 * @return number of entries which have been evicted by the policy of the
+	 *         cache
+	 */
+	public long getEvictionCount() {
+		return evictionCount;
+	}
+
+	public long getExpirationCount() {
+		return expirationCount;
+	}
+
+	/**
+	 * @return number of entries which have been purged because their values have
+	 *         been collected by the Garbage Collector
+	 */
+	public long getCollectionCount() {
+		return collectionCount;
+	}
+
+	/**
+	 * @return largest weight the cache held after any block of the trace
+	 */
+	public long getPeakWeight() {
+		return peakWeight;
+	}
+
+	/**
+	 * @return weight the cache held at the end of the trace
+	 */
+	public long getFinalWeight() {
+		return finalWeight;
+	}
+
+	/**
+	 * @return number of entries at the end of the trace
+	 */
+	public int getFinalSize() {
+		return finalSize;
+	}
+
+	/**
+	 * @return unmodifiable map of the number of entries per {@link CacheType} at
+	 *         the end of the trace, empty if the cache does not report tiers
+	 */
+	public Map<CacheType, Integer> getTierSizes() {
+		return tierSizes;
+	}
+
+	/**
+	 * @return time spent replaying the trace in nanoseconds
+	 */
+	public long getReplayNanos() {
+		return replayNanos;
+	}
+
+	@Override
+	public String toString() {
+		return "SimulationResult [name=" + name + ", hitRatio=" + getHitRatio() + ", hitCount=" + hitCount
+				+ ", missCount=" + missCount + ", evictionCount=" + evictionCount + ", expirationCount="
+				+ expirationCount + ", collectionCount=" + collectionCount + ", peakWeight=" + peakWeight
+				+ ", finalWeight=" + finalWeight + ", finalSize=" + finalSize + ", tierSizes=" + tierSizes
+				+ ", replayNanos=" + replayNanos + "]";
+	}
+
+}
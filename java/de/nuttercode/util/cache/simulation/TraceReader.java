@@ -0,0 +1,130 @@
+package de.nuttercode.util.cache.simulation;
+
+import java.io.BufferedInputStream;
+import java.io.Closeable;
+import java.io.EOFException;
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+
+import de.nuttercode.util.assurance.Assurance;
+import de.nuttercode.util.assurance.NotNull;
+import de.nuttercode.util.buffer.DataQueue;
+
+/**
+ * Reads a trace which has been written by {@link TraceWriter} sequentially in
+ * blocks of records.
+ *
+ * @author Johannes B. Latzel
+ *
+ */
+public final class TraceReader implements Closeable {
+
+	private final Path path;
+	private final InputStream inputStream;
+	private final DataQueue recordQueue;
+	private final byte[] readBuffer;
+	private long previousTimestamp;
+	private boolean isEndOfFile;
+
+	/**
+	 * @param path
+	 * @throws IOException
+	 *             if the file can not be opened or is not a trace
+	 * @throws NullPointerException
+	 *             if path is null
+	 */
+	public TraceReader(@NotNull Path path) throws IOException {
+		Assurance.assureNotNull(path);
+		this.path = path;
+		inputStream = new BufferedInputStream(Files.newInputStream(path));
+		readBuffer = new byte[TraceWriter.RECORD_SIZE * 4096];
+		recordQueue = new DataQueue(readBuffer.length);
+		previousTimestamp = Long.MIN_VALUE;
+		isEndOfFile = false;
+		try {
+			recordQueue.putBytes(inputStream.readNBytes(Integer.BYTES * 2));
+			if (recordQueue.available() < Integer.BYTES * 2 || recordQueue.getInt() != TraceWriter.MAGIC)
+				throw new IOException(path + " is not a trace");
+			int version = recordQueue.getInt();
+			if (version != TraceWriter.VERSION)
+				throw new IOException("unsupported trace version " + version);
+		} catch (IOException | RuntimeException e) {
+			inputStream.close();
+			throw e;
+		}
+	}
+
+	/**
+	 * stages the next bytes of the file. reads whole records unless the end of
+	 * the file has been reached, so the queue is empty before it is filled
+	 * again.
+	 *
+	 * @throws IOException
+	 */
+	private void fill() throws IOException {
+		if (isEndOfFile)
+			return;
+		int bytesRead = inputStream.readNBytes(readBuffer, 0, readBuffer.length);
+		if (bytesRead < readBuffer.length)
+			isEndOfFile = true;
+		recordQueue.putBytes(readBuffer, 0, bytesRead);
+	}
+
+	/**
+	 * reads the next records into the arrays, which must have the same length
+	 *
+	 * @param timestamps
+	 * @param keys
+	 * @param weights
+	 * @return number of records which have been read, 0 if the end of the trace
+	 *         has been reached
+	 * @throws IOException
+	 *             if the file can not be read or is corrupt
+	 * @throws NullPointerException
+	 *             if an array is null
+	 * @throws IllegalArgumentException
+	 *             if the arrays do not have the same length
+	 */
+	public int read(@NotNull long[] timestamps, @NotNull long[] keys, @NotNull int[] weights) throws IOException {
+		Assurance.assureNotNull(timestamps);
+		Assurance.assureNotNull(keys);
+		Assurance.assureNotNull(weights);
+		Assurance.assureEquals(keys.length, timestamps.length);
+		Assurance.assureEquals(weights.length, timestamps.length);
+		int count = 0;
+		long timestamp;
+		int weight;
+		while (count < timestamps.length) {
+			if (recordQueue.available() < TraceWriter.RECORD_SIZE)
+				fill();
+			if (recordQueue.available() < TraceWriter.RECORD_SIZE) {
+				if (recordQueue.available() > 0)
+					throw new EOFException("truncated record in " + path);
+				break;
+			}
+			timestamp = recordQueue.getLong();
+			keys[count] = recordQueue.getLong();
+			weight = recordQueue.getInt();
+			if (timestamp < previousTimestamp || weight < 0)
+				throw new IOException("corrupt record in " + path);
+			timestamps[count] = timestamp;
+			weights[count] = weight;
+			previousTimestamp = timestamp;
+			count++;
+		}
+		return count;
+	}
+
+	@Override
+	public void close() throws IOException {
+		inputStream.close();
+	}
+
+	@Override
+	public String toString() {
+		return "TraceReader [path=" + path + "]";
+	}
+
+}
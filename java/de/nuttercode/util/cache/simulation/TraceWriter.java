@@ -0,0 +1,104 @@
+package de.nuttercode.util.cache.simulation;
+
+import java.io.BufferedOutputStream;
+import java.io.Closeable;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+
+import de.nuttercode.util.assurance.Assurance;
+import de.nuttercode.util.assurance.NotNull;
+import de.nuttercode.util.assurance.NotNegative;
+import de.nuttercode.util.buffer.DataQueue;
+
+/**
+ * Records key accesses in the binary trace format read by {@link TraceReader}.
+ * The file starts with a header of the magic number and the version of the
+ * format, followed by one record per access: the point in time in nanoseconds
+ * (long), the key (long) and the weight of the value in bytes (int).
+ *
+ * @author Johannes B. Latzel
+ *
+ */
+public final class TraceWriter implements Closeable {
+
+	static final int MAGIC = 0x4E435452;
+	static final int VERSION = 1;
+	static final int RECORD_SIZE = Long.BYTES * 2 + Integer.BYTES;
+
+	/**
+	 * number of records which are staged before they are written
+	 */
+	private static final int BATCH_SIZE = 4096;
+
+	private final OutputStream outputStream;
+	private final DataQueue recordQueue;
+	private long recordCount;
+
+	/**
+	 * @param path
+	 *            file which will be created or truncated
+	 * @throws IOException
+	 *             if the file can not be created
+	 * @throws NullPointerException
+	 *             if path is null
+	 */
+	public TraceWriter(@NotNull Path path) throws IOException {
+		Assurance.assureNotNull(path);
+		outputStream = new BufferedOutputStream(Files.newOutputStream(path));
+		recordQueue = new DataQueue(RECORD_SIZE * BATCH_SIZE);
+		recordCount = 0;
+		recordQueue.putInt(MAGIC);
+		recordQueue.putInt(VERSION);
+	}
+
+	/**
+	 * appends an access to the trace
+	 *
+	 * @param timestamp
+	 *            point in time of the access in nanoseconds, must not be smaller
+	 *            than the timestamp of the previous access
+	 * @param key
+	 * @param weight
+	 *            size of the value in bytes
+	 * @throws IOException
+	 *             if the trace can not be written
+	 * @throws IllegalArgumentException
+	 *             if weight is negative
+	 */
+	public void write(long timestamp, long key, @NotNegative int weight) throws IOException {
+		Assurance.assureNotNegative(weight);
+		recordQueue.putLong(timestamp);
+		recordQueue.putLong(key);
+		recordQueue.putInt(weight);
+		recordCount++;
+		if (recordQueue.available() >= RECORD_SIZE * BATCH_SIZE)
+			recordQueue.flushToStream(outputStream);
+	}
+
+	/**
+	 * @return number of records which have been written
+	 */
+	public long getRecordCount() {
+		return recordCount;
+	}
+
+	/**
+	 * writes all staged records and closes the file
+	 */
+	@Override
+	public void close() throws IOException {
+		try {
+			recordQueue.flushToStream(outputStream);
+		} finally {
+			outputStream.close();
+		}
+	}
+
+	@Override
+	public String toString() {
+		return "TraceWriter [recordCount=" + recordCount + "]";
+	}
+
+}
@@ -0,0 +1,195 @@
+package de.nuttercode.util.cache;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+import java.time.Duration;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Queue;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import org.junit.jupiter.api.Test;
+
+class AsyncLoadingCacheTest {
+
+	private static final Duration REFRESH_AFTER_WRITE = Duration.ofNanos(100);
+
+	/**
+	 * loads which have been submitted but not run yet
+	 */
+	private final Queue<Runnable> taskQueue = new ArrayDeque<>();
+	private final AtomicInteger loadCount = new AtomicInteger();
+	private long now = 0;
+
+	private AsyncLoadingCache<Integer, String> create(CacheType storage, Duration refreshAfterWrite) {
+		return new AsyncLoadingCache<>(key -> key + "-" + loadCount.incrementAndGet(), storage, taskQueue::add,
+				refreshAfterWrite, () -> now);
+	}
+
+	private void runTasks() {
+		Runnable task;
+		while ((task = taskQueue.poll()) != null)
+			task.run();
+	}
+
+	@Test
+	void testOneLoadPerKey() {
+		AsyncLoadingCache<Integer, String> cache = create(CacheType.STRONG, null);
+		CompletableFuture<String> future = cache.get(1);
+		assertSame(future, cache.get(1));
+		assertTrue(cache.contains(1));
+		assertEquals(1, taskQueue.size());
+		runTasks();
+		assertEquals("1-1", future.join());
+		assertEquals("1-1", cache.get(1).join());
+		assertTrue(taskQueue.isEmpty());
+		assertEquals(1, loadCount.get());
+	}
+
+	@Test
+	void testOneLoadPerKeyConcurrent() throws Exception {
+		CountDownLatch startLatch = new CountDownLatch(1);
+		AtomicInteger loadCount = new AtomicInteger();
+		ExecutorService executor = Executors.newFixedThreadPool(8);
+		ExecutorService loadExecutor = Executors.newSingleThreadExecutor();
+		try {
+			AsyncLoadingCache<Integer, Integer> cache = new AsyncLoadingCache<>(key -> {
+				loadCount.incrementAndGet();
+				return key;
+			}, CacheType.STRONG, loadExecutor, null);
+			List<Future<Integer>> futureList = new ArrayList<>();
+			for (int i = 0; i < 8; i++)
+				futureList.add(executor.submit(() -> {
+					startLatch.await();
+					return cache.get(1).join();
+				}));
+			startLatch.countDown();
+			for (Future<Integer> future : futureList)
+				assertEquals(1, future.get(10, TimeUnit.SECONDS));
+		} finally {
+			executor.shutdownNow();
+			loadExecutor.shutdownNow();
+		}
+		assertEquals(1, loadCount.get());
+	}
+
+	@Test
+	void testFailedLoadIsRemoved() {
+		AtomicInteger attemptCount = new AtomicInteger();
+		AsyncLoadingCache<Integer, Integer> cache = new AsyncLoadingCache<>(key -> {
+			if (attemptCount.incrementAndGet() == 1)
+				throw new IllegalStateException("failed");
+			return key;
+		}, CacheType.STRONG, Runnable::run, null);
+		assertTrue(cache.get(1).isCompletedExceptionally());
+		assertFalse(cache.contains(1));
+		assertEquals(1, cache.get(1).join());
+	}
+
+	@Test
+	void testRefreshAhead() {
+		AsyncLoadingCache<Integer, String> cache = create(CacheType.STRONG, REFRESH_AFTER_WRITE);
+		cache.get(1);
+		runTasks();
+		now = 99;
+		assertEquals("1-1", cache.get(1).join());
+		assertTrue(taskQueue.isEmpty());
+		now = 100;
+		// readers get the old value while the reload runs, which is started only once
+		assertEquals("1-1", cache.get(1).join());
+		assertEquals("1-1", cache.get(1).join());
+		assertEquals(1, taskQueue.size());
+		runTasks();
+		assertEquals("1-2", cache.get(1).join());
+		assertTrue(taskQueue.isEmpty());
+		// the write time has been renewed by the reload
+		now = 199;
+		assertEquals("1-2", cache.get(1).join());
+		assertTrue(taskQueue.isEmpty());
+	}
+
+	@Test
+	void testFailedRefreshKeepsValue() {
+		AtomicInteger attemptCount = new AtomicInteger();
+		AsyncLoadingCache<Integer, String> cache = new AsyncLoadingCache<>(key -> {
+			if (attemptCount.incrementAndGet() == 2)
+				throw new IllegalStateException("failed");
+			return key + "-" + attemptCount.get();
+		}, CacheType.STRONG, taskQueue::add, REFRESH_AFTER_WRITE, () -> now);
+		cache.get(1);
+		runTasks();
+		now = 100;
+		cache.get(1);
+		runTasks();
+		assertEquals("1-1", cache.get(1).join());
+		runTasks();
+		assertEquals("1-3", cache.get(1).join());
+	}
+
+	@Test
+	void testRefreshAheadWithWeakStorage() {
+		AsyncLoadingCache<Integer, String> cache = create(CacheType.WEAK, REFRESH_AFTER_WRITE);
+		cache.get(1);
+		runTasks();
+		String value = cache.get(1).join();
+		now = 100;
+		assertEquals(value, cache.get(1).join());
+		runTasks();
+		assertEquals("1-2", cache.get(1).join());
+	}
+
+	@Test
+	void testPendingFutureSurvivesWithWeakStorage() {
+		testPendingFutureSurvives(CacheType.WEAK);
+	}
+
+	@Test
+	void testPendingFutureSurvivesWithSoftStorage() {
+		testPendingFutureSurvives(CacheType.SOFT);
+	}
+
+	private void testPendingFutureSurvives(CacheType storage) {
+		AsyncLoadingCache<Integer, String> cache = create(storage, null);
+		cache.get(1);
+		System.gc();
+		cache.clean();
+		assertTrue(cache.contains(1));
+		assertEquals(1, cache.size());
+		CompletableFuture<String> future = cache.get(1);
+		assertFalse(future.isDone());
+		assertEquals(1, taskQueue.size());
+		runTasks();
+		String value = future.join();
+		System.gc();
+		cache.clean();
+		// the value is strongly reachable through the variable
+		assertTrue(cache.contains(1));
+		assertSame(value, cache.get(1).join());
+		assertEquals(1, loadCount.get());
+	}
+
+	@Test
+	void testCollectedValueIsLoadedAgain() throws InterruptedException {
+		AsyncLoadingCache<Integer, String> cache = create(CacheType.WEAK, null);
+		cache.get(1);
+		runTasks();
+		for (int i = 0; i < 10 && cache.contains(1); i++) {
+			System.gc();
+			Thread.sleep(10);
+		}
+		assertFalse(cache.contains(1));
+		cache.clean();
+		assertEquals(0, cache.size());
+		CompletableFuture<String> future = cache.get(1);
+		runTasks();
+		assertEquals("1-2", future.join());
+	}
+
+}
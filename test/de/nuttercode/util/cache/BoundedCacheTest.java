@@ -0,0 +1,99 @@
+package de.nuttercode.util.cache;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+import java.util.List;
+
+import org.junit.jupiter.api.Test;
+
+class BoundedCacheTest {
+
+	@Test
+	void testSetMaximumSize() {
+		BoundedCache<Integer, Integer> cache = new BoundedCache<>(4);
+		for (int i = 0; i < 4; i++)
+			cache.cache(i, i);
+		cache.setMaximumSize(2);
+		assertEquals(2, cache.size());
+		assertEquals(2, cache.getEvictionCount());
+		assertTrue(cache.contains(2));
+		assertTrue(cache.contains(3));
+	}
+
+	@Test
+	void testRequestMaximumSizeOnWrite() {
+		BoundedCache<Integer, Integer> cache = new BoundedCache<>(4);
+		for (int i = 0; i < 4; i++)
+			cache.cache(i, i);
+		cache.requestMaximumSize(2);
+		assertEquals(4, cache.getMaximumSize());
+		assertEquals(4, cache.size());
+		cache.cache(4, 4);
+		assertEquals(2, cache.getMaximumSize());
+		assertEquals(2, cache.size());
+		assertTrue(cache.contains(3));
+		assertTrue(cache.contains(4));
+	}
+
+	@Test
+	void testRequestMaximumSizeOnClean() {
+		BoundedCache<Integer, Integer> cache = new BoundedCache<>(4);
+		for (int i = 0; i < 4; i++)
+			cache.cache(i, i);
+		assertEquals(0, cache.clean(Integer.MAX_VALUE));
+		cache.requestMaximumSize(3);
+		cache.requestMaximumSize(1);
+		assertEquals(3, cache.clean(Integer.MAX_VALUE));
+		assertEquals(1, cache.getMaximumSize());
+		assertEquals(1, cache.size());
+		assertThrows(IllegalArgumentException.class, () -> cache.requestMaximumSize(0));
+	}
+
+	@Test
+	void testRequestMaximumSizeConcurrently() throws InterruptedException {
+		BoundedCache<Integer, Integer> cache = new BoundedCache<>(1024);
+		Thread thread = new Thread(() -> {
+			for (int i = 1; i <= 1000; i++)
+				cache.requestMaximumSize(i);
+		});
+		thread.start();
+		for (int i = 0; i < 10000; i++)
+			cache.cache(i, i);
+		thread.join();
+		cache.cache(-1, -1);
+		assertEquals(1000, cache.getMaximumSize());
+		assertTrue(cache.size() <= 1000);
+	}
+
+	@Test
+	void testCleanAppliesRequestedMaximumSize() {
+		BoundedCache<Integer, Integer> cache = new BoundedCache<>(4);
+		for (int i = 0; i < 4; i++)
+			cache.cache(i, i);
+		cache.clean();
+		assertEquals(4, cache.size());
+		cache.requestMaximumSize(1);
+		cache.clean();
+		assertEquals(1, cache.getMaximumSize());
+		assertEquals(1, cache.size());
+		assertTrue(cache.contains(3));
+	}
+
+	@Test
+	void testCleanSegments() {
+		SegmentedCache<Integer, Integer> cache = new SegmentedCache<>(4, () -> new BoundedCache<>(100));
+		for (int i = 0; i < 200; i++)
+			cache.cache(i, i);
+		cache.clean();
+		assertEquals(200, cache.size());
+		cache.applyToSegments(segment -> {
+			((BoundedCache<Integer, Integer>) segment).requestMaximumSize(10);
+			return null;
+		});
+		cache.clean();
+		assertEquals(List.of(10L, 10L, 10L, 10L),
+				cache.applyToSegments(segment -> ((BoundedCache<Integer, Integer>) segment).getMaximumSize()));
+		assertTrue(cache.size() <= 40);
+	}
+
+}
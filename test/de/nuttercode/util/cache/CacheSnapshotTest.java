@@ -0,0 +1,185 @@
+package de.nuttercode.util.cache;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import de.nuttercode.util.buffer.ReadableBuffer;
+import de.nuttercode.util.buffer.WritableBuffer;
+
+class CacheSnapshotTest {
+
+	private static final Serializer<Integer> INTEGER_SERIALIZER = new Serializer<>() {
+
+		@Override
+		public void serialize(Integer value, WritableBuffer buffer) {
+			buffer.putInt(value);
+		}
+
+		@Override
+		public Integer deserialize(ReadableBuffer buffer) {
+			return buffer.getInt();
+		}
+
+	};
+
+	private static final Serializer<String> STRING_SERIALIZER = new Serializer<>() {
+
+		@Override
+		public void serialize(String value, WritableBuffer buffer) {
+			buffer.putString(value);
+		}
+
+		@Override
+		public String deserialize(ReadableBuffer buffer) {
+			return buffer.getString();
+		}
+
+	};
+
+	@TempDir
+	Path directory;
+
+	private ExecutorService executor;
+	private CacheSnapshot<Integer, String> snapshot;
+	private Path path;
+
+	@BeforeEach
+	void setUp() {
+		executor = Executors.newFixedThreadPool(4);
+		// small chunks, so every snapshot consists of many of them
+		snapshot = new CacheSnapshot<>(INTEGER_SERIALIZER, STRING_SERIALIZER, 256, executor);
+		path = directory.resolve("snapshot");
+	}
+
+	@AfterEach
+	void tearDown() {
+		executor.shutdownNow();
+	}
+
+	private static Map<Integer, String> createValueMap(int count) {
+		Map<Integer, String> valueMap = new HashMap<>();
+		for (int i = 0; i < count; i++)
+			valueMap.put(i, "v" + i);
+		return valueMap;
+	}
+
+	/**
+	 * writes a snapshot of 1000 entries
+	 *
+	 * @throws IOException
+	 */
+	private void writeSnapshot() throws IOException {
+		StrongCache<Integer, String> cache = new StrongCache<>();
+		cache.cacheAll(createValueMap(1000));
+		snapshot.write(cache, path);
+	}
+
+	@Test
+	void testStrongCacheRoundTrip() throws IOException {
+		Map<Integer, String> valueMap = createValueMap(1000);
+		StrongCache<Integer, String> cache = new StrongCache<>();
+		cache.cacheAll(valueMap);
+		snapshot.write(cache, path);
+		assertFalse(Files.exists(directory.resolve("snapshot.tmp")));
+		for (StrongCache<Integer, String> restored : List.of(new StrongCache<Integer, String>(),
+				new ConcurrentStrongCache<Integer, String>())) {
+			snapshot.restore(restored, path);
+			assertEquals(valueMap.size(), restored.size());
+			for (Map.Entry<Integer, String> entry : valueMap.entrySet())
+				assertEquals(entry.getValue(), restored.get(entry.getKey()));
+		}
+	}
+
+	@Test
+	void testEmptyRoundTrip() throws IOException {
+		snapshot.write(new StrongCache<>(), path);
+		StrongCache<Integer, String> restored = new StrongCache<>();
+		snapshot.restore(restored, path);
+		assertEquals(0, restored.size());
+	}
+
+	@Test
+	void testAdaptiveHybridCacheRoundTrip() throws IOException {
+		HybridCache<Integer, String> cache = new HybridCache<>(true, 1000, 1000);
+		// keeps the soft and weak values reachable
+		List<String> valueList = new ArrayList<>();
+		CacheType[] cacheTypes = CacheType.values();
+		String value;
+		for (int i = 0; i < 900; i++) {
+			value = "v" + i;
+			valueList.add(value);
+			cache.cache(i, value, cacheTypes[i % cacheTypes.length]);
+		}
+		snapshot.write(cache, path);
+		HybridCache<Integer, String> restored = new HybridCache<>(true, 1000, 1000);
+		snapshot.restore(restored, path);
+		assertEquals(900, restored.size());
+		for (CacheType cacheType : cacheTypes)
+			assertEquals(300, restored.size(cacheType));
+		for (int i = 0; i < 900; i++) {
+			assertEquals(cacheTypes[i % cacheTypes.length], restored.getCacheType(i));
+			assertEquals(valueList.get(i), restored.get(i));
+		}
+	}
+
+	@Test
+	void testRejectsBadMagic() throws IOException {
+		writeSnapshot();
+		byte[] bytes = Files.readAllBytes(path);
+		bytes[0] ^= 1;
+		Files.write(path, bytes);
+		IOException e = assertThrows(IOException.class, () -> snapshot.restore(new StrongCache<>(), path));
+		assertTrue(e.getMessage().contains("is not a cache snapshot"));
+	}
+
+	@Test
+	void testRejectsBadVersion() throws IOException {
+		writeSnapshot();
+		byte[] bytes = Files.readAllBytes(path);
+		ByteBuffer.wrap(bytes).putInt(Integer.BYTES, 2);
+		Files.write(path, bytes);
+		IOException e = assertThrows(IOException.class, () -> snapshot.restore(new StrongCache<>(), path));
+		assertEquals("unsupported snapshot version 2", e.getMessage());
+	}
+
+	@Test
+	void testRejectsTruncatedChunk() throws IOException {
+		writeSnapshot();
+		byte[] bytes = Files.readAllBytes(path);
+		Files.write(path, Arrays.copyOf(bytes, bytes.length - 1));
+		StrongCache<Integer, String> restored = new StrongCache<>();
+		IOException e = assertThrows(IOException.class, () -> snapshot.restore(restored, path));
+		assertTrue(e.getMessage().startsWith("truncated chunk"));
+	}
+
+	@Test
+	void testRejectsCorruptChunk() throws IOException {
+		writeSnapshot();
+		byte[] bytes = Files.readAllBytes(path);
+		// the count of the first chunk follows the header, its length and its type
+		ByteBuffer buffer = ByteBuffer.wrap(bytes);
+		int countOffset = Integer.BYTES * 3 + Byte.BYTES;
+		buffer.putInt(countOffset, buffer.getInt(countOffset) - 1);
+		Files.write(path, bytes);
+		IOException e = assertThrows(IOException.class,
+				() -> snapshot.restore(new ConcurrentStrongCache<>(), path));
+		assertTrue(e.getCause() instanceof IllegalStateException);
+	}
+
+}
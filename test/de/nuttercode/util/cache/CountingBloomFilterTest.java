@@ -0,0 +1,114 @@
+package de.nuttercode.util.cache;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+import java.util.HashMap;
+import java.util.Map;
+import java.util.Random;
+
+import org.junit.jupiter.api.Test;
+
+class CountingBloomFilterTest {
+
+	@Test
+	void testNoFalseNegatives() {
+		CountingBloomFilter filter = new CountingBloomFilter(1000, 0.01);
+		for (int i = 0; i < 1000; i++)
+			filter.add(i);
+		for (int i = 0; i < 1000; i++)
+			assertTrue(filter.mightContain(i));
+		filter.add(null);
+		assertTrue(filter.mightContain(null));
+	}
+
+	@Test
+	void testFalsePositiveProbability() {
+		CountingBloomFilter filter = new CountingBloomFilter(10000, 0.01);
+		for (int i = 0; i < 10000; i++)
+			filter.add(i);
+		int falsePositives = 0;
+		for (int i = 10000; i < 110000; i++)
+			if (filter.mightContain(i))
+				falsePositives++;
+		assertTrue(falsePositives < 2000, "falsePositives=" + falsePositives);
+	}
+
+	@Test
+	void testRemove() {
+		CountingBloomFilter filter = new CountingBloomFilter(1000, 0.01);
+		for (int i = 0; i < 2000; i++)
+			filter.add(i);
+		for (int i = 0; i < 2000; i += 2)
+			filter.remove(i);
+		for (int i = 1; i < 2000; i += 2)
+			assertTrue(filter.mightContain(i));
+		int removedContained = 0;
+		for (int i = 0; i < 2000; i += 2)
+			if (filter.mightContain(i))
+				removedContained++;
+		assertTrue(removedContained < 500, "removedContained=" + removedContained);
+	}
+
+	@Test
+	void testDuplicates() {
+		CountingBloomFilter filter = new CountingBloomFilter(16, 0.01);
+		filter.add("a");
+		filter.add("a");
+		filter.remove("a");
+		assertTrue(filter.mightContain("a"));
+		filter.remove("a");
+		assertFalse(filter.mightContain("a"));
+	}
+
+	@Test
+	void testSaturation() {
+		CountingBloomFilter filter = new CountingBloomFilter(16, 0.01);
+		for (int i = 0; i < 20; i++)
+			filter.add("a");
+		for (int i = 0; i < 20; i++)
+			filter.remove("a");
+		// saturated counters are never decremented
+		assertTrue(filter.mightContain("a"));
+	}
+
+	@Test
+	void testRandomOperations() {
+		// few counters, so counters are shared by many keys and saturate
+		CountingBloomFilter filter = new CountingBloomFilter(1, 0.5);
+		Map<Integer, Integer> countMap = new HashMap<>();
+		Random random = new Random(42);
+		int key;
+		for (int i = 0; i < 100000; i++) {
+			key = random.nextInt(64);
+			if (random.nextBoolean()) {
+				filter.add(key);
+				countMap.merge(key, 1, Integer::sum);
+			} else if (countMap.containsKey(key)) {
+				filter.remove(key);
+				countMap.computeIfPresent(key, (k, count) -> count == 1 ? null : count - 1);
+			}
+			for (Integer added : countMap.keySet())
+				assertTrue(filter.mightContain(added));
+		}
+	}
+
+	@Test
+	void testClear() {
+		CountingBloomFilter filter = new CountingBloomFilter(16, 0.01);
+		filter.add("a");
+		filter.clear();
+		assertFalse(filter.mightContain("a"));
+	}
+
+	@Test
+	void testEmptyCopy() {
+		CountingBloomFilter filter = new CountingBloomFilter(100, 0.01);
+		filter.add("a");
+		CountingBloomFilter copy = filter.emptyCopy();
+		assertEquals(filter.getCounterCount(), copy.getCounterCount());
+		assertEquals(filter.getHashCount(), copy.getHashCount());
+		assertFalse(copy.mightContain("a"));
+		assertTrue(filter.mightContain("a"));
+	}
+
+}
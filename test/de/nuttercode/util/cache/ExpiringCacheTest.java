@@ -0,0 +1,171 @@
+package de.nuttercode.util.cache;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.HashSet;
+import java.util.List;
+import java.util.NoSuchElementException;
+import java.util.Set;
+
+import org.junit.jupiter.api.Test;
+
+class ExpiringCacheTest {
+
+	private long now = 0;
+	private final List<RemovalNotification<String, Integer>> notificationList = new ArrayList<>();
+
+	private ExpiringCache<String, Integer> create(Duration expireAfterWrite, Duration expireAfterAccess) {
+		ExpiringCache<String, Integer> cache = new ExpiringCache<>(expireAfterWrite, expireAfterAccess, () -> now);
+		cache.setRemovalListener(notificationList::add, Runnable::run);
+		return cache;
+	}
+
+	@Test
+	void testExpireAfterWriteAtDeadline() {
+		ExpiringCache<String, Integer> cache = create(Duration.ofNanos(100), null);
+		cache.cache("a", 1);
+		now = 99;
+		assertEquals(1, cache.get("a"));
+		now = 100;
+		assertFalse(cache.contains("a"));
+		assertThrows(NoSuchElementException.class, () -> cache.get("a"));
+		assertEquals(1, notificationList.size());
+		assertEquals(RemovalCause.EXPIRED, notificationList.get(0).getCause());
+	}
+
+	@Test
+	void testRescheduleOnAccess() {
+		ExpiringCache<String, Integer> cache = create(null, Duration.ofNanos(100));
+		cache.cache("a", 1);
+		now = 60;
+		assertEquals(1, cache.get("a"));
+		now = 159;
+		assertEquals(1, cache.get("a"));
+		now = 258;
+		assertEquals(1, cache.get("a"));
+		now = 358;
+		assertNull(cache.getIfPresent("a"));
+		assertEquals(RemovalCause.EXPIRED, notificationList.get(0).getCause());
+	}
+
+	@Test
+	void testContainsDoesNotRenew() {
+		ExpiringCache<String, Integer> cache = create(null, Duration.ofNanos(100));
+		cache.cache("a", 1);
+		now = 60;
+		assertTrue(cache.contains("a"));
+		now = 100;
+		assertFalse(cache.contains("a"));
+	}
+
+	@Test
+	void testWriteDeadlineBoundsAccess() {
+		ExpiringCache<String, Integer> cache = create(Duration.ofNanos(150), Duration.ofNanos(100));
+		cache.cache("a", 1);
+		now = 90;
+		assertEquals(1, cache.get("a"));
+		now = 149;
+		assertEquals(1, cache.get("a"));
+		now = 150;
+		assertFalse(cache.contains("a"));
+	}
+
+	@Test
+	void testIndividualTimeToLive() {
+		ExpiringCache<String, Integer> cache = create(Duration.ofSeconds(1), null);
+		cache.cache("a", 1);
+		cache.cache("b", 2, Duration.ofHours(2));
+		now = Duration.ofSeconds(1).toNanos();
+		assertFalse(cache.contains("a"));
+		assertTrue(cache.contains("b"));
+		now = Duration.ofHours(2).toNanos();
+		assertFalse(cache.contains("b"));
+	}
+
+	@Test
+	void testCleanExpiresAcrossLevels() {
+		ExpiringCache<String, Integer> cache = create(null, null);
+		Duration[] timesToLive = { Duration.ofMillis(5), Duration.ofSeconds(3), Duration.ofMinutes(5),
+				Duration.ofHours(3), Duration.ofDays(3) };
+		for (int i = 0; i < timesToLive.length; i++)
+			cache.cache("key" + i, i, timesToLive[i]);
+		cache.cache("forever", -1);
+		for (int i = 0; i < timesToLive.length; i++) {
+			now = timesToLive[i].toNanos() - 1;
+			assertEquals(0, cache.clean(Integer.MAX_VALUE));
+			now = timesToLive[i].toNanos() + (1L << 24);
+			assertEquals(1, cache.clean(Integer.MAX_VALUE));
+			assertEquals("key" + i, notificationList.get(i).getKey());
+		}
+		assertEquals(1, cache.size());
+		assertTrue(cache.contains("forever"));
+	}
+
+	@Test
+	void testReplaceRenewsWriteTime() {
+		ExpiringCache<String, Integer> cache = create(Duration.ofNanos(100), null);
+		cache.cache("a", 1);
+		now = 80;
+		cache.cache("a", 2);
+		now = 179;
+		assertEquals(2, cache.get("a"));
+		assertEquals(RemovalCause.REPLACED, notificationList.get(0).getCause());
+	}
+
+	/**
+	 * caches the keys 0 to 99 and lets the odd ones expire
+	 *
+	 * @return the cache
+	 */
+	private ExpiringCache<String, Integer> createHalfExpired() {
+		ExpiringCache<String, Integer> cache = create(Duration.ofHours(2), null);
+		for (int i = 0; i < 100; i++)
+			cache.cache(Integer.toString(i), i, (i & 1) == 0 ? Duration.ofHours(2) : Duration.ofSeconds(1));
+		// the timer wheel only expires timers once their tick has passed
+		now = Duration.ofSeconds(2).toNanos();
+		return cache;
+	}
+
+	@Test
+	void testReadWhileTraversingKeySet() {
+		ExpiringCache<String, Integer> cache = createHalfExpired();
+		Set<String> keySet = new HashSet<>();
+		// reads purge expired entries while the view is traversed
+		for (String key : cache.getKeySet()) {
+			assertEquals(Integer.parseInt(key), cache.get(key));
+			keySet.add(key);
+		}
+		assertEquals(50, keySet.size());
+		assertEquals(50, cache.size());
+		assertEquals(keySet, new HashSet<>(cache.getKeySet()));
+	}
+
+	@Test
+	void testReadWhileTraversingValueCollection() {
+		ExpiringCache<String, Integer> cache = createHalfExpired();
+		int count = 0;
+		for (int value : cache.getValueCollection()) {
+			assertEquals(0, value & 1);
+			assertEquals(value, cache.get(Integer.toString(value)));
+			count++;
+		}
+		assertEquals(50, count);
+	}
+
+	@Test
+	void testViews() {
+		ExpiringCache<String, Integer> cache = createHalfExpired();
+		assertTrue(cache.getKeySet().contains("0"));
+		assertFalse(cache.getKeySet().contains("1"));
+		assertEquals(50, cache.getKeySet().stream().count());
+		assertEquals(50, cache.getKeySet().parallelStream().distinct().count());
+		assertEquals(2450, cache.getValueCollection().stream().mapToInt(Integer::intValue).sum());
+		assertEquals(50, cache.getKeySet().size());
+		assertEquals(50, cache.getValueCollection().size());
+		assertThrows(UnsupportedOperationException.class, () -> cache.getKeySet().remove("0"));
+		assertThrows(UnsupportedOperationException.class, () -> cache.getValueCollection().add(1));
+	}
+
+}
@@ -0,0 +1,317 @@
+package de.nuttercode.util.cache;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+import java.io.IOException;
+import java.lang.ref.WeakReference;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.NoSuchElementException;
+import java.util.Random;
+import java.util.Set;
+import java.util.concurrent.CyclicBarrier;
+import java.util.function.BiConsumer;
+
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import de.nuttercode.util.buffer.ReadableBuffer;
+import de.nuttercode.util.buffer.WritableBuffer;
+
+class HybridCacheTest {
+
+	private static final Serializer<String> STRING_SERIALIZER = new Serializer<>() {
+
+		@Override
+		public void serialize(String value, WritableBuffer buffer) {
+			buffer.putString(value);
+		}
+
+		@Override
+		public String deserialize(ReadableBuffer buffer) {
+			return buffer.getString();
+		}
+
+	};
+
+	@TempDir
+	Path directory;
+
+	private SpillFile<Integer, String> createSpillFile() throws IOException {
+		return new SpillFile<>(directory.resolve("spill"), STRING_SERIALIZER, 1 << 20, 1 << 16);
+	}
+
+	private static void assertContainsAll(HybridCache<Integer, String> cache, Map<Integer, String> model) {
+		for (Map.Entry<Integer, String> entry : model.entrySet()) {
+			assertTrue(cache.contains(entry.getKey()), "false negative of " + entry.getKey());
+			assertEquals(entry.getValue(), cache.get(entry.getKey()));
+		}
+		assertEquals(model, cache.getAll(model.keySet()));
+	}
+
+	/**
+	 * performs random operations on the cache and the model. the model keeps all
+	 * values strongly reachable, so none of them is collected.
+	 */
+	private static void randomOperations(HybridCache<Integer, String> cache, long seed) {
+		Map<Integer, String> model = new HashMap<>();
+		CacheType[] cacheTypes = CacheType.values();
+		Random random = new Random(seed);
+		Integer key;
+		String value;
+		for (int i = 0; i < 10000; i++) {
+			key = random.nextInt(128);
+			value = String.valueOf(i);
+			switch (random.nextInt(10)) {
+			case 0:
+			case 1:
+				cache.cache(key, value, cacheTypes[random.nextInt(cacheTypes.length)]);
+				model.put(key, value);
+				break;
+			case 2:
+				cache.cache(key, value);
+				model.put(key, value);
+				break;
+			case 3:
+				assertEquals(model.putIfAbsent(key, value), cache.putIfAbsent(key, value));
+				break;
+			case 4:
+			case 5:
+				if (model.remove(key) != null)
+					cache.remove(key);
+				else
+					assertFalse(cache.contains(key));
+				break;
+			case 6:
+				cache.removeAll(List.of(key, key + 1));
+				model.remove(key);
+				model.remove(key + 1);
+				break;
+			case 7:
+				cache.cacheAll(Map.of(key, value, key + 128, value));
+				model.put(key, value);
+				model.put(key + 128, value);
+				break;
+			case 8:
+				cache.clean();
+				break;
+			default:
+				if (random.nextInt(100) == 0) {
+					cache.clear();
+					model.clear();
+				}
+			}
+			assertContainsAll(cache, model);
+		}
+	}
+
+	@Test
+	void testBloomFilter() {
+		HybridCache<Integer, String> cache = new HybridCache<>();
+		cache.cache(1, "1");
+		cache.setBloomFilter(new CountingBloomFilter(1024, 0.01));
+		assertTrue(cache.contains(1));
+		assertFalse(cache.contains(2));
+		assertNull(cache.getIfPresent(2));
+		cache.clear();
+		assertFalse(cache.contains(1));
+		cache.cache(1, "1");
+		assertTrue(cache.contains(1));
+	}
+
+	@Test
+	void testBloomFilterRandomOperations() {
+		HybridCache<Integer, String> cache = new HybridCache<>();
+		cache.setBloomFilter(new CountingBloomFilter(1, 0.5));
+		randomOperations(cache, 42);
+	}
+
+	@Test
+	void testBloomFilterRandomOperationsAdaptive() {
+		HybridCache<Integer, String> cache = new HybridCache<>(true, 16, 16);
+		cache.setBloomFilter(new CountingBloomFilter(1, 0.5));
+		cache.setRemovalListener(notification -> {
+		}, Runnable::run);
+		randomOperations(cache, 43);
+	}
+
+	@Test
+	void testBloomFilterRandomOperationsSpilled() throws IOException {
+		try (SpillFile<Integer, String> spillFile = createSpillFile()) {
+			HybridCache<Integer, String> cache = new HybridCache<>(true, 16, 16, spillFile);
+			cache.setBloomFilter(new CountingBloomFilter(1, 0.5));
+			randomOperations(cache, 44);
+		}
+	}
+
+	@Test
+	void testBloomFilterKeepsSpilledKeys() throws IOException {
+		try (SpillFile<Integer, String> spillFile = createSpillFile()) {
+			HybridCache<Integer, String> cache = new HybridCache<>(false, spillFile);
+			cache.setBloomFilter(new CountingBloomFilter(1024, 0.01));
+			for (int i = 0; i < 1024; i++)
+				cache.cache(i, String.valueOf(i), CacheType.WEAK);
+			// the entries of collected values are purged, only their records in the spill file are left
+			System.gc();
+			cache.clean();
+			for (int i = 0; i < 1024; i++) {
+				assertTrue(cache.contains(i), "false negative of " + i);
+				assertEquals(String.valueOf(i), cache.get(i));
+			}
+			cache.clear();
+			for (int i = 0; i < 1024; i++)
+				assertFalse(cache.contains(i));
+		}
+	}
+
+	@Test
+	void testAdaptiveWithoutRemovalListener() {
+		HybridCache<String, String> cache = new HybridCache<>(false, 2, 2);
+		cache.cache("a", "1");
+		cache.cache("a", "2");
+		assertEquals("2", cache.get("a"));
+		cache.remove("a");
+		assertFalse(cache.contains("a"));
+	}
+
+	@Test
+	void testAdaptiveRemovalListener() {
+		HybridCache<String, String> cache = new HybridCache<>(false, 2, 2);
+		List<RemovalNotification<String, String>> notificationList = new ArrayList<>();
+		cache.setRemovalListener(notificationList::add, Runnable::run);
+		cache.cache("a", "1");
+		cache.cache("a", "2");
+		cache.cache("b", "3");
+		cache.remove("a");
+		cache.clear();
+		assertEquals(3, notificationList.size());
+		assertEquals("a", notificationList.get(0).getKey());
+		assertEquals("1", notificationList.get(0).getValue());
+		assertEquals(RemovalCause.REPLACED, notificationList.get(0).getCause());
+		assertEquals("a", notificationList.get(1).getKey());
+		assertEquals("2", notificationList.get(1).getValue());
+		assertEquals(RemovalCause.EXPLICIT, notificationList.get(1).getCause());
+		assertEquals("b", notificationList.get(2).getKey());
+		assertEquals(RemovalCause.EXPLICIT, notificationList.get(2).getCause());
+		assertEquals(0, cache.size());
+	}
+
+	@Test
+	void testAdaptiveRemovalListenerOnCompute() {
+		HybridCache<String, Integer> cache = new HybridCache<>(true, 2, 2);
+		List<RemovalNotification<String, Integer>> notificationList = new ArrayList<>();
+		cache.setRemovalListener(notificationList::add, Runnable::run);
+		cache.merge("a", 1, Integer::sum);
+		cache.merge("a", 1, Integer::sum);
+		cache.compute("a", (key, value) -> null);
+		assertEquals(2, notificationList.size());
+		assertEquals(RemovalCause.REPLACED, notificationList.get(0).getCause());
+		assertEquals(1, notificationList.get(0).getValue());
+		assertEquals(RemovalCause.EXPLICIT, notificationList.get(1).getCause());
+		assertEquals(2, notificationList.get(1).getValue());
+	}
+
+	@Test
+	void testComputeRemovesSpillRecord() throws IOException {
+		try (SpillFile<Integer, String> spillFile = createSpillFile()) {
+			HybridCache<Integer, String> cache = new HybridCache<>(true, spillFile);
+			cache.cache(1, "1", CacheType.SOFT);
+			assertTrue(spillFile.contains(1));
+			cache.compute(1, (key, value) -> value.equals("2") ? value : null);
+			assertFalse(spillFile.contains(1));
+			assertFalse(cache.contains(1));
+			cache.cache(1, "1", CacheType.SOFT);
+			cache.merge(1, "2", (value, newValue) -> value + newValue);
+			assertEquals("12", cache.get(1));
+		}
+	}
+
+	@Test
+	void testRemoveDuringDemotionRemovesSpillRecord() throws Exception {
+		testRemoveDuringDemotion((cache, key) -> cache.remove(key));
+	}
+
+	@Test
+	void testRemoveAllDuringDemotionRemovesSpillRecord() throws Exception {
+		testRemoveDuringDemotion((cache, key) -> cache.removeAll(List.of(key)));
+	}
+
+	/**
+	 * removes strong entries while another thread demotes them, which writes their
+	 * values to the spill file
+	 *
+	 * @param remover
+	 * @throws Exception
+	 */
+	private void testRemoveDuringDemotion(BiConsumer<HybridCache<Integer, String>, Integer> remover)
+			throws Exception {
+		try (SpillFile<Integer, String> spillFile = createSpillFile()) {
+			HybridCache<Integer, String> cache = new HybridCache<>(true, spillFile);
+			int count = 2000;
+			CyclicBarrier barrier = new CyclicBarrier(2);
+			Thread thread = new Thread(() -> {
+				try {
+					for (int key = 0; key < count; key++) {
+						barrier.await();
+						try {
+							cache.move(key, CacheType.SOFT);
+						} catch (NoSuchElementException e) {
+							// removed before the demotion
+						}
+					}
+				} catch (Exception e) {
+					throw new IllegalStateException(e);
+				}
+			});
+			thread.start();
+			for (int key = 0; key < count; key++) {
+				cache.cache(key, "v" + key, CacheType.STRONG);
+				barrier.await();
+				remover.accept(cache, key);
+			}
+			thread.join();
+			for (int key = 0; key < count; key++) {
+				assertFalse(spillFile.contains(key));
+				assertFalse(cache.contains(key));
+			}
+			assertEquals(0, cache.size());
+		}
+	}
+
+	@Test
+	void testReadWhileTraversingViews() throws InterruptedException {
+		HybridCache<Integer, String> cache = new HybridCache<>(false);
+		List<String> heldList = new ArrayList<>();
+		String value;
+		for (int i = 0; i < 100; i++) {
+			value = new String("v" + i);
+			cache.cache(i, value, (i & 1) == 0 ? CacheType.STRONG : CacheType.WEAK);
+			heldList.add((i & 1) == 0 ? value : null);
+		}
+		WeakReference<Object> probe = new WeakReference<>(new Object());
+		for (int i = 0; i < 10 && probe.get() != null; i++) {
+			System.gc();
+			Thread.sleep(10);
+		}
+		Set<Integer> keySet = new HashSet<>();
+		// reads purge collected entries while the views are traversed
+		for (int key : cache.getKeySet()) {
+			cache.getIfPresent(key);
+			keySet.add(key);
+		}
+		for (int key = 0; key < 100; key += 2)
+			assertTrue(keySet.contains(key));
+		int count = 0;
+		for (String element : cache.getValueCollection()) {
+			cache.getIfPresent(Integer.parseInt(element.substring(1)));
+			count++;
+		}
+		assertTrue(count >= 50);
+		assertEquals(50, cache.size(CacheType.STRONG));
+	}
+
+}
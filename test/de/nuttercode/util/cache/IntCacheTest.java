@@ -0,0 +1,167 @@
+package de.nuttercode.util.cache;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+import java.lang.ref.WeakReference;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.NoSuchElementException;
+import java.util.Random;
+
+import org.junit.jupiter.api.Test;
+
+class IntCacheTest {
+
+	/**
+	 * length of the table of a cache with an initial capacity of 0
+	 */
+	private static final int LENGTH = 16;
+
+	/**
+	 * same as the hash of {@link IntCache}
+	 *
+	 * @param key
+	 * @return home index of the key in a table of {@link #LENGTH}
+	 */
+	private static int homeOf(int key) {
+		int hash = key * 0x9E3779B9;
+		return (hash ^ (hash >>> 16)) & (LENGTH - 1);
+	}
+
+	/**
+	 * @param home
+	 * @param count
+	 * @return count keys whose home index is home
+	 */
+	private static List<Integer> keysAt(int home, int count) {
+		List<Integer> keyList = new ArrayList<>();
+		for (int key = 1; keyList.size() < count; key++)
+			if (homeOf(key) == home)
+				keyList.add(key);
+		return keyList;
+	}
+
+	private static void assertContent(Map<Integer, String> expected, IntCache<String> cache) {
+		assertEquals(expected.size(), cache.size());
+		for (Map.Entry<Integer, String> entry : expected.entrySet())
+			assertEquals(entry.getValue(), cache.get(entry.getKey()));
+		int[] keys = cache.getKeys();
+		Arrays.sort(keys);
+		assertArrayEquals(expected.keySet().stream().mapToInt(Integer::intValue).sorted().toArray(), keys);
+	}
+
+	@Test
+	void testDeleteInWrappedChain() {
+		// the chain of the keys at the last index wraps around to the start of the
+		// table and is followed by keys at the first two indices
+		List<Integer> keyList = new ArrayList<>(keysAt(LENGTH - 1, 4));
+		keyList.addAll(keysAt(0, 2));
+		keyList.addAll(keysAt(1, 2));
+		for (int removed : keyList) {
+			IntCache<String> cache = new IntCache<>(CacheType.STRONG, 0);
+			Map<Integer, String> expected = new HashMap<>();
+			for (int key : keyList) {
+				cache.cache(key, "v" + key);
+				expected.put(key, "v" + key);
+			}
+			cache.remove(removed);
+			expected.remove(removed);
+			assertFalse(cache.contains(removed));
+			assertContent(expected, cache);
+		}
+	}
+
+	@Test
+	void testRandomOperationsInWrappedChains() {
+		Random random = new Random(7);
+		List<Integer> keyList = new ArrayList<>();
+		for (int home : new int[] { LENGTH - 2, LENGTH - 1, 0, 1 })
+			keyList.addAll(keysAt(home, 6));
+		IntCache<String> cache = new IntCache<>(CacheType.STRONG, 0);
+		Map<Integer, String> expected = new HashMap<>();
+		int key;
+		for (int i = 0; i < 20_000; i++) {
+			key = keyList.get(random.nextInt(keyList.size()));
+			if (expected.containsKey(key)) {
+				cache.remove(key);
+				expected.remove(key);
+			} else if (expected.size() < LENGTH / 4 * 3) {
+				cache.cache(key, "v" + i);
+				expected.put(key, "v" + i);
+			}
+			assertContent(expected, cache);
+		}
+	}
+
+	@Test
+	void testResize() {
+		IntCache<String> cache = new IntCache<>(CacheType.STRONG, 0);
+		Map<Integer, String> expected = new HashMap<>();
+		Random random = new Random(11);
+		int key;
+		for (int i = 0; i < 10_000; i++) {
+			key = random.nextInt();
+			cache.cache(key, "v" + key);
+			expected.put(key, "v" + key);
+		}
+		assertContent(expected, cache);
+		for (int oldKey : new ArrayList<>(expected.keySet()))
+			if ((oldKey & 1) == 0) {
+				cache.remove(oldKey);
+				expected.remove(oldKey);
+			}
+		assertContent(expected, cache);
+	}
+
+	@Test
+	void testReplaceKeepsSize() {
+		IntCache<String> cache = new IntCache<>();
+		cache.cache(0, "a");
+		cache.cache(0, "b", CacheType.SOFT);
+		assertEquals(1, cache.size());
+		assertEquals(0, cache.size(CacheType.STRONG));
+		assertEquals(1, cache.size(CacheType.SOFT));
+		assertEquals("b", cache.get(0));
+		assertThrows(NoSuchElementException.class, () -> cache.remove(1));
+	}
+
+	@Test
+	void testStrongReferenceValueIsNotCleared() {
+		IntCache<WeakReference<String>> cache = new IntCache<>();
+		String referent = "referent";
+		WeakReference<String> replaced = new WeakReference<>(referent);
+		WeakReference<String> removed = new WeakReference<>(referent);
+		cache.cache(0, replaced);
+		cache.cache(0, new WeakReference<>(referent));
+		cache.cache(1, removed);
+		cache.remove(1);
+		assertSame(referent, replaced.get());
+		assertSame(referent, removed.get());
+	}
+
+	@Test
+	void testReplaceAndRemoveReferenceEntries() {
+		for (CacheType cacheType : new CacheType[] { CacheType.SOFT, CacheType.WEAK }) {
+			IntCache<String> cache = new IntCache<>();
+			String first = new String("first");
+			String second = new String("second");
+			cache.cache(0, first, cacheType);
+			cache.cache(0, second, cacheType);
+			cache.cache(1, first, cacheType);
+			cache.remove(1);
+			System.gc();
+			// the replaced and removed references are cleared and never purge the new entry
+			cache.clean();
+			assertEquals(1, cache.size());
+			assertEquals(1, cache.size(cacheType));
+			assertSame(second, cache.get(0));
+			cache.remove(0);
+			assertEquals(0, cache.size(cacheType));
+			assertFalse(cache.contains(0));
+		}
+	}
+
+}
@@ -0,0 +1,188 @@
+package de.nuttercode.util.cache;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+import java.util.ArrayList;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Random;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicReference;
+
+import org.junit.jupiter.api.Test;
+
+class KeyFilterTest {
+
+	/**
+	 * puts the key into the table following the protocol of {@link KeyFilter}
+	 */
+	private static void put(KeyFilter keyFilter, Set<Object> table, Object key) {
+		CountingBloomFilter filter = keyFilter.beforePut(key);
+		boolean isNew = table.add(key);
+		keyFilter.afterPut(filter, key, isNew);
+	}
+
+	/**
+	 * removes the key from the table following the protocol of {@link KeyFilter}
+	 */
+	private static void remove(KeyFilter keyFilter, Set<Object> table, Object key) {
+		CountingBloomFilter filter = keyFilter.beforeRemove();
+		if (table.remove(key))
+			keyFilter.afterRemove(filter, key);
+	}
+
+	private static void assertContainsAll(KeyFilter keyFilter, Set<Object> table) {
+		for (Object key : table)
+			assertTrue(keyFilter.mightContain(key), "false negative of " + key);
+	}
+
+	@Test
+	void testDisabled() {
+		KeyFilter keyFilter = KeyFilter.create(null, action -> fail());
+		assertSame(KeyFilter.disabled(), keyFilter);
+		assertFalse(keyFilter.isEnabled());
+		assertTrue(keyFilter.mightContain("a"));
+		assertNull(keyFilter.beforePut("a"));
+		assertNull(keyFilter.beforeRemove());
+	}
+
+	@Test
+	void testCreate() {
+		Set<Object> table = new HashSet<>(List.of("a", "b", "c"));
+		CountingBloomFilter bloomFilter = new CountingBloomFilter(16, 0.01);
+		bloomFilter.add("d");
+		KeyFilter keyFilter = KeyFilter.create(bloomFilter, table::forEach);
+		assertTrue(keyFilter.isEnabled());
+		assertContainsAll(keyFilter, table);
+		assertFalse(keyFilter.mightContain("d"));
+	}
+
+	@Test
+	void testReplace() {
+		Set<Object> table = new HashSet<>();
+		KeyFilter keyFilter = KeyFilter.create(new CountingBloomFilter(16, 0.01), table::forEach);
+		put(keyFilter, table, "a");
+		put(keyFilter, table, "a");
+		remove(keyFilter, table, "a");
+		assertFalse(keyFilter.mightContain("a"));
+	}
+
+	@Test
+	void testRandomOperations() {
+		Set<Object> table = new HashSet<>();
+		KeyFilter keyFilter = KeyFilter.create(new CountingBloomFilter(1, 0.5), table::forEach);
+		Random random = new Random(42);
+		int operation;
+		for (int i = 0; i < 100000; i++) {
+			operation = random.nextInt(100);
+			if (operation < 50)
+				put(keyFilter, table, random.nextInt(128));
+			else if (operation < 99)
+				remove(keyFilter, table, random.nextInt(128));
+			else
+				keyFilter.rebuild(table::forEach);
+			assertContainsAll(keyFilter, table);
+		}
+	}
+
+	@Test
+	void testRebuildResetsCounters() {
+		Set<Object> table = new HashSet<>();
+		KeyFilter keyFilter = KeyFilter.create(new CountingBloomFilter(16, 0.01), table::forEach);
+		for (int i = 0; i < 20; i++)
+			put(keyFilter, table, "a");
+		// a removal which bypasses the filter leaves the count behind
+		table.remove("a");
+		assertTrue(keyFilter.mightContain("a"));
+		keyFilter.rebuild(table::forEach);
+		assertFalse(keyFilter.mightContain("a"));
+	}
+
+	@Test
+	void testPutAcrossRebuild() {
+		Set<Object> table = new HashSet<>();
+		KeyFilter keyFilter = KeyFilter.create(new CountingBloomFilter(16, 0.01), table::forEach);
+		// the key is added to the old filter but put into the table after the rebuild
+		CountingBloomFilter filter = keyFilter.beforePut("a");
+		keyFilter.rebuild(table::forEach);
+		table.add("a");
+		keyFilter.afterPut(filter, "a", true);
+		assertTrue(keyFilter.mightContain("a"));
+	}
+
+	@Test
+	void testPutDuringRebuild() {
+		Set<Object> table = new HashSet<>(List.of("a"));
+		KeyFilter keyFilter = KeyFilter.create(new CountingBloomFilter(16, 0.01), table::forEach);
+		// the key is put into the table after the rebuild has passed the table
+		keyFilter.rebuild(action -> {
+			new ArrayList<>(table).forEach(action);
+			put(keyFilter, table, "b");
+		});
+		assertContainsAll(keyFilter, table);
+		// the key is put into the table before the rebuild has passed the table
+		keyFilter.rebuild(action -> {
+			put(keyFilter, table, "c");
+			new ArrayList<>(table).forEach(action);
+		});
+		assertContainsAll(keyFilter, table);
+	}
+
+	@Test
+	void testRemoveAcrossRebuild() {
+		Set<Object> table = new HashSet<>(List.of("a", "b"));
+		KeyFilter keyFilter = KeyFilter.create(new CountingBloomFilter(16, 0.01), table::forEach);
+		// the key is removed from the old filter after the rebuild has replaced it
+		CountingBloomFilter filter = keyFilter.beforeRemove();
+		table.remove("a");
+		keyFilter.rebuild(table::forEach);
+		keyFilter.afterRemove(filter, "a");
+		assertContainsAll(keyFilter, table);
+		assertFalse(keyFilter.mightContain("a"));
+	}
+
+	@Test
+	void testConcurrentOperations() throws InterruptedException {
+		Set<Object> table = ConcurrentHashMap.newKeySet();
+		KeyFilter keyFilter = KeyFilter.create(new CountingBloomFilter(64, 0.1), table::forEach);
+		AtomicBoolean isRunning = new AtomicBoolean(true);
+		AtomicReference<Throwable> failure = new AtomicReference<>();
+		List<Thread> threadList = new ArrayList<>();
+		for (int t = 0; t < 4; t++) {
+			int offset = t * 1000;
+			threadList.add(new Thread(() -> {
+				Random random = new Random(offset);
+				Integer key;
+				try {
+					for (int i = 0; i < 50000; i++) {
+						// every thread works on its own keys, so they are only changed by itself
+						key = offset + random.nextInt(64);
+						if (random.nextBoolean()) {
+							put(keyFilter, table, key);
+							assertTrue(keyFilter.mightContain(key), "false negative of " + key);
+						} else
+							remove(keyFilter, table, key);
+					}
+				} catch (Throwable e) {
+					failure.compareAndSet(null, e);
+				}
+			}));
+		}
+		Thread rebuildThread = new Thread(() -> {
+			while (isRunning.get())
+				keyFilter.rebuild(table::forEach);
+		});
+		rebuildThread.start();
+		for (Thread thread : threadList)
+			thread.start();
+		for (Thread thread : threadList)
+			thread.join();
+		isRunning.set(false);
+		rebuildThread.join();
+		assertNull(failure.get());
+		assertContainsAll(keyFilter, table);
+	}
+
+}
@@ -0,0 +1,141 @@
+package de.nuttercode.util.cache;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import org.junit.jupiter.api.Test;
+
+class LoadingCacheTest {
+
+	private static final int THREAD_COUNT = 8;
+
+	@Test
+	void testStatsOfGet() {
+		StrongCache<Integer, Integer> strongCache = new StrongCache<>();
+		StripedStatsRecorder statsRecorder = new StripedStatsRecorder();
+		strongCache.setStatsRecorder(statsRecorder);
+		LoadingCache<Integer, Integer> cache = new LoadingCache<>(strongCache, key -> key * 2);
+		assertEquals(2, cache.get(1));
+		assertEquals(2, cache.get(1));
+		CacheStats stats = statsRecorder.snapshot();
+		assertEquals(1, stats.getHitCount());
+		assertEquals(1, stats.getMissCount());
+		assertEquals(1, stats.getLoadSuccessCount());
+	}
+
+	@Test
+	void testStatsOfGetAll() {
+		StrongCache<Integer, Integer> strongCache = new StrongCache<>();
+		StripedStatsRecorder statsRecorder = new StripedStatsRecorder();
+		strongCache.setStatsRecorder(statsRecorder);
+		LoadingCache<Integer, Integer> cache = new LoadingCache<>(strongCache, key -> key * 2);
+		cache.cache(1, 2);
+		assertEquals(Map.of(1, 2, 2, 4, 3, 6), cache.getAll(List.of(1, 2, 3)));
+		CacheStats stats = statsRecorder.snapshot();
+		assertEquals(1, stats.getHitCount());
+		assertEquals(2, stats.getMissCount());
+		assertEquals(1, stats.getLoadSuccessCount());
+	}
+
+	@Test
+	void testSingleFlight() throws Exception {
+		AtomicInteger loadCount = new AtomicInteger();
+		CountDownLatch startLatch = new CountDownLatch(1);
+		LoadingCache<Integer, Integer> cache = new LoadingCache<>(new ConcurrentStrongCache<>(), key -> {
+			loadCount.incrementAndGet();
+			// keeps the load running until all threads have missed
+			startLatch.await();
+			return key * 2;
+		});
+		ExecutorService executor = Executors.newFixedThreadPool(THREAD_COUNT);
+		try {
+			List<Future<Integer>> futureList = new ArrayList<>();
+			for (int i = 0; i < THREAD_COUNT; i++)
+				futureList.add(executor.submit(() -> cache.get(1)));
+			while (loadCount.get() == 0)
+				Thread.sleep(1);
+			// the other threads wait for the running load
+			Thread.sleep(50);
+			startLatch.countDown();
+			for (Future<Integer> future : futureList)
+				assertEquals(2, future.get(10, TimeUnit.SECONDS));
+		} finally {
+			executor.shutdownNow();
+		}
+		assertEquals(1, loadCount.get());
+	}
+
+	@Test
+	void testSingleFlightAcrossGetAndGetAll() throws Exception {
+		AtomicInteger loadCount = new AtomicInteger();
+		CountDownLatch startLatch = new CountDownLatch(1);
+		LoadingCache<Integer, Integer> cache = new LoadingCache<>(new ConcurrentStrongCache<>(), key -> {
+			loadCount.incrementAndGet();
+			startLatch.await();
+			return key * 2;
+		});
+		ExecutorService executor = Executors.newFixedThreadPool(2);
+		try {
+			Future<Integer> getFuture = executor.submit(() -> cache.get(1));
+			while (loadCount.get() == 0)
+				Thread.sleep(1);
+			Future<Map<Integer, Integer>> getAllFuture = executor.submit(() -> cache.getAll(List.of(1, 2)));
+			while (loadCount.get() == 1)
+				Thread.sleep(1);
+			startLatch.countDown();
+			assertEquals(2, getFuture.get(10, TimeUnit.SECONDS));
+			assertEquals(Map.of(1, 2, 2, 4), getAllFuture.get(10, TimeUnit.SECONDS));
+		} finally {
+			executor.shutdownNow();
+		}
+		// key 1 is only loaded by get
+		assertEquals(2, loadCount.get());
+	}
+
+	@Test
+	void testFailedLoadIsSharedAndNotCached() throws Exception {
+		AtomicInteger loadCount = new AtomicInteger();
+		CountDownLatch startLatch = new CountDownLatch(1);
+		LoadingCache<Integer, Integer> cache = new LoadingCache<>(new ConcurrentStrongCache<>(), key -> {
+			if (loadCount.incrementAndGet() == 1) {
+				startLatch.await();
+				throw new IllegalStateException("failed");
+			}
+			return key;
+		});
+		ExecutorService executor = Executors.newFixedThreadPool(THREAD_COUNT);
+		try {
+			List<Future<Integer>> futureList = new ArrayList<>();
+			for (int i = 0; i < THREAD_COUNT; i++)
+				futureList.add(executor.submit(() -> cache.get(1)));
+			while (loadCount.get() == 0)
+				Thread.sleep(1);
+			Thread.sleep(50);
+			startLatch.countDown();
+			int failureCount = 0;
+			for (Future<Integer> future : futureList) {
+				try {
+					assertEquals(1, future.get(10, TimeUnit.SECONDS));
+				} catch (ExecutionException e) {
+					assertTrue(e.getCause() instanceof IllegalStateException);
+					failureCount++;
+				}
+			}
+			assertTrue(failureCount >= 1);
+		} finally {
+			executor.shutdownNow();
+		}
+		assertEquals(1, cache.get(1));
+	}
+
+}
@@ -0,0 +1,167 @@
+package de.nuttercode.util.cache;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+import java.lang.ref.WeakReference;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.NoSuchElementException;
+import java.util.Random;
+
+import org.junit.jupiter.api.Test;
+
+class LongCacheTest {
+
+	/**
+	 * length of the table of a cache with an initial capacity of 0
+	 */
+	private static final int LENGTH = 16;
+
+	/**
+	 * same as the hash of {@link LongCache}
+	 *
+	 * @param key
+	 * @return home index of the key in a table of {@link #LENGTH}
+	 */
+	private static int homeOf(long key) {
+		long hash = key * 0x9E3779B97F4A7C15L;
+		return (int) (hash ^ (hash >>> 32)) & (LENGTH - 1);
+	}
+
+	/**
+	 * @param home
+	 * @param count
+	 * @return count keys whose home index is home
+	 */
+	private static List<Long> keysAt(int home, int count) {
+		List<Long> keyList = new ArrayList<>();
+		for (long key = 1; keyList.size() < count; key++)
+			if (homeOf(key) == home)
+				keyList.add(key);
+		return keyList;
+	}
+
+	private static void assertContent(Map<Long, String> expected, LongCache<String> cache) {
+		assertEquals(expected.size(), cache.size());
+		for (Map.Entry<Long, String> entry : expected.entrySet())
+			assertEquals(entry.getValue(), cache.get(entry.getKey()));
+		long[] keys = cache.getKeys();
+		Arrays.sort(keys);
+		assertArrayEquals(expected.keySet().stream().mapToLong(Long::longValue).sorted().toArray(), keys);
+	}
+
+	@Test
+	void testDeleteInWrappedChain() {
+		// the chain of the keys at the last index wraps around to the start of the
+		// table and is followed by keys at the first two indices
+		List<Long> keyList = new ArrayList<>(keysAt(LENGTH - 1, 4));
+		keyList.addAll(keysAt(0, 2));
+		keyList.addAll(keysAt(1, 2));
+		for (long removed : keyList) {
+			LongCache<String> cache = new LongCache<>(CacheType.STRONG, 0);
+			Map<Long, String> expected = new HashMap<>();
+			for (long key : keyList) {
+				cache.cache(key, "v" + key);
+				expected.put(key, "v" + key);
+			}
+			cache.remove(removed);
+			expected.remove(removed);
+			assertFalse(cache.contains(removed));
+			assertContent(expected, cache);
+		}
+	}
+
+	@Test
+	void testRandomOperationsInWrappedChains() {
+		Random random = new Random(7);
+		List<Long> keyList = new ArrayList<>();
+		for (int home : new int[] { LENGTH - 2, LENGTH - 1, 0, 1 })
+			keyList.addAll(keysAt(home, 6));
+		LongCache<String> cache = new LongCache<>(CacheType.STRONG, 0);
+		Map<Long, String> expected = new HashMap<>();
+		long key;
+		for (int i = 0; i < 20_000; i++) {
+			key = keyList.get(random.nextInt(keyList.size()));
+			if (expected.containsKey(key)) {
+				cache.remove(key);
+				expected.remove(key);
+			} else if (expected.size() < LENGTH / 4 * 3) {
+				cache.cache(key, "v" + i);
+				expected.put(key, "v" + i);
+			}
+			assertContent(expected, cache);
+		}
+	}
+
+	@Test
+	void testResize() {
+		LongCache<String> cache = new LongCache<>(CacheType.STRONG, 0);
+		Map<Long, String> expected = new HashMap<>();
+		Random random = new Random(11);
+		long key;
+		for (int i = 0; i < 10_000; i++) {
+			key = random.nextLong();
+			cache.cache(key, "v" + key);
+			expected.put(key, "v" + key);
+		}
+		assertContent(expected, cache);
+		for (long oldKey : new ArrayList<>(expected.keySet()))
+			if ((oldKey & 1) == 0) {
+				cache.remove(oldKey);
+				expected.remove(oldKey);
+			}
+		assertContent(expected, cache);
+	}
+
+	@Test
+	void testReplaceKeepsSize() {
+		LongCache<String> cache = new LongCache<>();
+		cache.cache(0, "a");
+		cache.cache(0, "b", CacheType.SOFT);
+		assertEquals(1, cache.size());
+		assertEquals(0, cache.size(CacheType.STRONG));
+		assertEquals(1, cache.size(CacheType.SOFT));
+		assertEquals("b", cache.get(0));
+		assertThrows(NoSuchElementException.class, () -> cache.remove(1));
+	}
+
+	@Test
+	void testStrongReferenceValueIsNotCleared() {
+		LongCache<WeakReference<String>> cache = new LongCache<>();
+		String referent = "referent";
+		WeakReference<String> replaced = new WeakReference<>(referent);
+		WeakReference<String> removed = new WeakReference<>(referent);
+		cache.cache(0L, replaced);
+		cache.cache(0L, new WeakReference<>(referent));
+		cache.cache(1L, removed);
+		cache.remove(1L);
+		assertSame(referent, replaced.get());
+		assertSame(referent, removed.get());
+	}
+
+	@Test
+	void testReplaceAndRemoveReferenceEntries() {
+		for (CacheType cacheType : new CacheType[] { CacheType.SOFT, CacheType.WEAK }) {
+			LongCache<String> cache = new LongCache<>();
+			String first = new String("first");
+			String second = new String("second");
+			cache.cache(0L, first, cacheType);
+			cache.cache(0L, second, cacheType);
+			cache.cache(1L, first, cacheType);
+			cache.remove(1L);
+			System.gc();
+			// the replaced and removed references are cleared and never purge the new entry
+			cache.clean();
+			assertEquals(1, cache.size());
+			assertEquals(1, cache.size(cacheType));
+			assertSame(second, cache.get(0L));
+			cache.remove(0L);
+			assertEquals(0, cache.size(cacheType));
+			assertFalse(cache.contains(0L));
+		}
+	}
+
+}
@@ -0,0 +1,64 @@
+package de.nuttercode.util.cache;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+import java.time.Duration;
+import java.util.concurrent.atomic.AtomicLong;
+
+import org.junit.jupiter.api.Test;
+
+import de.nuttercode.util.DefaultExceptionHandler;
+
+class MaintenanceSchedulerTest {
+
+	private static MaintenanceScheduler create() {
+		return new MaintenanceScheduler(Duration.ofMillis(1), Duration.ofMillis(10), Duration.ofMillis(1),
+				new DefaultExceptionHandler());
+	}
+
+	@Test
+	void testRejectsNonConcurrentCaches() {
+		try (MaintenanceScheduler scheduler = create()) {
+			assertThrows(IllegalArgumentException.class, () -> scheduler.register(new StrongCache<>()));
+			assertThrows(IllegalArgumentException.class, () -> scheduler.register(new SoftCache<>()));
+			assertThrows(IllegalArgumentException.class, () -> scheduler.register(new WeakCache<>()));
+			assertThrows(IllegalArgumentException.class, () -> scheduler.register(new HybridCache<>(false)));
+			assertThrows(IllegalArgumentException.class,
+					() -> scheduler.register(new ExpiringCache<>(Duration.ofSeconds(1), null)));
+			assertEquals(0, scheduler.getRegisteredCount());
+		}
+	}
+
+	@Test
+	void testAcceptsConcurrentCaches() {
+		try (MaintenanceScheduler scheduler = create()) {
+			Cache<?, ?> softCache = new SoftCache<>(new ConcurrentStrongCache<>());
+			Cache<?, ?> hybridCache = new HybridCache<>(true);
+			Cache<?, ?> segmentedCache = new SegmentedCache<>(
+					() -> new ExpiringCache<>(Duration.ofSeconds(1), null));
+			scheduler.register(softCache);
+			scheduler.register(hybridCache);
+			scheduler.register(segmentedCache);
+			assertEquals(3, scheduler.getRegisteredCount());
+		}
+	}
+
+	@Test
+	void testCleansSegmentedExpiringCache() throws InterruptedException {
+		AtomicLong now = new AtomicLong();
+		SegmentedCache<Integer, Integer> cache = new SegmentedCache<>(4,
+				() -> new ExpiringCache<>(Duration.ofNanos(100), null, now::get));
+		for (int i = 0; i < 100; i++)
+			cache.cache(i, i);
+		// the timer wheel only expires timers once their tick has passed
+		now.set(Duration.ofSeconds(1).toNanos());
+		try (MaintenanceScheduler scheduler = create()) {
+			scheduler.register(cache);
+			long deadline = System.nanoTime() + Duration.ofSeconds(10).toNanos();
+			while (scheduler.getPurgedCount() < 100 && System.nanoTime() - deadline < 0)
+				Thread.sleep(1);
+			assertEquals(100, scheduler.getPurgedCount());
+		}
+	}
+
+}
@@ -0,0 +1,93 @@
+package de.nuttercode.util.cache;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Spliterator;
+import java.util.stream.Collectors;
+import java.util.stream.IntStream;
+import java.util.stream.StreamSupport;
+
+import org.junit.jupiter.api.Test;
+
+class MappingSpliteratorTest {
+
+	/**
+	 * passes the negated value of every even element and skips the odd ones
+	 */
+	private static final MappingSpliterator.Mapper<Integer, Integer> MAPPER = (element, action) -> {
+		if ((element & 1) == 0)
+			action.accept(-element);
+	};
+
+	private static List<Integer> sourceList(int count) {
+		return IntStream.range(0, count).boxed().collect(Collectors.toList());
+	}
+
+	private static List<Integer> expectedList(int count) {
+		return IntStream.range(0, count).filter(i -> (i & 1) == 0).map(i -> -i).boxed()
+				.collect(Collectors.toList());
+	}
+
+	@Test
+	void testTryAdvanceSkipsElements() {
+		MappingSpliterator<Integer, Integer> spliterator = new MappingSpliterator<>(sourceList(7).spliterator(),
+				MAPPER, 0);
+		List<Integer> list = new ArrayList<>();
+		while (spliterator.tryAdvance(list::add))
+			;
+		assertEquals(expectedList(7), list);
+		assertFalse(spliterator.tryAdvance(list::add));
+	}
+
+	@Test
+	void testTryAdvanceWithoutVisibleElements() {
+		MappingSpliterator<Integer, Integer> spliterator = new MappingSpliterator<>(List.of(1, 3, 5).spliterator(),
+				MAPPER, 0);
+		assertFalse(spliterator.tryAdvance(element -> fail()));
+	}
+
+	@Test
+	void testForEachRemaining() {
+		MappingSpliterator<Integer, Integer> spliterator = new MappingSpliterator<>(sourceList(10).spliterator(),
+				MAPPER, 0);
+		List<Integer> list = new ArrayList<>();
+		assertTrue(spliterator.tryAdvance(list::add));
+		spliterator.forEachRemaining(list::add);
+		assertEquals(expectedList(10), list);
+	}
+
+	@Test
+	void testTrySplit() {
+		MappingSpliterator<Integer, Integer> suffix = new MappingSpliterator<>(sourceList(1000).spliterator(), MAPPER,
+				Spliterator.DISTINCT);
+		Spliterator<Integer> prefix = suffix.trySplit();
+		assertNotNull(prefix);
+		assertEquals(suffix.characteristics(), prefix.characteristics());
+		List<Integer> list = new ArrayList<>();
+		prefix.forEachRemaining(list::add);
+		suffix.forEachRemaining(list::add);
+		assertEquals(expectedList(1000), list);
+		assertNull(new MappingSpliterator<>(List.<Integer>of().spliterator(), MAPPER, 0).trySplit());
+	}
+
+	@Test
+	void testParallelTraversal() {
+		MappingSpliterator<Integer, Integer> spliterator = new MappingSpliterator<>(sourceList(10_000).spliterator(),
+				MAPPER, 0);
+		List<Integer> list = StreamSupport.stream(spliterator, true).collect(Collectors.toList());
+		assertEquals(expectedList(10_000), list);
+	}
+
+	@Test
+	void testCharacteristics() {
+		MappingSpliterator<Integer, Integer> spliterator = new MappingSpliterator<>(sourceList(10).spliterator(),
+				MAPPER, Spliterator.DISTINCT);
+		// skipped elements make the size of the source an estimate
+		assertEquals(Spliterator.ORDERED | Spliterator.DISTINCT, spliterator.characteristics());
+		assertEquals(10, spliterator.estimateSize());
+		assertEquals(-1, spliterator.getExactSizeIfKnown());
+	}
+
+}
@@ -0,0 +1,147 @@
+package de.nuttercode.util.cache;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+import java.util.List;
+
+import org.junit.jupiter.api.Test;
+
+class MemoryPressureMonitorTest {
+
+	@Test
+	void testRegisterBoundedCache() {
+		BoundedCache<Integer, Integer> cache = new BoundedCache<>(1000);
+		try (MemoryPressureMonitor monitor = new MemoryPressureMonitor()) {
+			monitor.register(cache);
+			assertEquals(1, monitor.getRegisteredCount());
+			// the requested maximum size is applied by the next write
+			cache.cache(0, 0);
+			assertTrue(cache.getMaximumSize() <= 1000);
+			assertTrue(monitor.deregister(cache));
+			assertFalse(monitor.deregister(cache));
+			cache.cache(1, 1);
+			assertEquals(1000, cache.getMaximumSize());
+		}
+	}
+
+	@Test
+	void testRegisterSegmentedCache() {
+		SegmentedCache<Integer, Integer> cache = new SegmentedCache<>(4, () -> new BoundedCache<>(100));
+		try (MemoryPressureMonitor monitor = new MemoryPressureMonitor()) {
+			monitor.register(cache);
+			assertEquals(1, monitor.getRegisteredCount());
+			assertTrue(monitor.deregister(cache));
+		}
+		for (int i = 0; i < 1000; i++)
+			cache.cache(i, i);
+		List<Long> maximumSizeList = cache
+				.applyToSegments(segment -> ((BoundedCache<Integer, Integer>) segment).getMaximumSize());
+		assertEquals(List.of(100L, 100L, 100L, 100L), maximumSizeList);
+		assertEquals(400, cache.size());
+	}
+
+	@Test
+	void testRegisterSegmentedCacheWithoutCapacity() {
+		SegmentedCache<Integer, Integer> cache = new SegmentedCache<>(4, StrongCache::new);
+		try (MemoryPressureMonitor monitor = new MemoryPressureMonitor()) {
+			assertThrows(IllegalArgumentException.class, () -> monitor.register(cache));
+			assertEquals(0, monitor.getRegisteredCount());
+		}
+	}
+
+	@Test
+	void testRegisterAfterClose() {
+		MemoryPressureMonitor monitor = new MemoryPressureMonitor();
+		monitor.close();
+		assertThrows(IllegalStateException.class, () -> monitor.register(new BoundedCache<>(10)));
+	}
+
+	/**
+	 * occupancy read by the monitors created by {@link #create()}
+	 */
+	private double occupancy = 0;
+
+	private MemoryPressureMonitor create() {
+		return new MemoryPressureMonitor(MemoryPressureMonitor.DEFAULT_LOW_OCCUPANCY,
+				MemoryPressureMonitor.DEFAULT_HIGH_OCCUPANCY, MemoryPressureMonitor.DEFAULT_MINIMUM_FRACTION,
+				() -> occupancy);
+	}
+
+	/**
+	 * updates the monitor at the occupancy and applies the requested maximum size
+	 * by a write
+	 *
+	 * @param monitor
+	 * @param cache
+	 * @param occupancy
+	 * @return maximum size of the cache after the update
+	 */
+	private long update(MemoryPressureMonitor monitor, BoundedCache<Integer, Integer> cache, double occupancy) {
+		this.occupancy = occupancy;
+		monitor.update();
+		cache.cache(-1, -1);
+		return cache.getMaximumSize();
+	}
+
+	@Test
+	void testShrinkProportionally() {
+		BoundedCache<Integer, Integer> cache = new BoundedCache<>(1000);
+		try (MemoryPressureMonitor monitor = create()) {
+			monitor.register(cache);
+			assertEquals(1000, update(monitor, cache, 0.6));
+			assertEquals(1, monitor.getCapacityFraction());
+			// halfway between the low and the high occupancy
+			assertEquals(550, update(monitor, cache, 0.75));
+			assertEquals(0.55, monitor.getCapacityFraction(), 1e-9);
+			assertEquals(0.75, monitor.getOccupancy());
+			assertEquals(250, update(monitor, cache, 0.85));
+			assertEquals(100, update(monitor, cache, 0.9));
+			assertEquals(100, update(monitor, cache, 1));
+		}
+		cache.cache(-2, -2);
+		assertEquals(1000, cache.getMaximumSize());
+	}
+
+	@Test
+	void testGrowByHalfSteps() {
+		BoundedCache<Integer, Integer> cache = new BoundedCache<>(1000);
+		try (MemoryPressureMonitor monitor = create()) {
+			monitor.register(cache);
+			assertEquals(100, update(monitor, cache, 0.95));
+			long[] expectedSizes = { 550, 775, 888, 944, 972, 986, 993, 1000 };
+			for (long expectedSize : expectedSizes)
+				assertEquals(expectedSize, update(monitor, cache, 0));
+			// shrinking is immediate, growth toward a partial capacity takes half steps
+			assertEquals(100, update(monitor, cache, 0.9));
+			assertEquals(400, update(monitor, cache, 0.7));
+			assertEquals(550, update(monitor, cache, 0.7));
+			assertEquals(625, update(monitor, cache, 0.7));
+		}
+	}
+
+	@Test
+	void testResizeHybridCache() {
+		HybridCache<Integer, Integer> cache = new HybridCache<>(false, 1000, 1000);
+		for (int i = 0; i < 1000; i++)
+			cache.cache(i, i, CacheType.STRONG);
+		try (MemoryPressureMonitor monitor = create()) {
+			monitor.register(cache);
+			occupancy = 0.75;
+			monitor.update();
+			assertEquals(550, cache.getCapacity(CacheType.STRONG));
+			assertEquals(550, cache.size(CacheType.STRONG));
+			// values which do not fit are demoted instead of evicted
+			assertEquals(1000, cache.size());
+			occupancy = 0.9;
+			monitor.update();
+			assertEquals(100, cache.getCapacity(CacheType.STRONG));
+			occupancy = 0;
+			monitor.update();
+			assertEquals(550, cache.getCapacity(CacheType.STRONG));
+			monitor.update();
+			assertEquals(775, cache.getCapacity(CacheType.STRONG));
+		}
+		assertEquals(1000, cache.getCapacity(CacheType.STRONG));
+	}
+
+}
@@ -0,0 +1,178 @@
+package de.nuttercode.util.cache;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.NoSuchElementException;
+
+import org.junit.jupiter.api.Test;
+
+import de.nuttercode.util.buffer.ReadableBuffer;
+import de.nuttercode.util.buffer.WritableBuffer;
+
+class OffHeapCacheTest {
+
+	private static final Serializer<String> STRING_SERIALIZER = new Serializer<>() {
+
+		@Override
+		public void serialize(String value, WritableBuffer buffer) {
+			buffer.putString(value);
+		}
+
+		@Override
+		public String deserialize(ReadableBuffer buffer) {
+			return buffer.getString();
+		}
+
+	};
+
+	/**
+	 * length of the table of the handle index of a new cache
+	 */
+	private static final int LENGTH = 16;
+
+	/**
+	 * same as the hash of the handle index of {@link OffHeapCache}
+	 *
+	 * @param key
+	 * @return home index of the key in a table of {@link #LENGTH}
+	 */
+	private static int homeOf(Integer key) {
+		int hash = key.hashCode() * 0x9E3779B9;
+		return (hash ^ (hash >>> 16)) & (LENGTH - 1);
+	}
+
+	/**
+	 * @param home
+	 * @param count
+	 * @return count keys whose home index is home
+	 */
+	private static List<Integer> keysAt(int home, int count) {
+		List<Integer> keyList = new ArrayList<>();
+		for (int key = 1; keyList.size() < count; key++)
+			if (homeOf(key) == home)
+				keyList.add(key);
+		return keyList;
+	}
+
+	private static void assertContent(Map<Integer, String> expected, OffHeapCache<Integer, String> cache) {
+		assertEquals(expected.size(), cache.size());
+		for (Map.Entry<Integer, String> entry : expected.entrySet())
+			assertEquals(entry.getValue(), cache.get(entry.getKey()));
+		assertEquals(expected.keySet(), new HashSet<>(cache.getKeySet()));
+	}
+
+	/**
+	 * @param length
+	 * @return a string of length characters
+	 */
+	private static String valueOf(int length) {
+		return "x".repeat(length);
+	}
+
+	@Test
+	void testRoundTrip() {
+		try (OffHeapCache<Integer, String> cache = new OffHeapCache<>(STRING_SERIALIZER, 1 << 20, 1 << 12)) {
+			Map<Integer, String> expected = new HashMap<>();
+			for (int i = 0; i < 100; i++) {
+				cache.cache(i, i + "-" + valueOf(i * 10));
+				expected.put(i, i + "-" + valueOf(i * 10));
+			}
+			cache.cache(null, "null");
+			expected.put(null, "null");
+			assertContent(expected, cache);
+			assertEquals(new HashSet<>(expected.values()), new HashSet<>(cache.getValueCollection()));
+			Map<Integer, String> actual = new HashMap<>();
+			cache.forEach(actual::put);
+			assertEquals(expected, actual);
+			assertEquals(0, cache.getEvictionCount());
+			assertThrows(NoSuchElementException.class, () -> cache.get(100));
+			assertThrows(IllegalArgumentException.class, () -> cache.cache(100, valueOf(1 << 12)));
+		}
+	}
+
+	@Test
+	void testReplace() {
+		List<RemovalNotification<Integer, String>> notificationList = new ArrayList<>();
+		try (OffHeapCache<Integer, String> cache = new OffHeapCache<>(STRING_SERIALIZER, 1 << 16, 1 << 12)) {
+			cache.setRemovalListener(notificationList::add, Runnable::run);
+			cache.cache(1, "a");
+			// the new value needs a chunk of another size class
+			cache.cache(1, valueOf(1000));
+			cache.cache(1, "b");
+			assertEquals(1, cache.size());
+			assertEquals("b", cache.get(1));
+			assertEquals(2, notificationList.size());
+			assertEquals("a", notificationList.get(0).getValue());
+			assertEquals(valueOf(1000), notificationList.get(1).getValue());
+			for (RemovalNotification<Integer, String> notification : notificationList)
+				assertEquals(RemovalCause.REPLACED, notification.getCause());
+			cache.remove(1);
+			assertFalse(cache.contains(1));
+			assertEquals(RemovalCause.EXPLICIT, notificationList.get(2).getCause());
+			assertEquals(0, cache.getEvictionCount());
+		}
+	}
+
+	@Test
+	void testEviction() {
+		try (OffHeapCache<Integer, String> cache = new OffHeapCache<>(STRING_SERIALIZER, 1 << 11, 1 << 10)) {
+			for (int i = 0; i < 1000; i++) {
+				cache.cache(i, "v" + i);
+				assertEquals("v" + i, cache.get(i));
+				assertTrue(cache.getAllocatedBytes() <= cache.getMaximumBytes());
+			}
+			assertEquals(1 << 11, cache.getAllocatedBytes());
+			assertEquals(1000, cache.size() + cache.getEvictionCount());
+			assertTrue(cache.getEvictionCount() > 0);
+			// a value of a new size class takes over a slab of the other one
+			cache.cache(-1, valueOf(500));
+			assertEquals(valueOf(500), cache.get(-1));
+			assertEquals(1 << 11, cache.getAllocatedBytes());
+			assertEquals(1001, cache.size() + cache.getEvictionCount());
+			for (int key : cache.getKeySet())
+				if (key != -1)
+					assertEquals("v" + key, cache.get(key));
+		}
+	}
+
+	@Test
+	void testSlabTableGrows() {
+		try (OffHeapCache<Integer, String> cache = new OffHeapCache<>(STRING_SERIALIZER, Long.MAX_VALUE, 64)) {
+			assertEquals((long) (Integer.MAX_VALUE - 8) * 64, cache.getMaximumBytes());
+			for (int i = 0; i < 100; i++)
+				cache.cache(i, "v" + i);
+			assertEquals(100 * 64, cache.getAllocatedBytes());
+			for (int i = 0; i < 100; i++)
+				assertEquals("v" + i, cache.get(i));
+			assertEquals(0, cache.getEvictionCount());
+		}
+	}
+
+	@Test
+	void testDeleteInWrappedChain() {
+		// the chain of the keys at the last index wraps around to the start of the
+		// table and is followed by keys at the first two indices
+		List<Integer> keyList = new ArrayList<>(keysAt(LENGTH - 1, 4));
+		keyList.addAll(keysAt(0, 2));
+		keyList.addAll(keysAt(1, 2));
+		for (int removed : keyList) {
+			try (OffHeapCache<Integer, String> cache = new OffHeapCache<>(STRING_SERIALIZER, 1 << 16, 1 << 12)) {
+				Map<Integer, String> expected = new HashMap<>();
+				for (int key : keyList) {
+					cache.cache(key, "v" + key);
+					expected.put(key, "v" + key);
+				}
+				cache.remove(removed);
+				expected.remove(removed);
+				assertFalse(cache.contains(removed));
+				assertContent(expected, cache);
+			}
+		}
+	}
+
+}
@@ -0,0 +1,91 @@
+package de.nuttercode.util.cache;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+import java.lang.ref.WeakReference;
+import java.util.ArrayList;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+
+import org.junit.jupiter.api.Test;
+
+class ReferenceCacheTest {
+
+	/**
+	 * values of the even keys, which must not be collected
+	 */
+	private final List<String> heldList = new ArrayList<>();
+
+	/**
+	 * caches the keys 0 to 99 and waits until the values of the odd ones have
+	 * been collected without purging them
+	 *
+	 * @param cache
+	 * @throws InterruptedException
+	 */
+	private void cacheHalfCollected(Cache<Integer, String> cache) throws InterruptedException {
+		String value;
+		for (int i = 0; i < 100; i++) {
+			value = new String("v" + i);
+			cache.cache(i, value);
+			if ((i & 1) == 0)
+				heldList.add(value);
+		}
+		WeakReference<Object> probe = new WeakReference<>(new Object());
+		for (int i = 0; i < 10 && probe.get() != null; i++) {
+			System.gc();
+			Thread.sleep(10);
+		}
+	}
+
+	@Test
+	void testReadWhileTraversingKeySet() throws InterruptedException {
+		WeakCache<Integer, String> cache = new WeakCache<>();
+		cacheHalfCollected(cache);
+		Set<Integer> keySet = new HashSet<>();
+		// reads purge collected entries while the view is traversed
+		for (int key : cache.getKeySet()) {
+			if ((key & 1) == 0)
+				assertEquals("v" + key, cache.get(key));
+			else
+				cache.getIfPresent(key);
+			keySet.add(key);
+		}
+		for (int key = 0; key < 100; key += 2)
+			assertTrue(keySet.contains(key));
+	}
+
+	@Test
+	void testReadWhileTraversingValueCollection() throws InterruptedException {
+		WeakCache<Integer, String> cache = new WeakCache<>();
+		cacheHalfCollected(cache);
+		Set<String> valueSet = new HashSet<>();
+		for (String value : cache.getValueCollection()) {
+			cache.getIfPresent(Integer.parseInt(value.substring(1)));
+			valueSet.add(value);
+		}
+		assertTrue(valueSet.containsAll(heldList));
+	}
+
+	@Test
+	void testViews() {
+		SoftCache<Integer, String> cache = new SoftCache<>(new ConcurrentStrongCache<>());
+		for (int i = 0; i < 100; i++)
+			cache.cache(i, "v" + i);
+		assertTrue(cache.getKeySet().contains(0));
+		assertFalse(cache.getKeySet().contains(100));
+		assertEquals(100, cache.getKeySet().size());
+		assertEquals(100, cache.getKeySet().parallelStream().distinct().count());
+		Set<String> valueSet = new HashSet<>();
+		for (String value : cache.getValueCollection())
+			valueSet.add(value);
+		assertEquals(100, valueSet.size());
+		// concurrent sources are traversed directly
+		for (int key : cache.getKeySet())
+			cache.remove(key);
+		assertTrue(cache.getKeySet().isEmpty());
+		assertThrows(UnsupportedOperationException.class, () -> cache.getKeySet().add(1));
+	}
+
+}
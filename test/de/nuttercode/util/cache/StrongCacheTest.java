@@ -0,0 +1,178 @@
+package de.nuttercode.util.cache;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.NoSuchElementException;
+import java.util.Random;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicReference;
+
+import org.junit.jupiter.api.Test;
+
+class StrongCacheTest {
+
+	private static void assertContainsAll(Cache<Integer, Integer> cache, Map<Integer, Integer> model) {
+		for (Map.Entry<Integer, Integer> entry : model.entrySet()) {
+			assertTrue(cache.contains(entry.getKey()), "false negative of " + entry.getKey());
+			assertEquals(entry.getValue(), cache.get(entry.getKey()));
+		}
+		assertEquals(model, cache.getAll(model.keySet()));
+		assertEquals(model.size(), cache.size());
+	}
+
+	/**
+	 * performs random operations on the cache and the model
+	 */
+	private static void randomOperations(StrongCache<Integer, Integer> cache, long seed) {
+		Map<Integer, Integer> model = new HashMap<>();
+		Random random = new Random(seed);
+		Integer key;
+		for (int i = 0; i < 20000; i++) {
+			key = random.nextInt(128);
+			switch (random.nextInt(10)) {
+			case 0:
+			case 1:
+				cache.cache(key, i);
+				model.put(key, i);
+				break;
+			case 2:
+				assertEquals(model.putIfAbsent(key, i), cache.putIfAbsent(key, i));
+				break;
+			case 3:
+				int value = i;
+				assertEquals(model.compute(key, (k, previous) -> previous == null || value % 2 == 0 ? value : null),
+						cache.compute(key, (k, previous) -> previous == null || value % 2 == 0 ? value : null));
+				break;
+			case 4:
+			case 5:
+				if (model.remove(key) != null)
+					cache.remove(key);
+				else
+					assertFalse(cache.contains(key));
+				break;
+			case 6:
+				cache.removeAll(List.of(key, key + 1));
+				model.remove(key);
+				model.remove(key + 1);
+				break;
+			case 7:
+				cache.cacheAll(Map.of(key, i, key + 128, i));
+				model.put(key, i);
+				model.put(key + 128, i);
+				break;
+			case 8:
+				cache.clean();
+				break;
+			default:
+				if (random.nextInt(100) == 0) {
+					cache.clear();
+					model.clear();
+				}
+			}
+			assertContainsAll(cache, model);
+		}
+	}
+
+	@Test
+	void testBloomFilter() {
+		StrongCache<Integer, Integer> cache = new StrongCache<>();
+		cache.cache(1, 1);
+		cache.setBloomFilter(new CountingBloomFilter(1024, 0.01));
+		assertTrue(cache.contains(1));
+		assertFalse(cache.contains(2));
+		assertThrows(NoSuchElementException.class, () -> cache.get(2));
+		assertNull(cache.getIfPresent(2));
+		cache.setBloomFilter(null);
+		assertTrue(cache.contains(1));
+	}
+
+	@Test
+	void testBloomFilterRandomOperations() {
+		// few counters, so counters are shared by many keys and saturate
+		StrongCache<Integer, Integer> cache = new StrongCache<>();
+		cache.setBloomFilter(new CountingBloomFilter(1, 0.5));
+		randomOperations(cache, 42);
+	}
+
+	@Test
+	void testBloomFilterRandomOperationsWithRemovalListener() {
+		StrongCache<Integer, Integer> cache = new StrongCache<>();
+		cache.setBloomFilter(new CountingBloomFilter(1, 0.5));
+		cache.setRemovalListener(notification -> {
+		}, Runnable::run);
+		randomOperations(cache, 43);
+	}
+
+	@Test
+	void testBloomFilterRandomOperationsConcurrent() {
+		StrongCache<Integer, Integer> cache = new ConcurrentStrongCache<>();
+		cache.setBloomFilter(new CountingBloomFilter(1, 0.5));
+		randomOperations(cache, 44);
+	}
+
+	@Test
+	void testBloomFilterRebuild() {
+		StrongCache<Integer, Integer> cache = new StrongCache<>();
+		cache.setBloomFilter(new CountingBloomFilter(64, 0.01));
+		for (int i = 0; i < 64; i++)
+			cache.cache(i, i);
+		for (int i = 0; i < 64; i += 2)
+			cache.remove(i);
+		cache.clean();
+		for (int i = 1; i < 64; i += 2)
+			assertTrue(cache.contains(i));
+		cache.clear();
+		for (int i = 0; i < 64; i++)
+			assertFalse(cache.contains(i));
+		cache.cache(0, 0);
+		assertTrue(cache.contains(0));
+	}
+
+	@Test
+	void testBloomFilterConcurrentClean() throws InterruptedException {
+		StrongCache<Integer, Integer> cache = new ConcurrentStrongCache<>();
+		cache.setBloomFilter(new CountingBloomFilter(64, 0.1));
+		AtomicBoolean isRunning = new AtomicBoolean(true);
+		AtomicReference<Throwable> failure = new AtomicReference<>();
+		List<Thread> threadList = new ArrayList<>();
+		for (int t = 0; t < 4; t++) {
+			int offset = t * 1000;
+			threadList.add(new Thread(() -> {
+				Random random = new Random(offset);
+				Integer key;
+				try {
+					for (int i = 0; i < 50000; i++) {
+						// every thread works on its own keys, so they are only changed by itself
+						key = offset + random.nextInt(64);
+						if (random.nextBoolean()) {
+							cache.cache(key, key);
+							assertTrue(cache.contains(key), "false negative of " + key);
+						} else if (cache.getIfPresent(key) != null)
+							cache.remove(key);
+					}
+				} catch (Throwable e) {
+					failure.compareAndSet(null, e);
+				}
+			}));
+		}
+		Thread cleanThread = new Thread(() -> {
+			while (isRunning.get())
+				cache.clean();
+		});
+		cleanThread.start();
+		for (Thread thread : threadList)
+			thread.start();
+		for (Thread thread : threadList)
+			thread.join();
+		isRunning.set(false);
+		cleanThread.join();
+		assertNull(failure.get());
+		for (Integer key : cache.getKeySet())
+			assertTrue(cache.contains(key));
+	}
+
+}
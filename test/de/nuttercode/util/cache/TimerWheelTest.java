@@ -0,0 +1,110 @@
+package de.nuttercode.util.cache;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Random;
+
+import org.junit.jupiter.api.Test;
+
+class TimerWheelTest {
+
+	/**
+	 * span of a bucket of the lowest level
+	 */
+	private static final long TICK = 1L << 24;
+
+	private final List<TimerWheel.Timer> expiredList = new ArrayList<>();
+	private final TimerWheel<TimerWheel.Timer> timerWheel = new TimerWheel<>(0, expiredList::add);
+
+	@Test
+	void testExpiryAtDeadline() {
+		TimerWheel.Timer timer = new TimerWheel.Timer();
+		timerWheel.schedule(timer, 5 * TICK);
+		timerWheel.advance(5 * TICK - 1);
+		assertTrue(expiredList.isEmpty());
+		assertTrue(timer.isScheduled());
+		timerWheel.advance(5 * TICK);
+		assertEquals(List.of(timer), expiredList);
+		assertFalse(timer.isScheduled());
+	}
+
+	@Test
+	void testExpiryWithinTick() {
+		TimerWheel.Timer timer = new TimerWheel.Timer();
+		timerWheel.schedule(timer, 5 * TICK + 1);
+		timerWheel.advance(5 * TICK);
+		assertTrue(expiredList.isEmpty());
+		timerWheel.advance(6 * TICK);
+		assertEquals(List.of(timer), expiredList);
+	}
+
+	@Test
+	void testCascade() {
+		// one timer per level, the last one in the overflow level
+		long[] expirationTimes = { 3 * TICK, 3L << 30, 5L << 36, 7L << 42, 3L << 47 };
+		TimerWheel.Timer[] timers = new TimerWheel.Timer[expirationTimes.length];
+		for (int i = 0; i < expirationTimes.length; i++) {
+			timers[i] = new TimerWheel.Timer();
+			timerWheel.schedule(timers[i], expirationTimes[i]);
+		}
+		for (int i = 0; i < expirationTimes.length; i++) {
+			timerWheel.advance(expirationTimes[i] - 1);
+			assertEquals(i, expiredList.size());
+			timerWheel.advance(expirationTimes[i]);
+			assertEquals(i + 1, expiredList.size());
+			assertSame(timers[i], expiredList.get(i));
+		}
+	}
+
+	@Test
+	void testRandomTimers() {
+		Random random = new Random(42);
+		Map<TimerWheel.Timer, Long> expirationTimeMap = new HashMap<>();
+		for (int i = 0; i < 2000; i++) {
+			TimerWheel.Timer timer = new TimerWheel.Timer();
+			long expirationTime = 1 + (random.nextLong() >>> (random.nextInt(48) + 16));
+			timerWheel.schedule(timer, expirationTime);
+			expirationTimeMap.put(timer, expirationTime);
+		}
+		long now = 0;
+		long end = 1L << 48;
+		while (now < end) {
+			now += 1 + (random.nextLong() >>> (random.nextInt(20) + 24));
+			timerWheel.advance(now);
+			for (TimerWheel.Timer timer : expiredList)
+				assertTrue(expirationTimeMap.remove(timer) <= now);
+			expiredList.clear();
+			for (long expirationTime : expirationTimeMap.values())
+				assertTrue((expirationTime >>> 24) >= (now >>> 24));
+		}
+		assertTrue(expirationTimeMap.isEmpty());
+	}
+
+	@Test
+	void testReschedule() {
+		TimerWheel.Timer timer = new TimerWheel.Timer();
+		timerWheel.schedule(timer, 2 * TICK);
+		timerWheel.schedule(timer, 1L << 32);
+		timerWheel.advance(3 * TICK);
+		assertTrue(expiredList.isEmpty());
+		timerWheel.advance(1L << 32);
+		assertEquals(List.of(timer), expiredList);
+	}
+
+	@Test
+	void testDeschedule() {
+		TimerWheel.Timer timer = new TimerWheel.Timer();
+		timerWheel.schedule(timer, TICK);
+		timerWheel.deschedule(timer);
+		assertFalse(timer.isScheduled());
+		timerWheel.schedule(new TimerWheel.Timer(), TICK);
+		timerWheel.clear();
+		timerWheel.advance(2 * TICK);
+		assertTrue(expiredList.isEmpty());
+	}
+
+}
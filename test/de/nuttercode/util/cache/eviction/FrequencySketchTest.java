@@ -0,0 +1,47 @@
+package de.nuttercode.util.cache.eviction;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+import org.junit.jupiter.api.Test;
+
+class FrequencySketchTest {
+
+	@Test
+	void testFrequency() {
+		FrequencySketch sketch = new FrequencySketch();
+		assertEquals(0, sketch.frequency("a"));
+		sketch.increment("a");
+		sketch.increment("a");
+		assertEquals(2, sketch.frequency("a"));
+		for (int i = 0; i < 20; i++)
+			sketch.increment("a");
+		assertEquals(15, sketch.frequency("a"));
+		sketch.clear();
+		assertEquals(0, sketch.frequency("a"));
+	}
+
+	@Test
+	void testAging() {
+		FrequencySketch sketch = new FrequencySketch();
+		for (int i = 0; i < 15; i++)
+			sketch.increment(-1);
+		assertEquals(15, sketch.frequency(-1));
+		// the sample size of the initial table is 160 additions
+		for (int i = 0; i < 144; i++)
+			sketch.increment(i);
+		assertEquals(15, sketch.frequency(-1));
+		sketch.increment(144);
+		assertTrue(sketch.frequency(-1) <= 7);
+	}
+
+	@Test
+	void testEnsureCapacity() {
+		FrequencySketch sketch = new FrequencySketch();
+		sketch.increment("a");
+		sketch.ensureCapacity(16);
+		assertEquals(1, sketch.frequency("a"));
+		sketch.ensureCapacity(17);
+		assertEquals(0, sketch.frequency("a"));
+	}
+
+}
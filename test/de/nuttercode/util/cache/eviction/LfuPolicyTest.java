@@ -0,0 +1,49 @@
+package de.nuttercode.util.cache.eviction;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+import org.junit.jupiter.api.Test;
+
+class LfuPolicyTest {
+
+	@Test
+	void testVictimOrder() {
+		LfuPolicy<String> policy = new LfuPolicy<>();
+		policy.recordInsertion("a");
+		policy.recordInsertion("b");
+		policy.recordInsertion("c");
+		policy.recordAccess("a");
+		policy.recordAccess("a");
+		policy.recordAccess("c");
+		assertEquals("b", policy.nextVictim());
+		assertEquals("c", policy.nextVictim());
+		assertEquals("a", policy.nextVictim());
+		assertNull(policy.nextVictim());
+	}
+
+	@Test
+	void testTiesInRecencyOrder() {
+		LfuPolicy<String> policy = new LfuPolicy<>();
+		policy.recordInsertion("a");
+		policy.recordInsertion("b");
+		policy.recordInsertion("c");
+		policy.recordAccess("b");
+		policy.recordAccess("a");
+		assertEquals("c", policy.nextVictim());
+		assertEquals("b", policy.nextVictim());
+		assertEquals("a", policy.nextVictim());
+	}
+
+	@Test
+	void testRemoval() {
+		LfuPolicy<String> policy = new LfuPolicy<>();
+		policy.recordInsertion("a");
+		policy.recordInsertion("b");
+		policy.recordAccess("b");
+		policy.recordRemoval("b");
+		policy.recordRemoval("c");
+		assertEquals("a", policy.nextVictim());
+		assertNull(policy.nextVictim());
+	}
+
+}
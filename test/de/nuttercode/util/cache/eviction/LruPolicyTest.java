@@ -0,0 +1,35 @@
+package de.nuttercode.util.cache.eviction;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+import org.junit.jupiter.api.Test;
+
+class LruPolicyTest {
+
+	@Test
+	void testVictimOrder() {
+		LruPolicy<String> policy = new LruPolicy<>();
+		policy.recordInsertion("a");
+		policy.recordInsertion("b");
+		policy.recordInsertion("c");
+		policy.recordAccess("a");
+		assertEquals("b", policy.nextVictim());
+		assertEquals("c", policy.nextVictim());
+		assertEquals("a", policy.nextVictim());
+		assertNull(policy.nextVictim());
+	}
+
+	@Test
+	void testRemoval() {
+		LruPolicy<String> policy = new LruPolicy<>();
+		policy.recordInsertion("a");
+		policy.recordInsertion("b");
+		policy.recordRemoval("a");
+		assertEquals("b", policy.nextVictim());
+		assertNull(policy.nextVictim());
+		policy.recordInsertion("c");
+		policy.clear();
+		assertNull(policy.nextVictim());
+	}
+
+}
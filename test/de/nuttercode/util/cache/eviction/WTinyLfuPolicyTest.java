@@ -0,0 +1,62 @@
+package de.nuttercode.util.cache.eviction;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+import org.junit.jupiter.api.Test;
+
+class WTinyLfuPolicyTest {
+
+	@Test
+	void testEmpty() {
+		WTinyLfuPolicy<Integer> policy = new WTinyLfuPolicy<>();
+		assertNull(policy.nextVictim());
+		policy.recordInsertion(1);
+		assertEquals(1, policy.nextVictim());
+		assertNull(policy.nextVictim());
+	}
+
+	@Test
+	void testCandidateWithEqualFrequencyIsRejected() {
+		WTinyLfuPolicy<Integer> policy = new WTinyLfuPolicy<>(0, 0.8);
+		for (int i = 0; i < 4; i++)
+			policy.recordInsertion(i);
+		// 0, 1 and 2 have left the window, 2 is the candidate
+		assertEquals(2, policy.nextVictim());
+		assertEquals(0, policy.nextVictim());
+	}
+
+	@Test
+	void testFrequentCandidateIsAdmitted() {
+		WTinyLfuPolicy<Integer> policy = new WTinyLfuPolicy<>(0, 0.8);
+		policy.recordInsertion(0);
+		policy.recordInsertion(1);
+		policy.recordRemoval(1);
+		policy.recordInsertion(1);
+		policy.recordInsertion(2);
+		// candidate 1 has been seen twice, the probation victim 0 once
+		assertEquals(0, policy.nextVictim());
+	}
+
+	@Test
+	void testProtectedKeySurvives() {
+		WTinyLfuPolicy<Integer> policy = new WTinyLfuPolicy<>(0, 0.8);
+		for (int i = 0; i < 4; i++)
+			policy.recordInsertion(i);
+		policy.recordAccess(0);
+		assertEquals(2, policy.nextVictim());
+		assertEquals(1, policy.nextVictim());
+		assertEquals(0, policy.nextVictim());
+	}
+
+	@Test
+	void testInsertionIsCountedAfterSketchGrows() {
+		WTinyLfuPolicy<Integer> policy = new WTinyLfuPolicy<>(0, 0.8);
+		// the 17th key grows the sketch, which drops all previous frequencies
+		for (int i = 0; i <= 16; i++)
+			policy.recordInsertion(i);
+		policy.recordInsertion(17);
+		// candidate 16 has been counted once after the growth, victim 0 never
+		assertEquals(0, policy.nextVictim());
+	}
+
+}
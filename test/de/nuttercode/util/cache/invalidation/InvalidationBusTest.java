@@ -0,0 +1,205 @@
+package de.nuttercode.util.cache.invalidation;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+import java.io.IOException;
+import java.net.InetAddress;
+import java.net.InetSocketAddress;
+import java.net.SocketAddress;
+import java.net.UnixDomainSocketAddress;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.function.BooleanSupplier;
+
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import de.nuttercode.util.ExceptionHandler;
+import de.nuttercode.util.buffer.ReadableBuffer;
+import de.nuttercode.util.buffer.WritableBuffer;
+import de.nuttercode.util.cache.ConcurrentStrongCache;
+import de.nuttercode.util.cache.StrongCache;
+import de.nuttercode.util.cache.Serializer;
+
+class InvalidationBusTest {
+
+	private static final Serializer<Integer> INTEGER_SERIALIZER = new Serializer<>() {
+
+		@Override
+		public void serialize(Integer value, WritableBuffer buffer) {
+			buffer.putInt(value);
+		}
+
+		@Override
+		public Integer deserialize(ReadableBuffer buffer) {
+			return buffer.getInt();
+		}
+
+	};
+
+	/**
+	 * records the batches of keys which have been removed at once
+	 */
+	private static final class RecordingCache extends ConcurrentStrongCache<Integer, Integer> {
+
+		private final List<List<Integer>> batchList = new CopyOnWriteArrayList<>();
+
+		private RecordingCache(int count) {
+			for (int i = 0; i < count; i++)
+				cache(i, i);
+		}
+
+		@Override
+		public void removeAll(Collection<? extends Integer> keys) {
+			batchList.add(new ArrayList<>(keys));
+			super.removeAll(keys);
+		}
+
+	}
+
+	@TempDir
+	Path directory;
+
+	/**
+	 * exceptions of the background threads of all buses
+	 */
+	private final List<Exception> exceptionList = new CopyOnWriteArrayList<>();
+	private final ExceptionHandler exceptionHandler = exceptionList::add;
+
+	private InvalidationBus<Integer> create(SocketAddress localAddress, SocketAddress peerAddress,
+			Duration batchDelay, int maximumBacklogSize) throws IOException {
+		return new InvalidationBus<>(localAddress, peerAddress == null ? List.of() : List.of(peerAddress),
+				INTEGER_SERIALIZER, batchDelay, InvalidationBus.DEFAULT_MAXIMUM_BATCH_SIZE, Duration.ofSeconds(1),
+				maximumBacklogSize, exceptionHandler);
+	}
+
+	private static void await(BooleanSupplier condition) throws InterruptedException {
+		long deadline = System.nanoTime() + Duration.ofSeconds(10).toNanos();
+		while (!condition.getAsBoolean()) {
+			assertTrue(System.nanoTime() - deadline < 0, "timed out");
+			Thread.sleep(5);
+		}
+	}
+
+	private SocketAddress socketAddress(String name) {
+		return UnixDomainSocketAddress.of(directory.resolve(name));
+	}
+
+	/**
+	 * starts a peer which can only be reached once the cache has been registered
+	 * by binding it to a temporary socket file which is renamed afterwards
+	 *
+	 * @param name
+	 *            name of the socket file
+	 * @param cache
+	 * @param maximumBacklogSize
+	 * @return the peer
+	 * @throws IOException
+	 */
+	private InvalidationBus<Integer> startPeer(String name, RecordingCache cache, int maximumBacklogSize)
+			throws IOException {
+		InvalidationBus<Integer> peer = create(socketAddress(name + ".tmp"), null, Duration.ZERO, maximumBacklogSize);
+		peer.register(cache);
+		Files.move(directory.resolve(name + ".tmp"), directory.resolve(name));
+		return peer;
+	}
+
+	@Test
+	void testRejectsNonConcurrentCaches() throws IOException {
+		try (InvalidationBus<Integer> bus = create(socketAddress("a"), null, Duration.ZERO, 16)) {
+			assertThrows(IllegalArgumentException.class, () -> bus.register(new StrongCache<>()));
+			bus.register(new ConcurrentStrongCache<>());
+		}
+		assertThrows(IllegalArgumentException.class,
+				() -> create(new InetSocketAddress(InetAddress.getByName("192.0.2.1"), 0), null, Duration.ZERO, 16));
+	}
+
+	@Test
+	void testBatchingAndCoalescing() throws Exception {
+		RecordingCache localCache = new RecordingCache(10);
+		RecordingCache peerCache = new RecordingCache(10);
+		try (InvalidationBus<Integer> peer = create(new InetSocketAddress(InetAddress.getLoopbackAddress(), 0), null,
+				Duration.ZERO, 16);
+				InvalidationBus<Integer> bus = create(socketAddress("bus"), peer.getLocalAddress(),
+						Duration.ofMillis(200), 16)) {
+			peer.register(peerCache);
+			bus.register(localCache);
+			for (int i = 0; i < 3; i++)
+				for (int key = 0; key < 5; key++)
+					bus.invalidate(key);
+			// the keys are removed locally at once
+			assertEquals(5, localCache.size());
+			// the keys are counted as sent once they have been written
+			await(() -> peer.getReceivedKeyCount() == 5 && bus.getSentKeyCount() == 5);
+			assertEquals(List.of(List.of(0, 1, 2, 3, 4)), peerCache.batchList);
+			assertEquals(Set.of(5, 6, 7, 8, 9), peerCache.getKeySet());
+		}
+		assertTrue(exceptionList.isEmpty());
+	}
+
+	@Test
+	void testBacklogIsSentToLatePeer() throws Exception {
+		SocketAddress peerAddress = socketAddress("peer");
+		try (InvalidationBus<Integer> bus = create(socketAddress("bus"), peerAddress, Duration.ZERO, 16)) {
+			bus.invalidateAll(List.of(0, 1, 2));
+			await(() -> !exceptionList.isEmpty());
+			bus.invalidate(3);
+			RecordingCache peerCache = new RecordingCache(10);
+			try (InvalidationBus<Integer> peer = startPeer("peer", peerCache, 16)) {
+				await(() -> peerCache.size() == 6);
+				assertEquals(Set.of(4, 5, 6, 7, 8, 9), peerCache.getKeySet());
+				assertEquals(4, peer.getReceivedKeyCount());
+			}
+		}
+		// failures are reported once until the peer has been reached
+		assertEquals(1, exceptionList.size());
+	}
+
+	@Test
+	void testClearAfterOverflow() throws Exception {
+		SocketAddress peerAddress = socketAddress("peer");
+		try (InvalidationBus<Integer> bus = create(socketAddress("bus"), peerAddress, Duration.ZERO, 2)) {
+			bus.invalidateAll(List.of(0, 1, 2));
+			await(() -> !exceptionList.isEmpty());
+			RecordingCache peerCache = new RecordingCache(10);
+			try (InvalidationBus<Integer> peer = startPeer("peer", peerCache, 2)) {
+				await(() -> peerCache.size() == 0);
+				// the keys have been dropped in favor of the clear frame
+				assertEquals(0, peer.getReceivedKeyCount());
+				assertTrue(peerCache.batchList.isEmpty());
+				bus.invalidate(3);
+				await(() -> peer.getReceivedKeyCount() == 1);
+			}
+		}
+	}
+
+	@Test
+	void testClose() throws Exception {
+		Path localPath = directory.resolve("bus");
+		RecordingCache peerCache = new RecordingCache(10);
+		try (InvalidationBus<Integer> peer = create(socketAddress("peer"), null, Duration.ZERO, 16)) {
+			peer.register(peerCache);
+			InvalidationBus<Integer> bus = create(UnixDomainSocketAddress.of(localPath), peer.getLocalAddress(),
+					Duration.ofSeconds(10), 16);
+			assertTrue(Files.exists(localPath));
+			bus.invalidate(0);
+			// pending keys are sent by close without waiting for the batch delay
+			long start = System.nanoTime();
+			bus.close();
+			assertTrue(System.nanoTime() - start < Duration.ofSeconds(5).toNanos());
+			assertEquals(1, bus.getSentKeyCount());
+			await(() -> peerCache.size() == 9);
+			assertFalse(Files.exists(localPath));
+			assertThrows(IllegalStateException.class, () -> bus.invalidate(1));
+			bus.close();
+		}
+		assertTrue(exceptionList.isEmpty());
+	}
+
+}